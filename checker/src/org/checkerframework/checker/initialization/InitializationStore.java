@@ -171,11 +171,17 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
             // Remove invariant annotated fields to avoid performance issue reported in #1438.
             for (FieldAccess invariantField : invariantFields.keySet()) {
                 V v = fieldValues.remove(invariantField);
-                removedFieldValues.put(invariantField, v);
+                // The store may have no value for an invariant field, for example after the
+                // value has been cleared.
+                if (v != null) {
+                    removedFieldValues.put(invariantField, v);
+                }
             }
             for (FieldAccess invariantField : other.invariantFields.keySet()) {
                 V v = other.fieldValues.remove(invariantField);
-                removedOtherFieldValues.put(invariantField, v);
+                if (v != null) {
+                    removedOtherFieldValues.put(invariantField, v);
+                }
             }
 
             return super.supersetOf(other);
@@ -193,11 +199,15 @@ public class InitializationStore<V extends CFAbstractValue<V>, S extends Initial
         Map<FlowExpressions.FieldAccess, V> removedOtherFieldValues = new HashMap<>();
         for (FieldAccess invariantField : invariantFields.keySet()) {
             V v = fieldValues.remove(invariantField);
-            removedFieldValues.put(invariantField, v);
+            if (v != null) {
+                removedFieldValues.put(invariantField, v);
+            }
         }
         for (FieldAccess invariantField : other.invariantFields.keySet()) {
             V v = other.fieldValues.remove(invariantField);
-            removedOtherFieldValues.put(invariantField, v);
+            if (v != null) {
+                removedOtherFieldValues.put(invariantField, v);
+            }
         }
 
         S result = super.leastUpperBound(other);
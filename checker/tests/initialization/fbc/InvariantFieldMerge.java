@@ -0,0 +1,30 @@
+// Test case for merging stores that have an invariant field, but no value for it.
+// The value of next.f is removed from the store by the assignment to next.
+
+public class InvariantFieldMerge {
+    InvariantFieldMerge next;
+    Object f;
+
+    InvariantFieldMerge(InvariantFieldMerge next, Object f) {
+        this.next = next;
+        this.f = f;
+    }
+
+    void merge(boolean b, InvariantFieldMerge o) {
+        next.f = "a";
+        next = o;
+        if (b) {
+            o = next;
+        }
+        o.f.toString();
+    }
+
+    void loop(boolean b, InvariantFieldMerge o) {
+        next.f = "a";
+        next = o;
+        while (b) {
+            next.f.toString();
+            b = !b;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Runs the tests of {@link GuiEffectTest}, whose effects of library methods come from stub files,
+ * with -AstubLazyParse. Processing the stub files lazily must not change the diagnostics.
+ */
+public class GuiEffectLazyStubParseTest extends CheckerFrameworkPerDirectoryTest {
+
+    public GuiEffectLazyStubParseTest(List<File> testFiles) {
+        super(
+                testFiles,
+                org.checkerframework.checker.guieffect.GuiEffectChecker.class,
+                "guieffect",
+                "-Anomsgtext",
+                "-AstubLazyParse");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"guieffect", "all-systems"};
+    }
+}
@@ -0,0 +1,28 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized;
+
+/**
+ * Runs the tests of {@link StubparserTests} with -AstubLazyParse, which gives the same diagnostics.
+ * -AstubWarnIfNotFound is not given, because it disables lazy parsing.
+ */
+public class StubparserLazyParseTests extends CheckerFrameworkPerDirectoryTest {
+
+    public StubparserLazyParseTests(List<File> testFiles) {
+        super(
+                testFiles,
+                org.checkerframework.checker.nullness.NullnessChecker.class,
+                "nullness",
+                "-Anomsgtext",
+                "-AprintErrorStack",
+                "-AstubLazyParse");
+    }
+
+    @Parameterized.Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"stubparser-tests"};
+    }
+}
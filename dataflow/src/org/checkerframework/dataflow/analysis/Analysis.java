@@ -11,6 +11,8 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
 import com.sun.source.tree.VariableTree;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
@@ -18,7 +20,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.PriorityQueue;
 import java.util.Set;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
@@ -68,17 +69,28 @@ public class Analysis<
     /** Instance of the types utility. */
     protected final Types types;
 
-    /** Then stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> thenStores;
+    // The state of the analysis for each block and node is kept in arrays indexed by
+    // ControlFlowGraph.getDenseId(Block) and Node.getDenseId(), which the CFGBuilder assigns
+    // densely.
 
-    /** Else stores before every basic block (assumed to be 'no information' if not present). */
-    protected IdentityHashMap<Block, S> elseStores;
+    /**
+     * Then stores before every basic block, indexed by block (assumed to be 'no information' if
+     * null).
+     */
+    protected S[] thenStores;
+
+    /**
+     * Else stores before every basic block, indexed by block (assumed to be 'no information' if
+     * null).
+     */
+    protected S[] elseStores;
 
     /**
-     * Number of times every block has been analyzed since the last time widening was applied. Null,
-     * if maxCountBeforeWidening is -1 which implies widening isn't used for this analysis.
+     * Number of times every block has been analyzed since the last time widening was applied,
+     * indexed by block. Null, if maxCountBeforeWidening is -1 which implies widening isn't used
+     * for this analysis.
      */
-    protected IdentityHashMap<Block, Integer> blockCount;
+    protected int[] blockCount;
 
     /**
      * Number of times a block can be analyzed before widening. -1 implies that widening shouldn't
@@ -86,10 +98,55 @@ public class Analysis<
      */
     protected final int maxCountBeforeWidening;
 
+    /** Whether widening is only applied at loop heads; see {@link #setWideningAtLoopHeadsOnly}. */
+    protected boolean wideningAtLoopHeadsOnly = false;
+
     /**
-     * The transfer inputs before every basic block (assumed to be 'no information' if not present).
+     * The loop heads of the graph, if widening is only applied at loop heads; otherwise null. See
+     * {@link ControlFlowGraph#getLoopHeads()}.
      */
-    protected IdentityHashMap<Block, TransferInput<A, S>> inputs;
+    protected /*@Nullable*/ BitSet loopHeads;
+
+    /** The number of times the last analysis applied widening. */
+    protected int widenings;
+
+    /**
+     * The maximal number of narrowing passes after the fix-point iteration; see {@link
+     * #setNarrowingPasses}.
+     */
+    protected int narrowingPasses = 0;
+
+    /**
+     * The dense identifier of the block that a narrowing pass visits, or -1 if no narrowing pass
+     * is running. A store that flows to a block whose dense identifier is not larger, along a back
+     * edge, is merged into {@link #backEdgeThenStores} and {@link #backEdgeElseStores} instead of
+     * the stores before the block, for the next pass.
+     */
+    protected int narrowingBlock = -1;
+
+    /**
+     * The then stores that flowed along back edges during the current narrowing pass, indexed by
+     * block; null if no narrowing pass is running.
+     */
+    protected S /*@Nullable*/ [] backEdgeThenStores;
+
+    /**
+     * The else stores that flowed along back edges during the current narrowing pass, indexed by
+     * block; null if no narrowing pass is running.
+     */
+    protected S /*@Nullable*/ [] backEdgeElseStores;
+
+    /**
+     * The transfer inputs made of {@link #backEdgeThenStores} and {@link #backEdgeElseStores},
+     * indexed by block; null if no narrowing pass is running.
+     */
+    protected TransferInput<A, S> /*@Nullable*/ [] backEdgeInputs;
+
+    /**
+     * The transfer inputs before every basic block, indexed by block (assumed to be 'no
+     * information' if null).
+     */
+    protected TransferInput<A, S>[] inputs;
 
     /** The stores after every return statement. */
     protected IdentityHashMap<ReturnNode, TransferResult<A, S>> storesAtReturnStatements;
@@ -97,8 +154,32 @@ public class Analysis<
     /** The worklist used for the fix-point iteration. */
     protected Worklist worklist;
 
-    /** Abstract values of nodes. */
-    protected IdentityHashMap<Node, A> nodeValues;
+    /** The order in which the fix-point iteration visits the blocks. */
+    protected IterationStrategy iterationStrategy = IterationStrategy.PRIORITY_RPO;
+
+    /** The number of blocks visited by the fix-point iteration of the last analysis. */
+    protected int blockVisits;
+
+    /** Whether the analysis runs in sparse mode; see {@link #setSparse}. */
+    protected boolean sparse = false;
+
+    /** The live variables of the graph, if the analysis runs in sparse mode; otherwise null. */
+    protected /*@Nullable*/ LiveVariables liveVariables;
+
+    /**
+     * The number of nodes of a regular block between two checkpoints, or 0 if no checkpoints are
+     * recorded; see {@link #setCheckpointInterval}.
+     */
+    protected int checkpointInterval = 0;
+
+    /**
+     * The transfer inputs before the nodes at checkpoints, indexed by node; null if no
+     * checkpoints are recorded.
+     */
+    protected TransferInput<A, S> /*@Nullable*/ [] checkpoints;
+
+    /** Abstract values of nodes, indexed by node. */
+    protected A[] nodeValues;
 
     /** Map from (effectively final) local variable elements to their abstract value. */
     public HashMap<Element, A> finalLocalValues;
@@ -174,6 +255,123 @@ public class Analysis<
         return env;
     }
 
+    /** The orders in which the fix-point iteration can visit the blocks of the graph. */
+    public static enum IterationStrategy {
+        /**
+         * Always visit the waiting block that comes first in reverse postorder. This is the
+         * default.
+         */
+        PRIORITY_RPO,
+
+        /**
+         * Sweep over the blocks in reverse postorder, visiting those that are waiting, and start
+         * the next sweep at the beginning once the end is reached.
+         */
+        ROUND_ROBIN,
+
+        /**
+         * Visit the strongly connected components of the graph in topological order, and iterate
+         * each component until it is stable before visiting the next one. Within a component the
+         * blocks are visited as for {@link #PRIORITY_RPO}. A loop is thus stabilized before the
+         * code after it is analyzed, which may otherwise be analyzed once per iteration of the
+         * loop.
+         */
+        SCC
+    }
+
+    /** Sets the order in which the fix-point iteration of later analyses visits the blocks. */
+    public void setIterationStrategy(IterationStrategy iterationStrategy) {
+        this.iterationStrategy = iterationStrategy;
+    }
+
+    public IterationStrategy getIterationStrategy() {
+        return iterationStrategy;
+    }
+
+    /**
+     * Sets whether later analyses run in sparse mode. In sparse mode, the analysis computes the
+     * {@link LiveVariables} of the graph, and calls {@link #removeDeadVariables} for every store
+     * that flows into a block, so that a store only holds values of local variables that a later
+     * node may use. A change to the value of a dead variable then neither causes a block to be
+     * analyzed again nor makes stores larger.
+     */
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
+    }
+
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * Sets the number of nodes between two checkpoints that later analyses record in each regular
+     * block. At a checkpoint, the analysis records a copy of the transfer input before the node.
+     * {@link AnalysisResult} computes the store at a node by running the transfer function from the
+     * nearest checkpoint before the node, instead of from the beginning of its block, so a
+     * smaller interval makes queries for the stores of long blocks faster and uses more memory. 0,
+     * the default, records no checkpoints.
+     */
+    public void setCheckpointInterval(int checkpointInterval) {
+        this.checkpointInterval = checkpointInterval;
+    }
+
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * Sets whether later analyses only apply widening at loop heads, see {@link
+     * ControlFlowGraph#getLoopHeads()}, instead of at every block. Since every cycle of the graph
+     * contains a loop head, the fix-point iteration still terminates, and the stores in the bodies
+     * of loops are not widened. Has no effect if the analysis does not use widening.
+     */
+    public void setWideningAtLoopHeadsOnly(boolean wideningAtLoopHeadsOnly) {
+        this.wideningAtLoopHeadsOnly = wideningAtLoopHeadsOnly;
+    }
+
+    public boolean isWideningAtLoopHeadsOnly() {
+        return wideningAtLoopHeadsOnly;
+    }
+
+    /**
+     * Sets the maximal number of narrowing passes that later analyses perform after the fix-point
+     * iteration, if the iteration applied widening. See {@link #narrow()}. 0, the default,
+     * performs no narrowing.
+     */
+    public void setNarrowingPasses(int narrowingPasses) {
+        this.narrowingPasses = narrowingPasses;
+    }
+
+    public int getNarrowingPasses() {
+        return narrowingPasses;
+    }
+
+    /**
+     * Returns a store like {@code store}, without the values of the local variables that are not
+     * live at the beginning of {@code b}, as given by {@link #liveVariables}. Only called in sparse
+     * mode. Must not modify {@code store}.
+     *
+     * <p>This implementation returns {@code store}, since the analysis does not know how stores
+     * represent variables; subclasses override it.
+     */
+    protected S removeDeadVariables(S store, Block b) {
+        return store;
+    }
+
+    /**
+     * @return the number of blocks that the fix-point iteration and the narrowing passes of the
+     *     last analysis visited. A block is counted each time it is visited, so this measures how
+     *     long the iteration took to converge.
+     */
+    public int getBlockVisits() {
+        return blockVisits;
+    }
+
+    /** @return the number of times the last analysis applied widening */
+    public int getWidenings() {
+        return widenings;
+    }
+
     /**
      * Perform the actual analysis. Should only be called once after the object has been created.
      */
@@ -185,123 +383,229 @@ public class Analysis<
 
         while (!worklist.isEmpty()) {
             Block b = worklist.poll();
+            blockVisits++;
+            analyzeBlock(b);
+        }
+        if (widenings > 0 && narrowingPasses > 0) {
+            narrow();
+        }
 
-            switch (b.getType()) {
-                case REGULAR_BLOCK:
-                    {
-                        RegularBlock rb = (RegularBlock) b;
-
-                        // apply transfer function to contents
-                        TransferInput<A, S> inputBefore = getInputBefore(rb);
-                        currentInput = inputBefore.copy();
-                        TransferResult<A, S> transferResult = null;
-                        Node lastNode = null;
-                        boolean addToWorklistAgain = false;
-                        for (Node n : rb.getContents()) {
-                            transferResult = callTransferFunction(n, currentInput);
-                            addToWorklistAgain |= updateNodeValues(n, transferResult);
-                            currentInput = new TransferInput<>(n, this, transferResult);
-                            lastNode = n;
+        assert isRunning == true;
+        isRunning = false;
+    }
+
+    /**
+     * Applies the transfer function to the contents of {@code b}, and propagates the resulting
+     * stores to the successors of {@code b}.
+     */
+    protected void analyzeBlock(Block b) {
+        switch (b.getType()) {
+            case REGULAR_BLOCK:
+                {
+                    RegularBlock rb = (RegularBlock) b;
+
+                    // apply transfer function to contents
+                    TransferInput<A, S> inputBefore = getInputBefore(rb);
+                    currentInput = inputBefore.copy();
+                    TransferResult<A, S> transferResult = null;
+                    Node lastNode = null;
+                    boolean addToWorklistAgain = false;
+                    int position = 0;
+                    for (Node n : rb.getContents()) {
+                        if (checkpoints != null
+                                && position > 0
+                                && position % checkpointInterval == 0) {
+                            // The last visit of a block uses its final input, so it records
+                            // the final checkpoints.
+                            checkpoints[n.getDenseId()] = currentInput.copy();
                         }
-                        // loop will run at least one, making transferResult non-null
+                        position++;
+                        transferResult = callTransferFunction(n, currentInput);
+                        addToWorklistAgain |= updateNodeValues(n, transferResult);
+                        currentInput = new TransferInput<>(n, this, transferResult);
+                        lastNode = n;
+                    }
+                    // loop will run at least one, making transferResult non-null
+
+                    // propagate store to successors
+                    Block succ = rb.getSuccessor();
+                    assert succ != null
+                            : "regular basic block without non-exceptional successor unexpected";
+                    propagateStoresTo(
+                            succ, lastNode, currentInput, rb.getFlowRule(), addToWorklistAgain);
+                    break;
+                }
 
-                        // propagate store to successors
-                        Block succ = rb.getSuccessor();
-                        assert succ != null
-                                : "regular basic block without non-exceptional successor unexpected";
+            case EXCEPTION_BLOCK:
+                {
+                    ExceptionBlock eb = (ExceptionBlock) b;
+
+                    // apply transfer function to content
+                    TransferInput<A, S> inputBefore = getInputBefore(eb);
+                    currentInput = inputBefore.copy();
+                    Node node = eb.getNode();
+                    TransferResult<A, S> transferResult = callTransferFunction(node, currentInput);
+                    boolean addToWorklistAgain = updateNodeValues(node, transferResult);
+
+                    // propagate store to successor
+                    Block succ = eb.getSuccessor();
+                    if (succ != null) {
+                        currentInput = new TransferInput<>(node, this, transferResult);
+                        // TODO? Variable wasn't used.
+                        // Store.FlowRule storeFlow = eb.getFlowRule();
                         propagateStoresTo(
-                                succ, lastNode, currentInput, rb.getFlowRule(), addToWorklistAgain);
-                        break;
+                                succ, node, currentInput, eb.getFlowRule(), addToWorklistAgain);
                     }
 
-                case EXCEPTION_BLOCK:
-                    {
-                        ExceptionBlock eb = (ExceptionBlock) b;
-
-                        // apply transfer function to content
-                        TransferInput<A, S> inputBefore = getInputBefore(eb);
-                        currentInput = inputBefore.copy();
-                        Node node = eb.getNode();
-                        TransferResult<A, S> transferResult =
-                                callTransferFunction(node, currentInput);
-                        boolean addToWorklistAgain = updateNodeValues(node, transferResult);
-
-                        // propagate store to successor
-                        Block succ = eb.getSuccessor();
-                        if (succ != null) {
-                            currentInput = new TransferInput<>(node, this, transferResult);
-                            // TODO? Variable wasn't used.
-                            // Store.FlowRule storeFlow = eb.getFlowRule();
-                            propagateStoresTo(
-                                    succ, node, currentInput, eb.getFlowRule(), addToWorklistAgain);
-                        }
-
-                        // propagate store to exceptional successors
-                        for (Entry<TypeMirror, Set<Block>> e :
-                                eb.getExceptionalSuccessors().entrySet()) {
-                            TypeMirror cause = e.getKey();
-                            S exceptionalStore = transferResult.getExceptionalStore(cause);
-                            if (exceptionalStore != null) {
-                                for (Block exceptionSucc : e.getValue()) {
-                                    addStoreBefore(
-                                            exceptionSucc,
-                                            node,
-                                            exceptionalStore,
-                                            Store.Kind.BOTH,
-                                            addToWorklistAgain);
-                                }
-                            } else {
-                                for (Block exceptionSucc : e.getValue()) {
-                                    addStoreBefore(
-                                            exceptionSucc,
-                                            node,
-                                            inputBefore.copy().getRegularStore(),
-                                            Store.Kind.BOTH,
-                                            addToWorklistAgain);
-                                }
+                    // propagate store to exceptional successors
+                    for (Entry<TypeMirror, Set<Block>> e :
+                            eb.getExceptionalSuccessors().entrySet()) {
+                        TypeMirror cause = e.getKey();
+                        S exceptionalStore = transferResult.getExceptionalStore(cause);
+                        if (exceptionalStore != null) {
+                            for (Block exceptionSucc : e.getValue()) {
+                                addStoreBefore(
+                                        exceptionSucc,
+                                        node,
+                                        exceptionalStore,
+                                        Store.Kind.BOTH,
+                                        addToWorklistAgain);
+                            }
+                        } else {
+                            for (Block exceptionSucc : e.getValue()) {
+                                addStoreBefore(
+                                        exceptionSucc,
+                                        node,
+                                        inputBefore.copy().getRegularStore(),
+                                        Store.Kind.BOTH,
+                                        addToWorklistAgain);
                             }
                         }
-                        break;
                     }
+                    break;
+                }
 
-                case CONDITIONAL_BLOCK:
-                    {
-                        ConditionalBlock cb = (ConditionalBlock) b;
+            case CONDITIONAL_BLOCK:
+                {
+                    ConditionalBlock cb = (ConditionalBlock) b;
 
-                        // get store before
-                        TransferInput<A, S> inputBefore = getInputBefore(cb);
-                        TransferInput<A, S> input = inputBefore.copy();
+                    // get store before
+                    TransferInput<A, S> inputBefore = getInputBefore(cb);
+                    TransferInput<A, S> input = inputBefore.copy();
 
-                        // propagate store to successor
-                        Block thenSucc = cb.getThenSuccessor();
-                        Block elseSucc = cb.getElseSuccessor();
+                    // propagate store to successor
+                    Block thenSucc = cb.getThenSuccessor();
+                    Block elseSucc = cb.getElseSuccessor();
 
-                        propagateStoresTo(thenSucc, null, input, cb.getThenFlowRule(), false);
-                        propagateStoresTo(elseSucc, null, input, cb.getElseFlowRule(), false);
-                        break;
-                    }
+                    propagateStoresTo(thenSucc, null, input, cb.getThenFlowRule(), false);
+                    propagateStoresTo(elseSucc, null, input, cb.getElseFlowRule(), false);
+                    break;
+                }
 
-                case SPECIAL_BLOCK:
-                    {
-                        // special basic blocks are empty and cannot throw exceptions,
-                        // thus there is no need to perform any analysis.
-                        SpecialBlock sb = (SpecialBlock) b;
-                        Block succ = sb.getSuccessor();
-                        if (succ != null) {
-                            propagateStoresTo(
-                                    succ, null, getInputBefore(b), sb.getFlowRule(), false);
-                        }
-                        break;
+            case SPECIAL_BLOCK:
+                {
+                    // special basic blocks are empty and cannot throw exceptions,
+                    // thus there is no need to perform any analysis.
+                    SpecialBlock sb = (SpecialBlock) b;
+                    Block succ = sb.getSuccessor();
+                    if (succ != null) {
+                        propagateStoresTo(succ, null, getInputBefore(b), sb.getFlowRule(), false);
                     }
-
-                default:
-                    assert false;
                     break;
+                }
+
+            default:
+                assert false;
+                break;
+        }
+    }
+
+    /**
+     * Narrows the result of the fix-point iteration, which widening may have made less precise
+     * than necessary, with at most {@link #narrowingPasses} passes. A pass visits every reachable
+     * block once, in the order of the dense identifiers, and recomputes the stores before it as
+     * the least upper bound of the stores that flow into it: along forward edges, the stores of
+     * the current pass; along back edges, those of the previous pass. For the first pass, the
+     * stores along back edges are computed from the result of the fix-point iteration, by
+     * visiting once more the blocks from which back edges leave. The first pass thus already
+     * narrows the stores before the loop heads, and everything after them.
+     *
+     * <p>Since the result of the fix-point iteration is at least the least upper bound of the
+     * stores that flow into each block, by induction the stores of each pass are at most those of
+     * the previous pass, and still at least the least upper bound of the stores that flow into
+     * them. Each pass therefore yields a sound result. The passes stop early once the stores along
+     * back edges do not change, since another pass would compute the same stores.
+     */
+    @SuppressWarnings("unchecked") // generic array creation
+    protected void narrow() {
+        int numberOfBlocks = cfg.getNumberOfBlocks();
+        int entry = cfg.getDenseId(cfg.getEntryBlock());
+        S entryThenStore = thenStores[entry];
+        S entryElseStore = elseStores[entry];
+        TransferInput<A, S> entryInput = inputs[entry];
+
+        // The stores that flow along back edges from the result of the fix-point iteration. The
+        // stores that the visits propagate along forward edges do not change that result.
+        backEdgeThenStores = (S[]) new Store<?>[numberOfBlocks];
+        backEdgeElseStores = (S[]) new Store<?>[numberOfBlocks];
+        backEdgeInputs = (TransferInput<A, S>[]) new TransferInput<?, ?>[numberOfBlocks];
+        for (int i = 0; i < numberOfBlocks; i++) {
+            if (inputs[i] != null && hasBackEdge(i)) {
+                narrowingBlock = i;
+                blockVisits++;
+                analyzeBlock(cfg.getBlock(i));
+            }
+        }
+        narrowingBlock = -1;
+        S[] previousThenStores = backEdgeThenStores;
+        S[] previousElseStores = backEdgeElseStores;
+        TransferInput<A, S>[] previousInputs = backEdgeInputs;
+
+        for (int pass = 0; pass < narrowingPasses; pass++) {
+            thenStores = previousThenStores.clone();
+            elseStores = previousElseStores.clone();
+            inputs = previousInputs.clone();
+            thenStores[entry] = entryThenStore;
+            elseStores[entry] = entryElseStore;
+            inputs[entry] = entryInput;
+            backEdgeThenStores = (S[]) new Store<?>[numberOfBlocks];
+            backEdgeElseStores = (S[]) new Store<?>[numberOfBlocks];
+            backEdgeInputs = (TransferInput<A, S>[]) new TransferInput<?, ?>[numberOfBlocks];
+            for (int i = 0; i < numberOfBlocks; i++) {
+                if (inputs[i] != null) {
+                    narrowingBlock = i;
+                    blockVisits++;
+                    analyzeBlock(cfg.getBlock(i));
+                }
+            }
+            narrowingBlock = -1;
+
+            boolean stable =
+                    Arrays.equals(backEdgeThenStores, previousThenStores)
+                            && Arrays.equals(backEdgeElseStores, previousElseStores);
+            previousThenStores = backEdgeThenStores;
+            previousElseStores = backEdgeElseStores;
+            previousInputs = backEdgeInputs;
+            if (stable) {
+                break;
             }
         }
+        backEdgeThenStores = null;
+        backEdgeElseStores = null;
+        backEdgeInputs = null;
+    }
 
-        assert isRunning == true;
-        isRunning = false;
+    /**
+     * Returns true if an edge leaves the block whose dense identifier is {@code denseId} for a
+     * block whose dense identifier is not larger.
+     */
+    private boolean hasBackEdge(int denseId) {
+        for (Block succ : cfg.getSuccessors(cfg.getBlock(denseId))) {
+            if (cfg.getDenseId(succ) <= denseId) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -381,8 +685,9 @@ public class Analysis<
         boolean nodeValueChanged = false;
 
         if (newVal != null) {
-            A oldVal = nodeValues.get(node);
-            nodeValues.put(node, newVal);
+            int index = node.getDenseId();
+            A oldVal = nodeValues[index];
+            nodeValues[index] = newVal;
             nodeValueChanged = !Objects.equals(oldVal, newVal);
         }
 
@@ -425,15 +730,25 @@ public class Analysis<
     }
 
     /** Initialize the analysis with a new control flow graph. */
+    @SuppressWarnings("unchecked") // generic array creation
     protected void init(ControlFlowGraph cfg) {
         this.cfg = cfg;
-        thenStores = new IdentityHashMap<>();
-        elseStores = new IdentityHashMap<>();
-        blockCount = maxCountBeforeWidening == -1 ? null : new IdentityHashMap<Block, Integer>();
-        inputs = new IdentityHashMap<>();
+        int numberOfBlocks = cfg.getNumberOfBlocks();
+        thenStores = (S[]) new Store<?>[numberOfBlocks];
+        elseStores = (S[]) new Store<?>[numberOfBlocks];
+        blockCount = maxCountBeforeWidening == -1 ? null : new int[numberOfBlocks];
+        loopHeads = blockCount != null && wideningAtLoopHeadsOnly ? cfg.getLoopHeads() : null;
+        widenings = 0;
+        inputs = (TransferInput<A, S>[]) new TransferInput<?, ?>[numberOfBlocks];
         storesAtReturnStatements = new IdentityHashMap<>();
-        worklist = new Worklist(cfg);
-        nodeValues = new IdentityHashMap<>();
+        worklist = new Worklist(cfg, iterationStrategy);
+        liveVariables = sparse ? new LiveVariables(cfg) : null;
+        blockVisits = 0;
+        nodeValues = (A[]) new AbstractValue<?>[cfg.getNumberOfNodes()];
+        checkpoints =
+                checkpointInterval > 0
+                        ? (TransferInput<A, S>[]) new TransferInput<?, ?>[cfg.getNumberOfNodes()]
+                        : null;
         finalLocalValues = new HashMap<>();
         worklist.add(cfg.getEntryBlock());
 
@@ -462,41 +777,52 @@ public class Analysis<
             // nothing to do
         }
         S initialStore = transferFunction.initialStore(underlyingAST, parameters);
-        Block entry = cfg.getEntryBlock();
-        thenStores.put(entry, initialStore);
-        elseStores.put(entry, initialStore);
-        inputs.put(entry, new TransferInput<>(null, this, initialStore));
+        int entry = cfg.getDenseId(cfg.getEntryBlock());
+        thenStores[entry] = initialStore;
+        elseStores[entry] = initialStore;
+        inputs[entry] = new TransferInput<>(null, this, initialStore);
     }
 
     /**
      * Add a basic block to the worklist. If {@code b} is already present, the method does nothing.
      */
     protected void addToWorklist(Block b) {
-        // TODO: use a more efficient way to check if b is already present
-        if (!worklist.contains(b)) {
-            worklist.add(b);
-        }
+        worklist.add(b);
     }
 
     /**
      * Add a store before the basic block {@code b} by merging with the existing stores for that
-     * location.
+     * location. During a narrowing pass, a store that flows along a back edge is merged into the
+     * stores for the next pass instead, and no block is added to the worklist.
      */
     protected void addStoreBefore(
             Block b, Node node, S s, Store.Kind kind, boolean addBlockToWorklist) {
-        S thenStore = getStoreBefore(b, Store.Kind.THEN);
-        S elseStore = getStoreBefore(b, Store.Kind.ELSE);
+        if (liveVariables != null) {
+            s = removeDeadVariables(s, b);
+        }
+        int index = cfg.getDenseId(b);
+        S[] thenStores = this.thenStores;
+        S[] elseStores = this.elseStores;
+        TransferInput<A, S>[] inputs = this.inputs;
+        if (narrowingBlock != -1 && index <= narrowingBlock) {
+            // A back edge: the store is used by the next narrowing pass.
+            thenStores = backEdgeThenStores;
+            elseStores = backEdgeElseStores;
+            inputs = backEdgeInputs;
+        }
+        S thenStore = thenStores[index];
+        S elseStore = elseStores[index];
         boolean shouldWiden = false;
-        if (blockCount != null) {
-            Integer count = blockCount.get(b);
-            if (count == null) {
-                count = 0;
-            }
+        if (blockCount != null
+                && narrowingBlock == -1
+                && (loopHeads == null || loopHeads.get(index))) {
+            int count = blockCount[index];
             shouldWiden = count >= maxCountBeforeWidening;
             if (shouldWiden) {
-                blockCount.put(b, 0);
+                blockCount[index] = 0;
+                widenings++;
             } else {
-                blockCount.put(b, count + 1);
+                blockCount[index] = count + 1;
             }
         }
 
@@ -506,9 +832,10 @@ public class Analysis<
                     // Update the then store
                     S newThenStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores[index] = newThenStore;
                         if (elseStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, newThenStore, elseStore));
+                            inputs[index] =
+                                    new TransferInput<>(node, this, newThenStore, elseStore);
                             addBlockToWorklist = true;
                         }
                     }
@@ -519,9 +846,10 @@ public class Analysis<
                     // Update the else store
                     S newElseStore = mergeStores(s, elseStore, shouldWiden);
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores[index] = newElseStore;
                         if (thenStore != null) {
-                            inputs.put(b, new TransferInput<>(node, this, thenStore, newElseStore));
+                            inputs[index] =
+                                    new TransferInput<>(node, this, thenStore, newElseStore);
                             addBlockToWorklist = true;
                         }
                     }
@@ -532,9 +860,9 @@ public class Analysis<
                     // Currently there is only one regular store
                     S newStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newStore.equals(thenStore)) {
-                        thenStores.put(b, newStore);
-                        elseStores.put(b, newStore);
-                        inputs.put(b, new TransferInput<>(node, this, newStore));
+                        thenStores[index] = newStore;
+                        elseStores[index] = newStore;
+                        inputs[index] = new TransferInput<>(node, this, newStore);
                         addBlockToWorklist = true;
                     }
                 } else {
@@ -542,24 +870,24 @@ public class Analysis<
 
                     S newThenStore = mergeStores(s, thenStore, shouldWiden);
                     if (!newThenStore.equals(thenStore)) {
-                        thenStores.put(b, newThenStore);
+                        thenStores[index] = newThenStore;
                         storeChanged = true;
                     }
 
                     S newElseStore = mergeStores(s, elseStore, shouldWiden);
                     if (!newElseStore.equals(elseStore)) {
-                        elseStores.put(b, newElseStore);
+                        elseStores[index] = newElseStore;
                         storeChanged = true;
                     }
 
                     if (storeChanged) {
-                        inputs.put(b, new TransferInput<>(node, this, newThenStore, newElseStore));
+                        inputs[index] = new TransferInput<>(node, this, newThenStore, newElseStore);
                         addBlockToWorklist = true;
                     }
                 }
         }
 
-        if (addBlockToWorklist) {
+        if (addBlockToWorklist && narrowingBlock == -1) {
             addToWorklist(b);
         }
     }
@@ -575,54 +903,150 @@ public class Analysis<
     }
 
     /**
-     * A worklist is a priority queue of blocks in which the order is given by depth-first ordering
-     * to place non-loop predecessors ahead of successors.
+     * A worklist is a set of blocks that are waiting to be visited, from which blocks are taken in
+     * the order given by an {@link IterationStrategy}. Each block has a position in that order,
+     * and the set is a bit set of these positions, so adding a block, testing whether it is
+     * waiting, and taking the next block take (nearly) constant time. For {@link
+     * IterationStrategy#PRIORITY_RPO} and {@link IterationStrategy#ROUND_ROBIN}, the position of
+     * a block is its dense identifier, which is its index in reverse postorder; see {@link
+     * ControlFlowGraph#assignDenseIds()}.
      */
     protected static class Worklist {
 
-        /** Map all blocks in the CFG to their depth-first order. */
-        protected IdentityHashMap<Block, Integer> depthFirstOrder;
-
-        /** Comparator to allow priority queue to order blocks by their depth-first order. */
+        /** The graph whose blocks are in the worklist. */
+        protected final ControlFlowGraph cfg;
+
+        /** The order in which blocks are taken from the worklist. */
+        protected final IterationStrategy strategy;
+
+        /** The block at each position. */
+        protected final Block[] blockAt;
+
+        /**
+         * The position of each block, indexed by dense identifier; null if the positions are the
+         * dense identifiers.
+         */
+        protected final int /*@Nullable*/ [] positionOf;
+
+        /** The positions of the blocks that are waiting. */
+        protected final BitSet waiting;
+
+        /** The position from which {@link IterationStrategy#ROUND_ROBIN} looks for a block. */
+        protected int nextPosition = 0;
+
+        /**
+         * Map all blocks in the CFG to their depth-first order. Only filled by {@link
+         * #Worklist(ControlFlowGraph)}, and null otherwise.
+         *
+         * @deprecated use {@link ControlFlowGraph#getDenseId(Block)}, which is the position of a
+         *     block in depth-first order
+         */
+        @Deprecated protected /*@Nullable*/ IdentityHashMap<Block, Integer> depthFirstOrder;
+
+        /**
+         * Comparator to order blocks by their position in the worklist, which is their
+         * depth-first order unless the worklist uses {@link IterationStrategy#SCC}.
+         *
+         * @deprecated the worklist no longer uses a comparator to order its blocks
+         */
+        @Deprecated
         public class DFOComparator implements Comparator<Block> {
             @Override
             public int compare(Block b1, Block b2) {
-                return depthFirstOrder.get(b1) - depthFirstOrder.get(b2);
+                return positionOf(b1) - positionOf(b2);
             }
         }
 
-        /** The backing priority queue. */
-        protected PriorityQueue<Block> queue;
-
+        /**
+         * Creates a worklist that uses {@link IterationStrategy#PRIORITY_RPO} and fills {@link
+         * #depthFirstOrder}.
+         *
+         * @deprecated use {@link #Worklist(ControlFlowGraph, IterationStrategy)}
+         */
+        @Deprecated
         public Worklist(ControlFlowGraph cfg) {
+            this(cfg, IterationStrategy.PRIORITY_RPO);
             depthFirstOrder = new IdentityHashMap<>();
             int count = 1;
             for (Block b : cfg.getDepthFirstOrderedBlocks()) {
                 depthFirstOrder.put(b, count++);
             }
+        }
+
+        public Worklist(ControlFlowGraph cfg, IterationStrategy strategy) {
+            this.cfg = cfg;
+            this.strategy = strategy;
+            int numberOfBlocks = cfg.getNumberOfBlocks();
+            this.blockAt = new Block[numberOfBlocks];
+            this.waiting = new BitSet(numberOfBlocks);
+            if (strategy == IterationStrategy.SCC) {
+                // Order the blocks by component and, within a component, by dense identifier.
+                int[] component = cfg.getStronglyConnectedComponents();
+                int[] componentStart = new int[numberOfBlocks + 1];
+                for (int c : component) {
+                    componentStart[c + 1]++;
+                }
+                for (int c = 0; c < numberOfBlocks; c++) {
+                    componentStart[c + 1] += componentStart[c];
+                }
+                positionOf = new int[numberOfBlocks];
+                for (int i = 0; i < numberOfBlocks; i++) {
+                    int position = componentStart[component[i]]++;
+                    positionOf[i] = position;
+                    blockAt[position] = cfg.getBlock(i);
+                }
+            } else {
+                positionOf = null;
+                for (int i = 0; i < numberOfBlocks; i++) {
+                    blockAt[i] = cfg.getBlock(i);
+                }
+            }
+        }
 
-            queue = new PriorityQueue<Block>(11, new DFOComparator());
+        private int positionOf(Block block) {
+            int denseId = cfg.getDenseId(block);
+            return positionOf == null ? denseId : positionOf[denseId];
         }
 
         public boolean isEmpty() {
-            return queue.isEmpty();
+            return waiting.isEmpty();
         }
 
         public boolean contains(Block block) {
-            return queue.contains(block);
+            return waiting.get(positionOf(block));
         }
 
+        /** Adds {@code block} to the worklist, unless it is already present. */
         public void add(Block block) {
-            queue.add(block);
+            waiting.set(positionOf(block));
         }
 
-        public Block poll() {
-            return queue.poll();
+        /** Removes and returns the next block to visit, or returns null if there is none. */
+        public /*@Nullable*/ Block poll() {
+            int position;
+            if (strategy == IterationStrategy.ROUND_ROBIN) {
+                position = waiting.nextSetBit(nextPosition);
+                if (position == -1) {
+                    position = waiting.nextSetBit(0);
+                }
+                nextPosition = position + 1;
+            } else {
+                position = waiting.nextSetBit(0);
+            }
+            if (position == -1) {
+                return null;
+            }
+            waiting.clear(position);
+            return blockAt[position];
         }
 
         @Override
         public String toString() {
-            return "Worklist(" + queue + ")";
+            List<Block> blocks = new ArrayList<>();
+            for (int i = waiting.nextSetBit(0); i >= 0; i = waiting.nextSetBit(i + 1)) {
+                blocks.add(blockAt[i]);
+            }
+            return "Worklist(" + blocks + ")";
         }
     }
 
@@ -639,16 +1063,24 @@ public class Analysis<
      *     b}.
      */
     protected /*@Nullable*/ TransferInput<A, S> getInputBefore(Block b) {
-        return inputs.get(b);
+        // There is no input for an unreachable block, such as the regular exit block of a method
+        // that always throws an exception, or for a block of another graph.
+        if (b == null || !cfg.containsBlock(b)) {
+            return null;
+        }
+        return inputs[cfg.getDenseId(b)];
     }
 
     /** @return the store corresponding to the location right before the basic block {@code b}. */
     protected /*@Nullable*/ S getStoreBefore(Block b, Store.Kind kind) {
+        if (!cfg.containsBlock(b)) {
+            return null;
+        }
         switch (kind) {
             case THEN:
-                return readFromStore(thenStores, b);
+                return thenStores[cfg.getDenseId(b)];
             case ELSE:
-                return readFromStore(elseStores, b);
+                return elseStores[cfg.getDenseId(b)];
             default:
                 assert false;
                 return null;
@@ -658,11 +1090,23 @@ public class Analysis<
     /**
      * Read the {@link Store} for a particular basic block from a map of stores (or {@code null} if
      * none exists yet).
+     *
+     * @deprecated the analysis no longer keeps its stores in maps; use {@link
+     *     #getStoreBefore(Block, Store.Kind)}
      */
+    @Deprecated
     protected static <S> /*@Nullable*/ S readFromStore(Map<Block, S> stores, Block b) {
         return stores.get(b);
     }
 
+    /**
+     * @return the abstract value computed so far for {@code n}, or {@code null} if there is none
+     *     or {@code n} is not a node of the analyzed graph
+     */
+    private /*@Nullable*/ A getNodeValue(Node n) {
+        return cfg.containsNode(n) ? nodeValues[n.getDenseId()] : null;
+    }
+
     /** Is the analysis currently running? */
     public boolean isRunning() {
         return isRunning;
@@ -689,9 +1133,9 @@ public class Analysis<
                             || currentNode.getTransitiveOperands().contains(n)))) {
                 return null;
             }
-            return nodeValues.get(n);
+            return getNodeValue(n);
         }
-        return nodeValues.get(n);
+        return getNodeValue(n);
     }
 
     /**
@@ -747,9 +1191,30 @@ public class Analysis<
         IdentityHashMap<UnaryTree, AssignmentNode> unaryAssignNodeLookup =
                 cfg.getUnaryAssignNodeLookup();
         IdentityHashMap<Tree, List<Tree>> generatedTreesLookup = cfg.getGeneratedTreesLookup();
+        IdentityHashMap<Node, A> nodeValueMap = new IdentityHashMap<>();
+        for (int i = 0; i < nodeValues.length; i++) {
+            if (nodeValues[i] != null) {
+                nodeValueMap.put(cfg.getNode(i), nodeValues[i]);
+            }
+        }
+        IdentityHashMap<Block, TransferInput<A, S>> inputMap = new IdentityHashMap<>();
+        for (int i = 0; i < inputs.length; i++) {
+            if (inputs[i] != null) {
+                inputMap.put(cfg.getBlock(i), inputs[i]);
+            }
+        }
+        IdentityHashMap<Node, TransferInput<A, S>> checkpointMap = new IdentityHashMap<>();
+        if (checkpoints != null) {
+            for (int i = 0; i < checkpoints.length; i++) {
+                if (checkpoints[i] != null) {
+                    checkpointMap.put(cfg.getNode(i), checkpoints[i]);
+                }
+            }
+        }
         return new AnalysisResult<>(
-                nodeValues,
-                inputs,
+                nodeValueMap,
+                inputMap,
+                checkpointMap,
                 treeLookup,
                 unaryAssignNodeLookup,
                 finalLocalValues,
@@ -761,9 +1226,9 @@ public class Analysis<
      *     method cannot exit through the regular exit block).
      */
     public /*@Nullable*/ S getRegularExitStore() {
-        SpecialBlock regularExitBlock = cfg.getRegularExitBlock();
-        if (inputs.containsKey(regularExitBlock)) {
-            S regularExitStore = inputs.get(regularExitBlock).getRegularStore();
+        TransferInput<A, S> input = getInputBefore(cfg.getRegularExitBlock());
+        if (input != null) {
+            S regularExitStore = input.getRegularStore();
             return regularExitStore;
         } else {
             return null;
@@ -771,7 +1236,7 @@ public class Analysis<
     }
 
     public S getExceptionalExitStore() {
-        S exceptionalExitStore = inputs.get(cfg.getExceptionalExitBlock()).getRegularStore();
+        S exceptionalExitStore = getInputBefore(cfg.getExceptionalExitBlock()).getRegularStore();
         return exceptionalExitStore;
     }
 }
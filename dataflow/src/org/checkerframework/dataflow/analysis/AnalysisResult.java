@@ -43,6 +43,12 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
     /** The stores before every method call. */
     protected final IdentityHashMap<Block, TransferInput<A, S>> stores;
 
+    /**
+     * The transfer inputs before some nodes in the middle of regular blocks, see {@link
+     * Analysis#setCheckpointInterval}.
+     */
+    protected final IdentityHashMap<Node, TransferInput<A, S>> checkpoints;
+
     /** Map from AST {@link Tree}s to generated {@link Tree}s. */
     protected final IdentityHashMap<Tree, List<Tree>> generatedTreesLookup;
 
@@ -62,10 +68,30 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
             IdentityHashMap<UnaryTree, AssignmentNode> unaryAssignNodeLookup,
             HashMap<Element, A> finalLocalValues,
             IdentityHashMap<Tree, List<Tree>> generatedTreesLookup) {
+        this(
+                nodeValues,
+                stores,
+                new IdentityHashMap<Node, TransferInput<A, S>>(),
+                treeLookup,
+                unaryAssignNodeLookup,
+                finalLocalValues,
+                generatedTreesLookup);
+    }
+
+    /** Initialize with a given node-value mapping and checkpoints. */
+    public AnalysisResult(
+            Map<Node, A> nodeValues,
+            IdentityHashMap<Block, TransferInput<A, S>> stores,
+            IdentityHashMap<Node, TransferInput<A, S>> checkpoints,
+            IdentityHashMap<Tree, Node> treeLookup,
+            IdentityHashMap<UnaryTree, AssignmentNode> unaryAssignNodeLookup,
+            HashMap<Element, A> finalLocalValues,
+            IdentityHashMap<Tree, List<Tree>> generatedTreesLookup) {
         this.nodeValues = new IdentityHashMap<>(nodeValues);
         this.treeLookup = new IdentityHashMap<>(treeLookup);
         this.unaryAssignNodeLookup = new IdentityHashMap<>(unaryAssignNodeLookup);
         this.stores = stores;
+        this.checkpoints = checkpoints;
         this.finalLocalValues = finalLocalValues;
         this.generatedTreesLookup = new IdentityHashMap<>(generatedTreesLookup);
         this.analysisCaches = new IdentityHashMap<>();
@@ -77,6 +103,7 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         treeLookup = new IdentityHashMap<>();
         unaryAssignNodeLookup = new IdentityHashMap<>();
         stores = new IdentityHashMap<>();
+        checkpoints = new IdentityHashMap<>();
         finalLocalValues = new HashMap<>();
         generatedTreesLookup = new IdentityHashMap<>();
         analysisCaches = new IdentityHashMap<>();
@@ -89,6 +116,7 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         this.treeLookup = new IdentityHashMap<>();
         this.unaryAssignNodeLookup = new IdentityHashMap<>();
         this.stores = new IdentityHashMap<>();
+        this.checkpoints = new IdentityHashMap<>();
         this.finalLocalValues = new HashMap<>();
         this.generatedTreesLookup = new IdentityHashMap<>();
         this.analysisCaches = analysisCaches;
@@ -100,10 +128,43 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         treeLookup.putAll(other.treeLookup);
         unaryAssignNodeLookup.putAll(other.unaryAssignNodeLookup);
         stores.putAll(other.stores);
+        checkpoints.putAll(other.checkpoints);
         finalLocalValues.putAll(other.finalLocalValues);
         generatedTreesLookup.putAll(other.generatedTreesLookup);
     }
 
+    /**
+     * Removes the results of another analysis result that were added by {@link #combine}, so that
+     * the nodes, stores, and trees of its control flow graph can be garbage-collected. Entries
+     * that were overwritten by a later call to {@link #combine} are kept.
+     */
+    public void remove(AnalysisResult<A, S> other) {
+        removeAll(nodeValues, other.nodeValues);
+        removeAll(treeLookup, other.treeLookup);
+        removeAll(unaryAssignNodeLookup, other.unaryAssignNodeLookup);
+        removeAll(stores, other.stores);
+        removeAll(checkpoints, other.checkpoints);
+        removeAll(finalLocalValues, other.finalLocalValues);
+        removeAll(generatedTreesLookup, other.generatedTreesLookup);
+        if (analysisCaches != null) {
+            for (TransferInput<A, S> input : other.stores.values()) {
+                analysisCaches.remove(input);
+            }
+            for (TransferInput<A, S> input : other.checkpoints.values()) {
+                analysisCaches.remove(input);
+            }
+        }
+    }
+
+    /** Removes the entries of {@code other} from {@code map}, if they have the same value. */
+    private static <K, V> void removeAll(Map<K, V> map, Map<K, V> other) {
+        for (Map.Entry<K, V> entry : other.entrySet()) {
+            if (map.get(entry.getKey()) == entry.getValue()) {
+                map.remove(entry.getKey());
+            }
+        }
+    }
+
     /** @return the value of effectively final local variables */
     public HashMap<Element, A> getFinalLocalValues() {
         return finalLocalValues;
@@ -177,6 +238,8 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
      * Runs the analysis again within the block of {@code node} and returns the store at the
      * location of {@code node}. If {@code before} is true, then the store immediately before the
      * {@link Node} {@code node} is returned. Otherwise, the store after {@code node} is returned.
+     * The analysis starts at the nearest checkpoint before {@code node}, if there is one, and
+     * otherwise at the beginning of the block.
      *
      * <p>If the given {@link Node} cannot be reached (in the control flow graph), then {@code null}
      * is returned.
@@ -187,7 +250,23 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
         if (transferInput == null) {
             return null;
         }
-        return runAnalysisFor(node, before, transferInput, analysisCaches);
+        int start = 0;
+        if (!checkpoints.isEmpty() && block.getType() == Block.BlockType.REGULAR_BLOCK) {
+            List<Node> contents = ((RegularBlock) block).getContents();
+            // The nodes of a block have consecutive dense identifiers.
+            int index = node.getDenseId() - contents.get(0).getDenseId();
+            if (index >= 0 && index < contents.size() && contents.get(index) == node) {
+                for (int i = index; i > 0; i--) {
+                    TransferInput<A, S> checkpoint = checkpoints.get(contents.get(i));
+                    if (checkpoint != null) {
+                        start = i;
+                        transferInput = checkpoint;
+                        break;
+                    }
+                }
+            }
+        }
+        return runAnalysisFor(node, before, transferInput, start, analysisCaches);
     }
 
     /**
@@ -222,6 +301,20 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
             boolean before,
             TransferInput<A, S> transferInput,
             Map<TransferInput<A, S>, IdentityHashMap<Node, TransferResult<A, S>>> analysisCaches) {
+        return runAnalysisFor(node, before, transferInput, 0, analysisCaches);
+    }
+
+    /**
+     * Like {@link #runAnalysisFor(Node, boolean, TransferInput, Map)}, but if the block of {@code
+     * node} is a regular block, {@code transferInput} is the input of its node at index {@code
+     * start}, and the analysis starts at that node.
+     */
+    private static <A extends AbstractValue<A>, S extends Store<S>> S runAnalysisFor(
+            Node node,
+            boolean before,
+            TransferInput<A, S> transferInput,
+            int start,
+            Map<TransferInput<A, S>, IdentityHashMap<Node, TransferResult<A, S>>> analysisCaches) {
         assert node != null;
         Block block = node.getBlock();
         assert transferInput != null;
@@ -254,7 +347,8 @@ public class AnalysisResult<A extends AbstractValue<A>, S extends Store<S>> {
                         // looking for.
                         TransferInput<A, S> store = transferInput;
                         TransferResult<A, S> transferResult = null;
-                        for (Node n : rb.getContents()) {
+                        List<Node> contents = rb.getContents();
+                        for (Node n : contents.subList(start, contents.size())) {
                             analysis.currentNode = n;
                             if (n == node && before) {
                                 return store.getRegularStore();
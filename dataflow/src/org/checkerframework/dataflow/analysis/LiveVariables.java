@@ -0,0 +1,164 @@
+package org.checkerframework.dataflow.analysis;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
+import org.checkerframework.dataflow.cfg.node.AssignmentNode;
+import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.javacutil.ElementUtils;
+
+/**
+ * The local variables that are live at the beginning of each block of a control flow graph, for
+ * the sparse mode of {@link Analysis}. A variable is live if a use of the variable can be reached
+ * without passing a definition of it, that is, if one of its uses is on a def-use chain that
+ * starts before the block.
+ *
+ * <p>Only local variables that are reassigned are tracked; for all other variables, {@link
+ * #isLiveBefore} returns true. A variable is tracked if it is assigned in the graph, is not a
+ * parameter, and is not (effectively) final. Since only effectively final variables can be used
+ * by lambdas and inner classes, whose bodies are analyzed separately, every use of a tracked
+ * variable is a node of the graph.
+ *
+ * <p>Variables are identified by {@link FlowExpressions.LocalVariable}, so that variables that a
+ * store does not distinguish are not distinguished here either.
+ */
+public class LiveVariables {
+
+    /** The graph. */
+    protected final ControlFlowGraph cfg;
+
+    /** The index of each tracked variable in the bit sets of {@link #liveIn}. */
+    protected final Map<FlowExpressions.LocalVariable, Integer> indexOf;
+
+    /**
+     * The tracked variables that are live at the beginning of each block, indexed by dense
+     * identifier.
+     */
+    protected final BitSet[] liveIn;
+
+    /**
+     * Computes the live variables of {@code cfg}.
+     *
+     * @param cfg a complete control flow graph
+     */
+    public LiveVariables(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        this.indexOf = trackedVariables(cfg);
+        int numberOfBlocks = cfg.getNumberOfBlocks();
+        this.liveIn = new BitSet[numberOfBlocks];
+        if (indexOf.isEmpty()) {
+            return;
+        }
+
+        // The variables used before they are defined in each block, and the defined variables.
+        BitSet[] uses = new BitSet[numberOfBlocks];
+        BitSet[] defs = new BitSet[numberOfBlocks];
+        for (int i = 0; i < numberOfBlocks; i++) {
+            uses[i] = new BitSet();
+            defs[i] = new BitSet();
+            for (Node n : getContents(cfg.getBlock(i))) {
+                if (n instanceof LocalVariableNode && !n.isLValue()) {
+                    Integer index =
+                            indexOf.get(new FlowExpressions.LocalVariable((LocalVariableNode) n));
+                    if (index != null && !defs[i].get(index)) {
+                        uses[i].set(index);
+                    }
+                } else if (n instanceof AssignmentNode
+                        && ((AssignmentNode) n).getTarget() instanceof LocalVariableNode) {
+                    LocalVariableNode target = (LocalVariableNode) ((AssignmentNode) n).getTarget();
+                    Integer index = indexOf.get(new FlowExpressions.LocalVariable(target));
+                    if (index != null) {
+                        defs[i].set(index);
+                    }
+                }
+            }
+            liveIn[i] = (BitSet) uses[i].clone();
+        }
+
+        // A backward analysis; visiting the blocks in postorder makes it converge quickly.
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = numberOfBlocks - 1; i >= 0; i--) {
+                BitSet live = new BitSet();
+                for (Block succ : cfg.getSuccessors(cfg.getBlock(i))) {
+                    live.or(liveIn[cfg.getDenseId(succ)]);
+                }
+                live.andNot(defs[i]);
+                live.or(uses[i]);
+                if (!live.equals(liveIn[i])) {
+                    liveIn[i] = live;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /** Returns the tracked variables of {@code cfg}, numbered from 0. */
+    private static Map<FlowExpressions.LocalVariable, Integer> trackedVariables(
+            ControlFlowGraph cfg) {
+        Set<FlowExpressions.LocalVariable> assigned = new HashSet<>();
+        Set<FlowExpressions.LocalVariable> excluded = new HashSet<>();
+        for (int i = 0; i < cfg.getNumberOfNodes(); i++) {
+            Node n = cfg.getNode(i);
+            if (n instanceof LocalVariableNode) {
+                Element element = ((LocalVariableNode) n).getElement();
+                if (element.getKind() == ElementKind.PARAMETER
+                        || ElementUtils.isEffectivelyFinal(element)) {
+                    excluded.add(new FlowExpressions.LocalVariable(element));
+                }
+            } else if (n instanceof AssignmentNode
+                    && ((AssignmentNode) n).getTarget() instanceof LocalVariableNode) {
+                LocalVariableNode target = (LocalVariableNode) ((AssignmentNode) n).getTarget();
+                assigned.add(new FlowExpressions.LocalVariable(target));
+            }
+        }
+        Map<FlowExpressions.LocalVariable, Integer> result = new HashMap<>();
+        for (FlowExpressions.LocalVariable var : assigned) {
+            if (!excluded.contains(var)) {
+                result.put(var, result.size());
+            }
+        }
+        return result;
+    }
+
+    /** Returns the nodes of {@code b}. */
+    private static List<Node> getContents(Block b) {
+        switch (b.getType()) {
+            case REGULAR_BLOCK:
+                return ((RegularBlock) b).getContents();
+            case EXCEPTION_BLOCK:
+                return Collections.singletonList(((ExceptionBlock) b).getNode());
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /** @return the number of tracked variables */
+    public int getNumberOfTrackedVariables() {
+        return indexOf.size();
+    }
+
+    /**
+     * @return false if {@code var} is tracked and no use of it can be reached from the beginning
+     *     of {@code b} without passing a definition of it; true otherwise
+     */
+    public boolean isLiveBefore(Block b, FlowExpressions.LocalVariable var) {
+        Integer index = indexOf.get(var);
+        if (index == null || !cfg.containsBlock(b)) {
+            return true;
+        }
+        return liveIn[cfg.getDenseId(b)].get(index);
+    }
+}
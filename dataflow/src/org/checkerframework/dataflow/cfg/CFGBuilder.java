@@ -914,6 +914,7 @@ public class CFGBuilder {
                 }
             }
 
+            cfg.assignDenseIds();
             return cfg;
         }
 
@@ -8,6 +8,9 @@ import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.UnaryTree;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
@@ -18,8 +21,10 @@ import java.util.Queue;
 import java.util.Set;
 import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.dataflow.cfg.block.Block.BlockType;
+import org.checkerframework.dataflow.cfg.block.BlockImpl;
 import org.checkerframework.dataflow.cfg.block.ConditionalBlock;
 import org.checkerframework.dataflow.cfg.block.ExceptionBlock;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
 import org.checkerframework.dataflow.cfg.block.SingleSuccessorBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlock;
 import org.checkerframework.dataflow.cfg.block.SpecialBlockImpl;
@@ -69,6 +74,18 @@ public class ControlFlowGraph {
     /** Map from AST {@link Tree}s to generated {@link Tree}s. */
     protected final IdentityHashMap<Tree, List<Tree>> generatedTreesLookupMap;
 
+    /**
+     * The reachable blocks of this graph, indexed by {@link #getDenseId(Block)}; null until {@link
+     * #assignDenseIds()} is called.
+     */
+    protected Block /*@Nullable*/ [] blocks;
+
+    /**
+     * The nodes of the reachable blocks of this graph, indexed by {@link Node#getDenseId()}; null
+     * until {@link #assignDenseIds()} is called.
+     */
+    protected Node /*@Nullable*/ [] nodes;
+
     public ControlFlowGraph(
             SpecialBlock entryBlock,
             SpecialBlockImpl regularExitBlock,
@@ -196,11 +213,11 @@ public class ControlFlowGraph {
     }
 
     /**
-     * Get a list of all successor Blocks for cur
+     * Get a list of all successor Blocks for cur, including its exceptional successors
      *
      * @return a Deque of successor Blocks
      */
-    private Deque<Block> getSuccessors(Block cur) {
+    public Deque<Block> getSuccessors(Block cur) {
         Deque<Block> succs = new LinkedList<>();
         if (cur.getType() == BlockType.CONDITIONAL_BLOCK) {
             ConditionalBlock ccur = ((ConditionalBlock) cur);
@@ -223,6 +240,203 @@ public class ControlFlowGraph {
         return succs;
     }
 
+    /**
+     * Assigns dense identifiers, starting at 0, to the reachable blocks of this graph and to their
+     * nodes, so that an analysis can keep its state for each block and node in arrays. The blocks
+     * are numbered in the order of {@link #getDepthFirstOrderedBlocks()}, that is, in reverse
+     * postorder, so that a block has a smaller identifier than its successors, except along back
+     * edges. The nodes are numbered block by block, in the order in which they appear in their
+     * blocks.
+     *
+     * <p>{@link CFGBuilder} calls this method once the graph is complete; it must be called again
+     * if the graph is modified afterwards.
+     */
+    public void assignDenseIds() {
+        // A block may appear more than once in the depth-first order; its last position counts.
+        List<Block> depthFirstOrder = getDepthFirstOrderedBlocks();
+        IdentityHashMap<Block, Integer> lastPosition = new IdentityHashMap<>();
+        int position = 0;
+        for (Block b : depthFirstOrder) {
+            lastPosition.put(b, position++);
+        }
+        List<Block> orderedBlocks = new ArrayList<>(lastPosition.size());
+        List<Node> orderedNodes = new ArrayList<>();
+        position = 0;
+        for (Block b : depthFirstOrder) {
+            if (lastPosition.get(b) == position) {
+                ((BlockImpl) b).setDenseId(orderedBlocks.size());
+                orderedBlocks.add(b);
+                if (b.getType() == BlockType.REGULAR_BLOCK) {
+                    for (Node n : ((RegularBlock) b).getContents()) {
+                        n.setDenseId(orderedNodes.size());
+                        orderedNodes.add(n);
+                    }
+                } else if (b.getType() == BlockType.EXCEPTION_BLOCK) {
+                    Node n = ((ExceptionBlock) b).getNode();
+                    n.setDenseId(orderedNodes.size());
+                    orderedNodes.add(n);
+                }
+            }
+            position++;
+        }
+        blocks = orderedBlocks.toArray(new Block[orderedBlocks.size()]);
+        nodes = orderedNodes.toArray(new Node[orderedNodes.size()]);
+    }
+
+    /** @return the number of reachable blocks of this graph */
+    public int getNumberOfBlocks() {
+        if (blocks == null) {
+            assignDenseIds();
+        }
+        return blocks.length;
+    }
+
+    /** @return the reachable block whose dense identifier is {@code denseId} */
+    public Block getBlock(int denseId) {
+        if (blocks == null) {
+            assignDenseIds();
+        }
+        return blocks[denseId];
+    }
+
+    /**
+     * @return the dense identifier of {@code b}, between 0 and the number of reachable blocks of
+     *     its graph; or -1 if its graph has not been completed yet, or the block is unreachable
+     */
+    public int getDenseId(Block b) {
+        return b instanceof BlockImpl ? ((BlockImpl) b).getDenseId() : -1;
+    }
+
+    /** @return the number of nodes in the reachable blocks of this graph */
+    public int getNumberOfNodes() {
+        if (nodes == null) {
+            assignDenseIds();
+        }
+        return nodes.length;
+    }
+
+    /** @return the node whose dense identifier is {@code denseId} */
+    public Node getNode(int denseId) {
+        if (nodes == null) {
+            assignDenseIds();
+        }
+        return nodes[denseId];
+    }
+
+    /**
+     * @return true if {@code b} is a reachable block of this graph; false, for instance, for a
+     *     block of another graph
+     */
+    public boolean containsBlock(Block b) {
+        int denseId = getDenseId(b);
+        return denseId >= 0 && denseId < getNumberOfBlocks() && blocks[denseId] == b;
+    }
+
+    /**
+     * @return true if {@code n} is a node of a reachable block of this graph; false, for instance,
+     *     for a node of another graph
+     */
+    public boolean containsNode(Node n) {
+        int denseId = n.getDenseId();
+        return denseId >= 0 && denseId < getNumberOfNodes() && nodes[denseId] == n;
+    }
+
+    /**
+     * Computes the strongly connected components of the reachable blocks of this graph, with
+     * Tarjan's algorithm. A component is a loop, or a single block that is not part of a loop.
+     * The components are numbered in topological order: every edge leads from a component to the
+     * same component or to a component with a larger number.
+     *
+     * @return the number of the component of each reachable block, indexed by dense identifier
+     */
+    public int[] getStronglyConnectedComponents() {
+        int numberOfBlocks = getNumberOfBlocks();
+        int[][] successors = new int[numberOfBlocks][];
+        for (int i = 0; i < numberOfBlocks; i++) {
+            Deque<Block> succs = getSuccessors(blocks[i]);
+            successors[i] = new int[succs.size()];
+            int j = 0;
+            for (Block succ : succs) {
+                successors[i][j++] = getDenseId(succ);
+            }
+        }
+
+        int[] component = new int[numberOfBlocks];
+        int[] visitIndex = new int[numberOfBlocks];
+        int[] lowLink = new int[numberOfBlocks];
+        int[] nextSuccessor = new int[numberOfBlocks];
+        boolean[] onStack = new boolean[numberOfBlocks];
+        int[] stack = new int[numberOfBlocks];
+        int stackSize = 0;
+        // The blocks whose successors are being visited, in place of recursive calls.
+        int[] callStack = new int[numberOfBlocks];
+        int depth = 0;
+        int visited = 0;
+        int numberOfComponents = 0;
+        Arrays.fill(visitIndex, -1);
+
+        int entry = getDenseId(entryBlock);
+        visitIndex[entry] = lowLink[entry] = visited++;
+        stack[stackSize++] = entry;
+        onStack[entry] = true;
+        callStack[depth++] = entry;
+        while (depth > 0) {
+            int v = callStack[depth - 1];
+            if (nextSuccessor[v] < successors[v].length) {
+                int w = successors[v][nextSuccessor[v]++];
+                if (visitIndex[w] == -1) {
+                    visitIndex[w] = lowLink[w] = visited++;
+                    stack[stackSize++] = w;
+                    onStack[w] = true;
+                    callStack[depth++] = w;
+                } else if (onStack[w]) {
+                    lowLink[v] = Math.min(lowLink[v], visitIndex[w]);
+                }
+                continue;
+            }
+            depth--;
+            if (depth > 0) {
+                int u = callStack[depth - 1];
+                lowLink[u] = Math.min(lowLink[u], lowLink[v]);
+            }
+            if (lowLink[v] == visitIndex[v]) {
+                int w;
+                do {
+                    w = stack[--stackSize];
+                    onStack[w] = false;
+                    component[w] = numberOfComponents;
+                } while (w != v);
+                numberOfComponents++;
+            }
+        }
+
+        // Tarjan's algorithm finds the components in reverse topological order.
+        for (int i = 0; i < numberOfBlocks; i++) {
+            component[i] = numberOfComponents - 1 - component[i];
+        }
+        return component;
+    }
+
+    /**
+     * Computes the loop heads of this graph: the blocks that are the target of a back edge, that
+     * is, of an edge from a block to a block whose dense identifier is not larger. Since the dense
+     * identifiers increase along all other edges, every cycle of the graph contains a loop head.
+     *
+     * @return the set of the dense identifiers of the loop heads
+     */
+    public BitSet getLoopHeads() {
+        int numberOfBlocks = getNumberOfBlocks();
+        BitSet loopHeads = new BitSet(numberOfBlocks);
+        for (int i = 0; i < numberOfBlocks; i++) {
+            for (Block succ : getSuccessors(blocks[i])) {
+                if (getDenseId(succ) <= i) {
+                    loopHeads.set(getDenseId(succ));
+                }
+            }
+        }
+        return loopHeads;
+    }
+
     /** @return the copied tree-lookup map */
     public IdentityHashMap<Tree, Node> getTreeLookup() {
         return new IdentityHashMap<>(treeLookup);
@@ -17,6 +17,9 @@ public abstract class BlockImpl implements Block {
     /** The last ID that has already been used. */
     protected static long lastId = 0;
 
+    /** The dense identifier of this block in its control flow graph, or -1. */
+    protected int denseId = -1;
+
     /** The type of this basic block. */
     protected BlockType type;
 
@@ -37,6 +40,21 @@ public abstract class BlockImpl implements Block {
         return id;
     }
 
+    /**
+     * @return the dense identifier of this block in its control flow graph, between 0 and the
+     *     number of blocks of the graph; or -1 if the graph has not been completed yet, or the
+     *     block is unreachable
+     * @see org.checkerframework.dataflow.cfg.ControlFlowGraph#getDenseId(Block)
+     */
+    public int getDenseId() {
+        return denseId;
+    }
+
+    /** Set the dense identifier of this block in its control flow graph. */
+    public void setDenseId(int denseId) {
+        this.denseId = denseId;
+    }
+
     @Override
     public BlockType getType() {
         return type;
@@ -1,7 +1,7 @@
 package org.checkerframework.dataflow.cfg.block;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
 import org.checkerframework.dataflow.cfg.node.Node;
 
@@ -12,7 +12,11 @@ import org.checkerframework.dataflow.cfg.node.Node;
  */
 public class RegularBlockImpl extends SingleSuccessorBlockImpl implements RegularBlock {
 
-    /** Internal representation of the contents. */
+    /**
+     * Internal representation of the contents. An array list, so that {@link
+     * org.checkerframework.dataflow.analysis.AnalysisResult} can access a node in the middle of a
+     * long block in constant time.
+     */
     protected List<Node> contents;
 
     /**
@@ -20,7 +24,7 @@ public class RegularBlockImpl extends SingleSuccessorBlockImpl implements Regula
      * later.
      */
     public RegularBlockImpl() {
-        contents = new LinkedList<>();
+        contents = new ArrayList<>();
         type = BlockType.REGULAR_BLOCK;
     }
 
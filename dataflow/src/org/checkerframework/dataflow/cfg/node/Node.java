@@ -35,6 +35,12 @@ public abstract class Node {
     /** The basic block this node belongs to (see invariant about this field above). */
     protected /*@Nullable*/ Block block;
 
+    /**
+     * The dense identifier of this node in the control flow graph of its basic block, or -1 if the
+     * node does not belong to a reachable basic block.
+     */
+    protected int denseId = -1;
+
     /** Is this node an l-value? */
     protected boolean lvalue = false;
 
@@ -71,6 +77,21 @@ public abstract class Node {
         block = b;
     }
 
+    /**
+     * @return the dense identifier of this node in its control flow graph, between 0 and the
+     *     number of nodes of the graph; or -1 if the node does not belong to a reachable basic
+     *     block
+     * @see org.checkerframework.dataflow.cfg.ControlFlowGraph#getNode(int)
+     */
+    public int getDenseId() {
+        return denseId;
+    }
+
+    /** Set the dense identifier of this node in its control flow graph. */
+    public void setDenseId(int denseId) {
+        this.denseId = denseId;
+    }
+
     /**
      * Returns the {@link Tree} in the abstract syntax tree, or {@code null} if no corresponding
      * tree exists. For instance, this is the case for an {@link ImplicitThisLiteralNode}.
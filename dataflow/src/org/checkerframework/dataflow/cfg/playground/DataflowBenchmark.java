@@ -0,0 +1,683 @@
+package org.checkerframework.dataflow.cfg.playground;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.UnderlyingAST;
+import org.checkerframework.dataflow.cfg.node.LocalVariableNode;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+
+/**
+ * Benchmarks of the dataflow framework, with the constant propagation analysis of {@link
+ * ConstantPropagationPlayground}.
+ *
+ * <p>The benchmark generates a class with a synthetic method for each {@link Scenario}, attributes
+ * it with javac, and then measures for each method:
+ *
+ * <ul>
+ *   <li>the time {@link CFGBuilder} takes to build its control flow graph,
+ *   <li>the time the fix-point iteration of {@link Analysis} takes,
+ *   <li>the bytes allocated by both, if the JVM can measure them, and
+ *   <li>the number of blocks the analysis visits and the number of stores it copies.
+ * </ul>
+ *
+ * Each measurement is repeated after some warm-up runs, and the mean of the repetitions is
+ * reported. The results can be written to a CSV file, and compared with those of an earlier run,
+ * such as the baseline in {@code dataflow/benchmark/baseline.csv}; the comparison lists the
+ * measurements that grew. Only the numbers of block visits and store copies are compared. They do
+ * not depend on the machine, whereas the times and allocated bytes do, so they are only printed.
+ * The counts do depend on the version of javac, whose trees the control flow graphs are built
+ * from, so a baseline is only meaningful for the JDK it was recorded with.
+ *
+ * <p>Run {@code ant benchmark} in the dataflow directory, or this class with {@code -help} for its
+ * options.
+ */
+public class DataflowBenchmark {
+
+    /** The name of the generated class. */
+    private static final String CLASS_NAME = "Benchmark";
+
+    /** The names of the measurements, as written to the CSV file. */
+    private static final String[] METRICS = {
+        "cfgNanos", "cfgBytes", "analysisNanos", "analysisBytes", "blockVisits", "storeCopies"
+    };
+
+    /**
+     * Whether each measurement is deterministic. Only deterministic measurements are compared with
+     * the baseline, and they got worse if they grew at all.
+     */
+    private static final boolean[] DETERMINISTIC = {false, false, false, false, true, true};
+
+    /** The number of stores that {@link CountingStore#copy} has copied. */
+    private static long storeCopies;
+
+    /** The bean that measures the bytes allocated by a thread, or null if the JVM cannot. */
+    private static final /*@Nullable*/ com.sun.management.ThreadMXBean allocationBean =
+            getAllocationBean();
+
+    /** The synthetic methods, each of which stresses a different part of the framework. */
+    enum Scenario {
+        /** Loops nested {@code size} deep, with a conditional in each. */
+        DEEP_NESTING("deepNesting") {
+            @Override
+            void generate(StringBuilder sb, int size) {
+                line(sb, 2, "int x = 0;");
+                generateNestedLoop(sb, 0, size);
+                line(sb, 2, "return x;");
+            }
+        },
+
+        /** A loop around a switch statement with {@code 25 * size} cases. */
+        LARGE_SWITCH("largeSwitch") {
+            @Override
+            void generate(StringBuilder sb, int size) {
+                line(sb, 2, "int x = 0;");
+                line(sb, 2, "for (int i = 0; i < p; i++) {");
+                line(sb, 3, "switch (i) {");
+                for (int i = 0; i < 25 * size; i++) {
+                    line(sb, 4, "case " + i + ":");
+                    line(sb, 5, "x = " + i + ";");
+                    if (i % 3 != 0) {
+                        // Every third case falls through to the next one.
+                        line(sb, 5, "break;");
+                    }
+                }
+                line(sb, 4, "default:");
+                line(sb, 5, "x = -1;");
+                line(sb, 3, "}");
+                line(sb, 2, "}");
+                line(sb, 2, "return x;");
+            }
+        },
+
+        /**
+         * {@code 10 * size} local variables, each of which is assigned the value of the previous
+         * one in a loop, so that the fix-point iteration needs one iteration per variable until
+         * the unknown value of the first one reaches the last one.
+         */
+        MANY_LOCALS("manyLocals") {
+            @Override
+            void generate(StringBuilder sb, int size) {
+                int locals = 10 * size;
+                for (int i = 0; i < locals; i++) {
+                    line(sb, 2, "int v" + i + " = 0;");
+                }
+                line(sb, 2, "for (int i = 0; i < p; i++) {");
+                for (int i = locals - 1; i > 0; i--) {
+                    line(sb, 3, "v" + i + " = v" + (i - 1) + ";");
+                }
+                line(sb, 3, "v0 = p;");
+                line(sb, 2, "}");
+                line(sb, 2, "return v" + (locals - 1) + ";");
+            }
+        },
+
+        /**
+         * {@code size} try statements with catch clauses and finally blocks in a loop, each with
+         * a nested try statement.
+         */
+        EXCEPTIONS("exceptions") {
+            @Override
+            void generate(StringBuilder sb, int size) {
+                line(sb, 2, "int x = 0;");
+                line(sb, 2, "for (int i = 0; i < p; i++) {");
+                for (int i = 0; i < size; i++) {
+                    line(sb, 3, "try {");
+                    line(sb, 4, "x = " + i + ";");
+                    line(sb, 4, "mayThrow(i);");
+                    line(sb, 4, "try {");
+                    line(sb, 5, "mayThrow(x);");
+                    line(sb, 4, "} catch (IllegalStateException e) {");
+                    line(sb, 5, "x = -1;");
+                    line(sb, 4, "}");
+                    line(sb, 3, "} catch (IllegalArgumentException e) {");
+                    line(sb, 4, "x = -2;");
+                    line(sb, 3, "} catch (RuntimeException e) {");
+                    line(sb, 4, "x = -3;");
+                    line(sb, 3, "} finally {");
+                    line(sb, 4, "p = p - 1;");
+                    line(sb, 3, "}");
+                }
+                line(sb, 2, "}");
+                line(sb, 2, "return x;");
+            }
+        };
+
+        /** The name of the method. */
+        final String methodName;
+
+        Scenario(String methodName) {
+            this.methodName = methodName;
+        }
+
+        /**
+         * Appends the body of the method, which has an int parameter {@code p}, to {@code sb}.
+         *
+         * @param sb the source code of the class
+         * @param size the size of the method; its number of nodes grows linearly with it
+         */
+        abstract void generate(StringBuilder sb, int size);
+    }
+
+    /** Main method. */
+    public static void main(String[] args) {
+        int size = 20;
+        int warmup = 20;
+        int iterations = 50;
+        String output = null;
+        String baseline = null;
+        boolean error = false;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("-help")) {
+                printUsage();
+                return;
+            }
+            if (i >= args.length - 1) {
+                printError("Unknown command-line argument or missing value: " + arg);
+                error = true;
+                continue;
+            }
+            String value = args[++i];
+            try {
+                if (arg.equals("-size")) {
+                    size = Integer.parseInt(value);
+                } else if (arg.equals("-warmup")) {
+                    warmup = Integer.parseInt(value);
+                } else if (arg.equals("-iterations")) {
+                    iterations = Integer.parseInt(value);
+                } else if (arg.equals("-output")) {
+                    output = value;
+                } else if (arg.equals("-baseline")) {
+                    baseline = value;
+                } else {
+                    printError("Unknown command-line argument: " + arg);
+                    error = true;
+                }
+            } catch (NumberFormatException e) {
+                printError("Not a number after " + arg + ": " + value);
+                error = true;
+            }
+        }
+        if (size < 1 || warmup < 0 || iterations < 1) {
+            printError("-size and -iterations must be positive, -warmup must not be negative.");
+            error = true;
+        }
+        if (error) {
+            printUsage();
+            System.exit(1);
+        }
+
+        Map<String, double[]> results = run(generateSource(size), warmup, iterations);
+        printResults(System.out, results);
+        try {
+            if (output != null) {
+                writeCsv(output, results, size);
+            }
+            if (baseline != null) {
+                printComparison(System.out, readCsv(baseline), results);
+            }
+        } catch (IOException e) {
+            printError(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Print an error message. */
+    protected static void printError(String string) {
+        System.err.println("ERROR: " + string);
+    }
+
+    /** Print usage information. */
+    protected static void printUsage() {
+        System.out.println(
+                "Benchmark the control flow graph builder and the dataflow analysis.");
+        System.out.println(
+                "Parameters: [-size <n>] [-warmup <n>] [-iterations <n>] [-output <file>]"
+                        + " [-baseline <file>]");
+        System.out.println("    -size:       The size of the synthetic methods (default 20).");
+        System.out.println("    -warmup:     The number of runs before measuring (default 20).");
+        System.out.println("    -iterations: The number of measured runs (default 50).");
+        System.out.println("    -output:     Write the results to this CSV file.");
+        System.out.println(
+                "    -baseline:   Compare the block visits and store copies to those in this"
+                        + " CSV file.");
+    }
+
+    /** Returns the source code of the class with the synthetic method of each scenario. */
+    static String generateSource(int size) {
+        StringBuilder sb = new StringBuilder();
+        line(sb, 0, "class " + CLASS_NAME + " {");
+        line(sb, 1, "void mayThrow(int p) {");
+        line(sb, 2, "if (p == 0) {");
+        line(sb, 3, "throw new IllegalStateException();");
+        line(sb, 2, "}");
+        line(sb, 1, "}");
+        for (Scenario scenario : Scenario.values()) {
+            line(sb, 1, "int " + scenario.methodName + "(int p) {");
+            scenario.generate(sb, size);
+            line(sb, 1, "}");
+        }
+        line(sb, 0, "}");
+        return sb.toString();
+    }
+
+    /**
+     * Appends a loop nested {@code depth - level} deep to {@code sb}, for {@link
+     * Scenario#DEEP_NESTING}.
+     */
+    private static void generateNestedLoop(StringBuilder sb, int level, int depth) {
+        int indent = level * 2 + 2;
+        if (level == depth) {
+            line(sb, indent, "x = x + 1;");
+            return;
+        }
+        String i = "i" + level;
+        line(sb, indent, "for (int " + i + " = 0; " + i + " < p; " + i + "++) {");
+        line(sb, indent + 1, "if (" + i + " == " + level + ") {");
+        line(sb, indent + 2, "x = " + level + ";");
+        line(sb, indent + 1, "} else {");
+        generateNestedLoop(sb, level + 1, depth);
+        line(sb, indent + 1, "}");
+        line(sb, indent, "}");
+    }
+
+    /** Appends a line of source code, indented by {@code indent} levels, to {@code sb}. */
+    private static void line(StringBuilder sb, int indent, String code) {
+        for (int i = 0; i < indent; i++) {
+            sb.append("    ");
+        }
+        sb.append(code).append('\n');
+    }
+
+    /**
+     * Attributes the generated class, and measures each of its synthetic methods.
+     *
+     * @param source the source code of the generated class
+     * @param warmup the number of runs before measuring
+     * @param iterations the number of measured runs
+     * @return the mean measurements of each scenario, in the order of {@link #METRICS}
+     */
+    static Map<String, double[]> run(final String source, int warmup, int iterations) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///" + CLASS_NAME + ".java"),
+                        JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return source;
+                    }
+                };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacTask task =
+                (JavacTask)
+                        compiler.getTask(
+                                null,
+                                null,
+                                diagnostics,
+                                null,
+                                null,
+                                Collections.singletonList(file));
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+        task.setProcessors(Collections.singletonList(processor));
+        CompilationUnitTree root;
+        try {
+            root = task.parse().iterator().next();
+            task.analyze();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                throw new RuntimeException("Cannot compile the generated class: " + d);
+            }
+        }
+
+        ClassTree classTree = (ClassTree) root.getTypeDecls().get(0);
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (Scenario scenario : Scenario.values()) {
+            for (Tree member : classTree.getMembers()) {
+                if (member instanceof MethodTree
+                        && ((MethodTree) member)
+                                .getName()
+                                .contentEquals(scenario.methodName)) {
+                    MethodTree method = (MethodTree) member;
+                    results.put(
+                            scenario.methodName,
+                            measure(
+                                    root,
+                                    processor.getEnvironment(),
+                                    method,
+                                    classTree,
+                                    warmup,
+                                    iterations));
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Builds the control flow graph of {@code method} and analyzes it {@code warmup + iterations}
+     * times, and returns the mean measurements of the last {@code iterations} runs, in the order
+     * of {@link #METRICS}.
+     */
+    private static double[] measure(
+            CompilationUnitTree root,
+            ProcessingEnvironment env,
+            MethodTree method,
+            ClassTree classTree,
+            int warmup,
+            int iterations) {
+        double[] totals = new double[METRICS.length];
+        for (int i = 0; i < warmup + iterations; i++) {
+            long startBytes = allocatedBytes();
+            long startNanos = System.nanoTime();
+            ControlFlowGraph cfg = CFGBuilder.build(root, env, method, classTree);
+            long cfgNanos = System.nanoTime() - startNanos;
+            long cfgBytes = allocatedBytes() - startBytes;
+
+            Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> analysis =
+                    new Analysis<>(env, new CountingTransfer());
+            storeCopies = 0;
+            startBytes = allocatedBytes();
+            startNanos = System.nanoTime();
+            analysis.performAnalysis(cfg);
+            long analysisNanos = System.nanoTime() - startNanos;
+            long analysisBytes = allocatedBytes() - startBytes;
+
+            if (i >= warmup) {
+                totals[0] += cfgNanos;
+                totals[1] += cfgBytes;
+                totals[2] += analysisNanos;
+                totals[3] += analysisBytes;
+                totals[4] += analysis.getBlockVisits();
+                totals[5] += storeCopies;
+            }
+        }
+        for (int m = 0; m < totals.length; m++) {
+            totals[m] /= iterations;
+        }
+        return totals;
+    }
+
+    /** Prints the results as a table. */
+    private static void printResults(PrintStream out, Map<String, double[]> results) {
+        out.printf(
+                Locale.ROOT,
+                "%-12s %12s %12s %12s %12s %12s %12s%n",
+                "scenario",
+                "cfg us",
+                "cfg KB",
+                "analysis us",
+                "analysis KB",
+                "blockVisits",
+                "storeCopies");
+        for (Map.Entry<String, double[]> e : results.entrySet()) {
+            double[] r = e.getValue();
+            out.printf(
+                    Locale.ROOT,
+                    "%-12s %12.1f %12.1f %12.1f %12.1f %12.0f %12.0f%n",
+                    e.getKey(),
+                    r[0] / 1000,
+                    r[1] / 1024,
+                    r[2] / 1000,
+                    r[3] / 1024,
+                    r[4],
+                    r[5]);
+        }
+    }
+
+    /** Writes the results to a CSV file, with a comment that describes the run. */
+    private static void writeCsv(String fileName, Map<String, double[]> results, int size)
+            throws IOException {
+        try (PrintWriter out =
+                new PrintWriter(
+                        new OutputStreamWriter(
+                                new FileOutputStream(fileName), StandardCharsets.UTF_8))) {
+            out.println(
+                    "# size "
+                            + size
+                            + ", Java "
+                            + System.getProperty("java.version")
+                            + ", "
+                            + System.getProperty("os.arch")
+                            + ", "
+                            + Runtime.getRuntime().availableProcessors()
+                            + " processors");
+            StringBuilder header = new StringBuilder("scenario");
+            for (String metric : METRICS) {
+                header.append(',').append(metric);
+            }
+            out.println(header);
+            for (Map.Entry<String, double[]> e : results.entrySet()) {
+                StringBuilder row = new StringBuilder(e.getKey());
+                double[] values = e.getValue();
+                for (int m = 0; m < METRICS.length; m++) {
+                    row.append(',');
+                    if (DETERMINISTIC[m]) {
+                        // The same in every repetition, so the mean is a whole number.
+                        row.append(Math.round(values[m]));
+                    } else {
+                        row.append(String.format(Locale.ROOT, "%.1f", values[m]));
+                    }
+                }
+                out.println(row);
+            }
+        }
+    }
+
+    /**
+     * Reads results that {@link #writeCsv} has written, or a file with a subset of its columns,
+     * such as the baseline. The values of missing columns are NaN.
+     */
+    private static Map<String, double[]> readCsv(String fileName) throws IOException {
+        Map<String, double[]> results = new LinkedHashMap<>();
+        try (BufferedReader in =
+                new BufferedReader(
+                        new InputStreamReader(
+                                new FileInputStream(fileName), StandardCharsets.UTF_8))) {
+            // The index in METRICS of each column after the scenario name.
+            int[] columns = null;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (line.startsWith("scenario,")) {
+                    columns = new int[fields.length - 1];
+                    for (int c = 0; c < columns.length; c++) {
+                        columns[c] = Arrays.asList(METRICS).indexOf(fields[c + 1]);
+                        if (columns[c] < 0) {
+                            throw new IOException(
+                                    "Unknown measurement in " + fileName + ": " + fields[c + 1]);
+                        }
+                    }
+                    continue;
+                }
+                if (columns == null || fields.length != columns.length + 1) {
+                    throw new IOException("Malformed line in " + fileName + ": " + line);
+                }
+                double[] values = new double[METRICS.length];
+                Arrays.fill(values, Double.NaN);
+                for (int c = 0; c < columns.length; c++) {
+                    try {
+                        values[columns[c]] = Double.parseDouble(fields[c + 1]);
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed line in " + fileName + ": " + line);
+                    }
+                }
+                results.put(fields[0], values);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Prints a comparison of the deterministic measurements with those of a baseline, and lists
+     * the ones that got worse, that is, that grew at all. The times and allocated bytes are not
+     * compared, because they depend on the machine and the JVM. The comparison is only a report:
+     * measurements that got worse do not change the exit status.
+     */
+    private static void printComparison(
+            PrintStream out, Map<String, double[]> baseline, Map<String, double[]> results) {
+        List<String> regressions = new ArrayList<>();
+        out.println();
+        out.printf(
+                Locale.ROOT,
+                "%-12s %-14s %14s %14s %9s%n",
+                "scenario",
+                "metric",
+                "baseline",
+                "current",
+                "change");
+        for (Map.Entry<String, double[]> e : results.entrySet()) {
+            double[] base = baseline.get(e.getKey());
+            if (base == null) {
+                out.println(e.getKey() + ": not in the baseline");
+                continue;
+            }
+            double[] current = e.getValue();
+            for (int m = 0; m < METRICS.length; m++) {
+                if (!DETERMINISTIC[m]) {
+                    continue;
+                }
+                if (Double.isNaN(base[m])) {
+                    out.println(e.getKey() + " " + METRICS[m] + ": not in the baseline");
+                    continue;
+                }
+                double change = base[m] == 0 ? 0 : (current[m] - base[m]) / base[m];
+                out.printf(
+                        Locale.ROOT,
+                        "%-12s %-14s %14.0f %14.0f %+8.1f%%%n",
+                        e.getKey(),
+                        METRICS[m],
+                        base[m],
+                        current[m],
+                        change * 100);
+                if (current[m] > base[m]) {
+                    regressions.add(e.getKey() + " " + METRICS[m]);
+                }
+            }
+        }
+        out.println();
+        if (regressions.isEmpty()) {
+            out.println("No measurement got worse than the baseline.");
+        } else {
+            out.println("Worse than the baseline: " + regressions);
+        }
+    }
+
+    /** Returns the bytes allocated by the current thread so far, or 0 if they are not measured. */
+    private static long allocatedBytes() {
+        return allocationBean == null
+                ? 0
+                : allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static /*@Nullable*/ com.sun.management.ThreadMXBean getAllocationBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()) {
+            return (com.sun.management.ThreadMXBean) bean;
+        }
+        return null;
+    }
+
+    /** A processor that only records the processing environment of the compiler. */
+    @SupportedAnnotationTypes("*")
+    private static class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment getEnvironment() {
+            return processingEnv;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+
+    /** A constant propagation store that counts how often stores are copied. */
+    private static class CountingStore extends ConstantPropagationStore {
+        CountingStore() {
+            super();
+        }
+
+        CountingStore(Map<Node, Constant> contents) {
+            super(contents);
+        }
+
+        @Override
+        protected ConstantPropagationStore createStore(Map<Node, Constant> contents) {
+            return new CountingStore(contents);
+        }
+
+        @Override
+        public ConstantPropagationStore copy() {
+            storeCopies++;
+            return super.copy();
+        }
+    }
+
+    /** The constant propagation transfer function, with stores that count their copies. */
+    private static class CountingTransfer extends ConstantPropagationTransfer {
+        @Override
+        public ConstantPropagationStore initialStore(
+                UnderlyingAST underlyingAST, List<LocalVariableNode> parameters) {
+            return new CountingStore();
+        }
+    }
+}
@@ -24,6 +24,15 @@ public class ConstantPropagationStore implements Store<ConstantPropagationStore>
         this.contents = contents;
     }
 
+    /**
+     * Creates a store with the given contents. {@link #copy} and {@link #leastUpperBound} create
+     * their results with this method, so that a subclass can make them return instances of the
+     * subclass.
+     */
+    protected ConstantPropagationStore createStore(Map<Node, Constant> contents) {
+        return new ConstantPropagationStore(contents);
+    }
+
     public Constant getInformation(Node n) {
         if (contents.containsKey(n)) {
             return contents.get(n);
@@ -51,7 +60,7 @@ public class ConstantPropagationStore implements Store<ConstantPropagationStore>
 
     @Override
     public ConstantPropagationStore copy() {
-        return new ConstantPropagationStore(new HashMap<>(contents));
+        return createStore(new HashMap<>(contents));
     }
 
     @Override
@@ -80,7 +89,7 @@ public class ConstantPropagationStore implements Store<ConstantPropagationStore>
             }
         }
 
-        return new ConstantPropagationStore(newContents);
+        return createStore(newContents);
     }
 
     @Override
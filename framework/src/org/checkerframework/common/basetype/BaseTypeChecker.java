@@ -1,5 +1,10 @@
 package org.checkerframework.common.basetype;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.sun.source.tree.ClassTree;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
@@ -27,14 +32,18 @@ import javax.lang.model.element.TypeElement;
 import javax.tools.Diagnostic;
 import org.checkerframework.common.reflection.MethodValChecker;
 import org.checkerframework.dataflow.cfg.CFGVisualizer;
+import org.checkerframework.framework.flow.SharedCFGStore;
 import org.checkerframework.framework.qual.SubtypeOf;
 import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.stub.SharedStubStore;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.GenericAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.TypeHierarchy;
+import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInference;
 import org.checkerframework.javacutil.AbstractTypeProcessor;
 import org.checkerframework.javacutil.AnnotationProvider;
+import org.checkerframework.javacutil.BoundedCache;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
 
@@ -126,6 +135,20 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
     /** Supported options for this checker */
     private Set<String> supportedOptions;
 
+    /**
+     * The store shared by the annotated type factories of this checker and its subcheckers. Only
+     * set for the checker that runs all other subcheckers. Do not read this field directly.
+     * Instead, retrieve it via {@link #getSharedStubStore}.
+     */
+    private SharedStubStore sharedStubStore;
+
+    /**
+     * The store of control flow graphs shared by this checker and its subcheckers. Only set for
+     * the checker that runs all other subcheckers. Do not read this field directly. Instead,
+     * retrieve it via {@link #getSharedCFGStore}.
+     */
+    private SharedCFGStore sharedCFGStore;
+
     /**
      * Returns the set of subchecker classes on which this checker depends. Returns an empty set if
      * this checker does not depend on any others.
@@ -431,6 +454,80 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         return subcheckers;
     }
 
+    /**
+     * Returns the store of stub file data and declaration annotations that is shared by the
+     * annotated type factories of the compound checker that this checker belongs to, and of all its
+     * subcheckers.
+     *
+     * @return the store shared by this checker, its parent checkers, and their subcheckers
+     */
+    public SharedStubStore getSharedStubStore() {
+        if (parentChecker instanceof BaseTypeChecker) {
+            return ((BaseTypeChecker) parentChecker).getSharedStubStore();
+        }
+        if (sharedStubStore == null) {
+            sharedStubStore = new SharedStubStore(processingEnv);
+        }
+        return sharedStubStore;
+    }
+
+    /**
+     * Returns the store of control flow graphs that is shared by the compound checker that this
+     * checker belongs to, and by all its subcheckers. Returns null if this checker is neither a
+     * compound checker nor a subchecker, because then no other checker could reuse its graphs.
+     *
+     * @return the store shared by this checker, its parent checkers, and their subcheckers, or null
+     */
+    public /*@Nullable*/ SharedCFGStore getSharedCFGStore() {
+        if (parentChecker instanceof BaseTypeChecker) {
+            return ((BaseTypeChecker) parentChecker).getSharedCFGStore();
+        }
+        if (getSubcheckers().isEmpty()) {
+            return null;
+        }
+        if (sharedCFGStore == null) {
+            sharedCFGStore = new SharedCFGStore();
+        }
+        return sharedCFGStore;
+    }
+
+    /**
+     * Releases the dataflow results of the members of {@code classTree}, after this checker has
+     * type-checked it. See {@link GenericAnnotatedTypeFactory#releaseFlowResults}.
+     *
+     * <p>The type factory of a compound checker queries the type factories of its subcheckers,
+     * which may use their dataflow results. Therefore, the results of a subchecker are not
+     * released when the subchecker has type-checked the class, but together with those of the
+     * compound checker. The control flow graphs of the members, which all these checkers share,
+     * are released at the same time.
+     *
+     * @param classTree a class that this checker has type-checked
+     */
+    /*package-scope*/ void releaseFlowResults(ClassTree classTree) {
+        if (parentChecker instanceof BaseTypeChecker) {
+            return;
+        }
+        releaseFlowResultsOfAllCheckers(classTree);
+        SharedCFGStore store = getSharedCFGStore();
+        if (store != null) {
+            store.release(classTree);
+        }
+    }
+
+    /**
+     * Releases the dataflow results of the members of {@code classTree} in the type factories of
+     * this checker and of all its subcheckers.
+     */
+    private void releaseFlowResultsOfAllCheckers(ClassTree classTree) {
+        GenericAnnotatedTypeFactory<?, ?, ?, ?> factory = getTypeFactory();
+        if (factory != null) {
+            factory.releaseFlowResults(classTree);
+        }
+        for (BaseTypeChecker checker : getSubcheckers()) {
+            checker.releaseFlowResultsOfAllCheckers(classTree);
+        }
+    }
+
     /**
      * Sort by position at which the error will be printed, then by the order in which the checkers
      * run, then by kind of message, and finally by the message string.
@@ -686,6 +783,63 @@ public abstract class BaseTypeChecker extends SourceChecker implements BaseTypeC
         return false;
     }
 
+    /**
+     * Also prints the statistics of the caches of the type factories of this checker and of all
+     * its direct and indirect subcheckers, and of the cache of the {@link SharedStubStore}.
+     */
+    @Override
+    protected void printStats() {
+        super.printStats();
+        // Instantiates the subcheckers, if that has not happened yet.
+        getSubcheckers();
+        printCacheStatistics(this, new LinkedHashSet<BaseTypeChecker>());
+        if (sharedStubStore != null) {
+            System.out.println("Cache statistics of " + SharedStubStore.class.getSimpleName());
+            System.out.println("  " + sharedStubStore.getElementAnnotationCache().getStatistics());
+        }
+    }
+
+    /**
+     * Prints the cache statistics of {@code checker} and of its direct and indirect subcheckers,
+     * unless they are in {@code printed}. A subchecker that several checkers depend on is only
+     * printed once.
+     *
+     * @param checker the checker whose statistics to print
+     * @param printed the checkers whose statistics have already been printed; updated
+     */
+    private static void printCacheStatistics(
+            BaseTypeChecker checker, Set<BaseTypeChecker> printed) {
+        if (!printed.add(checker)) {
+            return;
+        }
+        printCacheStatistics(checker.getTypeFactory());
+        if (checker.immediateSubcheckers != null) {
+            for (BaseTypeChecker subchecker : checker.immediateSubcheckers) {
+                printCacheStatistics(subchecker, printed);
+            }
+        }
+    }
+
+    /**
+     * Prints the statistics of the caches and of the type argument inference of {@code factory}, if
+     * it is not null.
+     */
+    private static void printCacheStatistics(AnnotatedTypeFactory factory) {
+        if (factory == null) {
+            return;
+        }
+        System.out.println("Cache statistics of " + factory.getClass().getSimpleName());
+        for (BoundedCache<?, ?> cache : factory.getCaches()) {
+            System.out.println("  " + cache.getStatistics());
+        }
+        if (factory.getTypeArgumentInference() instanceof DefaultTypeArgumentInference) {
+            System.out.println(
+                    "  "
+                            + ((DefaultTypeArgumentInference) factory.getTypeArgumentInference())
+                                    .getStatistics());
+        }
+    }
+
     @Override
     protected void shutdownHook() {
         super.shutdownHook();
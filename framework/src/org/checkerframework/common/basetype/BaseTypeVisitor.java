@@ -278,6 +278,9 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
             // Not "return super.visitClass(classTree, p);" because that would
             // recursively call visitors on subtrees; we want to skip the
             // class entirely.
+            // The dataflow results of a nested class are computed with those of
+            // the enclosing class, even if the nested class is skipped.
+            checker.releaseFlowResults(classTree);
             return null;
         }
         atypeFactory.preProcessClassTree(classTree);
@@ -295,6 +298,7 @@ public class BaseTypeVisitor<Factory extends GenericAnnotatedTypeFactory<?, ?, ?
         try {
             processClassTree(classTree);
             atypeFactory.postProcessClassTree(classTree);
+            checker.releaseFlowResults(classTree);
         } finally {
             this.visitorState.setClassType(preACT);
             this.visitorState.setClassTree(preCT);
@@ -103,6 +103,9 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
     /** Should this type factory report warnings? */
     private final boolean reportEvalWarnings;
 
+    /** Should ranges be widened to the thresholds of {@link Range#widen}? */
+    private final boolean widenToThresholds;
+
     /** Helper class that evaluates statically executable methods, constructors, and fields. */
     private final ReflectiveEvaluator evaluator;
 
@@ -140,6 +143,7 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
 
         reportEvalWarnings = checker.hasOption(ValueChecker.REPORT_EVAL_WARNS);
         Range.IGNORE_OVERFLOW = checker.hasOption(ValueChecker.IGNORE_RANGE_OVERFLOW);
+        widenToThresholds = checker.hasOption(ValueChecker.WIDEN_TO_THRESHOLDS);
         evaluator = new ReflectiveEvaluator(checker, this, reportEvalWarnings);
 
         addAliasedAnnotation(
@@ -572,6 +576,9 @@ public class ValueAnnotatedTypeFactory extends BaseAnnotatedTypeFactory {
             if (newRange == null || oldRange == null || lubRange.equals(oldRange)) {
                 return lubRange;
             }
+            if (widenToThresholds) {
+                return newRange.widen(oldRange);
+            }
             // If both bounds of the new range are bigger than the old range, then returned range
             // should use the lower bound of the new range and a MAX_VALUE.
             if ((newRange.from >= oldRange.from && newRange.to >= oldRange.to)) {
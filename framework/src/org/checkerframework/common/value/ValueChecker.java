@@ -3,6 +3,7 @@ package org.checkerframework.common.value;
 import java.util.LinkedHashSet;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.common.value.util.Range;
 import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.source.SupportedOptions;
 
@@ -20,10 +21,16 @@ import org.checkerframework.framework.source.SupportedOptions;
  * @checker_framework.manual #constant-value-checker Constant Value Checker
  */
 @StubFiles("statically-executable.astub")
-@SupportedOptions({ValueChecker.REPORT_EVAL_WARNS, ValueChecker.IGNORE_RANGE_OVERFLOW})
+@SupportedOptions({
+    ValueChecker.REPORT_EVAL_WARNS,
+    ValueChecker.IGNORE_RANGE_OVERFLOW,
+    ValueChecker.WIDEN_TO_THRESHOLDS
+})
 public class ValueChecker extends BaseTypeChecker {
     public static final String REPORT_EVAL_WARNS = "reportEvalWarns";
     public static final String IGNORE_RANGE_OVERFLOW = "ignoreRangeOverflow";
+    /** Widen ranges to the thresholds of {@link Range#widen}. */
+    public static final String WIDEN_TO_THRESHOLDS = "widenToThresholds";
 
     @Override
     protected BaseTypeVisitor<?> createSourceVisitor() {
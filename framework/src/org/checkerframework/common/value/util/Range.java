@@ -47,6 +47,24 @@ public class Range {
     /** The empty range. */
     public static final Range NOTHING = new Range();
 
+    /**
+     * The bounds to which {@link #widen} moves a bound that grows, in increasing order: the
+     * extreme values of the integral types, and -1 and 0, where the sign of a value changes.
+     * Integer.MAX_VALUE is also the largest length of an array.
+     */
+    private static final long[] WIDENING_THRESHOLDS = {
+        Long.MIN_VALUE,
+        Integer.MIN_VALUE,
+        Short.MIN_VALUE,
+        Byte.MIN_VALUE,
+        -1,
+        0,
+        Byte.MAX_VALUE,
+        Short.MAX_VALUE,
+        Integer.MAX_VALUE,
+        Long.MAX_VALUE
+    };
+
     /**
      * Constructs a range with its bounds specified by two parameters, {@code from} and {@code to}.
      *
@@ -263,6 +281,39 @@ public class Range {
         return new Range(resultFrom, resultTo);
     }
 
+    /**
+     * Returns the union of this range and a previous range, widened for a dataflow analysis: a
+     * bound of the union that lies beyond the bound of the previous range is moved to the nearest
+     * of a few thresholds, such as 0 and the extreme values of the integral types. A sequence of
+     * ranges that each widen the previous one therefore becomes stable after a few steps.
+     *
+     * @param previous the previous range
+     * @return a range that contains this range and {@code previous}
+     */
+    public Range widen(Range previous) {
+        Range union = union(previous);
+        if (this.isNothing() || previous.isNothing()) {
+            return union;
+        }
+        long resultFrom = union.from;
+        if (resultFrom < previous.from) {
+            int i = WIDENING_THRESHOLDS.length - 1;
+            while (WIDENING_THRESHOLDS[i] > resultFrom) {
+                i--;
+            }
+            resultFrom = WIDENING_THRESHOLDS[i];
+        }
+        long resultTo = union.to;
+        if (resultTo > previous.to) {
+            int i = 0;
+            while (WIDENING_THRESHOLDS[i] < resultTo) {
+                i++;
+            }
+            resultTo = WIDENING_THRESHOLDS[i];
+        }
+        return new Range(resultFrom, resultTo);
+    }
+
     /**
      * Returns the smallest range that includes all values contained in both of the two ranges. We
      * call this the intersection of two ranges. If there is no overlap between the two ranges,
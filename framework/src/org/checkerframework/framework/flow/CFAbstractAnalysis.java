@@ -8,6 +8,8 @@ import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.analysis.FlowExpressions;
+import org.checkerframework.dataflow.cfg.block.Block;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
@@ -100,6 +102,25 @@ public abstract class CFAbstractAnalysis<
     /** @return an identical copy of the store {@code s}. */
     public abstract S createCopiedStore(S s);
 
+    /**
+     * Removes the values of the local variables that are dead at the beginning of {@code b} from
+     * a copy of {@code store}. The copy shares the maps of {@code store} except for the local
+     * variables, so it is cheap to make.
+     */
+    @Override
+    protected S removeDeadVariables(S store, Block b) {
+        S result = null;
+        for (FlowExpressions.LocalVariable var : store.localVariableValues.keySet()) {
+            if (!liveVariables.isLiveBefore(b, var)) {
+                if (result == null) {
+                    result = store.copy();
+                }
+                result.localVariableValues.remove(var);
+            }
+        }
+        return result == null ? store : result;
+    }
+
     /**
      * Creates an abstract value from the annotated type mirror. The value contains the set of
      * primary annotations on the type; unless, the type is an AnnotatedWildcardType. In that case,
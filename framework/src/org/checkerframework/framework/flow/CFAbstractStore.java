@@ -4,7 +4,7 @@ package org.checkerframework.framework.flow;
 import org.checkerframework.checker.nullness.qual.Nullable;
 */
 
-import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -36,6 +36,7 @@ import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.Pair;
+import org.checkerframework.javacutil.PersistentHashMap;
 
 /**
  * A store for the checker framework analysis tracks the annotations of memory locations such as
@@ -50,6 +51,11 @@ import org.checkerframework.javacutil.Pair;
  * BaseTypeVisitor#getFlowExpressionContextFromNode(Node) needs to be updated. Failing to do so may
  * result in silent failures that are time consuming to debug.
  *
+ * <p>The values are kept in {@link PersistentHashMap}s, so that copying a store takes constant
+ * time, and the copy shares the maps of the original until one of them is modified. The analysis
+ * copies the store before every basic block, and most blocks only change a few values. Computing
+ * the upper bound of two stores that share parts of their maps skips these parts.
+ *
  * @author Charlie Garrett
  * @author Stefan Heule
  */
@@ -101,24 +107,24 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
 
     public CFAbstractStore(CFAbstractAnalysis<V, S, ?> analysis, boolean sequentialSemantics) {
         this.analysis = analysis;
-        localVariableValues = new HashMap<>();
+        localVariableValues = new PersistentHashMap<>();
         thisValue = null;
-        fieldValues = new HashMap<>();
-        methodValues = new HashMap<>();
-        arrayValues = new HashMap<>();
-        classValues = new HashMap<>();
+        fieldValues = new PersistentHashMap<>();
+        methodValues = new PersistentHashMap<>();
+        arrayValues = new PersistentHashMap<>();
+        classValues = new PersistentHashMap<>();
         this.sequentialSemantics = sequentialSemantics;
     }
 
     /** Copy constructor. */
     protected CFAbstractStore(CFAbstractStore<V, S> other) {
         this.analysis = other.analysis;
-        localVariableValues = new HashMap<>(other.localVariableValues);
+        localVariableValues = new PersistentHashMap<>(other.localVariableValues);
         thisValue = other.thisValue;
-        fieldValues = new HashMap<>(other.fieldValues);
-        methodValues = new HashMap<>(other.methodValues);
-        arrayValues = new HashMap<>(other.arrayValues);
-        classValues = new HashMap<>(other.classValues);
+        fieldValues = new PersistentHashMap<>(other.fieldValues);
+        methodValues = new PersistentHashMap<>(other.methodValues);
+        arrayValues = new PersistentHashMap<>(other.arrayValues);
+        classValues = new PersistentHashMap<>(other.classValues);
         sequentialSemantics = other.sequentialSemantics;
     }
 
@@ -189,8 +195,10 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         if (!(analysis.checker.hasOption("assumeSideEffectFree")
                 || isSideEffectFree(atypeFactory, method))) {
             // update field values
-            Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-            for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+            Iterator<Entry<FlowExpressions.FieldAccess, V>> fieldIter =
+                    fieldValues.entrySet().iterator();
+            while (fieldIter.hasNext()) {
+                Entry<FlowExpressions.FieldAccess, V> e = fieldIter.next();
                 FlowExpressions.FieldAccess fieldAccess = e.getKey();
                 V otherVal = e.getValue();
 
@@ -217,19 +225,18 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                 if (newOtherVal != null) {
                     // keep information for all hierarchies where we had a
                     // monotone annotation.
-                    newFieldValues.put(fieldAccess, newOtherVal);
+                    fieldValues.put(fieldAccess, newOtherVal);
                     continue;
                 }
 
                 // case 2:
                 if (!fieldAccess.isUnmodifiableByOtherCode()) {
-                    continue; // remove information completely
+                    fieldIter.remove(); // remove information completely
+                    continue;
                 }
 
                 // keep information
-                newFieldValues.put(fieldAccess, otherVal);
             }
-            fieldValues = newFieldValues;
 
             // update method values
             methodValues.clear();
@@ -590,13 +597,16 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.FieldAccess fieldAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
+        Iterator<Entry<FlowExpressions.FieldAccess, V>> fieldIter =
+                fieldValues.entrySet().iterator();
+        while (fieldIter.hasNext()) {
+            Entry<FlowExpressions.FieldAccess, V> e = fieldIter.next();
             FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
             V otherVal = e.getValue();
             // case 2:
             if (otherFieldAccess.getReceiver().containsModifiableAliasOf(this, fieldAccess)) {
-                continue; // remove information completely
+                fieldIter.remove(); // remove information completely
+                continue;
             }
             // case 1:
             if (fieldAccess.getField().equals(otherFieldAccess.getField())) {
@@ -604,33 +614,29 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
                     if (!otherFieldAccess.isFinal()) {
                         if (val != null) {
                             V newVal = val.leastUpperBound(otherVal);
-                            newFieldValues.put(otherFieldAccess, newVal);
+                            fieldValues.put(otherFieldAccess, newVal);
                         } else {
                             // remove information completely
+                            fieldIter.remove();
                         }
                         continue;
                     }
                 }
             }
             // information is save to be carried over
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        Iterator<FlowExpressions.ArrayAccess> arrayIter = arrayValues.keySet().iterator();
+        while (arrayIter.hasNext()) {
+            FlowExpressions.ArrayAccess otherArrayAccess = arrayIter.next();
             if (otherArrayAccess.containsModifiableAliasOf(this, fieldAccess)) {
                 // remove information completely
-                continue;
+                arrayIter.remove();
             }
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -653,42 +659,37 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      *     abstract value is not known).
      */
     protected void removeConflicting(FlowExpressions.ArrayAccess arrayAccess, /*@Nullable*/ V val) {
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
-            V otherVal = e.getValue();
+        Iterator<FlowExpressions.ArrayAccess> arrayIter = arrayValues.keySet().iterator();
+        while (arrayIter.hasNext()) {
+            FlowExpressions.ArrayAccess otherArrayAccess = arrayIter.next();
             // case 1:
             if (otherArrayAccess.containsModifiableAliasOf(this, arrayAccess)) {
-                continue; // remove information completely
+                arrayIter.remove(); // remove information completely
+                continue;
             }
             if (canAlias(arrayAccess.getReceiver(), otherArrayAccess.getReceiver())) {
                 // TODO: one could be less strict here, and only raise the
                 // abstract value
                 // for all array expressions with potentially aliasing receivers
-                continue; // remove information completely
+                arrayIter.remove(); // remove information completely
+                continue;
             }
             // information is save to be carried over
-            newArrayValues.put(otherArrayAccess, otherVal);
         }
-        arrayValues = newArrayValues;
 
         // case 2:
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
-            V otherVal = e.getValue();
-            Receiver receiver = otherFieldAccess.getReceiver();
+        Iterator<FlowExpressions.FieldAccess> fieldIter = fieldValues.keySet().iterator();
+        while (fieldIter.hasNext()) {
+            Receiver receiver = fieldIter.next().getReceiver();
             if (receiver.containsModifiableAliasOf(this, arrayAccess)
                     && receiver.containsOfClass(ArrayAccess.class)) {
                 // remove information completely
-                continue;
+                fieldIter.remove();
             }
-            newFieldValues.put(otherFieldAccess, otherVal);
         }
-        fieldValues = newFieldValues;
 
         // case 3:
-        methodValues = new HashMap<>();
+        methodValues.clear();
     }
 
     /**
@@ -705,39 +706,31 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * </ol>
      */
     protected void removeConflicting(LocalVariable var) {
-        Map<FlowExpressions.FieldAccess, V> newFieldValues = new HashMap<>();
-        for (Entry<FlowExpressions.FieldAccess, V> e : fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess otherFieldAccess = e.getKey();
+        Iterator<FlowExpressions.FieldAccess> fieldIter = fieldValues.keySet().iterator();
+        while (fieldIter.hasNext()) {
             // case 1:
-            if (otherFieldAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+            if (fieldIter.next().containsSyntacticEqualReceiver(var)) {
+                fieldIter.remove();
             }
-            newFieldValues.put(otherFieldAccess, e.getValue());
         }
-        fieldValues = newFieldValues;
 
-        Map<FlowExpressions.ArrayAccess, V> newArrayValues = new HashMap<>();
-        for (Entry<FlowExpressions.ArrayAccess, V> e : arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess otherArrayAccess = e.getKey();
+        Iterator<FlowExpressions.ArrayAccess> arrayIter = arrayValues.keySet().iterator();
+        while (arrayIter.hasNext()) {
             // case 2:
-            if (otherArrayAccess.containsSyntacticEqualReceiver(var)) {
-                continue;
+            if (arrayIter.next().containsSyntacticEqualReceiver(var)) {
+                arrayIter.remove();
             }
-            newArrayValues.put(otherArrayAccess, e.getValue());
         }
-        arrayValues = newArrayValues;
 
-        Map<FlowExpressions.MethodCall, V> newMethodValues = new HashMap<>();
-        for (Entry<FlowExpressions.MethodCall, V> e : methodValues.entrySet()) {
-            FlowExpressions.MethodCall otherMethodAccess = e.getKey();
+        Iterator<FlowExpressions.MethodCall> methodIter = methodValues.keySet().iterator();
+        while (methodIter.hasNext()) {
+            FlowExpressions.MethodCall otherMethodAccess = methodIter.next();
             // case 3:
             if (otherMethodAccess.containsSyntacticEqualReceiver(var)
                     || otherMethodAccess.containsSyntacticEqualParameter(var)) {
-                continue;
+                methodIter.remove();
             }
-            newMethodValues.put(otherMethodAccess, e.getValue());
         }
-        methodValues = newMethodValues;
     }
 
     /**
@@ -797,24 +790,23 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
         return upperBound(previous, true);
     }
 
-    private S upperBound(S other, boolean shouldWiden) {
+    private S upperBound(S other, final boolean shouldWiden) {
         S newStore = analysis.createEmptyStore(sequentialSemantics);
+        PersistentHashMap.Merger<V> merger =
+                new PersistentHashMap.Merger<V>() {
+                    @Override
+                    public V merge(V thisVal, V otherVal) {
+                        return upperBoundOfValues(otherVal, thisVal, shouldWiden);
+                    }
+                };
 
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            // local variables that are only part of one store, but not the
-            // other are discarded, as one of store implicitly contains 'top'
-            // for that variable.
-            FlowExpressions.LocalVariable localVar = e.getKey();
-            if (localVariableValues.containsKey(localVar)) {
-                V otherVal = e.getValue();
-                V thisVal = localVariableValues.get(localVar);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-
-                if (mergedVal != null) {
-                    newStore.localVariableValues.put(localVar, mergedVal);
-                }
-            }
-        }
+        // Local variables, fields, arrays, methods and classes that are only part of one store,
+        // but not the other are discarded, as one store implicitly contains 'top' for them.
+        intersect(
+                newStore.localVariableValues,
+                localVariableValues,
+                other.localVariableValues,
+                merger);
 
         // information about the current object
         {
@@ -826,60 +818,39 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
             }
         }
 
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            // information about fields that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that field.
-            FlowExpressions.FieldAccess el = e.getKey();
-            if (fieldValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = fieldValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.fieldValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            // information about arrays that are only part of one store, but not
-            // the other are discarded, as one store implicitly contains 'top'
-            // for that array access.
-            FlowExpressions.ArrayAccess el = e.getKey();
-            if (arrayValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = arrayValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.arrayValues.put(el, mergedVal);
-                }
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            // information about methods that are only part of one store, but
-            // not the other are discarded, as one store implicitly contains
-            // 'top' for that field.
-            FlowExpressions.MethodCall el = e.getKey();
-            if (methodValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = methodValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
-                if (mergedVal != null) {
-                    newStore.methodValues.put(el, mergedVal);
-                }
-            }
+        intersect(newStore.fieldValues, fieldValues, other.fieldValues, merger);
+        intersect(newStore.arrayValues, arrayValues, other.arrayValues, merger);
+        intersect(newStore.methodValues, methodValues, other.methodValues, merger);
+        intersect(newStore.classValues, classValues, other.classValues, merger);
+        return newStore;
+    }
+
+    /**
+     * Puts the keys that are in both {@code map} and {@code otherMap} into {@code result}, which
+     * is empty, with the values that {@code merger} combines; see {@link
+     * PersistentHashMap#intersect}. If {@code map} and {@code otherMap} are persistent maps, the
+     * parts that they share are reused.
+     */
+    private static <K, V> void intersect(
+            Map<K, V> result,
+            Map<K, V> map,
+            Map<K, V> otherMap,
+            PersistentHashMap.Merger<V> merger) {
+        if (map instanceof PersistentHashMap && otherMap instanceof PersistentHashMap) {
+            result.putAll(
+                    ((PersistentHashMap<K, V>) map)
+                            .intersect((PersistentHashMap<K, V>) otherMap, merger));
+            return;
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName el = e.getKey();
-            if (classValues.containsKey(el)) {
-                V otherVal = e.getValue();
-                V thisVal = classValues.get(el);
-                V mergedVal = upperBoundOfValues(otherVal, thisVal, shouldWiden);
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            if (map.containsKey(key)) {
+                V mergedVal = merger.merge(map.get(key), e.getValue());
                 if (mergedVal != null) {
-                    newStore.classValues.put(el, mergedVal);
+                    result.put(key, mergedVal);
                 }
             }
         }
-        return newStore;
     }
 
     private V upperBoundOfValues(V otherVal, V thisVal, boolean shouldWiden) {
@@ -893,34 +864,27 @@ public abstract class CFAbstractStore<V extends CFAbstractValue<V>, S extends CF
      * equals predicate.
      */
     protected boolean supersetOf(CFAbstractStore<V, S> other) {
-        for (Entry<FlowExpressions.LocalVariable, V> e : other.localVariableValues.entrySet()) {
-            FlowExpressions.LocalVariable key = e.getKey();
-            if (!localVariableValues.containsKey(key)
-                    || !localVariableValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.FieldAccess, V> e : other.fieldValues.entrySet()) {
-            FlowExpressions.FieldAccess key = e.getKey();
-            if (!fieldValues.containsKey(key) || !fieldValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<FlowExpressions.ArrayAccess, V> e : other.arrayValues.entrySet()) {
-            FlowExpressions.ArrayAccess key = e.getKey();
-            if (!arrayValues.containsKey(key) || !arrayValues.get(key).equals(e.getValue())) {
-                return false;
-            }
-        }
-        for (Entry<MethodCall, V> e : other.methodValues.entrySet()) {
-            FlowExpressions.MethodCall key = e.getKey();
-            if (!methodValues.containsKey(key) || !methodValues.get(key).equals(e.getValue())) {
-                return false;
+        return supersetOf(localVariableValues, other.localVariableValues)
+                && supersetOf(fieldValues, other.fieldValues)
+                && supersetOf(arrayValues, other.arrayValues)
+                && supersetOf(methodValues, other.methodValues)
+                && supersetOf(classValues, other.classValues);
+    }
+
+    /**
+     * Returns true iff {@code map} contains the entries of {@code otherMap}. Persistent maps that
+     * share their trie, such as the maps of a store and of an unmodified copy, are equal.
+     */
+    private static <K, V> boolean supersetOf(Map<K, V> map, Map<K, V> otherMap) {
+        if (map instanceof PersistentHashMap && otherMap instanceof PersistentHashMap) {
+            PersistentHashMap<?, ?> persistentMap = (PersistentHashMap<?, ?>) map;
+            if (persistentMap.sharesTrieWith((PersistentHashMap<?, ?>) otherMap)) {
+                return true;
             }
         }
-        for (Entry<FlowExpressions.ClassName, V> e : other.classValues.entrySet()) {
-            FlowExpressions.ClassName key = e.getKey();
-            if (!classValues.containsKey(key) || !classValues.get(key).equals(e.getValue())) {
+        for (Entry<K, V> e : otherMap.entrySet()) {
+            K key = e.getKey();
+            if (!map.containsKey(key) || !map.get(key).equals(e.getValue())) {
                 return false;
             }
         }
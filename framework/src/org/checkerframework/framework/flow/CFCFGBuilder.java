@@ -8,7 +8,10 @@ import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.VariableElement;
@@ -48,22 +51,86 @@ public class CFCFGBuilder extends CFGBuilder {
         this.factory = factory;
     }
 
-    /** Build the control flow graph of some code. */
+    /** The artificial trees of the graph that is being built, and their enclosing elements. */
+    private final Map<Tree, Element> artificialTrees = new LinkedHashMap<>();
+
+    /**
+     * The type trees of the variables that the graph that is being built declares, and the
+     * expressions whose types the variables have.
+     */
+    private final Map<Tree, ExpressionTree> variableTypeTrees = new LinkedHashMap<>();
+
+    /** Whether the graph that is being built depends on the checker, so it cannot be shared. */
+    private boolean dependsOnChecker;
+
+    /**
+     * Build the control flow graph of some code, or return the one that the builder of another
+     * checker of the same compound checker has built, see {@link SharedCFGStore}.
+     */
     @Override
     public ControlFlowGraph run(
             CompilationUnitTree root, ProcessingEnvironment env, UnderlyingAST underlyingAST) {
         declaredClasses.clear();
         declaredLambdas.clear();
 
+        SharedCFGStore store = checker.getSharedCFGStore();
+        String stubFilesHash = factory.getStubFilesHash();
+        if (stubFilesHash == null) {
+            store = null;
+        }
+        SharedCFGStore.Entry entry =
+                store == null ? null : store.get(root, stubFilesHash, underlyingAST.getCode());
+        if (entry != null) {
+            for (Map.Entry<Tree, Element> artificialTree : entry.artificialTrees.entrySet()) {
+                factory.setPathHack(artificialTree.getKey(), artificialTree.getValue());
+            }
+            for (Map.Entry<Tree, ExpressionTree> typeTree : entry.variableTypeTrees.entrySet()) {
+                setVariableType(typeTree.getKey(), typeTree.getValue());
+            }
+            declaredClasses.addAll(entry.declaredClasses);
+            declaredLambdas.addAll(entry.declaredLambdas);
+            return entry.cfg;
+        }
+
+        artificialTrees.clear();
+        variableTypeTrees.clear();
+        dependsOnChecker = false;
         CFTreeBuilder builder = new CFTreeBuilder(env);
         PhaseOneResult phase1result =
                 new CFCFGTranslationPhaseOne()
                         .process(root, env, underlyingAST, exceptionalExitLabel, builder, factory);
         ControlFlowGraph phase2result = new CFGTranslationPhaseTwo().process(phase1result);
         ControlFlowGraph phase3result = CFGTranslationPhaseThree.process(phase2result);
+        if (store != null && !dependsOnChecker) {
+            store.put(
+                    root,
+                    stubFilesHash,
+                    factory.getVisitorState().getClassTree(),
+                    underlyingAST.getCode(),
+                    new SharedCFGStore.Entry(
+                            phase3result,
+                            new ArrayList<>(declaredClasses),
+                            new ArrayList<>(declaredLambdas),
+                            new LinkedHashMap<>(artificialTrees),
+                            new LinkedHashMap<>(variableTypeTrees)));
+        }
         return phase3result;
     }
 
+    /**
+     * Sets the annotated type of {@code typeTree}, the type of a variable that the graph declares,
+     * to the type of {@code expression} in the type factory.
+     */
+    private void setVariableType(Tree typeTree, ExpressionTree expression) {
+        // We do not want to cache flow-insensitive types
+        // retrieved during CFG building.
+        boolean oldShouldCache = factory.shouldCache;
+        factory.shouldCache = false;
+        AnnotatedTypeMirror type = factory.getAnnotatedType(expression);
+        factory.shouldCache = oldShouldCache;
+        factory.setArtificialTypeTreeType(typeTree, type);
+    }
+
     /*
      * Given a SourceChecker and an AssertTree, returns whether the AssertTree
      * uses an @AssumeAssertion string that is relevant to the SourceChecker.
@@ -89,6 +156,11 @@ public class CFCFGBuilder extends CFGBuilder {
 
         @Override
         protected boolean assumeAssertionsEnabledFor(AssertTree tree) {
+            ExpressionTree detail = tree.getDetail();
+            if (detail != null && detail.toString().contains("@AssumeAssertion(")) {
+                // Whether the assertion is assumed depends on the suppress warnings keys.
+                dependsOnChecker = true;
+            }
             if (assumeAssertionsActivatedForAssertTree(checker, tree)) {
                 return true;
             }
@@ -102,11 +174,13 @@ public class CFCFGBuilder extends CFGBuilder {
             if (enclosingMethod != null) {
                 Element methodElement = TreeUtils.elementFromDeclaration(enclosingMethod);
                 factory.setPathHack(tree, methodElement);
+                artificialTrees.put(tree, methodElement);
             } else {
                 ClassTree enclosingClass = TreeUtils.enclosingClass(getCurrentPath());
                 if (enclosingClass != null) {
                     Element classElement = TreeUtils.elementFromDeclaration(enclosingClass);
                     factory.setPathHack(tree, classElement);
+                    artificialTrees.put(tree, classElement);
                 }
             }
         }
@@ -114,51 +188,24 @@ public class CFCFGBuilder extends CFGBuilder {
         @Override
         protected VariableTree createEnhancedForLoopIteratorVariable(
                 MethodInvocationTree iteratorCall, VariableElement variableElement) {
-            // We do not want to cache flow-insensitive types
-            // retrieved during CFG building.
-            boolean oldShouldCache = factory.shouldCache;
-            factory.shouldCache = false;
-            AnnotatedTypeMirror annotatedIteratorType = factory.getAnnotatedType(iteratorCall);
-            factory.shouldCache = oldShouldCache;
-
-            Tree annotatedIteratorTypeTree =
-                    ((CFTreeBuilder) treeBuilder).buildAnnotatedType(annotatedIteratorType);
-            handleArtificialTree(annotatedIteratorTypeTree);
-
-            // Declare and initialize a new, unique iterator variable
             VariableTree iteratorVariable =
-                    treeBuilder.buildVariableDecl(
-                            annotatedIteratorTypeTree,
-                            uniqueName("iter"),
-                            variableElement.getEnclosingElement(),
-                            iteratorCall);
+                    super.createEnhancedForLoopIteratorVariable(iteratorCall, variableElement);
+            Tree iteratorTypeTree = iteratorVariable.getType();
+            handleArtificialTree(iteratorTypeTree);
+            setVariableType(iteratorTypeTree, iteratorCall);
+            variableTypeTrees.put(iteratorTypeTree, iteratorCall);
             return iteratorVariable;
         }
 
         @Override
         protected VariableTree createEnhancedForLoopArrayVariable(
                 ExpressionTree expression, VariableElement variableElement) {
-            // We do not want to cache flow-insensitive types
-            // retrieved during CFG building.
-            boolean oldShouldCache = factory.shouldCache;
-            factory.shouldCache = false;
-            AnnotatedTypeMirror annotatedArrayType = factory.getAnnotatedType(expression);
-            factory.shouldCache = oldShouldCache;
-
-            assert (annotatedArrayType instanceof AnnotatedTypeMirror.AnnotatedArrayType)
-                    : "ArrayType must be represented by AnnotatedArrayType";
-
-            Tree annotatedArrayTypeTree =
-                    ((CFTreeBuilder) treeBuilder).buildAnnotatedType(annotatedArrayType);
-            handleArtificialTree(annotatedArrayTypeTree);
-
-            // Declare and initialize a temporary array variable
             VariableTree arrayVariable =
-                    treeBuilder.buildVariableDecl(
-                            annotatedArrayTypeTree,
-                            uniqueName("array"),
-                            variableElement.getEnclosingElement(),
-                            expression);
+                    super.createEnhancedForLoopArrayVariable(expression, variableElement);
+            Tree arrayTypeTree = arrayVariable.getType();
+            handleArtificialTree(arrayTypeTree);
+            setVariableType(arrayTypeTree, expression);
+            variableTypeTrees.put(arrayTypeTree, expression);
             return arrayVariable;
         }
     }
@@ -0,0 +1,151 @@
+package org.checkerframework.framework.flow;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.Tree;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.Element;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+
+/**
+ * The control flow graphs of the code in a compilation unit, shared by the {@link CFCFGBuilder}s of
+ * a compound checker and of all its subcheckers, so that the control flow graph of a method,
+ * initializer, or lambda expression is only built once.
+ *
+ * <p>A control flow graph is not modified by the analyses that use it. The parts of it that depend
+ * on the type factory are kept outside the graph, in its {@link Entry}: the artificial trees that
+ * must be passed to {@link
+ * org.checkerframework.framework.type.AnnotatedTypeFactory#setPathHack}, and the type trees of the
+ * variables that the graph declares, whose annotated types each type factory computes itself. A
+ * graph that depends on the checker in another way, because an assert statement mentions
+ * {@code @AssumeAssertion}, is not stored.
+ *
+ * <p>The graph also depends on the declaration annotations of the type factory, which decide which
+ * method invocations terminate the execution. They only differ between type factories that read
+ * different stub files, so a graph is only shared by the type factories whose stub files have the
+ * same {@link org.checkerframework.framework.type.AnnotatedTypeFactory#getStubFilesHash() hash}.
+ *
+ * <p>The store only keeps the graphs of one compilation unit. The graphs of the code of a class
+ * are removed by {@link #release} once all checkers have type-checked the class.
+ */
+public class SharedCFGStore {
+
+    /** A control flow graph, and what a type factory needs to know to use it. */
+    static class Entry {
+        /** The control flow graph. */
+        final ControlFlowGraph cfg;
+
+        /** The classes declared in the code, see {@link CFCFGBuilder#getDeclaredClasses}. */
+        final List<ClassTree> declaredClasses;
+
+        /** The lambda expressions in the code, see {@link CFCFGBuilder#getDeclaredLambdas}. */
+        final List<LambdaExpressionTree> declaredLambdas;
+
+        /** The artificial trees in the graph, and the method or class that encloses each. */
+        final Map<Tree, Element> artificialTrees;
+
+        /**
+         * The type trees of the variables that the graph declares, and the expressions whose types
+         * the variables have.
+         */
+        final Map<Tree, ExpressionTree> variableTypeTrees;
+
+        Entry(
+                ControlFlowGraph cfg,
+                List<ClassTree> declaredClasses,
+                List<LambdaExpressionTree> declaredLambdas,
+                Map<Tree, Element> artificialTrees,
+                Map<Tree, ExpressionTree> variableTypeTrees) {
+            this.cfg = cfg;
+            this.declaredClasses = declaredClasses;
+            this.declaredLambdas = declaredLambdas;
+            this.artificialTrees = artificialTrees;
+            this.variableTypeTrees = variableTypeTrees;
+        }
+    }
+
+    /** The compilation unit of the stored graphs. */
+    private /*@Nullable*/ CompilationUnitTree root = null;
+
+    /**
+     * For the hash of each set of stub files, the graph of each code tree, as returned by {@code
+     * UnderlyingAST.getCode()}.
+     */
+    private final Map<String, Map<Tree, Entry>> entries = new HashMap<>();
+
+    /** The code trees of the members of each class whose graphs are stored. */
+    private final Map<ClassTree, List<Tree>> codeOfClass = new IdentityHashMap<>();
+
+    /**
+     * Returns the graph of {@code code} in the compilation unit {@code root}, if it has been stored
+     * by {@link #put} for the same stub files.
+     */
+    /*package-scope*/ /*@Nullable*/ Entry get(
+            CompilationUnitTree root, String stubFilesHash, Tree code) {
+        if (root != this.root) {
+            return null;
+        }
+        Map<Tree, Entry> graphs = entries.get(stubFilesHash);
+        return graphs == null ? null : graphs.get(code);
+    }
+
+    /**
+     * Stores the graph of {@code code} in the compilation unit {@code root}, and removes the graphs
+     * of other compilation units.
+     *
+     * @param root the compilation unit of {@code code}
+     * @param stubFilesHash the hash of the stub files of the type factory that built the graph
+     * @param classTree the class whose member {@code code} is, or is part of
+     * @param code the code tree of the graph
+     * @param entry the graph
+     */
+    /*package-scope*/ void put(
+            CompilationUnitTree root,
+            String stubFilesHash,
+            /*@Nullable*/ ClassTree classTree,
+            Tree code,
+            Entry entry) {
+        if (root != this.root) {
+            this.root = root;
+            entries.clear();
+            codeOfClass.clear();
+        }
+        Map<Tree, Entry> graphs = entries.get(stubFilesHash);
+        if (graphs == null) {
+            graphs = new IdentityHashMap<>();
+            entries.put(stubFilesHash, graphs);
+        }
+        graphs.put(code, entry);
+        List<Tree> classCode = codeOfClass.get(classTree);
+        if (classCode == null) {
+            classCode = new ArrayList<>();
+            codeOfClass.put(classTree, classCode);
+        }
+        classCode.add(code);
+    }
+
+    /**
+     * Removes the graphs of the members of {@code classTree}. Called after all checkers have
+     * type-checked {@code classTree}.
+     */
+    public void release(ClassTree classTree) {
+        List<Tree> code = codeOfClass.remove(classTree);
+        if (code != null) {
+            for (Map<Tree, Entry> graphs : entries.values()) {
+                for (Tree tree : code) {
+                    graphs.remove(tree);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package org.checkerframework.framework.source;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.tools.Diagnostic.Kind;
+
+/**
+ * Measures the time and memory that the checkers spend in each phase of type-checking, for the
+ * {@code -Aprofile} option.
+ *
+ * <p>The phases are {@link #STUB_PARSING}, {@link #CFG_CONSTRUCTION}, {@link #DATAFLOW}, and
+ * {@link #TYPE_CHECKING} (the visitor). Every measurement is made for one checker, one
+ * compilation unit (or stub file), and one subject: a stub file, a method, or a class. The code
+ * that runs a phase measures it like this:
+ *
+ * <pre>{@code
+ * Profiler.Timer timer = checker.getProfiler().start(checker, Profiler.DATAFLOW, unit, name);
+ * try {
+ *     ...
+ * } finally {
+ *     timer.stop();
+ * }
+ * }</pre>
+ *
+ * Phases nest: for example, the visitor triggers the dataflow analysis of a class, which builds
+ * the control flow graph of each method. For each measurement the profiler records the total
+ * time, including nested phases, and the self time, excluding them. If the JVM supports it, the
+ * bytes allocated by the thread are recorded in the same way. For the {@link #DATAFLOW} phase, the
+ * number of basic blocks that the fix-point iteration visited is recorded as well; see {@link
+ * Timer#addBlockVisits}.
+ *
+ * <p>After the last class has been type-checked, {@link #writeReport} writes:
+ *
+ * <ul>
+ *   <li>the totals of each phase of each checker,
+ *   <li>the totals of each phase of each checker for each compilation unit, and
+ *   <li>the slowest classes and methods,
+ * </ul>
+ *
+ * as JSON or, if the file name given to {@code -Aprofile} ends with {@code .csv}, as CSV. If no
+ * file name is given, the JSON report is issued as a note through the messager of the checker,
+ * so that it does not mix with the output of the compiled program or of other tools. The number
+ * of classes and methods listed is set by {@code -AprofileTop}, and defaults to {@value
+ * #DEFAULT_TOP}.
+ *
+ * <p>The profiler is shared by a checker and all its subcheckers.
+ */
+public class Profiler {
+
+    /** The phase in which the stub files are parsed. */
+    public static final String STUB_PARSING = "stub parsing";
+
+    /** The phase in which the control flow graph of a method, lambda or initializer is built. */
+    public static final String CFG_CONSTRUCTION = "CFG construction";
+
+    /** The phase in which the dataflow analysis of a method, lambda or initializer runs. */
+    public static final String DATAFLOW = "dataflow";
+
+    /** The phase in which the visitor of a checker type-checks a class. */
+    public static final String TYPE_CHECKING = "type-checking";
+
+    /** The number of slowest classes and methods to report, unless -AprofileTop is given. */
+    private static final int DEFAULT_TOP = 20;
+
+    /** The profiler used if the profile option is not given; it does not measure anything. */
+    static final Profiler DISABLED = new Profiler(null, 0, false);
+
+    /** A timer that does not measure anything, returned by a disabled profiler. */
+    private static final Timer NO_TIMER = DISABLED.new Timer(null);
+
+    /**
+     * Returns a profiler for {@code checker}, if the profile option is given; otherwise returns
+     * {@link #DISABLED}.
+     *
+     * @param checker the checker that javac calls
+     * @return a profiler that records measurements, or {@link #DISABLED}
+     */
+    static Profiler create(SourceChecker checker) {
+        if (!checker.hasOption("profile")) {
+            return DISABLED;
+        }
+        int top = DEFAULT_TOP;
+        String topOption = checker.getOption("profileTop");
+        if (topOption != null) {
+            try {
+                top = Integer.parseInt(topOption);
+            } catch (NumberFormatException ex) {
+                checker.userErrorAbort("profileTop was not an integer: " + topOption);
+            }
+        }
+        return new Profiler(checker.getOption("profile"), top, true);
+    }
+
+    /** The file to write the report to, or null to issue it as a note. */
+    private final /*@Nullable*/ String reportFile;
+
+    /** The number of slowest classes and methods to report. */
+    private final int top;
+
+    /** The time at which the profiler was created. */
+    private final long startNanos = System.nanoTime();
+
+    /** The thread MXBean, if it can measure the bytes allocated by a thread; otherwise null. */
+    private final /*@Nullable*/ com.sun.management.ThreadMXBean allocationBean;
+
+    /** The innermost running timer, or null if no timer runs. */
+    private /*@Nullable*/ Timer currentTimer = null;
+
+    /** The measurements of each checker, phase, unit, and subject. Guarded by {@code this}. */
+    private final Map<Key, Stats> stats = new HashMap<>();
+
+    /**
+     * Creates a profiler.
+     *
+     * @param reportFile the file to write the report to, or null to issue it as a note
+     * @param top the number of slowest classes and methods to report
+     * @param enabled whether the profiler records measurements; only false for {@link #DISABLED}
+     */
+    private Profiler(/*@Nullable*/ String reportFile, int top, boolean enabled) {
+        this.reportFile = reportFile;
+        this.top = top;
+        ThreadMXBean bean = enabled ? ManagementFactory.getThreadMXBean() : null;
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemoryEnabled()) {
+            allocationBean = (com.sun.management.ThreadMXBean) bean;
+        } else {
+            allocationBean = null;
+        }
+    }
+
+    /** Returns true if this profiler records measurements. */
+    public boolean isEnabled() {
+        return this != DISABLED;
+    }
+
+    /**
+     * Starts measuring a phase. The returned timer must be stopped before any timer that was
+     * started earlier is stopped.
+     *
+     * @param checker the checker that runs the phase
+     * @param phase the phase, one of the constants of this class
+     * @param unit the name of the compilation unit or stub file being processed
+     * @param name the name of the stub file, class or method being processed
+     * @return a running timer
+     */
+    public Timer start(SourceChecker checker, String phase, String unit, String name) {
+        if (!isEnabled()) {
+            return NO_TIMER;
+        }
+        Timer timer = new Timer(new Key(checker.getClass().getSimpleName(), phase, unit, name));
+        currentTimer = timer;
+        return timer;
+    }
+
+    /** Returns the number of bytes allocated so far by the current thread, or 0 if unknown. */
+    private long allocatedBytes() {
+        return allocationBean == null
+                ? 0
+                : allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** Measures one execution of a phase. */
+    public final class Timer {
+        /** What this timer measures, or null for {@link #NO_TIMER}. */
+        private final /*@Nullable*/ Key key;
+        /** The timer that ran when this timer was started, or null. */
+        private final /*@Nullable*/ Timer parent;
+        /** The time at which this timer was started. */
+        private final long startNanos;
+        /** The bytes allocated by the thread when this timer was started. */
+        private final long startBytes;
+        /** True if the timer runs within a timer for the same checker and phase. */
+        private final boolean nested;
+        /** The total time of the timers that ran within this timer. */
+        private long childNanos = 0;
+        /** The total bytes allocated within the timers that ran within this timer. */
+        private long childBytes = 0;
+        /** The number of basic blocks visited by the dataflow analysis measured by this timer. */
+        private long blockVisits = 0;
+
+        /**
+         * Creates a timer, which starts measuring immediately, or the timer that does not measure
+         * anything.
+         *
+         * @param key what the timer measures, or null for {@link #NO_TIMER}
+         */
+        private Timer(/*@Nullable*/ Key key) {
+            this.key = key;
+            if (key == null) {
+                this.parent = null;
+                this.startNanos = 0;
+                this.startBytes = 0;
+                this.nested = false;
+                return;
+            }
+            this.parent = currentTimer;
+            boolean nested = false;
+            for (Timer t = parent; t != null; t = t.parent) {
+                if (t.key.checker.equals(key.checker) && t.key.phase.equals(key.phase)) {
+                    nested = true;
+                    break;
+                }
+            }
+            this.nested = nested;
+            this.startBytes = allocatedBytes();
+            this.startNanos = System.nanoTime();
+        }
+
+        /**
+         * Records that the dataflow analysis measured by this timer visited {@code visits} basic
+         * blocks.
+         */
+        public void addBlockVisits(long visits) {
+            blockVisits += visits;
+        }
+
+        /** Stops measuring and records the measurement. */
+        public void stop() {
+            if (key == null) {
+                return;
+            }
+            long nanos = System.nanoTime() - startNanos;
+            long bytes = allocatedBytes() - startBytes;
+            currentTimer = parent;
+            if (parent != null) {
+                parent.childNanos += nanos;
+                parent.childBytes += bytes;
+            }
+            record(
+                    key, nanos, nanos - childNanos, bytes, bytes - childBytes, blockVisits, nested);
+        }
+    }
+
+    /**
+     * Adds a measurement to the statistics of {@code key}.
+     *
+     * @param key what was measured
+     * @param nanos the time of the measurement
+     * @param selfNanos the time of the measurement, without the nested measurements
+     * @param bytes the bytes allocated during the measurement
+     * @param selfBytes the bytes allocated during the measurement, without the nested measurements
+     * @param blockVisits the number of basic blocks that the dataflow analysis visited
+     * @param nested true if the measurement ran within one of the same checker and phase
+     */
+    private void record(
+            Key key,
+            long nanos,
+            long selfNanos,
+            long bytes,
+            long selfBytes,
+            long blockVisits,
+            boolean nested) {
+        Stats s = stats.get(key);
+        if (s == null) {
+            s = new Stats(key);
+            stats.put(key, s);
+        }
+        s.add(nanos, selfNanos, bytes, selfBytes, blockVisits, nested);
+    }
+
+    /**
+     * Writes the report to the file given to the profile option or, if no file is given, issues it
+     * as a note. Issues a warning if the file cannot be written.
+     *
+     * @param checker the checker that javac calls
+     */
+    void writeReport(SourceChecker checker) {
+        List<Stats> all = new ArrayList<>(stats.values());
+        long totalNanos = System.nanoTime() - startNanos;
+
+        List<Stats> phases = aggregate(all, false);
+        List<Stats> units = aggregate(all, true);
+        List<Stats> classes = new ArrayList<>();
+        List<Stats> methods = new ArrayList<>();
+        for (Stats s : all) {
+            if (s.key.phase.equals(TYPE_CHECKING)) {
+                classes.add(s);
+            } else if (s.key.phase.equals(CFG_CONSTRUCTION) || s.key.phase.equals(DATAFLOW)) {
+                methods.add(s);
+            }
+        }
+
+        Map<String, List<Stats>> sections = new LinkedHashMap<>();
+        sections.put("phases", sortByTime(phases, Integer.MAX_VALUE));
+        sections.put("compilationUnits", sortByTime(units, Integer.MAX_VALUE));
+        sections.put("slowestClasses", sortByTime(classes, top));
+        sections.put("slowestMethods", sortByTime(methods, top));
+
+        if (reportFile == null) {
+            StringWriter report = new StringWriter();
+            PrintWriter out = new PrintWriter(report);
+            writeJson(out, totalNanos, sections);
+            out.flush();
+            checker.message(Kind.NOTE, "Profile:%n%s", report);
+            return;
+        }
+        PrintWriter out = null;
+        try {
+            out =
+                    new PrintWriter(
+                            new OutputStreamWriter(
+                                    new FileOutputStream(reportFile), StandardCharsets.UTF_8));
+            if (reportFile.endsWith(".csv")) {
+                writeCsv(out, sections);
+            } else {
+                writeJson(out, totalNanos, sections);
+            }
+            out.flush();
+            if (out.checkError()) {
+                throw new IOException("write error");
+            }
+        } catch (IOException e) {
+            checker.message(Kind.WARNING, "Could not write profile to %s", reportFile);
+        } finally {
+            if (out != null) {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * Sums up the measurements of each checker and phase, and also of each compilation unit if
+     * {@code byUnit} is true. Measurements that ran within a measurement of the same checker and
+     * phase only contribute to the self time and bytes, so that no time is counted twice.
+     */
+    private static List<Stats> aggregate(List<Stats> all, boolean byUnit) {
+        Map<Key, Stats> result = new HashMap<>();
+        for (Stats s : all) {
+            Key key = new Key(s.key.checker, s.key.phase, byUnit ? s.key.unit : null, null);
+            Stats sum = result.get(key);
+            if (sum == null) {
+                sum = new Stats(key);
+                result.put(key, sum);
+            }
+            sum.count += s.count;
+            sum.nanos += s.outerNanos;
+            sum.outerNanos += s.outerNanos;
+            sum.selfNanos += s.selfNanos;
+            sum.bytes += s.outerBytes;
+            sum.outerBytes += s.outerBytes;
+            sum.selfBytes += s.selfBytes;
+            sum.blockVisits += s.blockVisits;
+        }
+        return new ArrayList<>(result.values());
+    }
+
+    /** Sorts {@code list} by decreasing total time, and returns at most its first {@code n}. */
+    private static List<Stats> sortByTime(List<Stats> list, int n) {
+        Collections.sort(
+                list,
+                new Comparator<Stats>() {
+                    @Override
+                    public int compare(Stats s1, Stats s2) {
+                        return Long.compare(s2.nanos, s1.nanos);
+                    }
+                });
+        return list.size() <= n ? list : list.subList(0, n);
+    }
+
+    /**
+     * Writes the report as a JSON object with the total time, whether allocation was measured,
+     * and an array for each section.
+     *
+     * @param out where to write the report
+     * @param totalNanos the time since this profiler was created
+     * @param sections the rows of each section of the report, by section name
+     */
+    private void writeJson(PrintWriter out, long totalNanos, Map<String, List<Stats>> sections) {
+        out.println("{");
+        out.println("  \"totalMillis\": " + millis(totalNanos) + ",");
+        out.println("  \"allocationMeasured\": " + (allocationBean != null) + ",");
+        int i = 0;
+        for (Map.Entry<String, List<Stats>> section : sections.entrySet()) {
+            out.println("  \"" + section.getKey() + "\": [");
+            List<Stats> rows = section.getValue();
+            for (int j = 0; j < rows.size(); j++) {
+                Stats s = rows.get(j);
+                StringBuilder sb = new StringBuilder("    {");
+                sb.append("\"checker\": ").append(jsonString(s.key.checker));
+                sb.append(", \"phase\": ").append(jsonString(s.key.phase));
+                if (s.key.unit != null) {
+                    sb.append(", \"unit\": ").append(jsonString(s.key.unit));
+                }
+                if (s.key.name != null) {
+                    sb.append(", \"name\": ").append(jsonString(s.key.name));
+                }
+                sb.append(", \"count\": ").append(s.count);
+                sb.append(", \"totalMillis\": ").append(millis(s.nanos));
+                sb.append(", \"selfMillis\": ").append(millis(s.selfNanos));
+                sb.append(", \"allocatedBytes\": ").append(s.bytes);
+                sb.append(", \"selfAllocatedBytes\": ").append(s.selfBytes);
+                sb.append(", \"blockVisits\": ").append(s.blockVisits);
+                sb.append(j < rows.size() - 1 ? "}," : "}");
+                out.println(sb);
+            }
+            out.println(++i < sections.size() ? "  ]," : "  ]");
+        }
+        out.println("}");
+    }
+
+    /**
+     * Writes the report as CSV, with a header line and one line per row of each section. The
+     * first column is the name of the section.
+     *
+     * @param out where to write the report
+     * @param sections the rows of each section of the report, by section name
+     */
+    private static void writeCsv(PrintWriter out, Map<String, List<Stats>> sections) {
+        out.println(
+                "section,checker,phase,unit,name,count,totalMillis,selfMillis,"
+                        + "allocatedBytes,selfAllocatedBytes,blockVisits");
+        for (Map.Entry<String, List<Stats>> section : sections.entrySet()) {
+            for (Stats s : section.getValue()) {
+                out.println(
+                        section.getKey()
+                                + ","
+                                + csvString(s.key.checker)
+                                + ","
+                                + csvString(s.key.phase)
+                                + ","
+                                + csvString(s.key.unit)
+                                + ","
+                                + csvString(s.key.name)
+                                + ","
+                                + s.count
+                                + ","
+                                + millis(s.nanos)
+                                + ","
+                                + millis(s.selfNanos)
+                                + ","
+                                + s.bytes
+                                + ","
+                                + s.selfBytes
+                                + ","
+                                + s.blockVisits);
+            }
+        }
+    }
+
+    /** Formats {@code nanos} as milliseconds with three decimals. */
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /** Returns {@code s} as a JSON string literal. */
+    private static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Returns {@code s} as a CSV field: quoted if it contains a comma, a quote or a newline, and
+     * empty if it is null.
+     */
+    private static String csvString(/*@Nullable*/ String s) {
+        if (s == null) {
+            return "";
+        }
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+            return s;
+        }
+        return "\"" + s.replace("\"", "\"\"") + "\"";
+    }
+
+    /** What a measurement is about. */
+    private static final class Key {
+        /** The simple name of the class of the checker. */
+        final String checker;
+        /** The phase, one of the constants of {@link Profiler}. */
+        final String phase;
+        /** The compilation unit or stub file, or null for the totals of all units. */
+        final /*@Nullable*/ String unit;
+        /** The stub file, class or method, or null for the totals of a unit or phase. */
+        final /*@Nullable*/ String name;
+
+        Key(
+                String checker,
+                String phase,
+                /*@Nullable*/ String unit,
+                /*@Nullable*/ String name) {
+            this.checker = checker;
+            this.phase = phase;
+            this.unit = unit;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return checker.equals(other.checker)
+                    && phase.equals(other.phase)
+                    && (unit == null ? other.unit == null : unit.equals(other.unit))
+                    && (name == null ? other.name == null : name.equals(other.name));
+        }
+
+        @Override
+        public int hashCode() {
+            int result = 31 * checker.hashCode() + phase.hashCode();
+            result = 31 * result + (unit == null ? 0 : unit.hashCode());
+            return 31 * result + (name == null ? 0 : name.hashCode());
+        }
+    }
+
+    /** The sum of the measurements with the same key. */
+    private static final class Stats {
+        /** What was measured. */
+        final Key key;
+        /** The number of measurements. */
+        int count = 0;
+        /** The total time of the measurements. */
+        long nanos = 0;
+        /** The total time of the measurements, without the nested measurements. */
+        long selfNanos = 0;
+        /** The bytes allocated during the measurements. */
+        long bytes = 0;
+        /** The bytes allocated during the measurements, without the nested measurements. */
+        long selfBytes = 0;
+        /** The number of basic blocks that the measured dataflow analyses visited. */
+        long blockVisits = 0;
+        /** Like nanos, but without measurements nested in the same checker and phase. */
+        long outerNanos = 0;
+        /** Like bytes, but without measurements nested in the same checker and phase. */
+        long outerBytes = 0;
+
+        Stats(Key key) {
+            this.key = key;
+        }
+
+        /** Adds a measurement; see {@link Profiler#record} for the parameters. */
+        void add(
+                long nanos,
+                long selfNanos,
+                long bytes,
+                long selfBytes,
+                long blockVisits,
+                boolean nested) {
+            this.count++;
+            this.blockVisits += blockVisits;
+            this.nanos += nanos;
+            this.selfNanos += selfNanos;
+            this.bytes += bytes;
+            this.selfBytes += selfBytes;
+            if (!nested) {
+                this.outerNanos += nanos;
+                this.outerBytes += bytes;
+            }
+        }
+    }
+}
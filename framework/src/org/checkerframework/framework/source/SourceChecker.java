@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -194,6 +195,33 @@ import org.checkerframework.javacutil.TreeUtils;
     // suppress that warning.
     "showSuppressWarningKeys",
 
+    ///
+    /// Performance
+    ///
+
+    // The order in which the dataflow analysis visits the blocks of a
+    // control flow graph: rpo, roundRobin or scc
+    // org.checkerframework.framework.type.GenericAnnotatedTypeFactory.getIterationStrategy()
+    "flowIteration",
+
+    // Only propagate the values of local variables that are live in the dataflow analysis
+    // org.checkerframework.dataflow.analysis.LiveVariables
+    "sparseFlow",
+
+    // Record the store before every n-th node of a basic block, so that the store at a node
+    // can be computed without analyzing the block from its beginning
+    // org.checkerframework.dataflow.analysis.Analysis.setCheckpointInterval()
+    "flowCheckpointInterval",
+
+    // Only widen at the loop heads of a control flow graph: all or loopHeads
+    // org.checkerframework.dataflow.analysis.Analysis.setWideningAtLoopHeadsOnly()
+    "flowWidening",
+
+    // Narrow the result of a dataflow analysis that widened, with at most the given number
+    // of passes
+    // org.checkerframework.dataflow.analysis.Analysis.narrow()
+    "flowNarrowing",
+
     ///
     /// Partially-annotated libraries
     ///
@@ -201,6 +229,15 @@ import org.checkerframework.javacutil.TreeUtils;
     // Additional stub files to use
     // org.checkerframework.framework.type.AnnotatedTypeFactory.parseStubFiles()
     "stubs",
+    // Directory in which the results of parsing the stub files are cached
+    // across compilations
+    // org.checkerframework.framework.stub.StubCache
+    "stubCacheDir",
+    // Process the declarations of each type in the stub files only when
+    // they are first needed, instead of all of them at startup. The stub
+    // files are still parsed into syntax trees at startup.
+    // org.checkerframework.framework.type.AnnotatedTypeFactory.parseStubFiles()
+    "stubLazyParse",
     // Whether to print warnings about types/members in a stub file
     // that were not found on the class path
     // org.checkerframework.framework.stub.StubParser.warnIfNotFound
@@ -307,11 +344,30 @@ import org.checkerframework.javacutil.TreeUtils;
     // org.checkerframework.framework.source.SourceChecker.shutdownHook()
     "resourceStats",
 
+    // Measure the time and allocation of each phase, and write a JSON or CSV report
+    // to the given file, or to standard output
+    // org.checkerframework.framework.source.Profiler
+    "profile",
+
+    // The number of slowest classes and methods in the report of -Aprofile
+    // org.checkerframework.framework.source.Profiler
+    "profileTop",
+
     // Set the cache size for caches in AnnotatedTypeFactory
     "atfCacheSize",
 
+    // Bound the caches of annotated types in AnnotatedTypeFactory by the total
+    // estimated size of their types rather than by their number
+    "atfCacheWeight",
+
+    // Set the eviction policy of the caches in AnnotatedTypeFactory: lru or frequency
+    "atfCachePolicy",
+
     // Sets AnnotatedTypeFactory shouldCache to false
-    "atfDoNotCache"
+    "atfDoNotCache",
+
+    // Report an error if a type stored in an AnnotatedTypeFactory cache is modified
+    "atfCheckFrozenTypes"
 })
 public abstract class SourceChecker extends AbstractTypeProcessor
         implements ErrorHandler, CFContext, OptionConfiguration {
@@ -810,6 +866,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     public void typeProcessingStart() {
         try {
             super.typeProcessingStart();
+            profiler = Profiler.create(this);
             initChecker();
             if (this.messager == null) {
                 messager = processingEnv.getMessager();
@@ -883,16 +940,54 @@ public abstract class SourceChecker extends AbstractTypeProcessor
     /** Print resource usage statistics */
     protected void printStats() {
         List<MemoryPoolMXBean> memoryPools = ManagementFactory.getMemoryPoolMXBeans();
+        long peakHeapUsage = 0;
         for (MemoryPoolMXBean memoryPool : memoryPools) {
             System.out.println("Memory pool " + memoryPool.getName() + " statistics");
             System.out.println("  Pool type: " + memoryPool.getType());
             System.out.println("  Peak usage: " + memoryPool.getPeakUsage());
+            if (memoryPool.getType() == MemoryType.HEAP) {
+                peakHeapUsage += memoryPool.getPeakUsage().getUsed();
+            }
         }
+        // The pools reach their peaks at different times, so their sum is only an upper bound.
+        System.out.println(
+                "Peak heap usage (upper bound, sum of the pool peaks): "
+                        + (peakHeapUsage >> 10)
+                        + "K");
     }
 
     /** Output the warning about source level at most once. */
     private boolean warnedAboutSourceLevel = false;
 
+    /**
+     * Measures the phases of type-checking, if the profile option is given. Only set for the
+     * checker that javac calls. Do not read this field directly. Instead, retrieve it via {@link
+     * #getProfiler}.
+     */
+    private Profiler profiler = Profiler.DISABLED;
+
+    /**
+     * Returns the profiler that measures the phases of type-checking. It is shared by this checker
+     * and the checkers it is a part of.
+     *
+     * @return the profiler of the checker that javac calls; it does not measure anything unless
+     *     the profile option is given
+     */
+    public Profiler getProfiler() {
+        if (parentChecker != null) {
+            return parentChecker.getProfiler();
+        }
+        return profiler;
+    }
+
+    /** Writes the report of the profile option. */
+    @Override
+    public void typeProcessingEnd() {
+        if (parentChecker == null && profiler.isEnabled()) {
+            profiler.writeReport(this);
+        }
+    }
+
     /**
      * The number of errors at the last exit of the type processor. At entry to the type processor
      * we check whether the current error count is higher and then don't process the file, as it
@@ -965,6 +1060,13 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         }
 
         // Visit the attributed tree.
+        Profiler.Timer timer =
+                getProfiler()
+                        .start(
+                                this,
+                                Profiler.TYPE_CHECKING,
+                                currentRoot.getSourceFile().getName(),
+                                e.getQualifiedName().toString());
         try {
             visitor.visit(p);
         } catch (CheckerError ce) {
@@ -972,6 +1074,7 @@ public abstract class SourceChecker extends AbstractTypeProcessor
         } catch (Throwable t) {
             logCheckerError(wrapThrowableAsCheckerError("SourceChecker.typeProcess", t, p));
         } finally {
+            timer.stop();
             // Also add possibly deferred diagnostics, which will get published back in
             // AbstractTypeProcessor.
             this.errsOnLastExit = log.nerrors;
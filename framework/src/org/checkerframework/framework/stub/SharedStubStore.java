@@ -0,0 +1,200 @@
+package org.checkerframework.framework.stub;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.github.javaparser.ast.StubUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.util.Elements;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BoundedCache;
+import org.checkerframework.javacutil.CollectionUtils;
+
+/**
+ * Data about stub files and declaration annotations that does not depend on the type hierarchy
+ * of a checker, and that is therefore shared by the {@link
+ * org.checkerframework.framework.type.AnnotatedTypeFactory}s of a compound checker and of all its
+ * subcheckers, instead of each factory repeating the same work. The store contains:
+ *
+ * <ul>
+ *   <li>the syntax tree of each stub file, so that a stub file is only parsed into a tree once;
+ *   <li>the declaration annotations in each stub file. Declaration annotations do not belong to
+ *       a type hierarchy, so they are the same for every checker that reads the stub file. Each
+ *       factory only reads the entries of the stub files that it uses itself; and
+ *   <li>the declaration annotations written on the most recently looked up elements, as
+ *       returned by {@link javax.lang.model.util.Elements#getAllAnnotationMirrors}. Unlike the
+ *       data of the stub files, which is bounded by their size, one entry could be added for every
+ *       element of the program, so the least recently used entries are evicted.
+ * </ul>
+ *
+ * The annotated types from stub files are not shared, because they only contain the qualifiers
+ * of the hierarchy of the checker that read them.
+ *
+ * <p>Stub files are identified by their name and contents, so that two different stub files
+ * called jdk.astub are kept apart.
+ *
+ * <p>The results that are shared must not be modified. In particular, the syntax trees are
+ * modified temporarily by {@link StubParser}, so a tree must not be used by two stub parsers at
+ * the same time.
+ */
+public class SharedStubStore {
+
+    /** The name and contents of a stub file. */
+    private static final class StubFileKey {
+        private final String name;
+        private final byte[] contents;
+        private final int hashCode;
+
+        StubFileKey(String name, byte[] contents) {
+            this.name = name;
+            this.contents = contents;
+            this.hashCode = 31 * name.hashCode() + Arrays.hashCode(contents);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof StubFileKey)) {
+                return false;
+            }
+            StubFileKey other = (StubFileKey) o;
+            return hashCode == other.hashCode
+                    && name.equals(other.name)
+                    && Arrays.equals(contents, other.contents);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /** The number of elements whose annotations are kept, unless another size is given. */
+    public static final int DEFAULT_ELEMENT_CACHE_SIZE = 1000;
+
+    private final Elements elements;
+
+    /** The syntax tree of each stub file that has been parsed successfully. */
+    private final Map<StubFileKey, StubUnit> stubUnits = new HashMap<>();
+
+    /**
+     * The declaration annotations in each stub file that has been parsed completely. Keys of the
+     * inner maps are element names, as returned by ElementUtils.getVerboseName.
+     */
+    private final Map<StubFileKey, Map<String, Set<AnnotationMirror>>> declAnnos =
+            new HashMap<>();
+
+    /** The declaration annotations written on the most recently looked up elements. */
+    private final BoundedCache<Element, List<? extends AnnotationMirror>> elementAnnos;
+
+    /**
+     * Creates an empty store that keeps the annotations of at most {@link
+     * #DEFAULT_ELEMENT_CACHE_SIZE} elements.
+     *
+     * @param env the processing environment of the checkers that share the store
+     */
+    public SharedStubStore(ProcessingEnvironment env) {
+        this(env, DEFAULT_ELEMENT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates an empty store.
+     *
+     * @param env the processing environment of the checkers that share the store
+     * @param elementCacheSize the maximum number of elements whose annotations are kept
+     */
+    public SharedStubStore(ProcessingEnvironment env, int elementCacheSize) {
+        this.elements = env.getElementUtils();
+        this.elementAnnos =
+                CollectionUtils.createCache(
+                        "elementAnnotationCache",
+                        elementCacheSize,
+                        null,
+                        BoundedCache.Policy.LRU);
+    }
+
+    /**
+     * Returns the syntax tree of the stub file {@code name} with contents {@code contents}, if it
+     * has been stored by {@link #putStubUnit}.
+     */
+    public /*@Nullable*/ StubUnit getStubUnit(String name, byte[] contents) {
+        return stubUnits.get(new StubFileKey(name, contents));
+    }
+
+    /** Stores the syntax tree of the stub file {@code name} with contents {@code contents}. */
+    public void putStubUnit(String name, byte[] contents, StubUnit stubUnit) {
+        stubUnits.put(new StubFileKey(name, contents), stubUnit);
+    }
+
+    /**
+     * Returns the declaration annotations in the stub file {@code name} with contents {@code
+     * contents}, if they have been stored by {@link #putDeclAnnos}. The result must not be
+     * modified.
+     */
+    public /*@Nullable*/ Map<String, Set<AnnotationMirror>> getDeclAnnos(
+            String name, byte[] contents) {
+        return declAnnos.get(new StubFileKey(name, contents));
+    }
+
+    /**
+     * Stores the declaration annotations in the stub file {@code name} with contents {@code
+     * contents}. The map must not be modified afterwards.
+     */
+    public void putDeclAnnos(
+            String name, byte[] contents, Map<String, Set<AnnotationMirror>> stubDeclAnnos) {
+        declAnnos.put(new StubFileKey(name, contents), stubDeclAnnos);
+    }
+
+    /**
+     * Adds the declaration annotations in {@code from} to {@code to}, like {@link StubParser}
+     * does when it parses another stub file into {@code to}. The sets in {@code to} are copies, so
+     * that they can be modified without changing {@code from}.
+     *
+     * @param from declaration annotations returned by {@link #getDeclAnnos}
+     * @param to the declaration annotations read from stub files by an annotated type factory
+     */
+    public static void addDeclAnnos(
+            Map<String, Set<AnnotationMirror>> from, Map<String, Set<AnnotationMirror>> to) {
+        for (Map.Entry<String, Set<AnnotationMirror>> entry : from.entrySet()) {
+            Set<AnnotationMirror> annos = to.get(entry.getKey());
+            if (annos == null) {
+                annos = AnnotationUtils.createAnnotationSet();
+                to.put(entry.getKey(), annos);
+            }
+            annos.addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the declaration annotations written on {@code elt}, including inherited ones, as
+     * returned by {@link javax.lang.model.util.Elements#getAllAnnotationMirrors}.
+     *
+     * @param elt an element
+     * @return the annotations of {@code elt}; must not be modified
+     */
+    public List<? extends AnnotationMirror> getElementAnnotations(Element elt) {
+        List<? extends AnnotationMirror> annos = elementAnnos.get(elt);
+        if (annos == null) {
+            annos = elements.getAllAnnotationMirrors(elt);
+            elementAnnos.put(elt, annos);
+        }
+        return annos;
+    }
+
+    /**
+     * Returns the cache of the annotations written on elements, whose statistics are printed if
+     * the resourceStats option is given.
+     *
+     * @return the cache used by {@link #getElementAnnotations}
+     */
+    public BoundedCache<?, ?> getElementAnnotationCache() {
+        return elementAnnos;
+    }
+}
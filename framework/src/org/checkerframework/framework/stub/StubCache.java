@@ -0,0 +1,1019 @@
+package org.checkerframework.framework.stub;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import com.sun.tools.javac.processing.JavacProcessingEnvironment;
+import com.sun.tools.javac.util.Context;
+import com.sun.tools.javac.util.Options;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Parameterizable;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.JavaFileManager;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedIntersectionType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedUnionType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.Pair;
+
+/**
+ * A persistent cache of the results of parsing stub files, that is, of the maps from elements to
+ * annotated types and from element names to declaration annotations that {@link StubParser#parse}
+ * produces. The cache is stored in a file in the directory given by the {@code -AstubCacheDir}
+ * option. On a later compilation with the same checker, stub files, options, class path, boot
+ * class path, processor path and JVM, the maps are read from that file instead of parsing the
+ * stub files again.
+ *
+ * <p>Elements and annotated types cannot be stored directly, because they belong to a single
+ * compilation. Instead, the file stores a name for each element, and for each annotated type the
+ * annotations on its component types, in the order in which they are visited by a depth-first
+ * traversal. To load an annotated type, the element is looked up by its name, its annotated type
+ * is created by {@link AnnotatedTypeFactory#fromElement(Element)}, just like {@link StubParser}
+ * does, and the annotations are applied in the same traversal order. If the structure of a type
+ * or the name of an element or annotation does not match, the file is ignored and the stub files
+ * are parsed as usual.
+ *
+ * <p>The file is memory-mapped when it is read. Its format is:
+ *
+ * <ol>
+ *   <li>the {@link #MAGIC} number, the {@link #FORMAT_VERSION}, and the key of the cache: a hash
+ *       of everything that the results depend on
+ *   <li>a table of strings; strings are referenced by their index in this table
+ *   <li>a table of annotations; annotations are referenced by their index in this table
+ *   <li>the declaration annotations
+ *   <li>the annotated types
+ * </ol>
+ */
+public class StubCache {
+
+    /** The first four bytes of a stub cache file. */
+    private static final int MAGIC = 0x43465343;
+
+    /** The version of the file format; incremented whenever the format changes. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The suffix of stub cache files. */
+    private static final String SUFFIX = ".stubcache";
+
+    /** The maximal number of cache files of a checker in the cache directory. */
+    private static final int MAX_CACHE_FILES = 8;
+
+    /** The tag of a null type. */
+    private static final int NULL_TYPE = -1;
+
+    /** The tag of a type that was already visited, followed by its index in visiting order. */
+    private static final int VISITED_TYPE = -2;
+
+    private final SourceChecker checker;
+    private final AnnotatedTypeFactory atypeFactory;
+    private final ProcessingEnvironment processingEnv;
+    private final Elements elements;
+    private final Types types;
+
+    /** The cache file. */
+    private final File file;
+
+    /** The key of the cache: a hash of the stub files and everything else the results depend on. */
+    private final byte[] key;
+
+    /**
+     * Returns the stub cache for the given checker and stub files, or null if the {@code
+     * -AstubCacheDir} option is not given or if a stub file option is given that prints warnings
+     * while parsing.
+     *
+     * @param checker the checker whose stub files are cached
+     * @param atypeFactory the factory that parses the stub files
+     * @param stubFiles the names and contents of the stub files, in the order they are parsed
+     * @return the stub cache, or null if stub files should not be cached
+     */
+    public static /*@Nullable*/ StubCache create(
+            SourceChecker checker,
+            AnnotatedTypeFactory atypeFactory,
+            List<Pair<String, byte[]>> stubFiles) {
+        String dir = checker.getOption("stubCacheDir");
+        if (dir == null
+                || checker.hasOption("stubWarnIfNotFound")
+                || checker.hasOption("stubWarnIfOverwritesBytecode")
+                || checker.hasOption("stubDebug")) {
+            return null;
+        }
+        byte[] key;
+        try {
+            key = computeKey(checker, stubFiles);
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        File file = new File(dir, checker.getClass().getName() + "-" + toHex(key, 8) + SUFFIX);
+        return new StubCache(checker, atypeFactory, file, key);
+    }
+
+    private StubCache(
+            SourceChecker checker, AnnotatedTypeFactory atypeFactory, File file, byte[] key) {
+        this.checker = checker;
+        this.atypeFactory = atypeFactory;
+        this.processingEnv = checker.getProcessingEnvironment();
+        this.elements = processingEnv.getElementUtils();
+        this.types = processingEnv.getTypeUtils();
+        this.file = file;
+        this.key = key;
+    }
+
+    /**
+     * Computes the key of a cache: a hash of the checker, the stub files, the options of the
+     * checker, the class path, boot class path, and processor path of the compilation, and the
+     * version of the JVM.
+     */
+    private static byte[] computeKey(SourceChecker checker, List<Pair<String, byte[]>> stubFiles)
+            throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        update(digest, String.valueOf(FORMAT_VERSION));
+        update(digest, checker.getClass().getName());
+        update(digest, System.getProperty("java.version"));
+        updatePaths(digest, checker.getProcessingEnvironment());
+        for (Map.Entry<String, String> option :
+                new TreeMap<>(checker.getProcessingEnvironment().getOptions()).entrySet()) {
+            update(digest, option.getKey());
+            update(digest, option.getValue());
+        }
+        updateStubFiles(digest, stubFiles);
+        return digest.digest();
+    }
+
+    /**
+     * Returns a hash of the names and contents of {@code stubFiles}, or null if it cannot be
+     * computed. Type factories whose stub files have the same hash read the same stub files, so
+     * they get the same declaration annotations from them.
+     *
+     * @param stubFiles the names and contents of the stub files, in the order they are parsed
+     * @return a hash of {@code stubFiles} in hexadecimal, or null
+     */
+    public static /*@Nullable*/ String hashStubFiles(List<Pair<String, byte[]>> stubFiles) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            return null;
+        }
+        updateStubFiles(digest, stubFiles);
+        byte[] hash = digest.digest();
+        return toHex(hash, hash.length);
+    }
+
+    /** Adds the names and contents of {@code stubFiles} to {@code digest}. */
+    private static void updateStubFiles(
+            MessageDigest digest, List<Pair<String, byte[]>> stubFiles) {
+        for (Pair<String, byte[]> stubFile : stubFiles) {
+            update(digest, stubFile.first);
+            update(digest, String.valueOf(stubFile.second.length));
+            digest.update(stubFile.second);
+        }
+    }
+
+    /** The locations whose contents the annotated types from the stub files depend on. */
+    private static final StandardLocation[] PATH_LOCATIONS = {
+        StandardLocation.PLATFORM_CLASS_PATH,
+        StandardLocation.CLASS_PATH,
+        StandardLocation.ANNOTATION_PROCESSOR_PATH
+    };
+
+    /** The javac options that set the locations in {@link #PATH_LOCATIONS}. */
+    private static final String[] PATH_OPTIONS = {
+        "-classpath",
+        "-bootclasspath",
+        "-Xbootclasspath/p:",
+        "-Xbootclasspath/a:",
+        "-extdirs",
+        "-endorseddirs",
+        "-processorpath"
+    };
+
+    /**
+     * Adds the class path, boot class path, and processor path of the compilation to {@code
+     * digest}, as resolved by the file manager of javac. For each file, such as a jar file, its
+     * size and the time it was last modified are added, so that the cache is not used after a
+     * library has been replaced. For a directory, only its name is added; classes that change in
+     * it are detected when the cache is loaded, if they no longer have the same members.
+     */
+    private static void updatePaths(MessageDigest digest, ProcessingEnvironment env) {
+        Context context = ((JavacProcessingEnvironment) env).getContext();
+        JavaFileManager fileManager = context.get(JavaFileManager.class);
+        if (!(fileManager instanceof StandardJavaFileManager)) {
+            // The paths cannot be resolved; use the options that set them.
+            Options options = Options.instance(context);
+            for (String option : PATH_OPTIONS) {
+                update(digest, option);
+                update(digest, options.get(option));
+            }
+            return;
+        }
+        for (StandardLocation location : PATH_LOCATIONS) {
+            update(digest, location.getName());
+            Iterable<? extends File> path =
+                    ((StandardJavaFileManager) fileManager).getLocation(location);
+            if (path == null) {
+                continue;
+            }
+            for (File file : path) {
+                update(digest, file.getAbsolutePath());
+                if (file.isFile()) {
+                    update(digest, String.valueOf(file.length()));
+                    update(digest, String.valueOf(file.lastModified()));
+                }
+            }
+        }
+    }
+
+    /** Adds {@code s}, which may be null, and a separator to {@code digest}. */
+    private static void update(MessageDigest digest, /*@Nullable*/ String s) {
+        if (s != null) {
+            digest.update(s.getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) 0);
+    }
+
+    /** Returns the first {@code length} bytes of {@code bytes} in hexadecimal. */
+    private static String toHex(byte[] bytes, int length) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            result.append(String.format("%02x", bytes[i]));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reads the contents of a stub file.
+     *
+     * @param in the stream to read; closed by this method
+     * @return the contents of {@code in}
+     */
+    public static byte[] readStubFile(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /** Thrown if a cache file does not match the current compilation. */
+    private static class StaleCacheException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        StaleCacheException(String message) {
+            super(message);
+        }
+    }
+
+    /** Thrown if the results of parsing the stub files cannot be stored. */
+    private static class UnsupportedException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        UnsupportedException(String message) {
+            super(message);
+        }
+    }
+
+    // ***********************************************************************
+    // Loading
+    // ***********************************************************************
+
+    /**
+     * Loads the results of parsing the stub files from the cache file, if it exists and matches
+     * the current compilation.
+     *
+     * @param atypes receives the annotated types from the stub files
+     * @param declAnnos receives the declaration annotations from the stub files
+     * @return true if the results were loaded; false if the stub files have to be parsed. If false
+     *     is returned, {@code atypes} and {@code declAnnos} are unchanged
+     */
+    public boolean load(
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        if (!file.isFile()) {
+            return false;
+        }
+        ByteBuffer buffer;
+        try (FileInputStream in = new FileInputStream(file);
+                FileChannel channel = in.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            return false;
+        }
+        Map<Element, AnnotatedTypeMirror> loadedTypes = new HashMap<>();
+        Map<String, Set<AnnotationMirror>> loadedDeclAnnos = new HashMap<>();
+        try {
+            new Reader(buffer).read(loadedTypes, loadedDeclAnnos);
+        } catch (StaleCacheException | RuntimeException e) {
+            // A RuntimeException, such as a BufferUnderflowException, means that the file is
+            // corrupt. In either case, the stub files are parsed and the file is replaced.
+            return false;
+        }
+        atypes.putAll(loadedTypes);
+        declAnnos.putAll(loadedDeclAnnos);
+        // Mark the file as recently used; see deleteLeastRecentlyUsed.
+        file.setLastModified(System.currentTimeMillis());
+        return true;
+    }
+
+    /** Reads a cache file. */
+    private class Reader {
+        private final ByteBuffer buffer;
+        private String[] strings;
+        private AnnotationMirror[] annotations;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void read(
+                Map<Element, AnnotatedTypeMirror> atypes,
+                Map<String, Set<AnnotationMirror>> declAnnos)
+                throws StaleCacheException {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new StaleCacheException("not a stub cache file of this version");
+            }
+            byte[] fileKey = new byte[key.length];
+            buffer.get(fileKey);
+            if (!Arrays.equals(fileKey, key)) {
+                throw new StaleCacheException("different key");
+            }
+
+            strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            annotations = new AnnotationMirror[buffer.getInt()];
+            for (int i = 0; i < annotations.length; i++) {
+                annotations[i] = readAnnotation();
+            }
+
+            int declAnnosCount = buffer.getInt();
+            for (int i = 0; i < declAnnosCount; i++) {
+                String name = readString();
+                declAnnos.put(name, readAnnotationSet());
+            }
+
+            int typesCount = buffer.getInt();
+            for (int i = 0; i < typesCount; i++) {
+                Element elt = resolveElement(readString());
+                AnnotatedTypeMirror type = createType(elt);
+                readType(type, new IdentityHashMap<AnnotatedTypeMirror, Integer>());
+                atypes.put(elt, type);
+            }
+        }
+
+        String readString() {
+            return strings[buffer.getInt()];
+        }
+
+        Set<AnnotationMirror> readAnnotationSet() {
+            Set<AnnotationMirror> result = AnnotationUtils.createAnnotationSet();
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                result.add(annotations[buffer.getInt()]);
+            }
+            return result;
+        }
+
+        AnnotationMirror readAnnotation() throws StaleCacheException {
+            String name = readString();
+            if (elements.getTypeElement(name) == null) {
+                throw new StaleCacheException("annotation not found: " + name);
+            }
+            AnnotationBuilder builder = new AnnotationBuilder(processingEnv, name);
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                String elementName = readString();
+                Object value = readValue();
+                if (value instanceof List) {
+                    builder.setValue(elementName, (List<?>) value);
+                } else if (value instanceof Boolean) {
+                    builder.setValue(elementName, (Boolean) value);
+                } else if (value instanceof Character) {
+                    builder.setValue(elementName, (Character) value);
+                } else if (value instanceof Short) {
+                    builder.setValue(elementName, (Short) value);
+                } else if (value instanceof Integer) {
+                    builder.setValue(elementName, (Integer) value);
+                } else if (value instanceof Long) {
+                    builder.setValue(elementName, (Long) value);
+                } else if (value instanceof Float) {
+                    builder.setValue(elementName, (Float) value);
+                } else if (value instanceof Double) {
+                    builder.setValue(elementName, (Double) value);
+                } else if (value instanceof String) {
+                    builder.setValue(elementName, (String) value);
+                } else if (value instanceof VariableElement) {
+                    builder.setValue(elementName, (VariableElement) value);
+                } else if (value instanceof TypeMirror) {
+                    builder.setValue(elementName, (TypeMirror) value);
+                } else {
+                    builder.setValue(elementName, (AnnotationMirror) value);
+                }
+            }
+            return builder.build();
+        }
+
+        Object readValue() throws StaleCacheException {
+            byte tag = buffer.get();
+            switch (tag) {
+                case 'Z':
+                    return buffer.get() != 0;
+                case 'C':
+                    return buffer.getChar();
+                case 'S':
+                    return buffer.getShort();
+                case 'I':
+                    return buffer.getInt();
+                case 'J':
+                    return buffer.getLong();
+                case 'F':
+                    return buffer.getFloat();
+                case 'D':
+                    return buffer.getDouble();
+                case 's':
+                    return readString();
+                case 'e':
+                    {
+                        TypeElement enumType = resolveType(readString());
+                        String constant = readString();
+                        for (VariableElement field :
+                                ElementFilter.fieldsIn(enumType.getEnclosedElements())) {
+                            if (field.getSimpleName().contentEquals(constant)) {
+                                return field;
+                            }
+                        }
+                        throw new StaleCacheException("enum constant not found: " + constant);
+                    }
+                case 'c':
+                    return resolveType(readString()).asType();
+                case '@':
+                    return annotations[buffer.getInt()];
+                case '[':
+                    {
+                        int count = buffer.getInt();
+                        List<Object> values = new ArrayList<>(count);
+                        for (int i = 0; i < count; i++) {
+                            values.add(readValue());
+                        }
+                        return values;
+                    }
+                default:
+                    throw new StaleCacheException("unknown value tag: " + tag);
+            }
+        }
+
+        /**
+         * Applies the annotations that were stored for {@code type} and its component types,
+         * visiting them in the same order as {@link Writer#writeType}.
+         */
+        void readType(
+                /*@Nullable*/ AnnotatedTypeMirror type,
+                IdentityHashMap<AnnotatedTypeMirror, Integer> visited)
+                throws StaleCacheException {
+            int tag = buffer.getInt();
+            if (type == null) {
+                if (tag != NULL_TYPE) {
+                    throw new StaleCacheException("missing component type");
+                }
+                return;
+            }
+            Integer index = visited.get(type);
+            if (index != null) {
+                if (tag != VISITED_TYPE || buffer.getInt() != index) {
+                    throw new StaleCacheException("different structure of type " + type);
+                }
+                return;
+            }
+            if (tag != type.getKind().ordinal()) {
+                throw new StaleCacheException("different kind of type " + type);
+            }
+            visited.put(type, visited.size());
+
+            // The stored annotations replace those of the same hierarchies, but the annotations
+            // of the type in other hierarchies are kept.
+            type.replaceAnnotations(readAnnotationSet());
+            if (type.getKind() == TypeKind.DECLARED && buffer.get() != 0) {
+                // The supertypes were initialized and possibly annotated.
+                ((AnnotatedDeclaredType) type).directSuperTypes();
+            }
+            List<AnnotatedTypeMirror> components = components(type);
+            if (buffer.getInt() != components.size()) {
+                throw new StaleCacheException("different number of components of " + type);
+            }
+            for (AnnotatedTypeMirror component : components) {
+                readType(component, visited);
+            }
+        }
+    }
+
+    /** Looks up an element by the name that {@link #elementName} computed. */
+    private Element resolveElement(String name) throws StaleCacheException {
+        switch (name.charAt(0)) {
+            case 'T':
+                return resolveType(name.substring(1));
+            case 'F':
+                {
+                    int hash = name.indexOf('#');
+                    TypeElement owner = resolveType(name.substring(1, hash));
+                    String field = name.substring(hash + 1);
+                    for (VariableElement elt :
+                            ElementFilter.fieldsIn(owner.getEnclosedElements())) {
+                        if (elt.getSimpleName().contentEquals(field)) {
+                            return elt;
+                        }
+                    }
+                    break;
+                }
+            case 'M':
+                {
+                    int hash = name.indexOf('#');
+                    TypeElement owner = resolveType(name.substring(1, hash));
+                    List<ExecutableElement> executables = new ArrayList<>();
+                    executables.addAll(ElementFilter.methodsIn(owner.getEnclosedElements()));
+                    executables.addAll(ElementFilter.constructorsIn(owner.getEnclosedElements()));
+                    String signature = name.substring(hash + 1);
+                    for (ExecutableElement elt : executables) {
+                        if (signature.equals(signature(elt))) {
+                            return elt;
+                        }
+                    }
+                    break;
+                }
+            case 'P':
+                {
+                    int colon = name.indexOf(':');
+                    int index = Integer.parseInt(name.substring(1, colon));
+                    Element generic = resolveElement(name.substring(colon + 1));
+                    List<? extends TypeParameterElement> typeParameters =
+                            ((Parameterizable) generic).getTypeParameters();
+                    if (index < typeParameters.size()) {
+                        return typeParameters.get(index);
+                    }
+                    break;
+                }
+            default:
+                break;
+        }
+        throw new StaleCacheException("element not found: " + name);
+    }
+
+    /** Looks up a type element by its qualified name. */
+    private TypeElement resolveType(String name) throws StaleCacheException {
+        TypeElement elt = elements.getTypeElement(name);
+        if (elt == null) {
+            throw new StaleCacheException("type not found: " + name);
+        }
+        return elt;
+    }
+
+    /**
+     * Creates the annotated type of {@code elt} the same way as {@link StubParser}, that is, before
+     * any annotations from stub files are applied.
+     */
+    private AnnotatedTypeMirror createType(Element elt) throws StaleCacheException {
+        if (elt instanceof TypeParameterElement) {
+            Element generic = ((TypeParameterElement) elt).getGenericElement();
+            int index = ((Parameterizable) generic).getTypeParameters().indexOf(elt);
+            AnnotatedTypeMirror genericType = atypeFactory.fromElement(generic);
+            List<? extends AnnotatedTypeMirror> typeVariables;
+            if (genericType.getKind() == TypeKind.EXECUTABLE) {
+                typeVariables = ((AnnotatedExecutableType) genericType).getTypeVariables();
+            } else {
+                typeVariables = ((AnnotatedDeclaredType) genericType).getTypeArguments();
+            }
+            if (index < 0 || index >= typeVariables.size()) {
+                throw new StaleCacheException("type parameter not found: " + elt);
+            }
+            return typeVariables.get(index);
+        }
+        return atypeFactory.fromElement(elt);
+    }
+
+    // ***********************************************************************
+    // Storing
+    // ***********************************************************************
+
+    /**
+     * Stores the results of parsing the stub files in the cache file. If there are more than
+     * {@link #MAX_CACHE_FILES} cache files of the checker in the directory, the least recently
+     * used ones are deleted. Does nothing if the results cannot be stored, for example because an
+     * annotation has a value that cannot be stored.
+     *
+     * @param atypes the annotated types from the stub files
+     * @param declAnnos the declaration annotations from the stub files
+     */
+    public void store(
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        byte[] contents;
+        try {
+            contents = new Writer().write(atypes, declAnnos);
+        } catch (UnsupportedException | IOException e) {
+            // Without a cache file, the stub files are simply parsed every time.
+            return;
+        }
+
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            checker.message(Kind.NOTE, "Could not create stub cache directory: " + dir);
+            return;
+        }
+        // Write to a temporary file first, so that concurrent compilations never read a partial
+        // file.
+        try {
+            File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                out.write(contents);
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException e) {
+            checker.message(Kind.NOTE, "Could not write stub cache: " + file);
+        }
+        deleteLeastRecentlyUsed(dir);
+    }
+
+    /**
+     * Deletes the least recently used cache files of the checker in {@code dir}, so that at most
+     * {@link #MAX_CACHE_FILES} are left. A cache file is used when it is written or loaded. Other
+     * compilations that share the directory, for example with other class paths, keep their
+     * cache files unless the directory holds too many of them.
+     */
+    private void deleteLeastRecentlyUsed(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        String prefix = checker.getClass().getName() + "-";
+        List<File> cacheFiles = new ArrayList<>();
+        for (File cacheFile : files) {
+            String name = cacheFile.getName();
+            if (name.startsWith(prefix) && name.endsWith(SUFFIX)) {
+                cacheFiles.add(cacheFile);
+            }
+        }
+        if (cacheFiles.size() <= MAX_CACHE_FILES) {
+            return;
+        }
+        final Map<File, Long> lastModified = new HashMap<>();
+        for (File cacheFile : cacheFiles) {
+            lastModified.put(cacheFile, cacheFile.lastModified());
+        }
+        Collections.sort(
+                cacheFiles,
+                new Comparator<File>() {
+                    @Override
+                    public int compare(File f1, File f2) {
+                        // Most recently used first.
+                        return Long.compare(lastModified.get(f2), lastModified.get(f1));
+                    }
+                });
+        for (File oldFile : cacheFiles.subList(MAX_CACHE_FILES, cacheFiles.size())) {
+            if (!oldFile.equals(file)) {
+                oldFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the name of an element that is a key of the annotated types of stub files. The name
+     * of a type is "T" followed by its qualified name, that of a field is "F" followed by the name
+     * of its type, "#", and its name, that of a method or constructor is "M" followed by the name
+     * of its type, "#", its name and its erased parameter types, and that of a type parameter is
+     * "P" followed by its index, ":" and the name of the generic element.
+     */
+    private String elementName(Element elt) throws UnsupportedException {
+        switch (elt.getKind()) {
+            case CLASS:
+            case INTERFACE:
+            case ENUM:
+            case ANNOTATION_TYPE:
+                return "T" + typeName((TypeElement) elt);
+            case FIELD:
+            case ENUM_CONSTANT:
+                return "F"
+                        + typeName((TypeElement) elt.getEnclosingElement())
+                        + "#"
+                        + elt.getSimpleName();
+            case METHOD:
+            case CONSTRUCTOR:
+                return "M"
+                        + typeName((TypeElement) elt.getEnclosingElement())
+                        + "#"
+                        + signature((ExecutableElement) elt);
+            case TYPE_PARAMETER:
+                {
+                    Element generic = ((TypeParameterElement) elt).getGenericElement();
+                    int index = ((Parameterizable) generic).getTypeParameters().indexOf(elt);
+                    return "P" + index + ":" + elementName(generic);
+                }
+            default:
+                throw new UnsupportedException("element kind " + elt.getKind() + ": " + elt);
+        }
+    }
+
+    /** Returns the name and the erased parameter types of {@code elt}. */
+    private String signature(ExecutableElement elt) {
+        StringBuilder result = new StringBuilder();
+        result.append(elt.getSimpleName()).append('(');
+        String sep = "";
+        for (VariableElement param : elt.getParameters()) {
+            result.append(sep).append(types.erasure(param.asType()));
+            sep = ",";
+        }
+        return result.append(')').toString();
+    }
+
+    /** Returns the qualified name of {@code elt}, which must not be a local or anonymous type. */
+    private static String typeName(TypeElement elt) throws UnsupportedException {
+        if (elt.getQualifiedName().length() == 0) {
+            throw new UnsupportedException("type without a qualified name: " + elt);
+        }
+        return elt.getQualifiedName().toString();
+    }
+
+    /**
+     * Returns the component types of {@code type} in the order in which they are stored. Only the
+     * supertypes of a declared type are not included; they are stored separately, because they
+     * are lazily initialized.
+     */
+    private static List<AnnotatedTypeMirror> components(AnnotatedTypeMirror type) {
+        List<AnnotatedTypeMirror> components = new ArrayList<>();
+        switch (type.getKind()) {
+            case DECLARED:
+                AnnotatedDeclaredType declared = (AnnotatedDeclaredType) type;
+                components.add(declared.getEnclosingType());
+                components.addAll(declared.getTypeArguments());
+                if (declared.directSuperTypesField() != null) {
+                    components.addAll(declared.directSuperTypesField());
+                }
+                break;
+            case EXECUTABLE:
+                AnnotatedExecutableType executable = (AnnotatedExecutableType) type;
+                components.add(executable.getReceiverType());
+                components.add(executable.getReturnType());
+                components.addAll(executable.getParameterTypes());
+                components.addAll(executable.getThrownTypes());
+                components.addAll(executable.getTypeVariables());
+                break;
+            case ARRAY:
+                components.add(((AnnotatedArrayType) type).getComponentType());
+                break;
+            case TYPEVAR:
+                AnnotatedTypeVariable typeVar = (AnnotatedTypeVariable) type;
+                components.add(typeVar.getUpperBound());
+                components.add(typeVar.getLowerBound());
+                break;
+            case WILDCARD:
+                AnnotatedWildcardType wildcard = (AnnotatedWildcardType) type;
+                components.add(wildcard.getExtendsBound());
+                components.add(wildcard.getSuperBound());
+                break;
+            case INTERSECTION:
+                components.addAll(((AnnotatedIntersectionType) type).directSuperTypes());
+                break;
+            case UNION:
+                components.addAll(((AnnotatedUnionType) type).getAlternatives());
+                break;
+            default:
+                break;
+        }
+        return components;
+    }
+
+    /** Writes a cache file. */
+    private class Writer {
+        private final Map<String, Integer> stringIndexes = new HashMap<>();
+        private final ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        private final DataOutputStream stringTable = new DataOutputStream(stringBytes);
+
+        private final Map<AnnotationMirror, Integer> annotationIndexes =
+                AnnotationUtils.createAnnotationMap();
+        private final ByteArrayOutputStream annotationBytes = new ByteArrayOutputStream();
+        private final DataOutputStream annotationTable = new DataOutputStream(annotationBytes);
+
+        byte[] write(
+                Map<Element, AnnotatedTypeMirror> atypes,
+                Map<String, Set<AnnotationMirror>> declAnnos)
+                throws UnsupportedException, IOException {
+            ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+            DataOutputStream body = new DataOutputStream(bodyBytes);
+
+            body.writeInt(declAnnos.size());
+            for (Map.Entry<String, Set<AnnotationMirror>> entry : declAnnos.entrySet()) {
+                writeString(body, entry.getKey());
+                writeAnnotationSet(body, entry.getValue());
+            }
+
+            body.writeInt(atypes.size());
+            for (Map.Entry<Element, AnnotatedTypeMirror> entry : atypes.entrySet()) {
+                writeString(body, elementName(entry.getKey()));
+                writeType(
+                        body,
+                        entry.getValue(),
+                        new IdentityHashMap<AnnotatedTypeMirror, Integer>());
+            }
+
+            ByteArrayOutputStream resultBytes = new ByteArrayOutputStream();
+            DataOutputStream result = new DataOutputStream(resultBytes);
+            result.writeInt(MAGIC);
+            result.writeInt(FORMAT_VERSION);
+            result.write(key);
+            result.writeInt(stringIndexes.size());
+            stringBytes.writeTo(result);
+            result.writeInt(annotationIndexes.size());
+            annotationBytes.writeTo(result);
+            bodyBytes.writeTo(result);
+            result.flush();
+            return resultBytes.toByteArray();
+        }
+
+        void writeString(DataOutputStream out, String s) throws IOException {
+            Integer index = stringIndexes.get(s);
+            if (index == null) {
+                index = stringIndexes.size();
+                stringIndexes.put(s, index);
+                byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+                stringTable.writeInt(bytes.length);
+                stringTable.write(bytes);
+            }
+            out.writeInt(index);
+        }
+
+        void writeAnnotationSet(DataOutputStream out, Set<AnnotationMirror> annos)
+                throws UnsupportedException, IOException {
+            out.writeInt(annos.size());
+            for (AnnotationMirror anno : annos) {
+                out.writeInt(annotationIndex(anno));
+            }
+        }
+
+        /**
+         * Returns the index of {@code anno} in the annotation table, adding it and the annotations
+         * in its values first if necessary.
+         */
+        int annotationIndex(AnnotationMirror anno) throws UnsupportedException, IOException {
+            Integer index = annotationIndexes.get(anno);
+            if (index != null) {
+                return index;
+            }
+            ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+            DataOutputStream record = new DataOutputStream(recordBytes);
+            writeString(record, AnnotationUtils.annotationName(anno));
+            Map<? extends ExecutableElement, ? extends AnnotationValue> values =
+                    anno.getElementValues();
+            record.writeInt(values.size());
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                    values.entrySet()) {
+                writeString(record, entry.getKey().getSimpleName().toString());
+                writeValue(record, entry.getValue().getValue());
+            }
+            // Nested annotations were added to the table by writeValue, so they precede anno.
+            index = annotationIndexes.size();
+            annotationIndexes.put(anno, index);
+            recordBytes.writeTo(annotationTable);
+            return index;
+        }
+
+        void writeValue(DataOutputStream out, Object value)
+                throws UnsupportedException, IOException {
+            if (value instanceof Boolean) {
+                out.writeByte('Z');
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Character) {
+                out.writeByte('C');
+                out.writeChar((Character) value);
+            } else if (value instanceof Short) {
+                out.writeByte('S');
+                out.writeShort((Short) value);
+            } else if (value instanceof Integer) {
+                out.writeByte('I');
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte('J');
+                out.writeLong((Long) value);
+            } else if (value instanceof Float) {
+                out.writeByte('F');
+                out.writeFloat((Float) value);
+            } else if (value instanceof Double) {
+                out.writeByte('D');
+                out.writeDouble((Double) value);
+            } else if (value instanceof String) {
+                out.writeByte('s');
+                writeString(out, (String) value);
+            } else if (value instanceof VariableElement) {
+                VariableElement constant = (VariableElement) value;
+                out.writeByte('e');
+                writeString(out, typeName((TypeElement) constant.getEnclosingElement()));
+                writeString(out, constant.getSimpleName().toString());
+            } else if (value instanceof TypeMirror
+                    && ((TypeMirror) value).getKind() == TypeKind.DECLARED) {
+                out.writeByte('c');
+                writeString(out, typeName((TypeElement) ((DeclaredType) value).asElement()));
+            } else if (value instanceof AnnotationMirror) {
+                int index = annotationIndex((AnnotationMirror) value);
+                out.writeByte('@');
+                out.writeInt(index);
+            } else if (value instanceof List) {
+                List<?> values = (List<?>) value;
+                out.writeByte('[');
+                out.writeInt(values.size());
+                for (Object v : values) {
+                    writeValue(out, ((AnnotationValue) v).getValue());
+                }
+            } else {
+                throw new UnsupportedException("annotation value " + value);
+            }
+        }
+
+        /**
+         * Writes the annotations on {@code type} and its component types, in depth-first order.
+         * A type that was already visited is written as a reference to its index in visiting
+         * order, so that recursive types are handled.
+         */
+        void writeType(
+                DataOutputStream out,
+                /*@Nullable*/ AnnotatedTypeMirror type,
+                IdentityHashMap<AnnotatedTypeMirror, Integer> visited)
+                throws UnsupportedException, IOException {
+            if (type == null) {
+                out.writeInt(NULL_TYPE);
+                return;
+            }
+            Integer index = visited.get(type);
+            if (index != null) {
+                out.writeInt(VISITED_TYPE);
+                out.writeInt(index);
+                return;
+            }
+            out.writeInt(type.getKind().ordinal());
+            visited.put(type, visited.size());
+
+            writeAnnotationSet(out, type.getAnnotations());
+            if (type.getKind() == TypeKind.DECLARED) {
+                out.writeBoolean(((AnnotatedDeclaredType) type).directSuperTypesField() != null);
+            }
+            List<AnnotatedTypeMirror> components = components(type);
+            out.writeInt(components.size());
+            for (AnnotatedTypeMirror component : components) {
+                writeType(out, component, visited);
+            }
+        }
+    }
+}
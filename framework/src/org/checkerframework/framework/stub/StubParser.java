@@ -43,6 +43,7 @@ import com.github.javaparser.ast.type.ReferenceType;
 import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.ast.type.TypeParameter;
 import com.github.javaparser.ast.type.WildcardType;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -157,6 +158,35 @@ public class StubParser {
             InputStream inputStream,
             AnnotatedTypeFactory factory,
             ProcessingEnvironment env) {
+        this(filename, inputStream, null, null, factory, env);
+    }
+
+    /**
+     * Creates a stub parser that reuses the syntax tree of the stub file from {@code store}, if
+     * the stub parser of another checker has parsed the same stub file already.
+     *
+     * @param filename name of stub file
+     * @param contents contents of stub file
+     * @param factory AnnotatedtypeFactory to use
+     * @param env ProcessingEnviroment to use
+     * @param store the store shared with the other checkers
+     */
+    public StubParser(
+            String filename,
+            byte[] contents,
+            AnnotatedTypeFactory factory,
+            ProcessingEnvironment env,
+            SharedStubStore store) {
+        this(filename, new ByteArrayInputStream(contents), contents, store, factory, env);
+    }
+
+    private StubParser(
+            String filename,
+            InputStream inputStream,
+            byte /*@Nullable*/ [] contents,
+            /*@Nullable*/ SharedStubStore store,
+            AnnotatedTypeFactory factory,
+            ProcessingEnvironment env) {
         this.filename = filename;
         this.atypeFactory = factory;
         this.processingEnv = env;
@@ -173,6 +203,36 @@ public class StubParser {
         if (debugStubParser) {
             stubDebug(String.format("parsing stub file %s", filename));
         }
+        StubUnit parsedStubUnit = (store == null ? null : store.getStubUnit(filename, contents));
+        if (parsedStubUnit == null) {
+            parsedStubUnit = parseStubUnit(inputStream);
+            if (store != null && parsedStubUnit != null) {
+                store.putStubUnit(filename, contents, parsedStubUnit);
+            }
+        }
+        this.stubUnit = parsedStubUnit;
+
+        // getSupportedAnnotations also modifies importedConstants and importedTypes. This should
+        // be refactored to be nicer.
+        supportedAnnotations = getSupportedAnnotations();
+        if (parsedStubUnit != null && supportedAnnotations.isEmpty()) {
+            stubWarnIfNotFound(
+                    String.format(
+                            "No supported annotations found! This likely means stub file %s doesn't import them correctly.",
+                            filename));
+        }
+        faexprcache = new HashMap<FieldAccessExpr, VariableElement>();
+        nexprcache = new HashMap<NameExpr, VariableElement>();
+
+        this.fromStubFile = AnnotationBuilder.fromClass(elements, FromStubFile.class);
+    }
+
+    /**
+     * Parses the stub file into a syntax tree.
+     *
+     * @return the syntax tree, or null if the stub file could not be parsed
+     */
+    private /*@Nullable*/ StubUnit parseStubUnit(InputStream inputStream) {
         StubUnit parsedStubUnit;
         try {
             parsedStubUnit = JavaParser.parseStubUnit(inputStream);
@@ -203,21 +263,7 @@ public class StubParser {
                             + e.getMessage());
             parsedStubUnit = null;
         }
-        this.stubUnit = parsedStubUnit;
-
-        // getSupportedAnnotations also modifies importedConstants and importedTypes. This should
-        // be refactored to be nicer.
-        supportedAnnotations = getSupportedAnnotations();
-        if (parsedStubUnit != null && supportedAnnotations.isEmpty()) {
-            stubWarnIfNotFound(
-                    String.format(
-                            "No supported annotations found! This likely means stub file %s doesn't import them correctly.",
-                            filename));
-        }
-        faexprcache = new HashMap<FieldAccessExpr, VariableElement>();
-        nexprcache = new HashMap<NameExpr, VariableElement>();
-
-        this.fromStubFile = AnnotationBuilder.fromClass(elements, FromStubFile.class);
+        return parsedStubUnit;
     }
 
     /** All annotations defined in the package. Keys are simple names. */
@@ -375,10 +421,20 @@ public class StubParser {
         }
     }
 
-    /** The main entry point. Side-effects the arguments. */
+    /** Returns the name of the stub file that this parser reads. */
+    public String getFilename() {
+        return filename;
+    }
+
+    /**
+     * The main entry point. Side-effects the arguments.
+     *
+     * <p>If {@code declAnnos} is null, only the annotated types are parsed; that is useful if the
+     * declaration annotations of the stub file are known already.
+     */
     public void parse(
             Map<Element, AnnotatedTypeMirror> atypes,
-            Map<String, Set<AnnotationMirror>> declAnnos) {
+            /*@Nullable*/ Map<String, Set<AnnotationMirror>> declAnnos) {
         if (stubUnit == null) {
             // stubUnit is null if there was a problem parsing the astub file
             return;
@@ -420,6 +476,84 @@ public class StubParser {
         }
     }
 
+    /**
+     * The top-level type declarations of the stub file that have not been processed yet, keyed by
+     * fully-qualified type name. Null unless {@link #parseIndex} has been called.
+     */
+    private Map<String, List<Pair<CompilationUnit, TypeDeclaration<?>>>> unparsedTypes;
+
+    /**
+     * An alternative entry point to {@link #parse(Map, Map)}, which only processes the package
+     * declarations of the stub file. The type declarations are processed later, one top-level type
+     * at a time, by {@link #parseType(String, Map, Map)}. Side-effects the arguments.
+     *
+     * <p>Only the processing is deferred: the whole stub file has already been parsed into {@link
+     * #stubUnit} by the constructor, and the syntax tree stays reachable, because it may be shared
+     * with the stub parsers of other checkers.
+     *
+     * @return the fully-qualified names of the top-level types declared in the stub file
+     */
+    public Set<String> parseIndex(
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        unparsedTypes = new LinkedHashMap<>();
+        if (stubUnit == null) {
+            // stubUnit is null if there was a problem parsing the astub file
+            return unparsedTypes.keySet();
+        }
+        for (CompilationUnit cu : stubUnit.getCompilationUnits()) {
+            theCompilationUnit = cu;
+            String packageName = null;
+            if (cu.getPackageDeclaration().isPresent()) {
+                packageName = cu.getPackageDeclaration().get().getNameAsString();
+                parsePackage(cu.getPackageDeclaration().get(), atypes, declAnnos);
+            }
+            if (cu.getTypes() != null) {
+                for (TypeDeclaration<?> typeDecl : cu.getTypes()) {
+                    String typeName =
+                            (packageName == null ? "" : packageName + ".")
+                                    + typeDecl.getNameAsString();
+                    List<Pair<CompilationUnit, TypeDeclaration<?>>> decls =
+                            unparsedTypes.get(typeName);
+                    if (decls == null) {
+                        decls = new ArrayList<>();
+                        unparsedTypes.put(typeName, decls);
+                    }
+                    decls.add(Pair.<CompilationUnit, TypeDeclaration<?>>of(cu, typeDecl));
+                }
+            }
+        }
+        return unparsedTypes.keySet();
+    }
+
+    /**
+     * Processes the declarations of the top-level type {@code typeName}, and of the types nested
+     * in it, if the stub file contains them and they have not been processed already.
+     * Side-effects the arguments. {@link #parseIndex} must have been called first.
+     *
+     * @param typeName the fully-qualified name of a top-level type
+     */
+    public void parseType(
+            String typeName,
+            Map<Element, AnnotatedTypeMirror> atypes,
+            Map<String, Set<AnnotationMirror>> declAnnos) {
+        List<Pair<CompilationUnit, TypeDeclaration<?>>> decls = unparsedTypes.remove(typeName);
+        if (decls == null) {
+            return;
+        }
+        for (Pair<CompilationUnit, TypeDeclaration<?>> decl : decls) {
+            CompilationUnit cu = decl.first;
+            theCompilationUnit = cu;
+            String packageName = null;
+            List<AnnotationExpr> packageAnnos = null;
+            if (cu.getPackageDeclaration().isPresent()) {
+                packageName = cu.getPackageDeclaration().get().getNameAsString();
+                packageAnnos = cu.getPackageDeclaration().get().getAnnotations();
+            }
+            parse(decl.second, packageName, packageAnnos, atypes, declAnnos);
+        }
+    }
+
     private void parsePackage(
             PackageDeclaration packDecl,
             Map<Element, AnnotatedTypeMirror> atypes,
@@ -664,60 +798,72 @@ public class StubParser {
         NodeList<AnnotationExpr> list = decl.getType().getAnnotations();
         decl.getType().setAnnotations(decl.getAnnotations());
         decl.setAnnotations(list);
+        try {
+            annotateDecl(declAnnos, elt, decl.getAnnotations());
+            // StubParser parses all annotations in type annotation position as type annotations
+            annotateDecl(declAnnos, elt, decl.getType().getAnnotations());
+            addDeclAnnotations(declAnnos, elt);
+
+            AnnotatedExecutableType methodType = atypeFactory.fromElement(elt);
+            annotateTypeParameters(
+                    decl, elt, atypes, methodType.getTypeVariables(), decl.getTypeParameters());
+            typeParameters.addAll(methodType.getTypeVariables());
+            annotate(methodType.getReturnType(), decl.getType());
+
+            List<Parameter> params = decl.getParameters();
+            List<? extends VariableElement> paramElts = elt.getParameters();
+            List<? extends AnnotatedTypeMirror> paramTypes = methodType.getParameterTypes();
+
+            for (int i = 0; i < methodType.getParameterTypes().size(); ++i) {
+                VariableElement paramElt = paramElts.get(i);
+                AnnotatedTypeMirror paramType = paramTypes.get(i);
+                Parameter param = params.get(i);
+
+                annotateDecl(declAnnos, paramElt, param.getAnnotations());
+                annotateDecl(declAnnos, paramElt, param.getType().getAnnotations());
+
+                // Duplicate parameter annotations to the type.
+                NodeList<AnnotationExpr> paramTypeAnnos = param.getType().getAnnotations();
+                param.getType().setAnnotations(param.getAnnotations());
+                try {
+                    if (param.isVarArgs()) {
+                        assert paramType.getKind() == TypeKind.ARRAY;
+                        // The "type" of param is actually the component type of the vararg.
+                        // For example, "Object..." the type would be "Object".
+                        AnnotatedTypeMirror componentType =
+                                ((AnnotatedArrayType) paramType).getComponentType();
+                        annotate(componentType, param.getType());
+                        // The "VarArgsAnnotations" are those just before "...".
+                        annotate(paramType, param.getVarArgsAnnotations());
+                    } else {
+                        annotate(paramType, param.getType());
+                    }
+                } finally {
+                    param.getType().setAnnotations(paramTypeAnnos);
+                }
+            }
 
-        annotateDecl(declAnnos, elt, decl.getAnnotations());
-        // StubParser parses all annotations in type annotation position as type annotations
-        annotateDecl(declAnnos, elt, decl.getType().getAnnotations());
-        addDeclAnnotations(declAnnos, elt);
-
-        AnnotatedExecutableType methodType = atypeFactory.fromElement(elt);
-        annotateTypeParameters(
-                decl, elt, atypes, methodType.getTypeVariables(), decl.getTypeParameters());
-        typeParameters.addAll(methodType.getTypeVariables());
-        annotate(methodType.getReturnType(), decl.getType());
-
-        List<Parameter> params = decl.getParameters();
-        List<? extends VariableElement> paramElts = elt.getParameters();
-        List<? extends AnnotatedTypeMirror> paramTypes = methodType.getParameterTypes();
-
-        for (int i = 0; i < methodType.getParameterTypes().size(); ++i) {
-            VariableElement paramElt = paramElts.get(i);
-            AnnotatedTypeMirror paramType = paramTypes.get(i);
-            Parameter param = params.get(i);
-
-            annotateDecl(declAnnos, paramElt, param.getAnnotations());
-            annotateDecl(declAnnos, paramElt, param.getType().getAnnotations());
-
-            // Duplicate parameter annotations to the type.
-            param.getType().setAnnotations(param.getAnnotations());
-
-            if (param.isVarArgs()) {
-                assert paramType.getKind() == TypeKind.ARRAY;
-                // The "type" of param is actually the component type of the vararg.
-                // For example, "Object..." the type would be "Object".
-                annotate(((AnnotatedArrayType) paramType).getComponentType(), param.getType());
-                // The "VarArgsAnnotations" are those just before "...".
-                annotate(paramType, param.getVarArgsAnnotations());
+            if (methodType.getReceiverType() == null
+                    && decl.getReceiverAnnotations() != null
+                    && !decl.getReceiverAnnotations().isEmpty()) {
+                stubAlwaysWarn(
+                        String.format(
+                                "parseMethod: static methods cannot have receiver annotations%n"
+                                        + "Method: %s%n"
+                                        + "Receiver annotations: %s",
+                                methodType, decl.getReceiverAnnotations()));
             } else {
-                annotate(paramType, param.getType());
+                annotate(methodType.getReceiverType(), decl.getReceiverAnnotations());
             }
-        }
 
-        if (methodType.getReceiverType() == null
-                && decl.getReceiverAnnotations() != null
-                && !decl.getReceiverAnnotations().isEmpty()) {
-            stubAlwaysWarn(
-                    String.format(
-                            "parseMethod: static methods cannot have receiver annotations%n"
-                                    + "Method: %s%n"
-                                    + "Receiver annotations: %s",
-                            methodType, decl.getReceiverAnnotations()));
-        } else {
-            annotate(methodType.getReceiverType(), decl.getReceiverAnnotations());
+            putNew(atypes, elt, methodType);
+            typeParameters.removeAll(methodType.getTypeVariables());
+        } finally {
+            // Switch the annotations back, even if processing the method failed, because the
+            // syntax tree may be shared with the stub parsers of other checkers.
+            decl.setAnnotations(decl.getType().getAnnotations());
+            decl.getType().setAnnotations(list);
         }
-
-        putNew(atypes, elt, methodType);
-        typeParameters.removeAll(methodType.getTypeVariables());
     }
 
     /**
@@ -756,8 +902,9 @@ public class StubParser {
     }
 
     /** Adds a declAnnotation to every method in the stub file. */
-    private void addDeclAnnotations(Map<String, Set<AnnotationMirror>> declAnnos, Element elt) {
-        if (fromStubFile != null) {
+    private void addDeclAnnotations(
+            /*@Nullable*/ Map<String, Set<AnnotationMirror>> declAnnos, Element elt) {
+        if (fromStubFile != null && declAnnos != null) {
             Set<AnnotationMirror> annos = declAnnos.get(ElementUtils.getVerboseName(elt));
             if (annos == null) {
                 annos = AnnotationUtils.createAnnotationSet();
@@ -896,10 +1043,15 @@ public class StubParser {
         for (int i = 0; i < methodType.getParameterTypes().size(); ++i) {
             AnnotatedTypeMirror paramType = methodType.getParameterTypes().get(i);
             Parameter param = decl.getParameters().get(i);
+            NodeList<AnnotationExpr> paramTypeAnnos = param.getType().getAnnotations();
             if (param.getAnnotations() != null) {
                 param.getType().setAnnotations(param.getAnnotations());
             }
-            annotate(paramType, param.getType());
+            try {
+                annotate(paramType, param.getType());
+            } finally {
+                param.getType().setAnnotations(paramTypeAnnos);
+            }
         }
 
         if (methodType.getReceiverType() == null
@@ -976,10 +1128,10 @@ public class StubParser {
     }
 
     private void annotateDecl(
-            Map<String, Set<AnnotationMirror>> declAnnos,
+            /*@Nullable*/ Map<String, Set<AnnotationMirror>> declAnnos,
             Element elt,
             List<AnnotationExpr> annotations) {
-        if (annotations == null) {
+        if (annotations == null || declAnnos == null) {
             return;
         }
         Set<AnnotationMirror> annos = AnnotationUtils.createAnnotationSet();
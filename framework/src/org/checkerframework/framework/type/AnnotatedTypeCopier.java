@@ -15,6 +15,7 @@ import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVari
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedUnionType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeVisitor;
+import org.checkerframework.javacutil.ErrorReporter;
 
 /**
  * AnnotatedTypeCopier is a visitor that deep copies an AnnotatedTypeMirror exactly, including any
@@ -117,6 +118,20 @@ public class AnnotatedTypeCopier
             copy.setWasRaw();
         }
 
+        copyDeclaredComponents(
+                componentSource(original, copy, originalToCopy), copy, originalToCopy);
+
+        return copy;
+    }
+
+    /**
+     * Copies the enclosing type, type arguments and supertypes of {@code original} to {@code
+     * copy}, reading only those fields that have already been initialized.
+     */
+    private void copyDeclaredComponents(
+            AnnotatedDeclaredType original,
+            AnnotatedDeclaredType copy,
+            IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> originalToCopy) {
         if (original.enclosingType != null) {
             copy.enclosingType =
                     (AnnotatedDeclaredType) visit(original.enclosingType, originalToCopy);
@@ -137,8 +152,6 @@ public class AnnotatedTypeCopier
             }
             copy.supertypes = Collections.unmodifiableList(copySupertypes);
         }
-
-        return copy;
     }
 
     @Override
@@ -218,6 +231,20 @@ public class AnnotatedTypeCopier
 
         copy.setElement(original.getElement());
 
+        copyExecutableComponents(
+                componentSource(original, copy, originalToCopy), copy, originalToCopy);
+
+        return copy;
+    }
+
+    /**
+     * Copies the receiver, parameter, thrown, return and type variable types of {@code original}
+     * to {@code copy}.
+     */
+    private void copyExecutableComponents(
+            AnnotatedExecutableType original,
+            AnnotatedExecutableType copy,
+            IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> originalToCopy) {
         if (original.receiverType != null) {
             copy.receiverType =
                     (AnnotatedDeclaredType) visit(original.receiverType, originalToCopy);
@@ -243,8 +270,60 @@ public class AnnotatedTypeCopier
             copy.typeVarTypes.add((AnnotatedTypeVariable) visit(typeVariable, originalToCopy));
         }
         visitingExecutableTypeParam = false;
+    }
 
-        return copy;
+    /**
+     * Returns the type whose component fields hold the components of {@code original}. That is
+     * {@code original} itself, unless {@code original} is a lazy copy of a shared type whose
+     * components have not been copied yet; in that case, references to the shared type within its
+     * components are mapped to {@code copy}.
+     *
+     * @see AnnotatedTypeMirror#materialize()
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends AnnotatedTypeMirror> T componentSource(
+            T original,
+            T copy,
+            IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> originalToCopy) {
+        AnnotatedTypeMirror source = original.getLazyCopySource();
+        if (source == null || source == original) {
+            return original;
+        }
+        if (!originalToCopy.containsKey(source)) {
+            originalToCopy.put(source, copy);
+        }
+        return (T) source;
+    }
+
+    /**
+     * Copies the component types of the shared declared or executable type {@code original} to
+     * its lazy copy {@code copy}. References to {@code original} within its components are
+     * replaced by {@code copy}.
+     *
+     * @see AnnotatedTypeMirror#materialize()
+     */
+    /*default-visibility*/ void copyComponents(
+            AnnotatedTypeMirror original, AnnotatedTypeMirror copy) {
+        IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> originalToCopy =
+                new IdentityHashMap<>();
+        originalToCopy.put(original, copy);
+        switch (original.getKind()) {
+            case DECLARED:
+                copyDeclaredComponents(
+                        (AnnotatedDeclaredType) original,
+                        (AnnotatedDeclaredType) copy,
+                        originalToCopy);
+                break;
+            case EXECUTABLE:
+                copyExecutableComponents(
+                        (AnnotatedExecutableType) original,
+                        (AnnotatedExecutableType) copy,
+                        originalToCopy);
+                break;
+            default:
+                ErrorReporter.errorAbort(
+                        "AnnotatedTypeCopier.copyComponents: unexpected kind: " + original);
+        }
     }
 
     @Override
@@ -41,6 +41,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -81,8 +82,11 @@ import org.checkerframework.framework.qual.PolyAll;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
 import org.checkerframework.framework.qual.StubFiles;
 import org.checkerframework.framework.qual.SubtypeOf;
+import org.checkerframework.framework.source.Profiler;
 import org.checkerframework.framework.source.Result;
 import org.checkerframework.framework.source.SourceChecker;
+import org.checkerframework.framework.stub.SharedStubStore;
+import org.checkerframework.framework.stub.StubCache;
 import org.checkerframework.framework.stub.StubParser;
 import org.checkerframework.framework.stub.StubResource;
 import org.checkerframework.framework.stub.StubUtil;
@@ -103,12 +107,14 @@ import org.checkerframework.framework.util.FieldInvariants;
 import org.checkerframework.framework.util.GraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
+import org.checkerframework.framework.util.QualifierIndex;
 import org.checkerframework.framework.util.TreePathCacher;
 import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInference;
 import org.checkerframework.framework.util.typeinference.TypeArgumentInference;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationProvider;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BoundedCache;
 import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
@@ -226,6 +232,28 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
     // Not final, because it is assigned in postInit().
     private Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles;
 
+    /**
+     * A hash of the names and contents of the stub files that this factory reads, see {@link
+     * #getStubFilesHash()}. Null until the stub files are read, or if the hash cannot be computed.
+     */
+    private /*@Nullable*/ String stubFilesHash;
+
+    /**
+     * If the stub files are parsed lazily, the parsers of the stub files that declare each
+     * top-level type whose declarations have not been parsed yet. Keys are fully-qualified type
+     * names. Null if the stub files are parsed eagerly.
+     *
+     * @see #parseStubFilesFor(Element)
+     */
+    private Map<String, List<StubParser>> unparsedStubTypes;
+
+    /**
+     * True while the declarations of a type are being parsed lazily from the stub files. In the
+     * meantime, this factory behaves as it does while {@link #parseStubFiles()} runs: it ignores
+     * the stub files and does not cache.
+     */
+    private boolean parsingStubTypes = false;
+
     /**
      * A cache used to store elements whose declaration annotations have already been stored by
      * calling the method {@link #getDeclAnnotations(Element)}.
@@ -299,26 +327,40 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      */
     public boolean shouldCache;
 
+    /**
+     * Whether modifications of cached types should be reported as errors. Set by the {@code
+     * -AatfCheckFrozenTypes} option.
+     *
+     * @see AnnotatedTypeMirror#markShared(boolean)
+     */
+    private final boolean checkFrozenTypes;
+
     /** Size of LRU cache if one isn't specified using the atfCacheSize option. */
     private static final int DEFAULT_CACHE_SIZE = 300;
 
     /** Mapping from a Tree to its annotated type; implicits have been applied. */
-    private final Map<Tree, AnnotatedTypeMirror> classAndMethodTreeCache;
+    private final BoundedCache<Tree, AnnotatedTypeMirror> classAndMethodTreeCache;
 
     /**
      * Mapping from a Tree to its annotated type; before implicits are applied, just what the
      * programmer wrote.
      */
-    protected final Map<Tree, AnnotatedTypeMirror> fromTreeCache;
+    protected final BoundedCache<Tree, AnnotatedTypeMirror> fromTreeCache;
 
     /**
      * Mapping from an Element to its annotated type; before implicits are applied, just what the
      * programmer wrote.
      */
-    private final Map<Element, AnnotatedTypeMirror> elementCache;
+    private final BoundedCache<Element, AnnotatedTypeMirror> elementCache;
 
     /** Mapping from an Element to the source Tree of the declaration. */
-    private final Map<Element, Tree> elementToTreeCache;
+    private final BoundedCache<Element, Tree> elementToTreeCache;
+
+    /**
+     * Mapping from the element of a class to the direct supertypes in its declaration, in which its
+     * type parameters have not been substituted. Used by {@link SupertypeFinder}.
+     */
+    private final BoundedCache<TypeElement, List<AnnotatedDeclaredType>> declaredSuperTypesCache;
 
     /**
      * Whether to ignore uninferred type arguments. This is a temporary flag to work around Issue
@@ -358,17 +400,25 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.cacheDeclAnnos = new HashMap<Element, Set<AnnotationMirror>>();
 
         this.shouldCache = !checker.hasOption("atfDoNotCache");
+        this.checkFrozenTypes = checker.hasOption("atfCheckFrozenTypes");
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            this.classAndMethodTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.fromTreeCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementCache = CollectionUtils.createLRUCache(cacheSize);
-            this.elementToTreeCache = CollectionUtils.createLRUCache(cacheSize);
+            this.classAndMethodTreeCache =
+                    createAnnotatedTypeCache("classAndMethodTreeCache", cacheSize);
+            this.fromTreeCache = createAnnotatedTypeCache("fromTreeCache", cacheSize);
+            this.elementCache = createAnnotatedTypeCache("elementCache", cacheSize);
+            this.elementToTreeCache =
+                    CollectionUtils.createCache(
+                            "elementToTreeCache", cacheSize, null, getCachePolicy());
+            this.declaredSuperTypesCache =
+                    CollectionUtils.createCache(
+                            "declaredSuperTypesCache", cacheSize, null, getCachePolicy());
         } else {
             this.classAndMethodTreeCache = null;
             this.fromTreeCache = null;
             this.elementCache = null;
             this.elementToTreeCache = null;
+            this.declaredSuperTypesCache = null;
         }
 
         this.typeFormatter = createAnnotatedTypeFormatter();
@@ -525,6 +575,13 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.root = root;
         treePathCache.clear();
         pathHack.clear();
+        artificialTypeTrees.clear();
+        if (typeHierarchy instanceof DefaultTypeHierarchy) {
+            ((DefaultTypeHierarchy) typeHierarchy).clearSubtypeCache();
+        }
+        if (typeArgumentInference instanceof DefaultTypeArgumentInference) {
+            ((DefaultTypeArgumentInference) typeArgumentInference).clearCaches();
+        }
 
         if (shouldCache) {
             // Clear the caches with trees because once the compilation unit changes,
@@ -532,6 +589,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             elementToTreeCache.clear();
             fromTreeCache.clear();
             classAndMethodTreeCache.clear();
+            declaredSuperTypesCache.clear();
 
             // There is no need to clear the following cache, it is limited by cache size and it
             // contents won't change between compilation units.
@@ -930,6 +988,150 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         }
     }
 
+    /**
+     * Returns the eviction policy of the caches of this factory, which is given by the
+     * atfCachePolicy option: "lru" (the default) or "frequency".
+     *
+     * @return the eviction policy of the caches of this factory
+     * @see BoundedCache.Policy
+     */
+    protected BoundedCache.Policy getCachePolicy() {
+        String option = checker.getOption("atfCachePolicy");
+        if (option == null) {
+            return BoundedCache.Policy.LRU;
+        }
+        try {
+            return BoundedCache.Policy.valueOf(option.toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            ErrorReporter.errorAbort("atfCachePolicy was not lru or frequency: " + option);
+            return null; // dead code
+        }
+    }
+
+    /**
+     * Creates a cache of annotated types. If the atfCacheWeight option is given, the cache is
+     * bounded by the total {@link AnnotatedTypeMirror#estimatedSize() estimated size} of its types
+     * rather than by their number.
+     *
+     * @param name the name of the cache, used in its statistics
+     * @param cacheSize the maximum number of entries, if atfCacheWeight is not given
+     * @return a new cache
+     */
+    private <K> BoundedCache<K, AnnotatedTypeMirror> createAnnotatedTypeCache(
+            String name, int cacheSize) {
+        String option = checker.getOption("atfCacheWeight");
+        if (option == null) {
+            return CollectionUtils.createCache(name, cacheSize, null, getCachePolicy());
+        }
+        long maxWeight;
+        try {
+            maxWeight = Long.parseLong(option);
+        } catch (NumberFormatException ex) {
+            ErrorReporter.errorAbort("atfCacheWeight was not an integer: " + option);
+            maxWeight = 0; // dead code
+        }
+        return CollectionUtils.createCache(
+                name,
+                maxWeight,
+                new BoundedCache.Weigher<AnnotatedTypeMirror>() {
+                    @Override
+                    public int weigh(AnnotatedTypeMirror type) {
+                        return type.estimatedSize();
+                    }
+                },
+                getCachePolicy());
+    }
+
+    /**
+     * Returns the caches of this factory, whose statistics are printed if the resourceStats option
+     * is given. Subclasses that add caches should override this method.
+     *
+     * @return the caches of this factory; empty if caching is disabled
+     */
+    public List<BoundedCache<?, ?>> getCaches() {
+        List<BoundedCache<?, ?>> caches = new ArrayList<>();
+        if (shouldCache) {
+            caches.add(classAndMethodTreeCache);
+            caches.add(fromTreeCache);
+            caches.add(elementCache);
+            caches.add(elementToTreeCache);
+            caches.add(declaredSuperTypesCache);
+        }
+        if (typeHierarchy instanceof DefaultTypeHierarchy) {
+            BoundedCache<?, ?> subtypeCache =
+                    ((DefaultTypeHierarchy) typeHierarchy).getSubtypeCache();
+            if (subtypeCache != null) {
+                caches.add(subtypeCache);
+            }
+        }
+        if (typeArgumentInference instanceof DefaultTypeArgumentInference) {
+            caches.addAll(((DefaultTypeArgumentInference) typeArgumentInference).getCaches());
+        }
+        return caches;
+    }
+
+    /**
+     * Returns a copy of {@code type} to be stored in one of the caches of this factory. The copy is
+     * marked as shared, so that copying it on a cache hit is cheap: the components of a declared or
+     * executable type are only copied once they are accessed. The number of types copied is
+     * recorded as the estimated size of the copy, so that weighing it in a cache does not
+     * traverse it again.
+     *
+     * @param type the type to cache
+     * @return a shared copy of {@code type}
+     */
+    private AnnotatedTypeMirror copyForCache(AnnotatedTypeMirror type) {
+        IdentityHashMap<AnnotatedTypeMirror, AnnotatedTypeMirror> originalToCopy =
+                new IdentityHashMap<>();
+        AnnotatedTypeMirror copy = new AnnotatedTypeCopier().visit(type, originalToCopy);
+        copy.markShared(checkFrozenTypes, originalToCopy.size());
+        return copy;
+    }
+
+    /**
+     * Returns copies of the direct supertypes in the declaration of {@code typeElement}, if they
+     * have been stored by {@link #cacheDeclaredSuperTypes}; otherwise returns null.
+     *
+     * @param typeElement the element of a class
+     * @return copies of the cached direct supertypes of {@code typeElement}, or null
+     */
+    /*default-visibility*/ /*@Nullable*/ List<AnnotatedDeclaredType> getCachedDeclaredSuperTypes(
+            TypeElement typeElement) {
+        // As in fromElement, types are only cached once the stub files have been read.
+        if (!shouldCache || typesFromStubFiles == null || parsingStubTypes) {
+            return null;
+        }
+        List<AnnotatedDeclaredType> supertypes = declaredSuperTypesCache.get(typeElement);
+        if (supertypes == null) {
+            return null;
+        }
+        List<AnnotatedDeclaredType> copies = new ArrayList<>(supertypes.size());
+        for (AnnotatedDeclaredType supertype : supertypes) {
+            copies.add(supertype.deepCopy());
+        }
+        return copies;
+    }
+
+    /**
+     * Stores copies of the direct supertypes in the declaration of {@code typeElement}, which do
+     * not depend on the use of the class: its type parameters have not been substituted, and the
+     * use is neither raw nor annotated differently than the declaration.
+     *
+     * @param typeElement the element of a class
+     * @param supertypes the direct supertypes in the declaration of {@code typeElement}
+     */
+    /*default-visibility*/ void cacheDeclaredSuperTypes(
+            TypeElement typeElement, List<AnnotatedDeclaredType> supertypes) {
+        if (!shouldCache || typesFromStubFiles == null || parsingStubTypes) {
+            return;
+        }
+        List<AnnotatedDeclaredType> copies = new ArrayList<>(supertypes.size());
+        for (AnnotatedDeclaredType supertype : supertypes) {
+            copies.add((AnnotatedDeclaredType) copyForCache(supertype));
+        }
+        declaredSuperTypesCache.put(typeElement, copies);
+    }
+
     /**
      * Returns an AnnotatedTypeMirror representing the annotated type of {@code elt}.
      *
@@ -997,7 +1199,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         if (TreeUtils.isClassTree(tree) || tree.getKind() == Tree.Kind.METHOD) {
             // Don't cache VARIABLE
             if (shouldCache) {
-                classAndMethodTreeCache.put(tree, type.deepCopy());
+                classAndMethodTreeCache.put(tree, copyForCache(type));
             }
         } else {
             // No caching otherwise
@@ -1070,7 +1272,11 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @return AnnotatedTypeMirror of the element with explicitly-written and stub file annotations
      */
     public AnnotatedTypeMirror fromElement(Element elt) {
-        if (shouldCache && elementCache.containsKey(elt)) {
+        parseStubFilesFor(elt);
+        // Caching is disabled until the stub files have been read, because calls to this
+        // method before then can return incorrect results.
+        boolean stubFilesRead = typesFromStubFiles != null && !parsingStubTypes;
+        if (shouldCache && stubFilesRead && elementCache.containsKey(elt)) {
             return elementCache.get(elt).deepCopy();
         }
         if (elt.getKind() == ElementKind.PACKAGE) {
@@ -1085,10 +1291,9 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // returned.
         Tree decl = declarationFromElement(elt);
 
-        if (decl == null && typesFromStubFiles != null && typesFromStubFiles.containsKey(elt)) {
+        if (decl == null && stubFilesRead && typesFromStubFiles.containsKey(elt)) {
             type = typesFromStubFiles.get(elt).deepCopy();
-        } else if (decl == null
-                && (typesFromStubFiles == null || !typesFromStubFiles.containsKey(elt))) {
+        } else if (decl == null && (!stubFilesRead || !typesFromStubFiles.containsKey(elt))) {
             type = toAnnotatedType(elt.asType(), ElementUtils.isTypeDeclaration(elt));
             ElementAnnotationApplier.apply(type, elt, this);
 
@@ -1112,11 +1317,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             type = null; // dead code
         }
 
-        // Caching is disabled if typesFromStubFiles == null, because calls to this
-        // method before the stub files are fully read can return incorrect
-        // results.
-        if (shouldCache && typesFromStubFiles != null) {
-            elementCache.put(elt, type.deepCopy());
+        if (shouldCache && stubFilesRead) {
+            elementCache.put(elt, copyForCache(type));
         }
         return type;
     }
@@ -1185,7 +1387,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         AnnotatedTypeMirror result = TypeFromTree.fromMember(this, tree);
         annotateInheritedFromClass(result);
         if (shouldCache) {
-            fromTreeCache.put(tree, result.deepCopy());
+            fromTreeCache.put(tree, copyForCache(result));
         }
         return result;
     }
@@ -1216,7 +1418,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         annotateInheritedFromClass(result);
 
         if (shouldCache) {
-            fromTreeCache.put(tree, result.deepCopy());
+            fromTreeCache.put(tree, copyForCache(result));
         }
         return result;
     }
@@ -1244,7 +1446,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
 
         annotateInheritedFromClass(result);
         if (shouldCache) {
-            fromTreeCache.put(tree, result.deepCopy());
+            fromTreeCache.put(tree, copyForCache(result));
         }
         return result;
     }
@@ -2418,6 +2620,10 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         if (a == null) {
             return false;
         }
+        QualifierIndex index = this.getQualifierHierarchy().getQualifierIndex();
+        if (index != null) {
+            return index.isQualifier(a);
+        }
         return AnnotationUtils.containsSameIgnoringValues(
                 this.getQualifierHierarchy().getTypeQualifiers(), a);
     }
@@ -2767,6 +2973,30 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         pathHack.put(node, enclosing);
     }
 
+    /** The annotated types of type trees that were created while building control flow graphs. */
+    private final Map<Tree, AnnotatedTypeMirror> artificialTypeTrees = new HashMap<>();
+
+    /**
+     * Sets the annotated type of a type tree that was created while building a control flow graph,
+     * such as the type of the iterator variable of an enhanced for loop. The control flow graph
+     * may be shared with the type factories of other checkers, so the type tree itself carries no
+     * annotations; each type factory sets the type that it uses for the tree.
+     *
+     * @param typeTree a type tree that is not part of the compilation unit
+     * @param type the annotated type of {@code typeTree} in this factory
+     */
+    public final void setArtificialTypeTreeType(Tree typeTree, AnnotatedTypeMirror type) {
+        artificialTypeTrees.put(typeTree, type);
+    }
+
+    /**
+     * Returns the annotated type that {@link #setArtificialTypeTreeType} set for {@code typeTree},
+     * or null.
+     */
+    /*package-scope*/ /*@Nullable*/ AnnotatedTypeMirror getArtificialTypeTreeType(Tree typeTree) {
+        return artificialTypeTrees.get(typeTree);
+    }
+
     /**
      * Gets the path for the given {@link Tree} under the current root by checking from the
      * visitor's current path, and only using {@link Trees#getPath(CompilationUnitTree, Tree)}
@@ -2906,6 +3136,15 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * <p>If a type is annotated with a qualifier from the same hierarchy in more than one stub
      * file, the qualifier in the last stub file is applied.
      *
+     * <p>If the stubCacheDir option is given, the results are read from a {@link StubCache}
+     * instead, if an earlier compilation stored them there. Otherwise, if the stubLazyParse option
+     * is given, only the package declarations are processed here, and the declarations of each
+     * top-level type are processed the first time the stub annotations of one of its elements are
+     * looked up. The stub files are parsed into syntax trees here in either case.
+     *
+     * <p>The syntax trees and declaration annotations of the stub files are shared with the other
+     * checkers of a compound checker, through {@link BaseTypeChecker#getSharedStubStore()}.
+     *
      * <p>Sets typesFromStubFiles and declAnnosFromStubFiles by side effect, just before returning.
      */
     protected void parseStubFiles() {
@@ -2918,13 +3157,15 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         Map<String, Set<AnnotationMirror>> declAnnosFromStubFiles =
                 new HashMap<String, Set<AnnotationMirror>>();
 
+        // The names and contents of the stub files, in the order in which they are parsed.
+        List<Pair<String, byte[]>> stubFiles = new ArrayList<>();
+
         // 1. jdk.astub
         if (!checker.hasOption("ignorejdkastub")) {
             InputStream in = null;
             in = checker.getClass().getResourceAsStream("jdk.astub");
             if (in != null) {
-                StubParser stubParser = new StubParser("jdk.astub", in, this, processingEnv);
-                stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                addStubFile(stubFiles, "jdk.astub", in);
             }
         }
 
@@ -2932,8 +3173,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         // stub file for type-system independent annotations
         InputStream input = BaseTypeChecker.class.getResourceAsStream("flow.astub");
         if (input != null) {
-            StubParser stubParser = new StubParser("flow.astub", input, this, processingEnv);
-            stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+            addStubFile(stubFiles, "flow.astub", input);
         }
 
         // Stub files specified via stubs compiler option, stubs system property,
@@ -2964,13 +3204,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             Collections.addAll(allStubFiles, stubsOption.split(File.pathSeparator));
         }
 
-        if (allStubFiles.isEmpty()) {
-            this.typesFromStubFiles = typesFromStubFiles;
-            this.declAnnosFromStubFiles = declAnnosFromStubFiles;
-            return;
-        }
-
-        // Parse stub files specified via stubs compiler option, stubs system property,
+        // Read stub files specified via stubs compiler option, stubs system property,
         // stubs env. variable, or @Stubfiles
         for (String stubPath : allStubFiles) {
             if (stubPath == null || stubPath.isEmpty()) {
@@ -2987,8 +3221,7 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                 InputStream in = null;
                 in = checker.getClass().getResourceAsStream(stubPath);
                 if (in != null) {
-                    StubParser stubParser = new StubParser(stubPath, in, this, processingEnv);
-                    stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                    addStubFile(stubFiles, stubPath, in);
                     // We could handle the stubPath -> continue.
                     continue;
                 }
@@ -3010,9 +3243,89 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
                             "Could not read stub resource: " + resource.getDescription());
                     continue;
                 }
-                StubParser stubParser =
-                        new StubParser(resource.getDescription(), stubStream, this, processingEnv);
-                stubParser.parse(typesFromStubFiles, declAnnosFromStubFiles);
+                addStubFile(stubFiles, resource.getDescription(), stubStream);
+            }
+        }
+
+        stubFilesHash = StubCache.hashStubFiles(stubFiles);
+
+        // Use the results of an earlier compilation, if possible.
+        // The syntax trees and declaration annotations of stub files that a subchecker has
+        // already read are reused.
+        SharedStubStore sharedStubStore = checker.getSharedStubStore();
+        Profiler profiler = checker.getProfiler();
+        StubCache stubCache = StubCache.create(checker, this, stubFiles);
+        boolean loadedFromCache = false;
+        if (stubCache != null) {
+            Profiler.Timer timer =
+                    profiler.start(checker, Profiler.STUB_PARSING, "stub cache", "stub cache");
+            try {
+                loadedFromCache = stubCache.load(typesFromStubFiles, declAnnosFromStubFiles);
+            } finally {
+                timer.stop();
+            }
+        }
+        if (stubCache == null && parseStubFilesLazily()) {
+            // Only parse the package declarations now, and the type declarations on demand.
+            Map<String, List<StubParser>> unparsedStubTypes = new HashMap<>();
+            for (Pair<String, byte[]> stubFile : stubFiles) {
+                Profiler.Timer timer =
+                        profiler.start(
+                                checker, Profiler.STUB_PARSING, stubFile.first, stubFile.first);
+                try {
+                    StubParser stubParser =
+                            new StubParser(
+                                    stubFile.first,
+                                    stubFile.second,
+                                    this,
+                                    processingEnv,
+                                    sharedStubStore);
+                    for (String typeName :
+                            stubParser.parseIndex(typesFromStubFiles, declAnnosFromStubFiles)) {
+                        List<StubParser> stubParsers = unparsedStubTypes.get(typeName);
+                        if (stubParsers == null) {
+                            stubParsers = new ArrayList<>();
+                            unparsedStubTypes.put(typeName, stubParsers);
+                        }
+                        stubParsers.add(stubParser);
+                    }
+                } finally {
+                    timer.stop();
+                }
+            }
+            this.unparsedStubTypes = unparsedStubTypes;
+        } else if (!loadedFromCache) {
+            for (Pair<String, byte[]> stubFile : stubFiles) {
+                Profiler.Timer timer =
+                        profiler.start(
+                                checker, Profiler.STUB_PARSING, stubFile.first, stubFile.first);
+                try {
+                    StubParser stubParser =
+                            new StubParser(
+                                    stubFile.first,
+                                    stubFile.second,
+                                    this,
+                                    processingEnv,
+                                    sharedStubStore);
+                    Map<String, Set<AnnotationMirror>> stubDeclAnnos =
+                            sharedStubStore.getDeclAnnos(stubFile.first, stubFile.second);
+                    if (stubDeclAnnos == null) {
+                        stubDeclAnnos = new HashMap<>();
+                        stubParser.parse(typesFromStubFiles, stubDeclAnnos);
+                        sharedStubStore.putDeclAnnos(
+                                stubFile.first, stubFile.second, stubDeclAnnos);
+                    } else {
+                        // Declaration annotations are the same for every checker, so only the
+                        // annotated types need to be parsed.
+                        stubParser.parse(typesFromStubFiles, null);
+                    }
+                    SharedStubStore.addDeclAnnos(stubDeclAnnos, declAnnosFromStubFiles);
+                } finally {
+                    timer.stop();
+                }
+            }
+            if (stubCache != null) {
+                stubCache.store(typesFromStubFiles, declAnnosFromStubFiles);
             }
         }
 
@@ -3020,6 +3333,97 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
         this.declAnnosFromStubFiles = declAnnosFromStubFiles;
     }
 
+    /**
+     * Returns a hash of the names and contents of the stub files that this factory reads, or null
+     * if the stub files have not been read yet or the hash cannot be computed. The declaration
+     * annotations from stub files, and therefore everything computed from them, such as the
+     * {@code @TerminatesExecution} methods in a control flow graph, are the same in two factories
+     * whose stub files have the same hash.
+     *
+     * @return a hash of the stub files of this factory, or null
+     */
+    public /*@Nullable*/ String getStubFilesHash() {
+        return stubFilesHash;
+    }
+
+    /**
+     * Returns true if {@link #parseStubFiles()} should only index the stub files, and parse the
+     * declarations of each type when they are first needed. True if the stubLazyParse option is
+     * given, unless an option requests output that is only produced while parsing every
+     * declaration.
+     */
+    private boolean parseStubFilesLazily() {
+        return checker.hasOption("stubLazyParse")
+                && !checker.hasOption("stubWarnIfNotFound")
+                && !checker.hasOption("stubWarnIfOverwritesBytecode")
+                && !checker.hasOption("stubDebug");
+    }
+
+    /**
+     * If the stub files are parsed lazily, parses the declarations of the top-level type that
+     * encloses {@code elt} (or is {@code elt}) in every stub file that contains them, unless that
+     * has been done already. The stub files are applied in the same order as by {@link
+     * #parseStubFiles()}.
+     *
+     * @param elt the element whose stub file annotations are about to be looked up
+     */
+    private void parseStubFilesFor(Element elt) {
+        if (unparsedStubTypes == null || unparsedStubTypes.isEmpty() || parsingStubTypes) {
+            return;
+        }
+        TypeElement topLevelType = null;
+        for (Element enclosing = elt;
+                enclosing != null && enclosing.getKind() != ElementKind.PACKAGE;
+                enclosing = enclosing.getEnclosingElement()) {
+            if (enclosing instanceof TypeElement) {
+                topLevelType = (TypeElement) enclosing;
+            }
+        }
+        if (topLevelType == null) {
+            return;
+        }
+        String typeName = topLevelType.getQualifiedName().toString();
+        List<StubParser> stubParsers = unparsedStubTypes.remove(typeName);
+        if (stubParsers == null) {
+            return;
+        }
+        Profiler profiler = checker.getProfiler();
+        parsingStubTypes = true;
+        try {
+            for (StubParser stubParser : stubParsers) {
+                Profiler.Timer timer =
+                        profiler.start(
+                                checker,
+                                Profiler.STUB_PARSING,
+                                stubParser.getFilename(),
+                                typeName);
+                try {
+                    stubParser.parseType(typeName, typesFromStubFiles, declAnnosFromStubFiles);
+                } finally {
+                    timer.stop();
+                }
+            }
+        } finally {
+            parsingStubTypes = false;
+        }
+    }
+
+    /**
+     * Reads the stub file {@code in} and adds it to {@code stubFiles}. Issues a note if the stub
+     * file cannot be read.
+     *
+     * @param stubFiles the names and contents of the stub files read so far
+     * @param name the name of the stub file
+     * @param in the contents of the stub file; closed by this method
+     */
+    private void addStubFile(List<Pair<String, byte[]>> stubFiles, String name, InputStream in) {
+        try {
+            stubFiles.add(Pair.of(name, StubCache.readStubFile(in)));
+        } catch (IOException e) {
+            checker.message(Kind.NOTE, "Could not read stub resource: " + name);
+        }
+    }
+
     /**
      * Returns the actual annotation mirror used to annotate this element, whose name equals the
      * passed annotation class, if one exists, or null otherwise.
@@ -3126,14 +3530,19 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
      * @param elt the element for which to determine annotations
      */
     public Set<AnnotationMirror> getDeclAnnotations(Element elt) {
-        if (cacheDeclAnnos.containsKey(elt)) {
+        parseStubFilesFor(elt);
+        // As in fromElement, the stub files and the cache are ignored until the stub files
+        // have been read.
+        boolean stubFilesRead = declAnnosFromStubFiles != null && !parsingStubTypes;
+        if (stubFilesRead && cacheDeclAnnos.containsKey(elt)) {
             // Found in cache, return result.
             return cacheDeclAnnos.get(elt);
         }
 
         Set<AnnotationMirror> results = AnnotationUtils.createAnnotationSet();
         // Retrieving the annotations from the element.
-        List<? extends AnnotationMirror> fromEle = elements.getAllAnnotationMirrors(elt);
+        List<? extends AnnotationMirror> fromEle =
+                checker.getSharedStubStore().getElementAnnotations(elt);
         for (AnnotationMirror annotation : fromEle) {
             try {
                 results.add(annotation);
@@ -3148,8 +3557,8 @@ public class AnnotatedTypeFactory implements AnnotationProvider {
             }
         }
 
-        // If declAnnosFromStubFiles == null, return the annotations in the element.
-        if (declAnnosFromStubFiles != null) {
+        // If the stub files have not been read, return the annotations in the element.
+        if (stubFilesRead) {
             // Adding @FromByteCode annotation to declAnnosFromStubFiles entry with key
             // elt, if elt is from bytecode.
             addFromByteCode(elt);
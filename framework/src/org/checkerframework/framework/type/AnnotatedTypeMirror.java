@@ -11,6 +11,7 @@ import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -39,6 +40,7 @@ import org.checkerframework.framework.qual.PolyAll;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeMerger;
 import org.checkerframework.framework.type.visitor.AnnotatedTypeVisitor;
 import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.framework.util.QualifierSet;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ElementUtils;
@@ -144,7 +146,35 @@ public abstract class AnnotatedTypeMirror {
     // the class name of Annotation instead.
     // Caution: Assumes that a type can have at most one AnnotationMirror for
     // any Annotation type. JSR308 is pushing to have this change.
-    protected final Set<AnnotationMirror> annotations = AnnotationUtils.createAnnotationSet();
+    // Qualifiers without element values are stored as bits, see QualifierSet.
+    protected final Set<AnnotationMirror> annotations;
+
+    /**
+     * Whether this type is shared, e.g. by a cache of the {@link AnnotatedTypeFactory}. A shared
+     * type is never modified, so {@link #deepCopy()} of a shared declared or executable type may
+     * return a lazy copy, see {@link #copySource}.
+     */
+    private boolean shared = false;
+
+    /**
+     * Whether any modification of this type is an error. Only set for shared types, and only if
+     * the {@code -AatfCheckFrozenTypes} option is given.
+     */
+    private boolean frozen = false;
+
+    /**
+     * The {@link #estimatedSize() estimated size} of this shared type, or 0 if it has not been
+     * computed yet. Since a shared type is never modified, its size is computed at most once.
+     */
+    private int sharedSize = 0;
+
+    /**
+     * If non-null, this type is a lazy copy of the shared type {@code copySource}: the primary
+     * annotations of {@code copySource} have been copied to this type, but its component types
+     * are only copied by {@link #materialize()}, the first time they are accessed. Component types
+     * must not be read from the fields of a type without calling {@link #materialize()} first.
+     */
+    private AnnotatedTypeMirror copySource = null;
 
     /** The explicitly written annotations on this type. */
     // TODO: use this to cache the result once computed? For generic types?
@@ -162,6 +192,10 @@ public abstract class AnnotatedTypeMirror {
         this.actualType = type;
         assert atypeFactory != null;
         this.atypeFactory = atypeFactory;
+        // The qualifier hierarchy is null while the factory is being initialized.
+        QualifierHierarchy qualHierarchy = atypeFactory.getQualifierHierarchy();
+        this.annotations =
+                new QualifierSet(qualHierarchy == null ? null : qualHierarchy.getQualifierIndex());
     }
 
     @Override
@@ -289,6 +323,173 @@ public abstract class AnnotatedTypeMirror {
         return null;
     }
 
+    /**
+     * Marks this type as shared. The caller guarantees that neither this type nor any of its
+     * component types are modified afterwards; in exchange, deep copies of this type are cheap.
+     *
+     * @param freeze whether modifications of this type or its component types should be reported
+     *     as errors
+     * @param estimatedSize the {@link #estimatedSize() estimated size} of this type if the caller
+     *     already knows it, e.g. from copying the type; 0 if it should be computed when needed
+     */
+    /*default-visibility*/ void markShared(boolean freeze, int estimatedSize) {
+        this.shared = true;
+        this.sharedSize = estimatedSize;
+        if (freeze) {
+            freeze(this, new IdentityHashMap<AnnotatedTypeMirror, Boolean>());
+        }
+    }
+
+    /**
+     * Marks {@code type} and all of its initialized component types as frozen. Uses the fields
+     * rather than the getters, so that no lazy initialization is triggered.
+     */
+    private static void freeze(
+            AnnotatedTypeMirror type, IdentityHashMap<AnnotatedTypeMirror, Boolean> visited) {
+        if (type == null || visited.put(type, Boolean.TRUE) != null) {
+            return;
+        }
+        type.frozen = true;
+        for (AnnotatedTypeMirror component : initializedComponents(type)) {
+            freeze(component, visited);
+        }
+    }
+
+    /**
+     * Returns an estimate of the memory used by this type: the number of distinct types that are
+     * reachable from it through initialized component fields. Triggers no lazy initialization.
+     *
+     * <p>The size of a shared type is only computed once, and a lazy copy has the size of the
+     * shared type that it copies.
+     *
+     * @return the number of types that make up this type, at least 1
+     */
+    public int estimatedSize() {
+        if (copySource != null) {
+            return copySource.estimatedSize();
+        }
+        if (sharedSize > 0) {
+            return sharedSize;
+        }
+        IdentityHashMap<AnnotatedTypeMirror, Boolean> visited = new IdentityHashMap<>();
+        List<AnnotatedTypeMirror> worklist = new ArrayList<>();
+        worklist.add(this);
+        while (!worklist.isEmpty()) {
+            AnnotatedTypeMirror type = worklist.remove(worklist.size() - 1);
+            if (type != null && visited.put(type, Boolean.TRUE) == null) {
+                worklist.addAll(initializedComponents(type));
+            }
+        }
+        if (shared) {
+            sharedSize = visited.size();
+        }
+        return visited.size();
+    }
+
+    /**
+     * Returns the component types of {@code type} that have already been initialized, possibly
+     * including null. Reads the fields rather than the getters, so that no lazy initialization is
+     * triggered. For a lazy copy, returns the components of the shared type it copies.
+     */
+    private static List<AnnotatedTypeMirror> initializedComponents(AnnotatedTypeMirror type) {
+        if (type.copySource != null) {
+            type = type.copySource;
+        }
+        List<AnnotatedTypeMirror> components = new ArrayList<>();
+        switch (type.getKind()) {
+            case DECLARED:
+                AnnotatedDeclaredType declared = (AnnotatedDeclaredType) type;
+                if (declared.typeArgs != null) {
+                    components.addAll(declared.typeArgs);
+                }
+                if (declared.supertypes != null) {
+                    components.addAll(declared.supertypes);
+                }
+                components.add(declared.enclosingType);
+                break;
+            case EXECUTABLE:
+                AnnotatedExecutableType executable = (AnnotatedExecutableType) type;
+                components.addAll(executable.paramTypes);
+                components.add(executable.receiverType);
+                components.add(executable.returnType);
+                components.addAll(executable.throwsTypes);
+                components.addAll(executable.typeVarTypes);
+                break;
+            case ARRAY:
+                components.add(((AnnotatedArrayType) type).componentType);
+                break;
+            case TYPEVAR:
+                AnnotatedTypeVariable typeVar = (AnnotatedTypeVariable) type;
+                components.add(typeVar.upperBound);
+                components.add(typeVar.lowerBound);
+                break;
+            case WILDCARD:
+                AnnotatedWildcardType wildcard = (AnnotatedWildcardType) type;
+                components.add(wildcard.extendsBound);
+                components.add(wildcard.superBound);
+                break;
+            case INTERSECTION:
+                AnnotatedIntersectionType intersection = (AnnotatedIntersectionType) type;
+                if (intersection.supertypes != null) {
+                    components.addAll(intersection.supertypes);
+                }
+                break;
+            case UNION:
+                AnnotatedUnionType union = (AnnotatedUnionType) type;
+                if (union.alternatives != null) {
+                    components.addAll(union.alternatives);
+                }
+                break;
+            default:
+                break;
+        }
+        return components;
+    }
+
+    /**
+     * Aborts if this type is frozen; called by all methods that modify a type.
+     *
+     * @see #markShared(boolean)
+     */
+    protected final void checkNotFrozen() {
+        if (frozen) {
+            ErrorReporter.errorAbort(
+                    "AnnotatedTypeMirror: attempt to modify a shared type: "
+                            + this.toString(true));
+        }
+    }
+
+    /**
+     * Returns the shared type that a lazy copy of this type should copy its component types from,
+     * or null if this type is neither shared nor a lazy copy.
+     */
+    /*default-visibility*/ AnnotatedTypeMirror getLazyCopySource() {
+        if (shared) {
+            return this;
+        }
+        return copySource;
+    }
+
+    /**
+     * Makes this type a lazy copy of the shared type {@code source}, whose kind and underlying type
+     * must be the same as this type's.
+     */
+    /*default-visibility*/ void setCopySource(AnnotatedTypeMirror source) {
+        this.copySource = source;
+    }
+
+    /**
+     * If this type is a lazy copy of a shared type, copies the component types of the shared type
+     * to this type. Must be called before the component fields of this type are read or written.
+     */
+    /*default-visibility*/ final void materialize() {
+        if (copySource != null) {
+            AnnotatedTypeMirror source = copySource;
+            copySource = null;
+            new AnnotatedTypeCopier().copyComponents(source, this);
+        }
+    }
+
     /**
      * Returns the annotations on this type.
      *
@@ -579,6 +780,7 @@ public abstract class AnnotatedTypeMirror {
                     "AnnotatedTypeMirror.addAnnotation: null is not a valid annotation.");
         }
         if (atypeFactory.isSupportedQualifier(a)) {
+            checkNotFrozen();
             this.annotations.add(a);
         } else {
             AnnotationMirror aliased = atypeFactory.aliasedAnnotation(a);
@@ -664,6 +866,7 @@ public abstract class AnnotatedTypeMirror {
         AnnotationMirror anno =
                 AnnotationUtils.getAnnotationByName(annotations, AnnotationUtils.annotationName(a));
         if (anno != null) {
+            checkNotFrozen();
             return annotations.remove(anno);
         } else {
             return false;
@@ -733,6 +936,7 @@ public abstract class AnnotatedTypeMirror {
      * methods.
      */
     public void clearAnnotations() {
+        checkNotFrozen();
         annotations.clear();
     }
 
@@ -871,6 +1075,18 @@ public abstract class AnnotatedTypeMirror {
 
         @Override
         public AnnotatedDeclaredType deepCopy(boolean copyAnnotations) {
+            AnnotatedTypeMirror source = getLazyCopySource();
+            if (source != null && copyAnnotations) {
+                AnnotatedDeclaredType copy =
+                        (AnnotatedDeclaredType)
+                                createType(getUnderlyingType(), atypeFactory, declaration);
+                copy.addAnnotations(annotations);
+                if (wasRaw) {
+                    copy.setWasRaw();
+                }
+                copy.setCopySource(source);
+                return copy;
+            }
             return (AnnotatedDeclaredType) new AnnotatedTypeCopier(copyAnnotations).visit(this);
         }
 
@@ -884,6 +1100,7 @@ public abstract class AnnotatedTypeMirror {
             if (!this.isDeclaration()) {
                 return this;
             }
+            materialize();
             AnnotatedDeclaredType result = this.shallowCopy(true);
             result.declaration = false;
             // setTypeArguments calls asUse on all the new type arguments.
@@ -904,6 +1121,8 @@ public abstract class AnnotatedTypeMirror {
          */
         // WMD
         public void setTypeArguments(List<? extends AnnotatedTypeMirror> ts) {
+            checkNotFrozen();
+            materialize();
             if (ts == null || ts.isEmpty()) {
                 typeArgs = Collections.emptyList();
             } else {
@@ -922,6 +1141,7 @@ public abstract class AnnotatedTypeMirror {
 
         /** @return the type argument for this type */
         public List<AnnotatedTypeMirror> getTypeArguments() {
+            materialize();
             if (typeArgs != null) {
                 return typeArgs;
             } else if (wasRaw()) {
@@ -979,6 +1199,7 @@ public abstract class AnnotatedTypeMirror {
          * supertypes of a raw type.
          */
         protected void setWasRaw() {
+            checkNotFrozen();
             this.wasRaw = true;
         }
 
@@ -989,6 +1210,7 @@ public abstract class AnnotatedTypeMirror {
 
         @Override
         public List<AnnotatedDeclaredType> directSuperTypes() {
+            materialize();
             if (supertypes == null) {
                 supertypes = Collections.unmodifiableList(SupertypeFinder.directSuperTypes(this));
             }
@@ -1003,6 +1225,7 @@ public abstract class AnnotatedTypeMirror {
          * for comment.
          */
         public List<AnnotatedDeclaredType> directSuperTypesField() {
+            materialize();
             return supertypes;
         }
 
@@ -1087,6 +1310,8 @@ public abstract class AnnotatedTypeMirror {
 
         /** Sets the enclosing type */
         /*default-visibility*/ void setEnclosingType(AnnotatedDeclaredType enclosingType) {
+            checkNotFrozen();
+            materialize();
             this.enclosingType = enclosingType;
         }
 
@@ -1096,6 +1321,7 @@ public abstract class AnnotatedTypeMirror {
          * @return enclosingType the enclosing type
          */
         public AnnotatedDeclaredType getEnclosingType() {
+            materialize();
             return enclosingType;
         }
     }
@@ -1176,12 +1402,15 @@ public abstract class AnnotatedTypeMirror {
          * @param params the parameter types
          */
         void setParameterTypes(List<? extends AnnotatedTypeMirror> params) {
+            checkNotFrozen();
+            materialize();
             paramTypes.clear();
             paramTypes.addAll(params);
         }
 
         /** @return the parameter types of this executable type */
         public List<AnnotatedTypeMirror> getParameterTypes() {
+            materialize();
             if (paramTypes.isEmpty()
                     && !((ExecutableType) actualType).getParameterTypes().isEmpty()) { // lazy init
                 for (TypeMirror t : ((ExecutableType) actualType).getParameterTypes()) {
@@ -1197,6 +1426,8 @@ public abstract class AnnotatedTypeMirror {
          * @param returnType the return type
          */
         void setReturnType(AnnotatedTypeMirror returnType) {
+            checkNotFrozen();
+            materialize();
             this.returnType = returnType;
         }
 
@@ -1207,6 +1438,7 @@ public abstract class AnnotatedTypeMirror {
          * @return the return type of this executable type
          */
         public AnnotatedTypeMirror getReturnType() {
+            materialize();
             if (returnType == null
                     && element != null
                     && ((ExecutableType) actualType).getReturnType() != null) { // lazy init
@@ -1227,6 +1459,8 @@ public abstract class AnnotatedTypeMirror {
          * @param receiverType the receiver type
          */
         void setReceiverType(AnnotatedDeclaredType receiverType) {
+            checkNotFrozen();
+            materialize();
             this.receiverType = receiverType;
         }
 
@@ -1235,6 +1469,7 @@ public abstract class AnnotatedTypeMirror {
          *     constructors of top-level classes
          */
         public /*@Nullable*/ AnnotatedDeclaredType getReceiverType() {
+            materialize();
             if (receiverType == null
                     // Static methods don't have a receiver
                     && !ElementUtils.isStatic(getElement())
@@ -1275,12 +1510,15 @@ public abstract class AnnotatedTypeMirror {
          * @param thrownTypes the thrown types
          */
         void setThrownTypes(List<? extends AnnotatedTypeMirror> thrownTypes) {
+            checkNotFrozen();
+            materialize();
             this.throwsTypes.clear();
             this.throwsTypes.addAll(thrownTypes);
         }
 
         /** @return the thrown types of this executable type */
         public List<AnnotatedTypeMirror> getThrownTypes() {
+            materialize();
             if (throwsTypes.isEmpty()
                     && !((ExecutableType) actualType).getThrownTypes().isEmpty()) { // lazy init
                 for (TypeMirror t : ((ExecutableType) actualType).getThrownTypes()) {
@@ -1296,12 +1534,15 @@ public abstract class AnnotatedTypeMirror {
          * @param types the type variables of this executable type
          */
         void setTypeVariables(List<AnnotatedTypeVariable> types) {
+            checkNotFrozen();
+            materialize();
             typeVarTypes.clear();
             typeVarTypes.addAll(types);
         }
 
         /** @return the type variables of this executable type, if any */
         public List<AnnotatedTypeVariable> getTypeVariables() {
+            materialize();
             if (typeVarTypes.isEmpty()
                     && !((ExecutableType) actualType).getTypeVariables().isEmpty()) { // lazy init
                 for (TypeMirror t : ((ExecutableType) actualType).getTypeVariables()) {
@@ -1313,6 +1554,16 @@ public abstract class AnnotatedTypeMirror {
 
         @Override
         public AnnotatedExecutableType deepCopy(boolean copyAnnotations) {
+            AnnotatedTypeMirror source = getLazyCopySource();
+            if (source != null && copyAnnotations) {
+                AnnotatedExecutableType copy =
+                        (AnnotatedExecutableType)
+                                createType(getUnderlyingType(), atypeFactory, false);
+                copy.addAnnotations(annotations);
+                copy.setElement(getElement());
+                copy.setCopySource(source);
+                return copy;
+            }
             return (AnnotatedExecutableType) new AnnotatedTypeCopier(copyAnnotations).visit(this);
         }
 
@@ -1346,6 +1597,7 @@ public abstract class AnnotatedTypeMirror {
         }
 
         public void setElement(/*@NonNull*/ ExecutableElement elem) {
+            checkNotFrozen();
             this.element = elem;
         }
 
@@ -1407,6 +1659,7 @@ public abstract class AnnotatedTypeMirror {
          */
         // WMD
         public void setComponentType(AnnotatedTypeMirror type) {
+            checkNotFrozen();
             this.componentType = type;
         }
 
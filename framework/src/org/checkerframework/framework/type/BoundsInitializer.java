@@ -538,6 +538,7 @@ public class BoundsInitializer {
             final TypeElement typeElement =
                     (TypeElement) declaredType.atypeFactory.types.asElement(actualType);
             List<AnnotatedTypeMirror> typeArgs;
+            declaredType.materialize();
             if (declaredType.typeArgs == null) {
                 typeArgs = new ArrayList<>();
                 for (int i = 0; i < typeElement.getTypeParameters().size(); i++) {
@@ -207,6 +207,7 @@ public class DefaultAnnotatedTypeFormatter implements AnnotatedTypeFormatter {
                             type.getAnnotations(), currentPrintInvisibleSetting));
             sb.append(smpl);
 
+            type.materialize();
             if (type.typeArgs != null) {
                 // getTypeArguments sets the field if it does not already exist.
                 final List<AnnotatedTypeMirror> typeArgs = type.typeArgs;
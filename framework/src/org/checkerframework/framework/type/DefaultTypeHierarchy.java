@@ -1,5 +1,9 @@
 package org.checkerframework.framework.type;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 import static org.checkerframework.framework.util.AnnotatedTypes.isDeclarationOfJavaLangEnum;
 import static org.checkerframework.framework.util.AnnotatedTypes.isEnum;
 
@@ -7,18 +11,23 @@ import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 import javax.lang.model.util.Types;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.qual.Covariant;
+import org.checkerframework.framework.qual.JavaExpression;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedArrayType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedIntersectionType;
@@ -34,6 +43,8 @@ import org.checkerframework.framework.util.AtmCombo;
 import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.framework.util.TypeArgumentMapper;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BoundedCache;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.Pair;
@@ -124,6 +135,22 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
     // currentTop before passing annotations to qualifierHierarchy.
     protected AnnotationMirror currentTop;
 
+    /** The maximum number of entries in {@link #subtypeCache}. */
+    private static final int SUBTYPE_CACHE_SIZE = 1000;
+
+    /**
+     * The results of {@link #isSubtype(AnnotatedTypeMirror, AnnotatedTypeMirror, AnnotationMirror)}
+     * for the current compilation unit, or null if the atfDoNotCache option is given. Only the
+     * checks between types without component types are cached, see {@link #cacheKey}.
+     */
+    private final /*@Nullable*/ BoundedCache<SubtypeCacheKey, Boolean> subtypeCache;
+
+    /**
+     * Whether each annotation, by name, has an element that is a Java expression and whose meaning
+     * therefore depends on where the annotation is written.
+     */
+    private final Map<String, Boolean> dependentAnnotations = new HashMap<>();
+
     public DefaultTypeHierarchy(
             final BaseTypeChecker checker,
             final QualifierHierarchy qualifierHierarchy,
@@ -136,6 +163,14 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
 
         this.ignoreRawTypes = ignoreRawTypes;
         this.invariantArrayComponents = invariantArrayComponents;
+
+        if (checker.hasOption("atfDoNotCache")) {
+            this.subtypeCache = null;
+        } else {
+            this.subtypeCache =
+                    CollectionUtils.createCache(
+                            "subtypeCache", SUBTYPE_CACHE_SIZE, null, BoundedCache.Policy.LRU);
+        }
     }
 
     public DefaultRawnessComparer createRawnessComparer() {
@@ -179,7 +214,180 @@ public class DefaultTypeHierarchy extends AbstractAtmComboVisitor<Boolean, Visit
             final AnnotatedTypeMirror supertype,
             final AnnotationMirror top) {
         currentTop = top;
-        return isSubtype(subtype, supertype, new VisitHistory());
+        /*@Nullable*/ Object subtypeKey = subtypeCache == null ? null : cacheKey(subtype);
+        /*@Nullable*/ Object supertypeKey = subtypeKey == null ? null : cacheKey(supertype);
+        if (supertypeKey == null) {
+            return isSubtype(subtype, supertype, new VisitHistory());
+        }
+        SubtypeCacheKey key =
+                new SubtypeCacheKey(subtypeKey, subtype, supertypeKey, supertype, top);
+        Boolean result = subtypeCache.get(key);
+        if (result == null) {
+            result = isSubtype(subtype, supertype, new VisitHistory());
+            subtypeCache.put(key, result);
+            // A recursive call may have changed it.
+            currentTop = top;
+        }
+        return result;
+    }
+
+    /**
+     * Returns what identifies the underlying type of {@code type} in a key of {@link
+     * #subtypeCache}, or null if checks with {@code type} are not cached.
+     *
+     * <p>Only types without component types are cached: primitive types, the null type, and
+     * declared types without type arguments or an enclosing type, whose primary annotations do not
+     * contain Java expressions. Whether such a type is a subtype of another only depends on their
+     * primary annotations and on their underlying types, which are identified by their kind or
+     * their type element. Javac creates a new type for each occurrence of a type with components,
+     * so such types would have to be compared structurally; that costs more than the subtype checks
+     * it could save, and the types may contain type variables or expressions whose meaning depends
+     * on the scope.
+     */
+    private /*@Nullable*/ Object cacheKey(AnnotatedTypeMirror type) {
+        Object key;
+        switch (type.getKind()) {
+            case DECLARED:
+                AnnotatedDeclaredType declaredType = (AnnotatedDeclaredType) type;
+                if (declaredType.wasRaw()
+                        || !declaredType.getTypeArguments().isEmpty()
+                        || declaredType.getEnclosingType() != null) {
+                    return null;
+                }
+                key = declaredType.getUnderlyingType().asElement();
+                break;
+            case NULL:
+                key = TypeKind.NULL;
+                break;
+            default:
+                if (!type.getKind().isPrimitive()) {
+                    return null;
+                }
+                key = type.getKind();
+                break;
+        }
+        for (AnnotationMirror anno : type.getAnnotations()) {
+            if (isDependentAnnotation(anno)) {
+                return null;
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Returns the cache of subtype checks, whose statistics are printed if the resourceStats option
+     * is given.
+     *
+     * @return the cache of subtype checks, or null if the atfDoNotCache option is given
+     */
+    public /*@Nullable*/ BoundedCache<?, ?> getSubtypeCache() {
+        return subtypeCache;
+    }
+
+    /**
+     * Removes all results from the cache of subtype checks. Called when the type factory starts to
+     * process a new compilation unit.
+     */
+    public void clearSubtypeCache() {
+        if (subtypeCache != null) {
+            subtypeCache.clear();
+        }
+    }
+
+    /**
+     * Returns true if {@code anno} has an element that is a Java expression, such as the element
+     * of {@code @KeyFor("m")}.
+     */
+    public boolean isDependentAnnotation(AnnotationMirror anno) {
+        if (anno.getElementValues().isEmpty()) {
+            return false;
+        }
+        String name = AnnotationUtils.annotationName(anno);
+        Boolean dependent = dependentAnnotations.get(name);
+        if (dependent == null) {
+            dependent = false;
+            for (ExecutableElement element :
+                    ElementFilter.methodsIn(
+                            anno.getAnnotationType().asElement().getEnclosedElements())) {
+                if (element.getAnnotation(JavaExpression.class) != null) {
+                    dependent = true;
+                    break;
+                }
+            }
+            dependentAnnotations.put(name, dependent);
+        }
+        return dependent;
+    }
+
+    /**
+     * The key of a subtype check in {@link #subtypeCache}: the underlying types and the primary
+     * annotations of the subtype and the supertype, and the top annotation of the hierarchy.
+     */
+    private static final class SubtypeCacheKey {
+        final Object subtype;
+        final Set<AnnotationMirror> subtypeAnnos;
+        final Object supertype;
+        final Set<AnnotationMirror> supertypeAnnos;
+        final AnnotationMirror top;
+        final int hashCode;
+
+        /**
+         * Creates the key of a subtype check.
+         *
+         * @param subtype identifies the underlying type of {@code subtypeType}, see {@link
+         *     #cacheKey}
+         * @param subtypeType the subtype
+         * @param supertype identifies the underlying type of {@code supertypeType}
+         * @param supertypeType the supertype
+         * @param top the top annotation of the hierarchy
+         */
+        SubtypeCacheKey(
+                Object subtype,
+                AnnotatedTypeMirror subtypeType,
+                Object supertype,
+                AnnotatedTypeMirror supertypeType,
+                AnnotationMirror top) {
+            this.subtype = subtype;
+            // The types may be modified once the check returns, so the key holds copies.
+            this.subtypeAnnos = AnnotationUtils.createAnnotationSet();
+            this.subtypeAnnos.addAll(subtypeType.getAnnotations());
+            this.supertype = supertype;
+            this.supertypeAnnos = AnnotationUtils.createAnnotationSet();
+            this.supertypeAnnos.addAll(supertypeType.getAnnotations());
+            this.top = top;
+            int hash = 31 * subtype.hashCode() + supertype.hashCode();
+            hash = 31 * hash + annotationsHashCode(subtypeAnnos);
+            hash = 31 * hash + annotationsHashCode(supertypeAnnos);
+            this.hashCode = 31 * hash + AnnotationUtils.annotationName(top).hashCode();
+        }
+
+        /** Returns a hash code of {@code annos} that only depends on the annotation names. */
+        private static int annotationsHashCode(Set<AnnotationMirror> annos) {
+            int hash = 0;
+            for (AnnotationMirror anno : annos) {
+                hash += AnnotationUtils.annotationName(anno).hashCode();
+            }
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof SubtypeCacheKey)) {
+                return false;
+            }
+            SubtypeCacheKey other = (SubtypeCacheKey) o;
+            return hashCode == other.hashCode
+                    && subtype.equals(other.subtype)
+                    && supertype.equals(other.supertype)
+                    && AnnotationUtils.areSame(top, other.top)
+                    && AnnotationUtils.areSame(subtypeAnnos, other.subtypeAnnos)
+                    && AnnotationUtils.areSame(supertypeAnnos, other.supertypeAnnos);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 
     /**
@@ -11,6 +11,7 @@ import javax.lang.model.element.AnnotationMirror;
 import org.checkerframework.common.basetype.BaseTypeChecker;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy;
 import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
+import org.checkerframework.framework.util.QualifierIndex;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 
@@ -99,6 +100,12 @@ class GeneralQualifierHierarchy extends MultiGraphQualifierHierarchy {
         return AnnotationUtils.createAnnotationSet();
     }
 
+    // Any annotation is a qualifier, so qualifiers cannot be indexed.
+    @Override
+    public QualifierIndex getQualifierIndex() {
+        return null;
+    }
+
     // Not needed - raises error.
     @Override
     public Set<? extends AnnotationMirror> getTypeQualifiers() {
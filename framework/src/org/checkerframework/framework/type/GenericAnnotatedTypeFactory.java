@@ -36,6 +36,7 @@ import java.util.Queue;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
@@ -43,6 +44,7 @@ import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.dataflow.analysis.Analysis.IterationStrategy;
 import org.checkerframework.dataflow.analysis.AnalysisResult;
 import org.checkerframework.dataflow.analysis.FlowExpressions;
 import org.checkerframework.dataflow.analysis.FlowExpressions.FieldAccess;
@@ -81,6 +83,7 @@ import org.checkerframework.framework.qual.MonotonicQualifier;
 import org.checkerframework.framework.qual.RelevantJavaTypes;
 import org.checkerframework.framework.qual.TypeUseLocation;
 import org.checkerframework.framework.qual.Unqualified;
+import org.checkerframework.framework.source.Profiler;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.type.treeannotator.ImplicitsTreeAnnotator;
@@ -102,7 +105,9 @@ import org.checkerframework.framework.util.dependenttypes.DependentTypesTreeAnno
 import org.checkerframework.framework.util.typeinference.TypeArgInferenceUtil;
 import org.checkerframework.javacutil.AnnotationBuilder;
 import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BoundedCache;
 import org.checkerframework.javacutil.CollectionUtils;
+import org.checkerframework.javacutil.ElementUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.Pair;
@@ -170,6 +175,30 @@ public abstract class GenericAnnotatedTypeFactory<
     /** An empty store. */
     private Store emptyStore;
 
+    /** The order in which the dataflow analysis visits blocks, set by -AflowIteration. */
+    private final IterationStrategy iterationStrategy;
+
+    /**
+     * Whether the dataflow analysis should run in sparse mode, set by -AsparseFlow. It only does if
+     * the checker has no dependent type qualifiers; see {@link #analyze}.
+     */
+    private final boolean sparseFlow;
+
+    /**
+     * The number of nodes between two checkpoints of the dataflow analysis, set by
+     * -AflowCheckpointInterval; 0 if no checkpoints are recorded.
+     */
+    private final int flowCheckpointInterval;
+
+    /** Whether the dataflow analysis only widens at loop heads, set by -AflowWidening. */
+    private final boolean wideningAtLoopHeadsOnly;
+
+    /**
+     * The maximal number of narrowing passes of the dataflow analysis, set by -AflowNarrowing; 0
+     * if the analysis does not narrow.
+     */
+    private final int flowNarrowingPasses;
+
     /**
      * Caches for {@link AnalysisResult#runAnalysisFor(Node, boolean, TransferInput, Map)}. This
      * cache is enabled if {@link #shouldCache} is true. The cache size is derived from {@link
@@ -177,7 +206,7 @@ public abstract class GenericAnnotatedTypeFactory<
      *
      * @see AnalysisResult#runAnalysisFor(Node, boolean, TransferInput, Map)
      */
-    protected final Map<
+    protected final BoundedCache<
                     TransferInput<Value, Store>,
                     IdentityHashMap<Node, TransferResult<Value, Store>>>
             flowResultAnalysisCaches;
@@ -201,15 +230,23 @@ public abstract class GenericAnnotatedTypeFactory<
         this.regularExitStores = null;
         this.methodInvocationStores = null;
         this.returnStatementStores = null;
+        this.classFlowResults = new IdentityHashMap<>();
 
         this.initializationStore = null;
         this.initializationStaticStore = null;
 
         this.cfgVisualizer = createCFGVisualizer();
+        this.iterationStrategy = getIterationStrategy(checker);
+        this.sparseFlow = checker.hasOption("sparseFlow");
+        this.flowCheckpointInterval = getFlowCheckpointInterval(checker);
+        this.wideningAtLoopHeadsOnly = isWideningAtLoopHeadsOnly(checker);
+        this.flowNarrowingPasses = getFlowNarrowingPasses(checker);
 
         if (shouldCache) {
             int cacheSize = getCacheSize();
-            flowResultAnalysisCaches = CollectionUtils.createLRUCache(cacheSize);
+            flowResultAnalysisCaches =
+                    CollectionUtils.createCache(
+                            "flowResultAnalysisCaches", cacheSize, null, getCachePolicy());
         } else {
             flowResultAnalysisCaches = null;
         }
@@ -268,6 +305,7 @@ public abstract class GenericAnnotatedTypeFactory<
         this.regularExitStores = null;
         this.methodInvocationStores = null;
         this.returnStatementStores = null;
+        this.classFlowResults.clear();
         this.initializationStore = null;
         this.initializationStaticStore = null;
 
@@ -276,6 +314,15 @@ public abstract class GenericAnnotatedTypeFactory<
         }
     }
 
+    @Override
+    public List<BoundedCache<?, ?>> getCaches() {
+        List<BoundedCache<?, ?>> caches = super.getCaches();
+        if (shouldCache) {
+            caches.add(flowResultAnalysisCaches);
+        }
+        return caches;
+    }
+
     // **********************************************************************
     // Factory Methods for the appropriate annotator classes
     // **********************************************************************
@@ -822,7 +869,8 @@ public abstract class GenericAnnotatedTypeFactory<
      * </pre>
      *
      * Note that flowResult contains analysis results for Trees from multiple classes which are
-     * produced by multiple calls to performFlowAnalysis.
+     * produced by multiple calls to performFlowAnalysis. The results of a class are removed by
+     * {@link #releaseFlowResults} once the class has been type-checked.
      */
     protected AnalysisResult<Value, Store> flowResult;
 
@@ -842,6 +890,63 @@ public abstract class GenericAnnotatedTypeFactory<
      */
     protected IdentityHashMap<MethodInvocationTree, Store> methodInvocationStores;
 
+    /**
+     * The results of the dataflow analyses of the members of one class, which {@link
+     * #releaseFlowResults} removes again. The members of nested classes have their own results.
+     */
+    private class ClassFlowResults {
+        /** The results that were combined into {@link #flowResult}. */
+        final List<AnalysisResult<Value, Store>> results = new ArrayList<>();
+
+        /** The keys of {@link #regularExitStores} and {@link #returnStatementStores}. */
+        final List<Tree> trees = new ArrayList<>();
+    }
+
+    /** The results of the dataflow analyses of each class that has not been released yet. */
+    private final IdentityHashMap<ClassTree, ClassFlowResults> classFlowResults;
+
+    /**
+     * Returns the results of the dataflow analyses of the class whose members are being analyzed.
+     * Lambda expressions and initializers belong to the class they appear in.
+     */
+    private ClassFlowResults getClassFlowResults() {
+        ClassTree classTree = visitorState.getClassTree();
+        ClassFlowResults results = classFlowResults.get(classTree);
+        if (results == null) {
+            results = new ClassFlowResults();
+            classFlowResults.put(classTree, results);
+        }
+        return results;
+    }
+
+    /**
+     * Releases the results of the dataflow analyses of the members of {@code classTree}: the
+     * values of its nodes, its stores, and the regular exit and return statement stores of its
+     * methods, initializers, and lambda expressions. Together with them, their control flow graphs
+     * can be garbage-collected. The results of nested classes and of enclosing classes are kept,
+     * so this method can be called as soon as {@code classTree} has been type-checked, even if an
+     * enclosing class has not.
+     *
+     * <p>Called by {@link org.checkerframework.common.basetype.BaseTypeVisitor#visitClass} after it
+     * has type-checked {@code classTree}. Otherwise, the results are kept until {@link #setRoot}
+     * is called for the next compilation unit.
+     *
+     * @param classTree a class that has been type-checked
+     */
+    public void releaseFlowResults(ClassTree classTree) {
+        ClassFlowResults results = classFlowResults.remove(classTree);
+        if (results == null) {
+            return;
+        }
+        for (AnalysisResult<Value, Store> result : results.results) {
+            flowResult.remove(result);
+        }
+        for (Tree tree : results.trees) {
+            regularExitStores.remove(tree);
+            returnStatementStores.remove(tree);
+        }
+    }
+
     /**
      * Returns the regular exit store for a method or another code block (such as static
      * initializers).
@@ -1077,6 +1182,7 @@ public abstract class GenericAnnotatedTypeFactory<
                 } else {
                     regularExitStores.put(ct, initializationStaticStore);
                 }
+                getClassFlowResults().trees.add(ct);
             } finally {
                 visitorState.setClassType(preClassType);
                 visitorState.setClassTree(preClassTree);
@@ -1125,6 +1231,112 @@ public abstract class GenericAnnotatedTypeFactory<
                 null);
     }
 
+    /**
+     * Returns the iteration strategy given by the flowIteration option: {@code rpo} (the default),
+     * {@code roundRobin}, or {@code scc}.
+     */
+    private static IterationStrategy getIterationStrategy(BaseTypeChecker checker) {
+        String option = checker.getOption("flowIteration", "rpo");
+        switch (option) {
+            case "rpo":
+                return IterationStrategy.PRIORITY_RPO;
+            case "roundRobin":
+                return IterationStrategy.ROUND_ROBIN;
+            case "scc":
+                return IterationStrategy.SCC;
+            default:
+                checker.userErrorAbort(
+                        "flowIteration must be one of rpo, roundRobin, scc, but was: " + option);
+                return null; // dead code
+        }
+    }
+
+    /**
+     * Returns the checkpoint interval given by the flowCheckpointInterval option, or 0 if the
+     * option is not given.
+     */
+    private static int getFlowCheckpointInterval(BaseTypeChecker checker) {
+        String option = checker.getOption("flowCheckpointInterval");
+        if (option == null) {
+            return 0;
+        }
+        int interval;
+        try {
+            interval = Integer.parseInt(option);
+        } catch (NumberFormatException ex) {
+            interval = -1;
+        }
+        if (interval < 0) {
+            checker.userErrorAbort(
+                    "flowCheckpointInterval must be a non-negative integer, but was: " + option);
+        }
+        return interval;
+    }
+
+    /**
+     * Returns whether the flowWidening option asks to widen only at loop heads: {@code all} (the
+     * default) widens at every block, {@code loopHeads} only at loop heads.
+     */
+    private static boolean isWideningAtLoopHeadsOnly(BaseTypeChecker checker) {
+        String option = checker.getOption("flowWidening", "all");
+        switch (option) {
+            case "all":
+                return false;
+            case "loopHeads":
+                return true;
+            default:
+                checker.userErrorAbort(
+                        "flowWidening must be one of all, loopHeads, but was: " + option);
+                return false; // dead code
+        }
+    }
+
+    /**
+     * Returns the maximal number of narrowing passes given by the flowNarrowing option, or 0 if
+     * the option is not given. If the option has no value, 2 is used.
+     */
+    private static int getFlowNarrowingPasses(BaseTypeChecker checker) {
+        if (!checker.hasOption("flowNarrowing")) {
+            return 0;
+        }
+        String option = checker.getOption("flowNarrowing");
+        if (option == null) {
+            return 2;
+        }
+        int passes;
+        try {
+            passes = Integer.parseInt(option);
+        } catch (NumberFormatException ex) {
+            passes = -1;
+        }
+        if (passes < 0) {
+            checker.userErrorAbort(
+                    "flowNarrowing must be a non-negative integer, but was: " + option);
+        }
+        return passes;
+    }
+
+    /**
+     * Returns the name under which the profiler records the analysis of {@code ast}: the
+     * qualified name of a method, or the class name followed by {@code <lambda>} or {@code
+     * <initializer>}.
+     */
+    private static String getProfileName(UnderlyingAST ast, ClassTree currentClass) {
+        switch (ast.getKind()) {
+            case METHOD:
+                ExecutableElement method =
+                        TreeUtils.elementFromDeclaration(((CFGMethod) ast).getMethod());
+                return ElementUtils.enclosingClass(method).getQualifiedName() + "." + method;
+            case LAMBDA:
+                return TreeUtils.elementFromDeclaration(currentClass).getQualifiedName()
+                        + ".<lambda>";
+            default:
+                ClassTree classTree = ((CFGStatement) ast).getClassTree();
+                return TreeUtils.elementFromDeclaration(classTree).getQualifiedName()
+                        + ".<initializer>";
+        }
+    }
+
     protected void analyze(
             Queue<ClassTree> queue,
             Queue<Pair<LambdaExpressionTree, Store>> lambdaQueue,
@@ -1135,8 +1347,22 @@ public abstract class GenericAnnotatedTypeFactory<
             boolean updateInitializationStore,
             boolean isStatic,
             Store lambdaStore) {
+        Profiler profiler = checker.getProfiler();
+        String unitName = null;
+        String astName = null;
+        if (profiler.isEnabled()) {
+            unitName = root.getSourceFile().getName();
+            astName = getProfileName(ast, currentClass);
+        }
+        Profiler.Timer timer =
+                profiler.start(checker, Profiler.CFG_CONSTRUCTION, unitName, astName);
         CFGBuilder builder = new CFCFGBuilder(checker, this);
-        ControlFlowGraph cfg = builder.run(root, processingEnv, ast);
+        ControlFlowGraph cfg;
+        try {
+            cfg = builder.run(root, processingEnv, ast);
+        } finally {
+            timer.stop();
+        }
         FlowAnalysis newAnalysis = createFlowAnalysis(fieldValues);
         TransferFunction transfer = newAnalysis.getTransferFunction();
         if (emptyStore == null) {
@@ -1156,11 +1382,27 @@ public abstract class GenericAnnotatedTypeFactory<
                 }
             }
         }
-        analyses.getFirst().performAnalysis(cfg);
+        newAnalysis.setIterationStrategy(iterationStrategy);
+        // A dependent type qualifier, such as @KeyFor("m"), can name a local variable in a string.
+        // The liveness analysis of the sparse mode does not see such a use, and would drop the
+        // refinement of the variable while the qualifier still depends on it.
+        newAnalysis.setSparse(sparseFlow && dependentTypesHelper == null);
+        newAnalysis.setCheckpointInterval(flowCheckpointInterval);
+        newAnalysis.setWideningAtLoopHeadsOnly(wideningAtLoopHeadsOnly);
+        newAnalysis.setNarrowingPasses(flowNarrowingPasses);
+        timer = profiler.start(checker, Profiler.DATAFLOW, unitName, astName);
+        try {
+            analyses.getFirst().performAnalysis(cfg);
+            timer.addBlockVisits(analyses.getFirst().getBlockVisits());
+        } finally {
+            timer.stop();
+        }
         AnalysisResult<Value, Store> result = analyses.getFirst().getResult();
 
         // store result
         flowResult.combine(result);
+        ClassFlowResults classResults = getClassFlowResults();
+        classResults.results.add(result);
         if (ast.getKind() == UnderlyingAST.Kind.METHOD) {
             // store exit store (for checking postconditions)
             CFGMethod mast = (CFGMethod) ast;
@@ -1170,11 +1412,13 @@ public abstract class GenericAnnotatedTypeFactory<
                 regularExitStores.put(method, regularExitStore);
             }
             returnStatementStores.put(method, analyses.getFirst().getReturnStatementStores());
+            classResults.trees.add(method);
         } else if (ast.getKind() == UnderlyingAST.Kind.ARBITRARY_CODE) {
             CFGStatement block = (CFGStatement) ast;
             Store regularExitStore = analyses.getFirst().getRegularExitStore();
             if (regularExitStore != null) {
                 regularExitStores.put(block.getCode(), regularExitStore);
+                classResults.trees.add(block.getCode());
             }
         } else if (ast.getKind() == UnderlyingAST.Kind.LAMBDA) {
             // TODO: Postconditions?
@@ -1183,6 +1427,7 @@ public abstract class GenericAnnotatedTypeFactory<
             Store regularExitStore = analyses.getFirst().getRegularExitStore();
             if (regularExitStore != null) {
                 regularExitStores.put(block.getCode(), regularExitStore);
+                classResults.trees.add(block.getCode());
             }
         }
 
@@ -10,6 +10,8 @@ import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.type.TypeKind;
 import org.checkerframework.framework.qual.PolyAll;
+import org.checkerframework.framework.util.QualifierIndex;
+import org.checkerframework.framework.util.QualifierSet;
 import org.checkerframework.javacutil.AnnotationUtils;
 import org.checkerframework.javacutil.ErrorReporter;
 
@@ -37,6 +39,19 @@ public abstract class QualifierHierarchy {
     // Getter methods about this hierarchy
     // **********************************************************************
 
+    /**
+     * Returns an index that assigns dense ids to the qualifiers of this hierarchy. Annotated types
+     * use the index to store their primary annotations compactly, see {@link QualifierSet}.
+     *
+     * <p>Annotated types are created concurrently, so a hierarchy that supports an index should
+     * compute it in its constructor rather than on demand. This implementation returns null.
+     *
+     * @return the qualifier index of this hierarchy, or null if this hierarchy cannot be indexed
+     */
+    public QualifierIndex getQualifierIndex() {
+        return null;
+    }
+
     /**
      * Returns the width of this hierarchy, i.e. the expected number of annotations on any valid
      * type.
@@ -177,14 +177,25 @@ class SupertypeFinder {
                 enclosing = enclosing.getEnclosingType();
             }
 
-            ClassTree classTree = atypeFactory.trees.getTree(typeElement);
-            // Testing against enum and annotation. Ideally we can simply use element!
-            if (classTree != null) {
-                supertypes.addAll(supertypesFromTree(type, classTree));
-            } else {
-                supertypes.addAll(supertypesFromElement(type, typeElement));
-                // final Element elem = type.getElement() == null ? typeElement : type.getElement();
+            // The supertypes in the declaration of the class only depend on the use of the class
+            // if it is raw or an enum, whose supertype Enum<E> gets the annotations of the use.
+            // Otherwise they are cached, and the type arguments are substituted below.
+            boolean cacheable = !type.wasRaw() && typeElement.getKind() != ElementKind.ENUM;
+            List<AnnotatedDeclaredType> declaredSupertypes =
+                    cacheable ? atypeFactory.getCachedDeclaredSuperTypes(typeElement) : null;
+            if (declaredSupertypes == null) {
+                ClassTree classTree = atypeFactory.trees.getTree(typeElement);
+                // Testing against enum and annotation. Ideally we can simply use element!
+                if (classTree != null) {
+                    declaredSupertypes = supertypesFromTree(type, classTree);
+                } else {
+                    declaredSupertypes = supertypesFromElement(type, typeElement);
+                }
+                if (cacheable) {
+                    atypeFactory.cacheDeclaredSuperTypes(typeElement, declaredSupertypes);
+                }
             }
+            supertypes.addAll(declaredSupertypes);
 
             if (typeElement.getKind() == ElementKind.ANNOTATION_TYPE) {
                 TypeElement jlaElement =
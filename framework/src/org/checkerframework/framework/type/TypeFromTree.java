@@ -60,6 +60,11 @@ class TypeFromTree {
             final AnnotatedTypeFactory typeFactory, final Tree tree) {
         abortIfTreeIsNull(typeFactory, tree);
 
+        AnnotatedTypeMirror artificialType = typeFactory.getArtificialTypeTreeType(tree);
+        if (artificialType != null) {
+            return artificialType.deepCopy();
+        }
+
         final AnnotatedTypeMirror type = typeTreeVisitor.visit(tree, typeFactory);
         abortIfTypeIsExecutable(typeFactory, tree, type);
         return type;
@@ -1,7 +1,11 @@
 package org.checkerframework.framework.type.visitor;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import javax.lang.model.type.TypeMirror;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.util.PluginUtil;
 import org.checkerframework.javacutil.Pair;
@@ -20,13 +24,24 @@ import org.checkerframework.javacutil.Pair;
  * but with a different supertype. For example, if the two types are {@code @A T extends @B
  * Serializable<T>} and {@code @C Serializable<?>}, then isSubtype is first called one those types
  * and then on {@code @B Serializable<T>} and {@code @C Serializable<?>}.
+ *
+ * <p>The visits are indexed by their underlying types, which are equal for equivalent pairs of
+ * annotated types, see {@link AnnotatedTypeMirror#equals}. Most lookups are of a pair of types that
+ * are the very same objects as a visited pair, and they are found without traversing the types.
+ * Only the other visits with the same underlying types are compared with {@link
+ * AnnotatedTypeMirror#equals}. The structural hash codes of the annotated types, whose computation
+ * traverses them, are not needed.
  */
 public class VisitHistory {
 
-    private final Set<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>> visited;
+    /** The visited pairs, by their underlying types. */
+    private final Map<
+                    Pair<TypeMirror, TypeMirror>,
+                    List<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>>>
+            visited;
 
     public VisitHistory() {
-        this.visited = new HashSet<>();
+        this.visited = new HashMap<>();
     }
 
     public void clear() {
@@ -35,7 +50,13 @@ public class VisitHistory {
 
     /** Add a visit for type1 and type2. */
     public void add(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
-        this.visited.add(Pair.of(type1, type2));
+        Pair<TypeMirror, TypeMirror> key = underlyingTypes(type1, type2);
+        List<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>> visits = visited.get(key);
+        if (visits == null) {
+            visits = new ArrayList<>(1);
+            visited.put(key, visits);
+        }
+        visits.add(Pair.of(type1, type2));
     }
 
     /**
@@ -45,11 +66,39 @@ public class VisitHistory {
      * @return true if an equivalent pair has already been added to the history
      */
     public boolean contains(final AnnotatedTypeMirror type1, final AnnotatedTypeMirror type2) {
-        return this.visited.contains(Pair.of(type1, type2));
+        List<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>> visits =
+                visited.get(underlyingTypes(type1, type2));
+        if (visits == null) {
+            return false;
+        }
+        for (Pair<AnnotatedTypeMirror, AnnotatedTypeMirror> visit : visits) {
+            if (visit.first == type1 && visit.second == type2) {
+                return true;
+            }
+        }
+        for (Pair<AnnotatedTypeMirror, AnnotatedTypeMirror> visit : visits) {
+            if (Objects.equals(visit.first, type1) && Objects.equals(visit.second, type2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the underlying types of {@code type1} and {@code type2}, which may be null. */
+    private static Pair<TypeMirror, TypeMirror> underlyingTypes(
+            AnnotatedTypeMirror type1, AnnotatedTypeMirror type2) {
+        return Pair.of(
+                type1 == null ? null : type1.getUnderlyingType(),
+                type2 == null ? null : type2.getUnderlyingType());
     }
 
     @Override
     public String toString() {
-        return "VisitHistory( " + PluginUtil.join(", ", visited) + " )";
+        List<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>> visits = new ArrayList<>();
+        for (List<Pair<AnnotatedTypeMirror, AnnotatedTypeMirror>> sameUnderlyingTypes :
+                visited.values()) {
+            visits.addAll(sameUnderlyingTypes);
+        }
+        return "VisitHistory( " + PluginUtil.join(", ", visits) + " )";
     }
 }
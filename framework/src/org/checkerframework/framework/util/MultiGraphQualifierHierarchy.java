@@ -8,14 +8,17 @@ import org.checkerframework.checker.nullness.qual.PolyNull;
 */
 
 import java.lang.annotation.Annotation;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.util.ElementFilter;
 import org.checkerframework.dataflow.qual.Pure;
 import org.checkerframework.dataflow.qual.SideEffectFree;
 import org.checkerframework.framework.qual.PolymorphicQualifier;
@@ -177,6 +180,9 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
     /** All qualifiers, including polymorphic qualifiers. */
     private final Set<AnnotationMirror> typeQualifiers;
 
+    /** The dense qualifier ids of {@link #typeQualifiers}. */
+    private final QualifierIndex qualifierIndex;
+
     public MultiGraphQualifierHierarchy(MultiGraphFactory f) {
         this(f, (Object[]) null);
     }
@@ -212,9 +218,103 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         Set<AnnotationMirror> typeQualifiers = AnnotationUtils.createAnnotationSet();
         typeQualifiers.addAll(supertypesMap.keySet());
         this.typeQualifiers = Collections.unmodifiableSet(typeQualifiers);
+        this.qualifierIndex = new QualifierIndex(typeQualifiers);
+
+        // Compile the transitive closure into a subtype matrix.
+        this.qualifierIds = new IdentityHashMap<>();
+        this.qualifiersById = new AnnotationMirror[typeQualifiers.size()];
+        this.qualifierHasElements = new boolean[qualifiersById.length];
+        int nextId = 0;
+        for (AnnotationMirror qual : typeQualifiers) {
+            /*@Interned*/ String name = AnnotationUtils.annotationName(qual);
+            if (qualifierIds.containsKey(name)) {
+                // Several qualifiers with the same name but different values: none gets an id.
+                qualifierIds.put(name, -1);
+                continue;
+            }
+            qualifierIds.put(name, nextId);
+            qualifiersById[nextId] = qual;
+            qualifierHasElements[nextId] =
+                    !ElementFilter.methodsIn(
+                                    qual.getAnnotationType().asElement().getEnclosedElements())
+                            .isEmpty();
+            ++nextId;
+        }
+        this.supertypesMatrix = new BitSet[qualifiersById.length];
+        for (int subId = 0; subId < nextId; ++subId) {
+            supertypesMatrix[subId] =
+                    compileSupertypes(supertypesMap.get(qualifiersById[subId]), subId);
+        }
+        int size = qualifiersById.length;
+        this.lubTable = new Object[size][size];
+        this.glbTable = new Object[size][size];
         // System.out.println("MGH: " + this);
     }
 
+    /**
+     * Maps the interned name of each qualifier to its index in {@link #qualifiersById}, or to -1
+     * if several qualifiers with that name and different element values are in the hierarchy.
+     */
+    private final Map</*@Interned*/ String, Integer> qualifierIds;
+
+    /** The qualifiers of this hierarchy, indexed by their ids. */
+    private final AnnotationMirror[] qualifiersById;
+
+    /** Whether the annotation type of the qualifier with the given id declares any elements. */
+    private final boolean[] qualifierHasElements;
+
+    /**
+     * Row {@code i} contains bit {@code j} iff the qualifier with id {@code i} is a subtype of the
+     * qualifier with id {@code j}. A row is null if some supertype of the qualifier has no id; the
+     * subtype relation for that qualifier is then computed from {@link #supertypesMap}.
+     */
+    private final BitSet[] supertypesMatrix;
+
+    /**
+     * Memoized results of {@link #leastUpperBound(AnnotationMirror, AnnotationMirror)} for
+     * qualifiers with ids. A null entry has not been computed yet; {@link #NO_RESULT} represents a
+     * null result.
+     */
+    private final Object[][] lubTable;
+
+    /** Memoized results of {@link #greatestLowerBound(AnnotationMirror, AnnotationMirror)}. */
+    private final Object[][] glbTable;
+
+    /** Marker for a memoized null result in {@link #lubTable} and {@link #glbTable}. */
+    private static final Object NO_RESULT = new Object();
+
+    /** Returns the row of {@link #supertypesMatrix} for the given supertypes of a qualifier. */
+    private /*@Nullable*/ BitSet compileSupertypes(Set<AnnotationMirror> supers, int subId) {
+        BitSet row = new BitSet(qualifiersById.length);
+        row.set(subId);
+        for (AnnotationMirror sup : supers) {
+            int supId = qualifierId(sup);
+            if (supId < 0) {
+                return null;
+            }
+            row.set(supId);
+        }
+        return row;
+    }
+
+    /**
+     * Returns the id of the given qualifier, or -1 if the qualifier has no id. A qualifier only has
+     * an id if it is the same, including element values, as the qualifier in the hierarchy.
+     */
+    private int qualifierId(/*@Nullable*/ AnnotationMirror qual) {
+        if (qual == null) {
+            return -1;
+        }
+        Integer id = qualifierIds.get(AnnotationUtils.annotationName(qual));
+        if (id == null || id < 0) {
+            return -1;
+        }
+        if (qualifierHasElements[id] && !AnnotationUtils.areSame(qualifiersById[id], qual)) {
+            return -1;
+        }
+        return id;
+    }
+
     /**
      * Method to finalize the qualifier hierarchy before it becomes unmodifiable. The parameters
      * pass all fields and allow modification.
@@ -396,11 +496,34 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
         return typeQualifiers;
     }
 
+    @Override
+    public QualifierIndex getQualifierIndex() {
+        return qualifierIndex;
+    }
+
     // For caching results of lubs
     private Map<AnnotationPair, AnnotationMirror> lubs = null;
 
     @Override
     public AnnotationMirror leastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int id1 = qualifierId(a1);
+        int id2 = qualifierId(a2);
+        if (id1 >= 0 && id2 >= 0) {
+            Object lub = lubTable[id1][id2];
+            if (lub == null) {
+                lub = computeLeastUpperBound(qualifiersById[id1], qualifiersById[id2]);
+                lubTable[id1][id2] = lub == null ? NO_RESULT : lub;
+            }
+            return lub == NO_RESULT ? null : (AnnotationMirror) lub;
+        }
+        return computeLeastUpperBound(a1, a2);
+    }
+
+    /**
+     * Computes the least upper bound of two qualifiers without consulting {@link #lubTable}, by
+     * walking the supertype graph.
+     */
+    protected AnnotationMirror computeLeastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (!AnnotationUtils.areSameIgnoringValues(getTopAnnotation(a1), getTopAnnotation(a2))) {
             return null;
         } else if (isSubtype(a1, a2)) {
@@ -431,6 +554,24 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
 
     @Override
     public AnnotationMirror greatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        int id1 = qualifierId(a1);
+        int id2 = qualifierId(a2);
+        if (id1 >= 0 && id2 >= 0) {
+            Object glb = glbTable[id1][id2];
+            if (glb == null) {
+                glb = computeGreatestLowerBound(qualifiersById[id1], qualifiersById[id2]);
+                glbTable[id1][id2] = glb == null ? NO_RESULT : glb;
+            }
+            return glb == NO_RESULT ? null : (AnnotationMirror) glb;
+        }
+        return computeGreatestLowerBound(a1, a2);
+    }
+
+    /**
+     * Computes the greatest lower bound of two qualifiers without consulting {@link #glbTable}, by
+     * walking the supertype graph.
+     */
+    protected AnnotationMirror computeGreatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
         if (AnnotationUtils.areSameIgnoringValues(a1, a2)) {
             return AnnotationUtils.areSame(a1, a2) ? a1 : getBottomAnnotation(a1);
         }
@@ -469,6 +610,14 @@ public class MultiGraphQualifierHierarchy extends QualifierHierarchy {
      */
     @Override
     public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+        int subId = qualifierId(subAnno);
+        if (subId >= 0 && supertypesMatrix[subId] != null) {
+            int superId = qualifierId(superAnno);
+            if (superId >= 0) {
+                return supertypesMatrix[subId].get(superId);
+            }
+        }
+
         checkAnnoInGraph(subAnno);
         checkAnnoInGraph(superAnno);
 
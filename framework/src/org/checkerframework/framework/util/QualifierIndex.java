@@ -0,0 +1,103 @@
+package org.checkerframework.framework.util;
+
+/*>>>
+import org.checkerframework.checker.interning.qual.Interned;
+*/
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.util.ElementFilter;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * Assigns dense integer ids to the qualifiers of a {@link QualifierHierarchy}.
+ *
+ * <p>Only qualifiers whose annotation type declares no elements receive an id: all instances of
+ * such a qualifier are the same according to {@link AnnotationUtils#areSame}, so a qualifier can be
+ * represented by its id alone. At most {@link #MAX_INDEXED_QUALIFIERS} qualifiers are indexed. Ids
+ * are assigned in the order given by {@link AnnotationUtils#annotationOrdering()}, so iterating over
+ * ids in increasing order yields qualifiers in that order.
+ *
+ * <p>In addition, the index records the names of all qualifiers in the hierarchy, including
+ * qualifiers that have elements, so that membership in the hierarchy can be decided by a single
+ * lookup.
+ *
+ * @see QualifierSet
+ */
+public class QualifierIndex {
+
+    /** The maximal number of qualifiers that are assigned an id. */
+    public static final int MAX_INDEXED_QUALIFIERS = 64;
+
+    /** Maps the interned names of indexed qualifiers to their ids. */
+    private final Map</*@Interned*/ String, Integer> ids;
+
+    /** The indexed qualifiers; the qualifier with id {@code i} is at index {@code i}. */
+    private final AnnotationMirror[] qualifiers;
+
+    /** The interned names of all qualifiers in the hierarchy, indexed or not. */
+    private final Map</*@Interned*/ String, Boolean> qualifierNames;
+
+    /**
+     * Creates an index for the given qualifiers.
+     *
+     * @param typeQualifiers all qualifiers of a qualifier hierarchy
+     */
+    public QualifierIndex(Collection<? extends AnnotationMirror> typeQualifiers) {
+        List<AnnotationMirror> sorted = new ArrayList<>(typeQualifiers);
+        Collections.sort(sorted, AnnotationUtils.annotationOrdering());
+
+        this.ids = new IdentityHashMap<>();
+        this.qualifierNames = new IdentityHashMap<>();
+        List<AnnotationMirror> indexed = new ArrayList<>();
+        for (AnnotationMirror qual : sorted) {
+            /*@Interned*/ String name = AnnotationUtils.annotationName(qual);
+            qualifierNames.put(name, Boolean.TRUE);
+            if (indexed.size() < MAX_INDEXED_QUALIFIERS
+                    && !ids.containsKey(name)
+                    && hasNoElements(qual)) {
+                ids.put(name, indexed.size());
+                indexed.add(qual);
+            }
+        }
+        this.qualifiers = indexed.toArray(new AnnotationMirror[indexed.size()]);
+    }
+
+    private static boolean hasNoElements(AnnotationMirror qual) {
+        return ElementFilter.methodsIn(qual.getAnnotationType().asElement().getEnclosedElements())
+                .isEmpty();
+    }
+
+    /**
+     * Returns the id of the given qualifier, or -1 if it is not indexed. Element values are
+     * ignored, as indexed qualifiers have none.
+     */
+    public int getId(AnnotationMirror qual) {
+        Integer id = ids.get(AnnotationUtils.annotationName(qual));
+        return id == null ? -1 : id;
+    }
+
+    /** Returns the canonical instance of the qualifier with the given id. */
+    public AnnotationMirror getQualifier(int id) {
+        return qualifiers[id];
+    }
+
+    /** Returns the number of indexed qualifiers. */
+    public int size() {
+        return qualifiers.length;
+    }
+
+    /**
+     * Returns true if the given annotation has the same annotation type as one of the qualifiers
+     * of the hierarchy, ignoring element values.
+     */
+    public boolean isQualifier(AnnotationMirror anno) {
+        return qualifierNames.containsKey(AnnotationUtils.annotationName(anno));
+    }
+}
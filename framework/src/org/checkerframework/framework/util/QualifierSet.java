@@ -0,0 +1,195 @@
+package org.checkerframework.framework.util;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * A set of annotations that behaves like the set returned by {@link
+ * AnnotationUtils#createAnnotationSet()}, but stores qualifiers that have an id in a {@link
+ * QualifierIndex} as bits of a {@code long}. Other annotations, such as qualifiers with element
+ * values, are stored in a regular annotation set that is only allocated when needed.
+ *
+ * <p>Iteration returns the annotations in the order given by {@link
+ * AnnotationUtils#annotationOrdering()}. For indexed qualifiers, iteration returns the canonical
+ * instance from the index rather than the instance that was added.
+ */
+public class QualifierSet extends AbstractSet<AnnotationMirror> {
+
+    /**
+     * The index used to map qualifiers to bits, or null if all annotations are stored in {@link
+     * #others}.
+     */
+    private final /*@Nullable*/ QualifierIndex index;
+
+    /** Bit {@code i} is set iff the qualifier with id {@code i} is in this set. */
+    private long bits;
+
+    /** The annotations in this set that are not indexed, or null if there are none. */
+    private /*@Nullable*/ Set<AnnotationMirror> others;
+
+    /**
+     * Creates an empty set.
+     *
+     * @param index the index to use, or null to store all annotations in a regular annotation set
+     */
+    public QualifierSet(/*@Nullable*/ QualifierIndex index) {
+        this.index = index;
+    }
+
+    /** Returns the id of {@code o} in the index, or -1 if it is not an indexed qualifier. */
+    private int idOf(Object o) {
+        if (index == null || !(o instanceof AnnotationMirror)) {
+            return -1;
+        }
+        return index.getId((AnnotationMirror) o);
+    }
+
+    @Override
+    public int size() {
+        return Long.bitCount(bits) + (others == null ? 0 : others.size());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return bits == 0 && (others == null || others.isEmpty());
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        int id = idOf(o);
+        if (id >= 0) {
+            return (bits & (1L << id)) != 0;
+        }
+        return others != null && others.contains(o);
+    }
+
+    @Override
+    public boolean add(AnnotationMirror a) {
+        int id = idOf(a);
+        if (id >= 0) {
+            long old = bits;
+            bits |= 1L << id;
+            return bits != old;
+        }
+        if (others == null) {
+            others = AnnotationUtils.createAnnotationSet();
+        }
+        return others.add(a);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        int id = idOf(o);
+        if (id >= 0) {
+            long old = bits;
+            bits &= ~(1L << id);
+            return bits != old;
+        }
+        return others != null && others.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        bits = 0;
+        others = null;
+    }
+
+    /**
+     * Replaces the contents of this set by the contents of {@code other}. If both sets use the
+     * same index this only copies a {@code long} and, if present, the non-indexed annotations.
+     */
+    public void copyFrom(QualifierSet other) {
+        if (index != other.index) {
+            clear();
+            addAll(other);
+            return;
+        }
+        this.bits = other.bits;
+        if (other.others == null || other.others.isEmpty()) {
+            this.others = null;
+        } else {
+            this.others = AnnotationUtils.createAnnotationSet();
+            this.others.addAll(other.others);
+        }
+    }
+
+    @Override
+    public Iterator<AnnotationMirror> iterator() {
+        return new QualifierSetIterator();
+    }
+
+    /** Merges the indexed qualifiers and {@link #others} in annotation order. */
+    private class QualifierSetIterator implements Iterator<AnnotationMirror> {
+        private final Comparator<AnnotationMirror> ordering = AnnotationUtils.annotationOrdering();
+
+        /** The bits that have not been returned yet. */
+        private long remainingBits = bits;
+
+        private final Iterator<AnnotationMirror> othersIter =
+                others == null
+                        ? Collections.<AnnotationMirror>emptyIterator()
+                        : others.iterator();
+
+        /** An annotation retrieved from {@link #othersIter} that has not been returned yet. */
+        private /*@Nullable*/ AnnotationMirror pendingOther;
+
+        /** The id of the last returned qualifier, or -1 if it came from {@link #othersIter}. */
+        private int lastId = -1;
+
+        private boolean canRemove = false;
+
+        @Override
+        public boolean hasNext() {
+            return remainingBits != 0 || pendingOther != null || othersIter.hasNext();
+        }
+
+        @Override
+        public AnnotationMirror next() {
+            if (pendingOther == null && othersIter.hasNext()) {
+                pendingOther = othersIter.next();
+            }
+            if (remainingBits != 0) {
+                int id = Long.numberOfTrailingZeros(remainingBits);
+                AnnotationMirror qual = index.getQualifier(id);
+                if (pendingOther == null || ordering.compare(qual, pendingOther) < 0) {
+                    remainingBits &= ~(1L << id);
+                    lastId = id;
+                    canRemove = true;
+                    return qual;
+                }
+            }
+            if (pendingOther == null) {
+                throw new NoSuchElementException();
+            }
+            AnnotationMirror result = pendingOther;
+            pendingOther = null;
+            lastId = -1;
+            canRemove = true;
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            if (!canRemove) {
+                throw new IllegalStateException();
+            }
+            canRemove = false;
+            if (lastId >= 0) {
+                bits &= ~(1L << lastId);
+            } else {
+                // The last annotation fetched from othersIter is the one that was returned.
+                othersIter.remove();
+            }
+        }
+    }
+}
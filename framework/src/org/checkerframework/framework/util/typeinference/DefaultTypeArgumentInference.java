@@ -1,5 +1,9 @@
 package org.checkerframework.framework.util.typeinference;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Symbol.MethodSymbol;
@@ -23,12 +27,16 @@ import javax.tools.Diagnostic.Kind;
 import org.checkerframework.framework.source.SourceChecker;
 import org.checkerframework.framework.type.AnnotatedTypeFactory;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedPrimitiveType;
 import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.framework.type.DefaultTypeHierarchy;
 import org.checkerframework.framework.type.GeneralAnnotatedTypeFactory;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.type.TypeHierarchy;
+import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
 import org.checkerframework.framework.util.AnnotatedTypes;
 import org.checkerframework.framework.util.AnnotationMirrorSet;
 import org.checkerframework.framework.util.PluginUtil;
@@ -51,7 +59,10 @@ import org.checkerframework.framework.util.typeinference.solver.InferredValue;
 import org.checkerframework.framework.util.typeinference.solver.InferredValue.InferredType;
 import org.checkerframework.framework.util.typeinference.solver.SubtypesSolver;
 import org.checkerframework.framework.util.typeinference.solver.SupertypesSolver;
+import org.checkerframework.javacutil.BoundedCache;
+import org.checkerframework.javacutil.CollectionUtils;
 import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.InternalUtils;
 import org.checkerframework.javacutil.Pair;
 import org.checkerframework.javacutil.TreeUtils;
 import org.checkerframework.javacutil.TypeAnnotationUtils;
@@ -103,9 +114,82 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
 
     private final boolean showInferenceSteps;
 
+    /** The maximum number of entries in {@link #inferenceCache}. */
+    private static final int INFERENCE_CACHE_SIZE = 300;
+
+    /**
+     * The type arguments inferred for invocations in the current compilation unit, or null if the
+     * atfDoNotCache option is given. The inferred type arguments only depend on the method, its
+     * type, the argument types, and the type of the assignment context, so they are reused for all
+     * invocations for which these are equal. Invocations with types that cannot be compared
+     * structurally are not cached, see {@link UncacheableTypeScanner}.
+     */
+    private final /*@Nullable*/ BoundedCache<
+                    InferenceCacheKey, Map<TypeVariable, AnnotatedTypeMirror>>
+            inferenceCache;
+
+    /** Finds the types that cannot be part of the keys of {@link #inferenceCache}. */
+    private final UncacheableTypeScanner uncacheableTypeScanner = new UncacheableTypeScanner();
+
+    /** The number of invocations whose type arguments were inferred. */
+    private long inferences = 0;
+
+    /**
+     * The number of invocations whose type arguments are not constrained, and for which inference
+     * was therefore skipped, see {@link #hasUnconstrainedTypeArguments}.
+     */
+    private long unconstrainedInferences = 0;
+
     public DefaultTypeArgumentInference(AnnotatedTypeFactory typeFactory) {
-        this.showInferenceSteps =
-                typeFactory.getContext().getChecker().hasOption("showInferenceSteps");
+        SourceChecker checker = typeFactory.getContext().getChecker();
+        this.showInferenceSteps = checker.hasOption("showInferenceSteps");
+
+        if (checker.hasOption("atfDoNotCache")) {
+            this.inferenceCache = null;
+        } else {
+            this.inferenceCache =
+                    CollectionUtils.createCache(
+                            "inferenceCache", INFERENCE_CACHE_SIZE, null, BoundedCache.Policy.LRU);
+        }
+    }
+
+    /**
+     * Returns the cache of inferred type arguments, whose statistics are printed if the
+     * resourceStats option is given.
+     *
+     * @return the caches of this object; empty if the atfDoNotCache option is given
+     */
+    public List<BoundedCache<?, ?>> getCaches() {
+        List<BoundedCache<?, ?>> caches = new ArrayList<>();
+        if (inferenceCache != null) {
+            caches.add(inferenceCache);
+        }
+        return caches;
+    }
+
+    /**
+     * Returns the number of invocations whose type arguments were inferred, and how many of them
+     * skipped inference because their type arguments are not constrained. Printed if the
+     * resourceStats option is given.
+     *
+     * @return a description of the number of inferences
+     */
+    public String getStatistics() {
+        return String.format(
+                "type argument inference: %d invocations, %d unconstrained (%.1f%%)",
+                inferences,
+                unconstrainedInferences,
+                inferences == 0 ? 0.0 : 100.0 * unconstrainedInferences / inferences);
+    }
+
+    /**
+     * Removes all inferred type arguments from the cache. Called when the type factory starts to
+     * process a new compilation unit.
+     */
+    public void clearCaches() {
+        if (inferenceCache != null) {
+            inferenceCache.clear();
+        }
     }
 
     @Override
@@ -139,9 +223,92 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
                     assignedTo);
         }
 
+        ++inferences;
+        if (hasUnconstrainedTypeArguments(methodType, argTypes, assignedTo)) {
+            ++unconstrainedInferences;
+            if (showInferenceSteps) {
+                checker.message(Kind.NOTE, "  unconstrained type arguments\n");
+            }
+            Map<TypeVariable, AnnotatedTypeMirror> inferredArgs = new LinkedHashMap<>();
+            handleUninferredTypeVariables(
+                    typeFactory,
+                    methodType,
+                    TypeArgInferenceUtil.methodTypeToTargets(methodType),
+                    inferredArgs);
+            return inferredArgs;
+        }
+
+        final boolean unknownAssignmentContext =
+                assignedTo == null && TreeUtils.getAssignmentContext(pathToExpression) != null;
+
+        InferenceCacheKey key = null;
+        if (inferenceCache != null
+                && !showInferenceSteps
+                && isCacheable(typeFactory, methodType, argTypes, assignedTo)) {
+            Map<TypeVariable, AnnotatedTypeMirror> cached =
+                    inferenceCache.get(
+                            new InferenceCacheKey(
+                                    methodElem,
+                                    methodType,
+                                    argTypes,
+                                    assignedTo,
+                                    unknownAssignmentContext));
+            if (cached != null) {
+                return copyTypeArguments(cached);
+            }
+            // Inference may modify the types, so the key holds copies.
+            List<AnnotatedTypeMirror> argTypeCopies = new ArrayList<>(argTypes.size());
+            for (AnnotatedTypeMirror argType : argTypes) {
+                argTypeCopies.add(argType.deepCopy());
+            }
+            key =
+                    new InferenceCacheKey(
+                            methodElem,
+                            methodType.deepCopy(),
+                            argTypeCopies,
+                            assignedTo == null ? null : assignedTo.deepCopy(),
+                            unknownAssignmentContext);
+        }
+
+        Map<TypeVariable, AnnotatedTypeMirror> inferredArgs =
+                inferTypeArgs(
+                        typeFactory,
+                        argTypes,
+                        assignedTo,
+                        unknownAssignmentContext,
+                        methodElem,
+                        methodType);
+        if (key != null) {
+            inferenceCache.put(key, copyTypeArguments(inferredArgs));
+        }
+        return inferredArgs;
+    }
+
+    /**
+     * Infers the type arguments of an invocation from the types of its arguments and of its
+     * assignment context.
+     *
+     * @param typeFactory type factory
+     * @param argTypes annotated types of arguments to the method
+     * @param assignedTo annotated type to which the result of the method invocation is assigned
+     * @param unknownAssignmentContext true if the invocation is assigned, but the type of the
+     *     assignment context isn't known
+     * @param methodElem element of the method
+     * @param methodType annotated type of the method
+     * @return a mapping between the Java type parameters and the inferred type arguments
+     */
+    private Map<TypeVariable, AnnotatedTypeMirror> inferTypeArgs(
+            AnnotatedTypeFactory typeFactory,
+            List<AnnotatedTypeMirror> argTypes,
+            AnnotatedTypeMirror assignedTo,
+            boolean unknownAssignmentContext,
+            ExecutableElement methodElem,
+            AnnotatedExecutableType methodType) {
+        SourceChecker checker = typeFactory.getContext().getChecker();
+
         final Set<TypeVariable> targets = TypeArgInferenceUtil.methodTypeToTargets(methodType);
 
-        if (assignedTo == null && TreeUtils.getAssignmentContext(pathToExpression) != null) {
+        if (unknownAssignmentContext) {
             // If the type of the assignment context isn't found, but the expression is assigned,
             // then don't attempt to infere type arguments, because the Java type inferred will be
             // incorrect.  The assignment type is null when it includes uninferred type arguments.
@@ -191,6 +358,198 @@ public class DefaultTypeArgumentInference implements TypeArgumentInference {
         return inferredArgs;
     }
 
+    /**
+     * Returns true if no constraint on the type arguments of an invocation can be created, because
+     * the type parameters do not appear in the formal parameter types nor in the argument types,
+     * and the invocation is not assigned. For example, {@code ImmutableList.builder()} as the
+     * receiver of another invocation. Then {@link #infer} would not infer any type argument, and
+     * {@link #handleUninferredTypeVariables} uses a wildcard for each.
+     *
+     * <p>If the invocation is assigned, the type arguments are constrained by the bounds of the
+     * type parameters even if they appear nowhere else, see {@link #createAssignmentConstraints}.
+     *
+     * <p>Subclasses may override this method to return false, so that every invocation goes
+     * through the full inference; the tests compare both results that way.
+     *
+     * @param methodType annotated type of the method
+     * @param argTypes annotated types of arguments to the method
+     * @param assignedTo annotated type to which the result of the method invocation is assigned
+     * @return true if inference can be skipped, because no type argument would be inferred
+     */
+    protected boolean hasUnconstrainedTypeArguments(
+            AnnotatedExecutableType methodType,
+            List<AnnotatedTypeMirror> argTypes,
+            /*@Nullable*/ AnnotatedTypeMirror assignedTo) {
+        if (assignedTo != null) {
+            return false;
+        }
+        final Set<TypeVariable> targets = TypeArgInferenceUtil.methodTypeToTargets(methodType);
+        for (AnnotatedTypeMirror paramType : methodType.getParameterTypes()) {
+            if (TypeArgInferenceUtil.containsTypeParameter(paramType, targets)) {
+                return false;
+            }
+        }
+        for (AnnotatedTypeMirror argType : argTypes) {
+            if (TypeArgInferenceUtil.containsTypeParameter(argType, targets)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the type arguments inferred from the given types can be stored in {@link
+     * #inferenceCache}.
+     */
+    private boolean isCacheable(
+            AnnotatedTypeFactory typeFactory,
+            AnnotatedExecutableType methodType,
+            List<AnnotatedTypeMirror> argTypes,
+            /*@Nullable*/ AnnotatedTypeMirror assignedTo) {
+        TypeHierarchy typeHierarchy = typeFactory.getTypeHierarchy();
+        if (uncacheableTypeScanner.visit(methodType, typeHierarchy)
+                || (assignedTo != null
+                        && uncacheableTypeScanner.visit(assignedTo, typeHierarchy))) {
+            return false;
+        }
+        for (AnnotatedTypeMirror argType : argTypes) {
+            if (uncacheableTypeScanner.visit(argType, typeHierarchy)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns a copy of inferredArgs whose types are deep copies. */
+    private static Map<TypeVariable, AnnotatedTypeMirror> copyTypeArguments(
+            Map<TypeVariable, AnnotatedTypeMirror> inferredArgs) {
+        Map<TypeVariable, AnnotatedTypeMirror> copy = new LinkedHashMap<>(inferredArgs.size());
+        for (Map.Entry<TypeVariable, AnnotatedTypeMirror> entry : inferredArgs.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().deepCopy());
+        }
+        return copy;
+    }
+
+    /**
+     * The key of an invocation in {@link #inferenceCache}. Two keys are equal if they are for the
+     * same method and their types are equal according to {@link AnnotatedTypeMirror#equals}.
+     */
+    private static final class InferenceCacheKey {
+        final ExecutableElement methodElem;
+        final AnnotatedExecutableType methodType;
+        final List<AnnotatedTypeMirror> argTypes;
+        final /*@Nullable*/ AnnotatedTypeMirror assignedTo;
+        final boolean unknownAssignmentContext;
+        final int hashCode;
+
+        InferenceCacheKey(
+                ExecutableElement methodElem,
+                AnnotatedExecutableType methodType,
+                List<AnnotatedTypeMirror> argTypes,
+                /*@Nullable*/ AnnotatedTypeMirror assignedTo,
+                boolean unknownAssignmentContext) {
+            this.methodElem = methodElem;
+            this.methodType = methodType;
+            this.argTypes = argTypes;
+            this.assignedTo = assignedTo;
+            this.unknownAssignmentContext = unknownAssignmentContext;
+            int hash = 31 * methodElem.hashCode() + methodType.hashCode();
+            hash = 31 * hash + argTypes.hashCode();
+            hash = 31 * hash + (assignedTo == null ? 0 : assignedTo.hashCode());
+            this.hashCode = 31 * hash + (unknownAssignmentContext ? 1 : 0);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof InferenceCacheKey)) {
+                return false;
+            }
+            InferenceCacheKey other = (InferenceCacheKey) o;
+            return hashCode == other.hashCode
+                    && methodElem.equals(other.methodElem)
+                    && unknownAssignmentContext == other.unknownAssignmentContext
+                    && methodType.equals(other.methodType)
+                    && argTypes.equals(other.argTypes)
+                    && (assignedTo == null
+                            ? other.assignedTo == null
+                            : assignedTo.equals(other.assignedTo));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Returns true if a type cannot be part of a key of {@link #inferenceCache}, because the
+     * inference depends on more than its annotations and underlying types. That is the case if the
+     * type or one of its component types
+     *
+     * <ul>
+     *   <li>has an annotation whose meaning depends on where it is written, see {@link
+     *       DefaultTypeHierarchy#isDependentAnnotation},
+     *   <li>is a captured type variable, which is different for each expression,
+     *   <li>was raw, or is an uninferred type argument; {@link AnnotatedTypeMirror#equals} does not
+     *       compare these properties.
+     * </ul>
+     *
+     * The parameter of the visit methods is the type hierarchy of the type factory. If it is not a
+     * DefaultTypeHierarchy, all annotations with elements are assumed to depend on where they are
+     * written.
+     */
+    private static class UncacheableTypeScanner
+            extends AnnotatedTypeScanner<Boolean, TypeHierarchy> {
+
+        @Override
+        protected Boolean scan(AnnotatedTypeMirror type, TypeHierarchy typeHierarchy) {
+            if (type == null) {
+                return false;
+            }
+            for (AnnotationMirror anno : type.getAnnotations()) {
+                if (anno.getElementValues().isEmpty()) {
+                    continue;
+                }
+                if (!(typeHierarchy instanceof DefaultTypeHierarchy)
+                        || ((DefaultTypeHierarchy) typeHierarchy).isDependentAnnotation(anno)) {
+                    return true;
+                }
+            }
+            Boolean result = super.scan(type, typeHierarchy);
+            return result != null && result;
+        }
+
+        @Override
+        protected Boolean reduce(Boolean r1, Boolean r2) {
+            return (r1 != null && r1) || (r2 != null && r2);
+        }
+
+        @Override
+        public Boolean visitDeclared(AnnotatedDeclaredType type, TypeHierarchy typeHierarchy) {
+            if (type.wasRaw()) {
+                return true;
+            }
+            return super.visitDeclared(type, typeHierarchy);
+        }
+
+        @Override
+        public Boolean visitTypeVariable(
+                AnnotatedTypeVariable type, TypeHierarchy typeHierarchy) {
+            if (InternalUtils.isCaptured(type.getUnderlyingType())) {
+                return true;
+            }
+            return super.visitTypeVariable(type, typeHierarchy);
+        }
+
+        @Override
+        public Boolean visitWildcard(AnnotatedWildcardType type, TypeHierarchy typeHierarchy) {
+            if (type.isUninferredTypeArgument()) {
+                return true;
+            }
+            return super.visitWildcard(type, typeHierarchy);
+        }
+    }
+
     /**
      * If one of the inferredArgs are NullType, then re-run inference ignoring null method
      * arguments. Then lub the result of the second inference with the NullType and put the new
@@ -1,10 +1,17 @@
 package org.checkerframework.framework.util.typeinference.solver;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.Types;
 import org.checkerframework.framework.type.AnnotatedTypeMirror;
 import org.checkerframework.framework.type.QualifierHierarchy;
 import org.checkerframework.framework.util.AnnotationMirrorSet;
@@ -55,6 +62,123 @@ public class ConstraintMap {
         return targetToRecords.keySet();
     }
 
+    /**
+     * Orders targets so that each target comes after the targets it must be a supertype of,
+     * according to its supertypes constraints or to the declared bounds of the type variables.
+     * SupertypesSolver lubs the targets in this order, so that the lub of a target can include the
+     * lubs of the targets below it.
+     *
+     * @param targets the targets to order
+     * @param types the type utilities used to compare the declared bounds of the targets
+     * @return the targets, with each one after the targets in its supertypes constraints and the
+     *     targets that are declared to be its subtypes
+     */
+    public List<TypeVariable> orderSubtypeTargetsFirst(
+            final Set<TypeVariable> targets, final Types types) {
+        return orderByTargetConstraints(targets, types, true);
+    }
+
+    /**
+     * Orders targets so that each target comes after the targets it must be a subtype of,
+     * according to its subtypes constraints or to the declared bounds of the type variables.
+     * SubtypesSolver glbs the targets in this order, so that the glb of a target can include the
+     * glbs of the targets above it.
+     *
+     * @param targets the targets to order
+     * @param types the type utilities used to compare the declared bounds of the targets
+     * @return the targets, with each one after the targets in its subtypes constraints and the
+     *     targets that are declared to be its supertypes
+     */
+    public List<TypeVariable> orderSupertypeTargetsFirst(
+            final Set<TypeVariable> targets, final Types types) {
+        return orderByTargetConstraints(targets, types, false);
+    }
+
+    /**
+     * Orders targets using a worklist: a target is added to the result once all of the other
+     * targets in its supertypes (or subtypes) constraints have been added. If some targets are
+     * constrained by each other, the first of them in the iteration order of targets is added
+     * first.
+     *
+     * <p>The constraints between targets only relate a target to the target that is its upper
+     * bound, so a target is also added after the targets that javac considers its subtypes (or
+     * supertypes). For example, for {@code <A, B extends A, C extends B>}, C is added after (or
+     * before) A even if B is not one of the targets.
+     */
+    private List<TypeVariable> orderByTargetConstraints(
+            final Set<TypeVariable> targets, final Types types, boolean supertypes) {
+        final Map<TypeVariable, Integer> pendingTargets = new HashMap<>();
+        final Map<TypeVariable, List<TypeVariable>> dependentTargets = new HashMap<>();
+        final Queue<TypeVariable> worklist = new ArrayDeque<>();
+
+        for (final TypeVariable target : targets) {
+            final TargetConstraints record = targetToRecords.get(target);
+            final Set<TypeVariable> otherTargets =
+                    new LinkedHashSet<>(
+                            supertypes
+                                    ? record.supertypes.targets.keySet()
+                                    : record.subtypes.targets.keySet());
+            for (final TypeVariable otherTarget : targets) {
+                if (supertypes
+                        ? types.isSubtype(otherTarget, target)
+                        : types.isSubtype(target, otherTarget)) {
+                    otherTargets.add(otherTarget);
+                }
+            }
+            int pending = 0;
+            for (final TypeVariable otherTarget : otherTargets) {
+                if (otherTarget != target && targets.contains(otherTarget)) {
+                    List<TypeVariable> dependents = dependentTargets.get(otherTarget);
+                    if (dependents == null) {
+                        dependents = new ArrayList<>();
+                        dependentTargets.put(otherTarget, dependents);
+                    }
+                    dependents.add(target);
+                    ++pending;
+                }
+            }
+
+            if (pending == 0) {
+                worklist.add(target);
+            } else {
+                pendingTargets.put(target, pending);
+            }
+        }
+
+        final List<TypeVariable> ordered = new ArrayList<>(targets.size());
+        while (ordered.size() < targets.size()) {
+            if (worklist.isEmpty()) {
+                // The remaining targets are constrained by each other
+                for (final TypeVariable target : targets) {
+                    if (pendingTargets.remove(target) != null) {
+                        worklist.add(target);
+                        break;
+                    }
+                }
+            }
+
+            final TypeVariable target = worklist.remove();
+            ordered.add(target);
+
+            final List<TypeVariable> dependents = dependentTargets.get(target);
+            if (dependents != null) {
+                for (final TypeVariable dependent : dependents) {
+                    final Integer pending = pendingTargets.get(dependent);
+                    if (pending == null) {
+                        continue;
+                    } else if (pending == 1) {
+                        pendingTargets.remove(dependent);
+                        worklist.add(dependent);
+                    } else {
+                        pendingTargets.put(dependent, pending - 1);
+                    }
+                }
+            }
+        }
+
+        return ordered;
+    }
+
     /**
      * Add a constraint indicating that the equivalent is equal to target in the given qualifier
      * hierarchies
@@ -1,5 +1,6 @@
 package org.checkerframework.framework.util.typeinference.solver;
 
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -59,39 +60,61 @@ public class InferenceResult extends LinkedHashMap<TypeVariable, InferredValue>
      * results we have (the above constraints become T1 = String, T2 = String, T3 = String)
      */
     public void resolveChainedTargets() {
-        final Map<TypeVariable, InferredValue> inferredTypes = new LinkedHashMap<>(this.size());
-
-        // TODO: we can probably make this a bit more efficient
-        boolean grew = true;
-        while (grew == true) {
-            grew = false;
-            for (final Entry<TypeVariable, InferredValue> inferred : this.entrySet()) {
-                final TypeVariable target = inferred.getKey();
-                final InferredValue value = inferred.getValue();
-
-                if (value instanceof InferredType) {
-                    inferredTypes.put(target, value);
-
-                } else {
-                    final InferredTarget currentTarget = (InferredTarget) value;
-                    final InferredType equivalentType =
-                            (InferredType) inferredTypes.get(((InferredTarget) value).target);
-
-                    if (equivalentType != null) {
-                        grew = true;
-                        final AnnotatedTypeMirror type = equivalentType.type.deepCopy();
-                        type.replaceAnnotations(currentTarget.additionalAnnotations);
-
-                        final InferredType newConstraint = new InferredType(type);
-                        inferredTypes.put(currentTarget.target, newConstraint);
-                    }
-                }
-            }
+        // The targets that are equal form chains that end in a target with an inferred type, if
+        // any. Each chain is followed once: the type found for a target is remembered, so the
+        // targets that lead to it do not follow the rest of the chain again.
+        final Map<TypeVariable, InferredType> inferredTypes = new LinkedHashMap<>(this.size());
+        final Set<TypeVariable> unresolved = new HashSet<>();
+        for (final TypeVariable target : this.keySet()) {
+            findInferredType(target, inferredTypes, unresolved);
         }
 
         this.putAll(inferredTypes);
     }
 
+    /**
+     * Returns the type inferred for target, if target has an inferred type or is equal to a chain
+     * of targets that ends in a target with an inferred type.
+     *
+     * @param target the target whose type to find
+     * @param inferredTypes the types found so far; the type of target is added to it
+     * @param unresolved the targets for which no type was found or that are currently being
+     *     resolved; used to stop at cycles of equal targets
+     * @return the type inferred for target, or null if there is none
+     */
+    private InferredType findInferredType(
+            final TypeVariable target,
+            final Map<TypeVariable, InferredType> inferredTypes,
+            final Set<TypeVariable> unresolved) {
+        InferredType result = inferredTypes.get(target);
+        if (result != null || unresolved.contains(target)) {
+            return result;
+        }
+
+        final InferredValue value = this.get(target);
+        if (value instanceof InferredType) {
+            result = (InferredType) value;
+
+        } else if (value instanceof InferredTarget) {
+            final InferredTarget currentTarget = (InferredTarget) value;
+            unresolved.add(target);
+            final InferredType equivalentType =
+                    findInferredType(currentTarget.target, inferredTypes, unresolved);
+
+            if (equivalentType != null) {
+                unresolved.remove(target);
+                final AnnotatedTypeMirror type = equivalentType.type.deepCopy();
+                type.replaceAnnotations(currentTarget.additionalAnnotations);
+                result = new InferredType(type);
+            }
+        }
+
+        if (result != null) {
+            inferredTypes.put(target, result);
+        }
+        return result;
+    }
+
     public Map<TypeVariable, AnnotatedTypeMirror> toAtmMap() {
         final Map<TypeVariable, AnnotatedTypeMirror> result = new LinkedHashMap<>(this.size());
         for (final Entry<TypeVariable, InferredValue> entry : this.entrySet()) {
@@ -1,8 +1,5 @@
 package org.checkerframework.framework.util.typeinference.solver;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -48,27 +45,13 @@ public class SubtypesSolver {
         final InferenceResult inferenceResult = new InferenceResult();
         final QualifierHierarchy qualifierHierarchy = typeFactory.getQualifierHierarchy();
 
-        final Types types = typeFactory.getProcessingEnv().getTypeUtils();
-
-        List<TypeVariable> targetsSubtypesLast = new ArrayList<>(remainingTargets);
-
-        // If we have two type variables <A, A extends B> order them A then B
+        // If we have a constraint B <: A between two targets, or two type variables
+        // <A, B extends A>, order them A then B
         // this is required because we will use the fact that B must be below A
         // when determining the glb of B
-        Collections.sort(
-                targetsSubtypesLast,
-                new Comparator<TypeVariable>() {
-                    @Override
-                    public int compare(TypeVariable o1, TypeVariable o2) {
-                        if (types.isSubtype(o1, o2)) {
-                            return 1;
-                        } else if (types.isSubtype(o2, o1)) {
-                            return -1;
-                        }
-
-                        return 0;
-                    }
-                });
+        final Types types = typeFactory.getProcessingEnv().getTypeUtils();
+        List<TypeVariable> targetsSubtypesLast =
+                constraints.orderSupertypeTargetsFirst(remainingTargets, types);
 
         for (final TypeVariable target : targetsSubtypesLast) {
             Subtypes subtypes = constraints.getConstraints(target).subtypes;
@@ -1,8 +1,5 @@
 package org.checkerframework.framework.util.typeinference.solver;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -219,26 +216,13 @@ public class SupertypesSolver {
 
         AnnotationMirrorMap<AnnotationMirror> lubOfPrimaries = new AnnotationMirrorMap<>();
 
-        List<TypeVariable> targetsSupertypesLast = new ArrayList<>(remainingTargets);
-
-        final Types types = typeFactory.getProcessingEnv().getTypeUtils();
-        // If we have two type variables <A, A extends B> order them B then A
+        // If we have a constraint A :> B between two targets, or two type variables
+        // <B, A extends B>, order them B then A
         // this is required because we will use the fact that A must be above B
         // when determining the LUB of A
-        Collections.sort(
-                targetsSupertypesLast,
-                new Comparator<TypeVariable>() {
-                    @Override
-                    public int compare(TypeVariable o1, TypeVariable o2) {
-                        if (types.isSubtype(o1, o2)) {
-                            return -1;
-                        } else if (types.isSubtype(o2, o1)) {
-                            return 1;
-                        }
-
-                        return 0;
-                    }
-                });
+        final Types types = typeFactory.getProcessingEnv().getTypeUtils();
+        List<TypeVariable> targetsSupertypesLast =
+                constraintMap.orderSubtypeTargetsFirst(remainingTargets, types);
 
         for (final TypeVariable target : targetsSupertypesLast) {
             TargetConstraints targetRecord = constraintMap.getConstraints(target);
@@ -0,0 +1,14 @@
+import java.util.List;
+
+// The recursive call infers that the type parameters are equal to each other: A = B and B = C.
+// The inferred type of A has to be found by following the chain of equal type parameters.
+class InferChainedTargets {
+
+    static <A, B, C> C chain(List<A> a, List<B> b, List<C> c) {
+        return chain(b, c, c);
+    }
+
+    void use(List<String> strings) {
+        String s = chain(strings, strings, strings);
+    }
+}
@@ -0,0 +1,21 @@
+import java.util.List;
+
+// C is declared below A only through B. B is inferred from its equality constraint, so there is
+// no constraint between the remaining type parameters A and C. The solvers have to order them by
+// their declared bounds.
+class InferTransitiveBoundOrder {
+
+    static <A, B extends A, C extends B> A order(A a, List<B> b, C c) {
+        return a;
+    }
+
+    static <A, B extends A, C extends B> A recurse(A a, List<B> b, C c) {
+        return recurse(c, b, c);
+    }
+
+    void use(Object o, CharSequence cs, String s, List<CharSequence> sequences) {
+        Object o1 = order(o, sequences, s);
+        CharSequence c = order(cs, sequences, s);
+        Object o2 = recurse(o, sequences, s);
+    }
+}
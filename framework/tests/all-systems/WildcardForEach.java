@@ -4,8 +4,8 @@ public class WildcardForEach {
     static class Gen<T extends Gen<?>> {}
 
     void test(List<Gen<?>> x) {
-        // This used to cause a crash in
-        // org.checkerframework.framework.flow.CFTreeBuilder#buildAnnotatedType
+        // This used to cause a crash in CFTreeBuilder, when it built the
+        // annotated type tree of the loop variable.
         for (Gen<?> a : x) {}
     }
 }
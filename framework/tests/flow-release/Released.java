@@ -0,0 +1,23 @@
+// FlowReleaseTest skips the definitions of classes whose names contain "Skipped". The dataflow
+// results of Checked and Skipped are computed with those of Released, and must be released once
+// each of them has been visited.
+class Released {
+
+    class Checked {
+        int m(int i) {
+            int j = i;
+            return j;
+        }
+    }
+
+    static class Skipped {
+        int m(int i) {
+            int j = i;
+            return j;
+        }
+    }
+
+    void n() {
+        int k = 0;
+    }
+}
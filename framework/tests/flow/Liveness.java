@@ -0,0 +1,45 @@
+import testlib.util.*;
+
+// The refined types of reassigned local variables, which the sparse analysis drops where the
+// variables are dead. FlowSparseTest expects the same diagnostics as FlowTest.
+class Liveness {
+
+    void deadInBranch(@Odd String odd, boolean b) {
+        String s = odd;
+        if (b) {
+            s = "";
+        }
+        // :: error: (assignment.type.incompatible)
+        @Odd String t = s;
+    }
+
+    void liveInBranch(@Odd String odd, boolean b) {
+        String s = odd;
+        if (b) {
+            @Odd String u = s;
+            s = odd;
+        }
+        @Odd String t = s;
+    }
+
+    void liveAcrossLoop(@Odd String odd, boolean b) {
+        String s = odd;
+        String r = "";
+        while (b) {
+            r = s;
+            s = odd;
+        }
+        @Odd String t = s;
+        // :: error: (assignment.type.incompatible)
+        @Odd String v = r;
+    }
+
+    void redefined(@Odd String odd, String other) {
+        String s = odd;
+        s = other;
+        // :: error: (assignment.type.incompatible)
+        @Odd String t = s;
+        s = odd;
+        @Odd String u = s;
+    }
+}
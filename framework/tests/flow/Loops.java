@@ -0,0 +1,50 @@
+import testlib.util.*;
+
+// Loops whose fix-point takes several iterations to reach. FlowRoundRobinTest and FlowSCCTest
+// expect the same diagnostics as FlowTest, whichever order the blocks are visited in.
+class Loops {
+
+    void shiftedThroughLoop(@Odd String odd, String other, boolean b) {
+        String s1 = odd;
+        String s2 = odd;
+        String s3 = odd;
+        while (b) {
+            s3 = s2;
+            s2 = s1;
+            s1 = other;
+        }
+        // :: error: (assignment.type.incompatible)
+        @Odd String t = s3;
+    }
+
+    void nestedLoops(@Odd String odd, String other, boolean b, boolean c) {
+        String s = odd;
+        String r = odd;
+        String q = odd;
+        while (b) {
+            while (c) {
+                r = s;
+                q = odd;
+            }
+            s = other;
+        }
+        // :: error: (assignment.type.incompatible)
+        @Odd String t = r;
+        @Odd String u = q;
+    }
+
+    void loopAfterLoop(@Odd String odd, String other, boolean b) {
+        String s = odd;
+        for (int i = 0; i < 10; i++) {
+            if (b) {
+                break;
+            }
+            @Odd String t = s;
+        }
+        while (b) {
+            s = other;
+        }
+        // :: error: (assignment.type.incompatible)
+        @Odd String u = s;
+    }
+}
@@ -0,0 +1,4 @@
+public class Dummy {
+    // We don't need any code here.
+    // The actual tests are performed within the HierarchyTablesChecker when it is initialized.
+}
@@ -0,0 +1,29 @@
+import testlib.util.*;
+
+// The stub file of the subchecker declares Thread.dumpStack() @TerminatesExecution, the compound
+// checker does not. Each checker must use its own control flow graph of the methods.
+class TerminatesExecutionStub {
+
+    void terminatesForSubchecker(@Odd String odd, String other, boolean b) {
+        String s = other;
+        if (b) {
+            s = odd;
+        } else {
+            Thread.dumpStack();
+        }
+        // Only the compound checker reports an error; for the subchecker, s is @Odd here.
+        // :: error: (assignment.type.incompatible)
+        @Odd String t = s;
+    }
+
+    void terminatesForNone(@Odd String odd, String other, boolean b) {
+        String s = other;
+        if (b) {
+            s = odd;
+        } else {
+            Thread.yield();
+        }
+        // :: error: (assignment.type.incompatible)
+        @Odd String t = s;
+    }
+}
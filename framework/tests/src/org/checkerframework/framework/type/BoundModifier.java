@@ -0,0 +1,37 @@
+package org.checkerframework.framework.type;
+
+import java.util.List;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedIntersectionType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+
+/**
+ * Gives the tests access to the package-private setters of the bounds of annotated types. It is in
+ * the package of {@link AnnotatedTypeMirror} only for that reason.
+ *
+ * @see testlib.typecache.TypeCacheVisitor
+ */
+public class BoundModifier {
+
+    // Class cannot be instantiated.
+    private BoundModifier() {
+        throw new AssertionError("Class BoundModifier cannot be instantiated.");
+    }
+
+    /** Calls {@link AnnotatedTypeVariable#setUpperBound(AnnotatedTypeMirror)}. */
+    public static void setUpperBound(AnnotatedTypeVariable type, AnnotatedTypeMirror bound) {
+        type.setUpperBound(bound);
+    }
+
+    /** Calls {@link AnnotatedWildcardType#setExtendsBound(AnnotatedTypeMirror)}. */
+    public static void setExtendsBound(AnnotatedWildcardType type, AnnotatedTypeMirror bound) {
+        type.setExtendsBound(bound);
+    }
+
+    /** Calls {@link AnnotatedIntersectionType#setDirectSuperTypes(List)}. */
+    public static void setDirectSuperTypes(
+            AnnotatedIntersectionType type, List<AnnotatedDeclaredType> supertypes) {
+        type.setDirectSuperTypes(supertypes);
+    }
+}
@@ -0,0 +1,30 @@
+package testlib.flowrelease;
+
+import java.util.Properties;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+
+/**
+ * A checker that tests that the dataflow results of a class are released once the class has been
+ * type-checked or skipped. It has the qualifiers of the {@link testlib.util.FlowTestChecker}, and
+ * its visitor reports an error wherever the results of a nested class are still kept after the
+ * class has been visited.
+ *
+ * @see FlowReleaseVisitor
+ */
+public class FlowReleaseChecker extends BaseTypeChecker {
+
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new FlowReleaseVisitor(this);
+    }
+
+    @Override
+    public Properties getMessages() {
+        Properties messages = super.getMessages();
+        messages.setProperty(
+                "flow.result.kept",
+                "the dataflow results of a method were kept after its class was visited");
+        return messages;
+    }
+}
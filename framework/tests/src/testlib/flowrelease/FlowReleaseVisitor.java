@@ -0,0 +1,46 @@
+package testlib.flowrelease;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.Tree;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.framework.source.Result;
+import org.checkerframework.javacutil.TreeUtils;
+import testlib.util.FlowTestAnnotatedTypeFactory;
+
+/**
+ * Checks, after the members of a class have been visited, that the regular exit stores of the
+ * methods of its nested classes have been released, whether the nested classes were type-checked
+ * or skipped.
+ */
+public class FlowReleaseVisitor extends BaseTypeVisitor<FlowTestAnnotatedTypeFactory> {
+
+    public FlowReleaseVisitor(BaseTypeChecker checker) {
+        super(checker);
+    }
+
+    @Override
+    protected FlowTestAnnotatedTypeFactory createTypeFactory() {
+        return new FlowTestAnnotatedTypeFactory(checker);
+    }
+
+    @Override
+    public void processClassTree(ClassTree classTree) {
+        super.processClassTree(classTree);
+        for (Tree member : classTree.getMembers()) {
+            if (TreeUtils.isClassTree(member)) {
+                checkReleased((ClassTree) member);
+            }
+        }
+    }
+
+    /** Reports an error at each method of {@code classTree} whose regular exit store is kept. */
+    private void checkReleased(ClassTree classTree) {
+        for (Tree member : classTree.getMembers()) {
+            if (member.getKind() == Tree.Kind.METHOD
+                    && atypeFactory.getRegularExitStore(member) != null) {
+                checker.report(Result.failure("flow.result.kept"), member);
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package testlib.hierarchytables;
+
+import javax.lang.model.element.AnnotationMirror;
+import org.checkerframework.framework.util.MultiGraphQualifierHierarchy;
+import org.checkerframework.javacutil.AnnotationUtils;
+
+/**
+ * A {@link MultiGraphQualifierHierarchy} that can also compute subtyping, least upper bounds and
+ * greatest lower bounds by walking the supertype graph, as the hierarchy did before it compiled
+ * the graph into a subtype matrix and lub and glb tables.
+ */
+public class GraphWalkQualifierHierarchy extends MultiGraphQualifierHierarchy {
+
+    /** Whether {@link #isSubtype} walks the supertype graph instead of using the matrix. */
+    private boolean graphWalk = false;
+
+    public GraphWalkQualifierHierarchy(MultiGraphFactory f) {
+        super(f);
+    }
+
+    @Override
+    public boolean isSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+        if (!graphWalk) {
+            return super.isSubtype(subAnno, superAnno);
+        }
+        if (AnnotationUtils.areSameIgnoringValues(subAnno, superAnno)) {
+            return AnnotationUtils.areSame(subAnno, superAnno);
+        }
+        return AnnotationUtils.containsSame(supertypesMap.get(subAnno), superAnno);
+    }
+
+    /** Returns whether {@code subAnno} is a subtype of {@code superAnno} in the supertype graph. */
+    public boolean graphWalkIsSubtype(AnnotationMirror subAnno, AnnotationMirror superAnno) {
+        graphWalk = true;
+        try {
+            return isSubtype(subAnno, superAnno);
+        } finally {
+            graphWalk = false;
+        }
+    }
+
+    /** Returns the least upper bound of {@code a1} and {@code a2} in the supertype graph. */
+    public AnnotationMirror graphWalkLeastUpperBound(AnnotationMirror a1, AnnotationMirror a2) {
+        graphWalk = true;
+        try {
+            return computeLeastUpperBound(a1, a2);
+        } finally {
+            graphWalk = false;
+        }
+    }
+
+    /** Returns the greatest lower bound of {@code a1} and {@code a2} in the supertype graph. */
+    public AnnotationMirror graphWalkGreatestLowerBound(AnnotationMirror a1, AnnotationMirror a2) {
+        graphWalk = true;
+        try {
+            return computeGreatestLowerBound(a1, a2);
+        } finally {
+            graphWalk = false;
+        }
+    }
+}
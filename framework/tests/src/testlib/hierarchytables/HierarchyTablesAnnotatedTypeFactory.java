@@ -0,0 +1,19 @@
+package testlib.hierarchytables;
+
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.type.QualifierHierarchy;
+import org.checkerframework.framework.util.MultiGraphQualifierHierarchy.MultiGraphFactory;
+import polyall.PolyAllAnnotatedTypeFactory;
+
+/** The type factory of the {@link HierarchyTablesChecker}. */
+public class HierarchyTablesAnnotatedTypeFactory extends PolyAllAnnotatedTypeFactory {
+
+    public HierarchyTablesAnnotatedTypeFactory(BaseTypeChecker checker) {
+        super(checker);
+    }
+
+    @Override
+    public QualifierHierarchy createQualifierHierarchy(MultiGraphFactory factory) {
+        return new GraphWalkQualifierHierarchy(factory);
+    }
+}
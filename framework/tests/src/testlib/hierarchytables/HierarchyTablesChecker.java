@@ -0,0 +1,92 @@
+package testlib.hierarchytables;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.AnnotationMirror;
+import javax.tools.Diagnostic.Kind;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.javacutil.AnnotationUtils;
+import polyall.PolyAllChecker;
+
+/**
+ * A checker that tests the subtype matrix and the lub and glb tables of {@link
+ * org.checkerframework.framework.util.MultiGraphQualifierHierarchy}. It uses the qualifiers of the
+ * {@link PolyAllChecker}, which form two hierarchies with a polymorphic qualifier each and
+ * {@code @PolyAll}. When it is initialized, it compares the subtype relation, the least upper
+ * bound and the greatest lower bound of every pair of qualifiers with the results of walking the
+ * supertype graph, and reports an error for each difference.
+ *
+ * @see GraphWalkQualifierHierarchy
+ */
+public class HierarchyTablesChecker extends PolyAllChecker {
+
+    @Override
+    public void initChecker() {
+        super.initChecker();
+
+        GraphWalkQualifierHierarchy qh =
+                (GraphWalkQualifierHierarchy)
+                        ((BaseTypeVisitor<?>) visitor).getTypeFactory().getQualifierHierarchy();
+        List<AnnotationMirror> quals = new ArrayList<>(qh.getTypeQualifiers());
+        int size = quals.size();
+
+        // Walk the graph for all pairs first, so that the lubs and glbs that the hierarchy
+        // computes when it fills its tables on demand are not used by the graph walk.
+        boolean[][] subtypes = new boolean[size][size];
+        AnnotationMirror[][] lubs = new AnnotationMirror[size][size];
+        AnnotationMirror[][] glbs = new AnnotationMirror[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                AnnotationMirror a1 = quals.get(i);
+                AnnotationMirror a2 = quals.get(j);
+                subtypes[i][j] = qh.graphWalkIsSubtype(a1, a2);
+                lubs[i][j] = qh.graphWalkLeastUpperBound(a1, a2);
+                glbs[i][j] = qh.graphWalkGreatestLowerBound(a1, a2);
+            }
+        }
+
+        // Query each pair twice, to compare both the computed and the memoized results.
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    AnnotationMirror a1 = quals.get(i);
+                    AnnotationMirror a2 = quals.get(j);
+                    boolean subtype = qh.isSubtype(a1, a2);
+                    if (subtype != subtypes[i][j]) {
+                        report("isSubtype", a1, a2, subtype, subtypes[i][j]);
+                    }
+                    AnnotationMirror lub = qh.leastUpperBound(a1, a2);
+                    if (!same(lub, lubs[i][j])) {
+                        report("leastUpperBound", a1, a2, lub, lubs[i][j]);
+                    }
+                    AnnotationMirror glb = qh.greatestLowerBound(a1, a2);
+                    if (!same(glb, glbs[i][j])) {
+                        report("greatestLowerBound", a1, a2, glb, glbs[i][j]);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns true if both annotations are null or both are the same annotation. */
+    private static boolean same(AnnotationMirror a1, AnnotationMirror a2) {
+        return a1 == null ? a2 == null : a2 != null && AnnotationUtils.areSame(a1, a2);
+    }
+
+    /** Reports that {@code method(a1, a2)} returned {@code actual} instead of {@code expected}. */
+    private void report(
+            String method,
+            AnnotationMirror a1,
+            AnnotationMirror a2,
+            Object actual,
+            Object expected) {
+        message(
+                Kind.ERROR,
+                "%s(%s, %s) is %s, but walking the supertype graph gives %s",
+                method,
+                a1,
+                a2,
+                actual,
+                expected);
+    }
+}
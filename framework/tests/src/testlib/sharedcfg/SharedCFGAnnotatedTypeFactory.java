@@ -0,0 +1,10 @@
+package testlib.sharedcfg;
+
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import testlib.util.FlowTestAnnotatedTypeFactory;
+
+public class SharedCFGAnnotatedTypeFactory extends FlowTestAnnotatedTypeFactory {
+    public SharedCFGAnnotatedTypeFactory(BaseTypeChecker checker) {
+        super(checker);
+    }
+}
@@ -0,0 +1,20 @@
+package testlib.sharedcfg;
+
+import java.util.LinkedHashSet;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+
+/**
+ * Used to test that the control flow graphs of a compound checker are only shared by checkers that
+ * read the same stub files. This checker has the qualifiers of the {@link
+ * testlib.util.FlowTestChecker}, and its subchecker {@link StubTerminatesChecker} has the same
+ * qualifiers but an additional stub file.
+ */
+public class SharedCFGChecker extends BaseTypeChecker {
+    @Override
+    protected LinkedHashSet<Class<? extends BaseTypeChecker>> getImmediateSubcheckerClasses() {
+        LinkedHashSet<Class<? extends BaseTypeChecker>> subcheckers = new LinkedHashSet<>();
+        subcheckers.addAll(super.getImmediateSubcheckerClasses());
+        subcheckers.add(StubTerminatesChecker.class);
+        return subcheckers;
+    }
+}
@@ -0,0 +1,10 @@
+package testlib.sharedcfg;
+
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import testlib.util.FlowTestAnnotatedTypeFactory;
+
+public class StubTerminatesAnnotatedTypeFactory extends FlowTestAnnotatedTypeFactory {
+    public StubTerminatesAnnotatedTypeFactory(BaseTypeChecker checker) {
+        super(checker);
+    }
+}
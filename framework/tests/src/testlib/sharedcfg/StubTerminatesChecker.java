@@ -0,0 +1,11 @@
+package testlib.sharedcfg;
+
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.framework.qual.StubFiles;
+
+/**
+ * The subchecker of {@link SharedCFGChecker}. Its stub file declares a method
+ * {@code @TerminatesExecution}, which changes the control flow graphs of the code that calls it.
+ */
+@StubFiles("tests/shared-cfg/terminates.astub")
+public class StubTerminatesChecker extends BaseTypeChecker {}
@@ -0,0 +1,37 @@
+package testlib.typecache;
+
+import java.util.Properties;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+
+/**
+ * A checker that tests the cache of subtype checks in the type hierarchy. It uses the qualifiers
+ * of the {@link testlib.flowexpression.FlowExpressionChecker}, whose {@code @FlowExp} annotation
+ * has a Java expression element, and its visitor reports an error wherever a subtype check whose
+ * result depends on the scope uses the cache, or a repeated check between simple types does not.
+ *
+ * @see SubtypeCacheVisitor
+ */
+public class SubtypeCacheChecker extends BaseTypeChecker {
+
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new SubtypeCacheVisitor(this);
+    }
+
+    @Override
+    public Properties getMessages() {
+        Properties messages = super.getMessages();
+        messages.setProperty(
+                "subtype.cache.used",
+                "the result of a scope-dependent subtype check was cached\n"
+                        + "subtype: %s\n"
+                        + "supertype: %s");
+        messages.setProperty(
+                "subtype.cache.unused",
+                "a repeated subtype check was not found in the cache\n"
+                        + "subtype: %s\n"
+                        + "supertype: %s");
+        return messages;
+    }
+}
@@ -0,0 +1,164 @@
+package testlib.typecache;
+
+import com.sun.source.tree.Tree;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.type.TypeKind;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.framework.source.Result;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.framework.type.DefaultTypeHierarchy;
+import org.checkerframework.framework.type.TypeHierarchy;
+import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BoundedCache;
+import testlib.flowexpression.FlowExpressionAnnotatedTypeFactory;
+import testlib.flowexpression.qual.FlowExp;
+
+/**
+ * Checks at every assignment that the cache of subtype checks is not used if the type of the
+ * variable or of the value mentions a type variable declared by a method or a {@link FlowExp}
+ * annotation. Such types may mean different things in different scopes even if they are
+ * structurally equal. Also checks that a repeated subtype check between two primitive types or
+ * non-generic declared types is found in the cache.
+ */
+public class SubtypeCacheVisitor extends BaseTypeVisitor<FlowExpressionAnnotatedTypeFactory> {
+
+    /** Returns true if a type mentions a method type variable or a {@link FlowExp} annotation. */
+    private final ScopeDependentTypeFinder scopeDependentTypeFinder =
+            new ScopeDependentTypeFinder();
+
+    public SubtypeCacheVisitor(BaseTypeChecker checker) {
+        super(checker);
+    }
+
+    @Override
+    protected FlowExpressionAnnotatedTypeFactory createTypeFactory() {
+        return new FlowExpressionAnnotatedTypeFactory(checker);
+    }
+
+    @Override
+    protected void commonAssignmentCheck(
+            AnnotatedTypeMirror varType,
+            AnnotatedTypeMirror valueType,
+            Tree valueTree,
+            /*@CompilerMessageKey*/ String errorKey) {
+        checkSubtypeCacheUnused(varType, valueType, valueTree);
+        checkSubtypeCacheHit(varType, valueType, valueTree);
+        super.commonAssignmentCheck(varType, valueType, valueTree, errorKey);
+    }
+
+    /**
+     * Reports an error if checking whether {@code valueType} is a subtype of {@code varType} looks
+     * up or stores a result in the cache of subtype checks, although one of the types depends on
+     * the scope.
+     */
+    private void checkSubtypeCacheUnused(
+            AnnotatedTypeMirror varType, AnnotatedTypeMirror valueType, Tree valueTree) {
+        TypeHierarchy typeHierarchy = atypeFactory.getTypeHierarchy();
+        if (!(typeHierarchy instanceof DefaultTypeHierarchy)) {
+            return;
+        }
+        BoundedCache<?, ?> subtypeCache = ((DefaultTypeHierarchy) typeHierarchy).getSubtypeCache();
+        if (subtypeCache == null
+                || !(scopeDependentTypeFinder.visit(varType)
+                        || scopeDependentTypeFinder.visit(valueType))) {
+            return;
+        }
+
+        int size = subtypeCache.size();
+        long lookups = subtypeCache.hitCount() + subtypeCache.missCount();
+        typeHierarchy.isSubtype(valueType, varType);
+        if (subtypeCache.size() != size
+                || subtypeCache.hitCount() + subtypeCache.missCount() != lookups) {
+            checker.report(Result.failure("subtype.cache.used", valueType, varType), valueTree);
+        }
+    }
+
+    /**
+     * Reports an error if {@code valueType} and {@code varType} are primitive types or declared
+     * types without type arguments and without {@link FlowExp} annotations, but repeating the check
+     * whether {@code valueType} is a subtype of {@code varType} does not find it in the cache of
+     * subtype checks.
+     */
+    private void checkSubtypeCacheHit(
+            AnnotatedTypeMirror varType, AnnotatedTypeMirror valueType, Tree valueTree) {
+        TypeHierarchy typeHierarchy = atypeFactory.getTypeHierarchy();
+        if (!(typeHierarchy instanceof DefaultTypeHierarchy)) {
+            return;
+        }
+        BoundedCache<?, ?> subtypeCache = ((DefaultTypeHierarchy) typeHierarchy).getSubtypeCache();
+        if (subtypeCache == null || !isSimple(varType) || !isSimple(valueType)) {
+            return;
+        }
+
+        typeHierarchy.isSubtype(valueType, varType);
+        long hits = subtypeCache.hitCount();
+        typeHierarchy.isSubtype(valueType, varType);
+        if (subtypeCache.hitCount() == hits) {
+            checker.report(Result.failure("subtype.cache.unused", valueType, varType), valueTree);
+        }
+    }
+
+    /**
+     * Returns true if {@code type} is a primitive type, or a declared type without type arguments
+     * and without an enclosing type, and does not have a {@link FlowExp} annotation.
+     */
+    private static boolean isSimple(AnnotatedTypeMirror type) {
+        if (type.getKind() == TypeKind.DECLARED) {
+            AnnotatedDeclaredType declaredType = (AnnotatedDeclaredType) type;
+            if (declaredType.wasRaw()
+                    || !declaredType.getTypeArguments().isEmpty()
+                    || declaredType.getEnclosingType() != null) {
+                return false;
+            }
+        } else if (!type.getKind().isPrimitive()) {
+            return false;
+        }
+        for (AnnotationMirror anno : type.getAnnotations()) {
+            if (AnnotationUtils.areSameByClass(anno, FlowExp.class)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if a type or one of its component types is a type variable declared by a method
+     * or has a {@link FlowExp} annotation.
+     */
+    private static class ScopeDependentTypeFinder extends AnnotatedTypeScanner<Boolean, Void> {
+        @Override
+        protected Boolean scan(AnnotatedTypeMirror type, Void p) {
+            if (type == null) {
+                return false;
+            }
+            for (AnnotationMirror anno : type.getAnnotations()) {
+                if (AnnotationUtils.areSameByClass(anno, FlowExp.class)) {
+                    return true;
+                }
+            }
+            Boolean result = super.scan(type, p);
+            return result != null && result;
+        }
+
+        @Override
+        protected Boolean reduce(Boolean r1, Boolean r2) {
+            return (r1 != null && r1) || (r2 != null && r2);
+        }
+
+        @Override
+        public Boolean visitTypeVariable(AnnotatedTypeVariable type, Void p) {
+            Element declaringElement = type.getUnderlyingType().asElement().getEnclosingElement();
+            if (declaringElement.getKind() == ElementKind.METHOD
+                    || declaringElement.getKind() == ElementKind.CONSTRUCTOR) {
+                return true;
+            }
+            return super.visitTypeVariable(type, p);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package testlib.typecache;
+
+import java.util.Properties;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+
+/**
+ * A checker that tests the caches of the type factory, the cached hash codes of annotated types
+ * and the shortcut of type argument inference. It uses the qualifiers of the {@link
+ * testlib.util.FlowTestChecker}, and its visitor reports an error wherever a cache or shortcut
+ * returns a different result than the computation it replaces. The test files therefore expect no
+ * errors other than the ones of the type system.
+ *
+ * @see TypeCacheVisitor
+ */
+public class TypeCacheChecker extends BaseTypeChecker {
+
+    @Override
+    protected BaseTypeVisitor<?> createSourceVisitor() {
+        return new TypeCacheVisitor(this);
+    }
+
+    @Override
+    public Properties getMessages() {
+        Properties messages = super.getMessages();
+        messages.setProperty(
+                "shared.type.modified",
+                "modifying a copy of a cached type modified the cached type\nfound: %s");
+        messages.setProperty(
+                "hash.code.stale",
+                "the cached hash code of a type was not updated when a bound was set\n"
+                        + "found: %s");
+        messages.setProperty(
+                "inference.shortcut.differs",
+                "the shortcut for unconstrained type arguments inferred different type arguments\n"
+                        + "inferred: %s\n"
+                        + "full inference: %s");
+        return messages;
+    }
+}
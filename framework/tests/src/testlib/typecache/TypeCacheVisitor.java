@@ -0,0 +1,305 @@
+package testlib.typecache;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeVariable;
+import org.checkerframework.common.basetype.BaseTypeChecker;
+import org.checkerframework.common.basetype.BaseTypeVisitor;
+import org.checkerframework.framework.source.Result;
+import org.checkerframework.framework.type.AnnotatedTypeFactory;
+import org.checkerframework.framework.type.AnnotatedTypeMirror;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedDeclaredType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedExecutableType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedIntersectionType;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedTypeVariable;
+import org.checkerframework.framework.type.AnnotatedTypeMirror.AnnotatedWildcardType;
+import org.checkerframework.framework.type.BoundModifier;
+import org.checkerframework.framework.type.visitor.AnnotatedTypeScanner;
+import org.checkerframework.framework.util.AnnotatedTypes;
+import org.checkerframework.framework.util.typeinference.DefaultTypeArgumentInference;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.ErrorReporter;
+import org.checkerframework.javacutil.TreeUtils;
+import testlib.util.FlowTestAnnotatedTypeFactory;
+import testlib.util.Odd;
+
+/**
+ * Checks the types returned by the caches of the type factory, and the cached hash codes of
+ * annotated types, at every class, method and variable declaration. Checks the shortcut of type
+ * argument inference at every method invocation. The test files must not use
+ * {@link Odd}, which this visitor writes on copies of cached types to detect whether they share
+ * components with the cached types.
+ */
+public class TypeCacheVisitor extends BaseTypeVisitor<FlowTestAnnotatedTypeFactory> {
+
+    /** The annotation that is added to copies of cached types. */
+    private final AnnotationMirror marker;
+
+    /** Adds {@link #marker} to a type and its component types. */
+    private final MarkerWriter markerWriter = new MarkerWriter();
+
+    /** Returns true if a type or one of its component types has {@link #marker}. */
+    private final MarkerFinder markerFinder = new MarkerFinder();
+
+    /** Collects the type variables, wildcards and intersection types in a type. */
+    private final BoundedTypeCollector boundedTypeCollector = new BoundedTypeCollector();
+
+    public TypeCacheVisitor(BaseTypeChecker checker) {
+        super(checker);
+        marker = AnnotationBuilder.fromClass(elements, Odd.class);
+    }
+
+    @Override
+    protected FlowTestAnnotatedTypeFactory createTypeFactory() {
+        return new FlowTestAnnotatedTypeFactory(checker);
+    }
+
+    @Override
+    public void processClassTree(ClassTree node) {
+        checkDeclaration(TreeUtils.elementFromDeclaration(node), node);
+        super.processClassTree(node);
+    }
+
+    @Override
+    public Void visitMethod(MethodTree node, Void p) {
+        checkDeclaration(TreeUtils.elementFromDeclaration(node), node);
+        return super.visitMethod(node, p);
+    }
+
+    @Override
+    public Void visitVariable(VariableTree node, Void p) {
+        checkDeclaration(TreeUtils.elementFromDeclaration(node), node);
+        return super.visitVariable(node, p);
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree node, Void p) {
+        checkUnconstrainedInference(node);
+        return super.visitMethodInvocation(node, p);
+    }
+
+    /** Checks the type of the declared element {@code elt}. */
+    private void checkDeclaration(Element elt, Tree tree) {
+        checkLazyCopies(elt, tree);
+        checkHashCodes(elt, tree);
+    }
+
+    /**
+     * Checks that modifying the component types of a copy of the cached type of {@code elt} does
+     * not modify the cached type. The type factory caches the type of an element as a shared type,
+     * whose copies only copy the component types the first time they are accessed.
+     */
+    private void checkLazyCopies(Element elt, Tree tree) {
+        // The first call caches the type, so that the second one returns a copy of it.
+        atypeFactory.getAnnotatedType(elt);
+        AnnotatedTypeMirror copy = atypeFactory.getAnnotatedType(elt);
+        for (AnnotatedTypeMirror component : withDirectSuperTypes(copy)) {
+            markerWriter.visit(component);
+        }
+
+        AnnotatedTypeMirror type = atypeFactory.getAnnotatedType(elt);
+        for (AnnotatedTypeMirror component : withDirectSuperTypes(type)) {
+            if (markerFinder.visit(component)) {
+                checker.report(Result.failure("shared.type.modified", type), tree);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks that the cached hash codes of the type of {@code elt} and of its type variables,
+     * wildcards and intersection types are recomputed after the bound of one of these is set. The
+     * hash code of a type is cached until any type is modified.
+     */
+    private void checkHashCodes(Element elt, Tree tree) {
+        AnnotatedTypeMirror type = atypeFactory.getAnnotatedType(elt);
+        List<AnnotatedTypeMirror> boundedTypes = new ArrayList<>();
+        for (AnnotatedTypeMirror component : withDirectSuperTypes(type)) {
+            boundedTypeCollector.visit(component, boundedTypes);
+        }
+
+        for (AnnotatedTypeMirror boundedType : boundedTypes) {
+            // Cache the hash codes, then set a bound whose hash code differs from the old one.
+            type.hashCode();
+            boundedType.hashCode();
+            switch (boundedType.getKind()) {
+                case TYPEVAR:
+                    BoundModifier.setUpperBound((AnnotatedTypeVariable) boundedType, createBound());
+                    break;
+                case WILDCARD:
+                    BoundModifier.setExtendsBound(
+                            (AnnotatedWildcardType) boundedType, createBound());
+                    break;
+                case INTERSECTION:
+                    BoundModifier.setDirectSuperTypes(
+                            (AnnotatedIntersectionType) boundedType,
+                            Collections.singletonList(createBound()));
+                    break;
+                default:
+                    ErrorReporter.errorAbort(
+                            "TypeCacheVisitor.checkHashCodes: unexpected kind: " + boundedType);
+            }
+            if (type.hashCode() != type.deepCopy().hashCode()
+                    || boundedType.hashCode() != boundedType.deepCopy().hashCode()) {
+                checker.report(Result.failure("hash.code.stale", boundedType), tree);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Checks that the type arguments that {@link DefaultTypeArgumentInference} infers for {@code
+     * tree} are the same as those of the full inference. They differ if the shortcut for
+     * unconstrained type arguments is taken wrongly.
+     */
+    private void checkUnconstrainedInference(MethodInvocationTree tree) {
+        ExecutableElement methodElt = TreeUtils.elementFromUse(tree);
+        if (methodElt.getTypeParameters().isEmpty() || !tree.getTypeArguments().isEmpty()) {
+            return;
+        }
+        AnnotatedExecutableType methodType =
+                AnnotatedTypes.asMemberOf(
+                        types, atypeFactory, atypeFactory.getReceiverType(tree), methodElt);
+        Map<TypeVariable, AnnotatedTypeMirror> inferred =
+                new DefaultTypeArgumentInference(atypeFactory)
+                        .inferTypeArgs(atypeFactory, tree, methodElt, methodType.deepCopy());
+        Map<TypeVariable, AnnotatedTypeMirror> fullyInferred =
+                new FullTypeArgumentInference(atypeFactory)
+                        .inferTypeArgs(atypeFactory, tree, methodElt, methodType.deepCopy());
+
+        boolean same = inferred.keySet().equals(fullyInferred.keySet());
+        for (Map.Entry<TypeVariable, AnnotatedTypeMirror> entry : inferred.entrySet()) {
+            AnnotatedTypeMirror typeArg = entry.getValue();
+            AnnotatedTypeMirror fullTypeArg = fullyInferred.get(entry.getKey());
+            if (fullTypeArg == null
+                    || !typeArg.equals(fullTypeArg)
+                    || isUninferred(typeArg) != isUninferred(fullTypeArg)) {
+                same = false;
+            }
+        }
+        if (!same) {
+            checker.report(
+                    Result.failure("inference.shortcut.differs", inferred, fullyInferred), tree);
+        }
+    }
+
+    /** Returns true if {@code type} is a wildcard that stands for an uninferred type argument. */
+    private static boolean isUninferred(AnnotatedTypeMirror type) {
+        return type.getKind() == TypeKind.WILDCARD
+                && ((AnnotatedWildcardType) type).isUninferredTypeArgument();
+    }
+
+    /** Returns a new {@code @Odd String}, which is used to replace the bounds of types. */
+    private AnnotatedDeclaredType createBound() {
+        AnnotatedTypeMirror bound =
+                AnnotatedTypeMirror.createType(
+                        elements.getTypeElement("java.lang.String").asType(), atypeFactory, false);
+        bound.addAnnotation(marker);
+        return (AnnotatedDeclaredType) bound;
+    }
+
+    /**
+     * Returns {@code type} and, if it is a declared type, its direct supertypes, which are not
+     * visited by an {@link AnnotatedTypeScanner}.
+     */
+    private List<AnnotatedTypeMirror> withDirectSuperTypes(AnnotatedTypeMirror type) {
+        List<AnnotatedTypeMirror> types = new ArrayList<>();
+        types.add(type);
+        if (type.getKind() == TypeKind.DECLARED) {
+            types.addAll(((AnnotatedDeclaredType) type).directSuperTypes());
+        }
+        return types;
+    }
+
+    /** The type argument inference without the shortcut for unconstrained type arguments. */
+    private static class FullTypeArgumentInference extends DefaultTypeArgumentInference {
+        FullTypeArgumentInference(AnnotatedTypeFactory typeFactory) {
+            super(typeFactory);
+        }
+
+        @Override
+        protected boolean hasUnconstrainedTypeArguments(
+                AnnotatedExecutableType methodType,
+                List<AnnotatedTypeMirror> argTypes,
+                AnnotatedTypeMirror assignedTo) {
+            return false;
+        }
+    }
+
+    /** Collects the type variables, wildcards and intersection types it visits. */
+    private static class BoundedTypeCollector
+            extends AnnotatedTypeScanner<Void, List<AnnotatedTypeMirror>> {
+        @Override
+        public Void visitTypeVariable(
+                AnnotatedTypeVariable type, List<AnnotatedTypeMirror> boundedTypes) {
+            if (!visitedNodes.containsKey(type)) {
+                boundedTypes.add(type);
+            }
+            return super.visitTypeVariable(type, boundedTypes);
+        }
+
+        @Override
+        public Void visitWildcard(
+                AnnotatedWildcardType type, List<AnnotatedTypeMirror> boundedTypes) {
+            if (!visitedNodes.containsKey(type)) {
+                boundedTypes.add(type);
+            }
+            return super.visitWildcard(type, boundedTypes);
+        }
+
+        @Override
+        public Void visitIntersection(
+                AnnotatedIntersectionType type, List<AnnotatedTypeMirror> boundedTypes) {
+            if (!visitedNodes.containsKey(type)) {
+                boundedTypes.add(type);
+            }
+            return super.visitIntersection(type, boundedTypes);
+        }
+    }
+
+    /** Adds {@link #marker} to every declared, array and primitive type it visits. */
+    private class MarkerWriter extends AnnotatedTypeScanner<Void, Void> {
+        @Override
+        protected Void scan(AnnotatedTypeMirror type, Void p) {
+            if (type == null) {
+                return null;
+            }
+            TypeKind kind = type.getKind();
+            if (kind == TypeKind.DECLARED || kind == TypeKind.ARRAY || kind.isPrimitive()) {
+                type.replaceAnnotation(marker);
+            }
+            return super.scan(type, p);
+        }
+    }
+
+    /** Returns true if any type it visits has {@link #marker}. */
+    private class MarkerFinder extends AnnotatedTypeScanner<Boolean, Void> {
+        @Override
+        protected Boolean scan(AnnotatedTypeMirror type, Void p) {
+            if (type == null) {
+                return false;
+            }
+            if (type.hasAnnotation(marker)) {
+                return true;
+            }
+            Boolean result = super.scan(type, p);
+            return result != null && result;
+        }
+
+        @Override
+        protected Boolean reduce(Boolean r1, Boolean r2) {
+            return (r1 != null && r1) || (r2 != null && r2);
+        }
+    }
+}
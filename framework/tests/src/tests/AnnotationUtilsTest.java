@@ -0,0 +1,245 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This class tests that {@link AnnotationUtils#areSame} and {@link
+ * AnnotationUtils#structuralHashCode} agree for annotations written in source code and annotations
+ * created by {@link AnnotationBuilder}, and that the builder returns canonical instances.
+ */
+public class AnnotationUtilsTest {
+
+    /** An annotation with an element of each kind, and classes that use it. */
+    private static final String SOURCE =
+            "enum E { X, Y }\n"
+                    + "@interface Nested { int value(); }\n"
+                    + "@interface Values {\n"
+                    + "    int i() default 0;\n"
+                    + "    long l() default 0L;\n"
+                    + "    double d() default 0.0;\n"
+                    + "    float f() default 0.0f;\n"
+                    + "    char c() default 'c';\n"
+                    + "    String s() default \"s\";\n"
+                    + "    boolean b() default false;\n"
+                    + "    Class<?> type() default Object.class;\n"
+                    + "    E e() default E.X;\n"
+                    + "    int[] is() default {};\n"
+                    + "    Nested nested() default @Nested(0);\n"
+                    + "    Class<?>[] types() default {};\n"
+                    + "}\n"
+                    + "@Values(i = 1, l = 2L, d = 0.1, f = 0.1f, c = 'x', s = \"str\", b = true,\n"
+                    + "        type = String[].class, e = E.Y, is = {1, 2}, nested = @Nested(3),\n"
+                    + "        types = {int.class, java.util.List.class})\n"
+                    + "class AllValues {}\n"
+                    + "@Values class NoValues {}\n"
+                    + "@Values(i = 0, s = \"s\", e = E.X, nested = @Nested(0))\n"
+                    + "class DefaultValues {}\n";
+
+    private static ProcessingEnvironment env;
+
+    /** Compiles {@link #SOURCE}, to obtain a processing environment in which its elements exist. */
+    @BeforeClass
+    public static void compile() throws IOException {
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///E.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return SOURCE;
+                    }
+                };
+        JavacTask task =
+                (JavacTask)
+                        ToolProvider.getSystemJavaCompiler()
+                                .getTask(
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        Collections.singletonList(file));
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+        task.setProcessors(Collections.singletonList(processor));
+        task.analyze();
+        env = processor.getEnvironment();
+    }
+
+    /** Returns the {@code @Values} annotation that javac reads from the class {@code name}. */
+    private static AnnotationMirror fromSource(String name) {
+        List<? extends AnnotationMirror> annos =
+                env.getElementUtils().getTypeElement(name).getAnnotationMirrors();
+        assertEquals(1, annos.size());
+        return annos.get(0);
+    }
+
+    /** Returns the constant {@code name} of the enum E. */
+    private static VariableElement enumConstant(String name) {
+        for (VariableElement field :
+                ElementFilter.fieldsIn(
+                        env.getElementUtils().getTypeElement("E").getEnclosedElements())) {
+            if (field.getSimpleName().contentEquals(name)) {
+                return field;
+            }
+        }
+        throw new AssertionError(name);
+    }
+
+    /** Returns the type of the class {@code name}. */
+    private static TypeMirror type(String name) {
+        return env.getElementUtils().getTypeElement(name).asType();
+    }
+
+    /** Returns {@code @Nested(value)}. */
+    private static AnnotationMirror nested(int value) {
+        return new AnnotationBuilder(env, "Nested").setValue("value", value).build();
+    }
+
+    /** Returns a builder for the {@code @Values} annotation of the class AllValues. */
+    private static AnnotationBuilder allValues() {
+        AnnotationBuilder builder = new AnnotationBuilder(env, "Values");
+        builder.setValue("i", 1);
+        builder.setValue("l", 2L);
+        builder.setValue("d", 0.1);
+        builder.setValue("f", 0.1f);
+        builder.setValue("c", 'x');
+        builder.setValue("s", "str");
+        builder.setValue("b", true);
+        builder.setValue("type", env.getTypeUtils().getArrayType(type("java.lang.String")));
+        builder.setValue("e", enumConstant("Y"));
+        builder.setValue("is", Arrays.asList(1, 2));
+        builder.setValue("nested", nested(3));
+        builder.setValue(
+                "types",
+                Arrays.asList(
+                        env.getTypeUtils().getPrimitiveType(TypeKind.INT),
+                        env.getTypeUtils().erasure(type("java.util.List"))));
+        return builder;
+    }
+
+    /** Checks that the two annotations are the same and have the same structural hash code. */
+    private static void assertSameAnnotation(AnnotationMirror a1, AnnotationMirror a2) {
+        assertTrue(a1 + " != " + a2, AnnotationUtils.areSame(a1, a2));
+        assertTrue(a2 + " != " + a1, AnnotationUtils.areSame(a2, a1));
+        assertEquals(
+                AnnotationUtils.structuralHashCode(a1), AnnotationUtils.structuralHashCode(a2));
+    }
+
+    @Test
+    public void sourceAndBuiltAnnotationsAreSame() {
+        AnnotationMirror source = fromSource("AllValues");
+        AnnotationMirror built = allValues().build();
+        assertSameAnnotation(source, source);
+        assertSameAnnotation(source, built);
+    }
+
+    @Test
+    public void defaultValuesAreIncluded() {
+        AnnotationMirror noValues = fromSource("NoValues");
+        AnnotationMirror defaultValues = fromSource("DefaultValues");
+        AnnotationMirror built = new AnnotationBuilder(env, "Values").build();
+        AnnotationMirror builtDefaults =
+                new AnnotationBuilder(env, "Values")
+                        .setValue("l", 0L)
+                        .setValue("c", 'c')
+                        .setValue("type", type("java.lang.Object"))
+                        .setValue("types", Collections.emptyList())
+                        .build();
+        assertSameAnnotation(noValues, defaultValues);
+        assertSameAnnotation(noValues, built);
+        assertSameAnnotation(defaultValues, builtDefaults);
+        assertSameAnnotation(built, builtDefaults);
+    }
+
+    @Test
+    public void differentValuesAreNotSame() {
+        AnnotationMirror source = fromSource("AllValues");
+        List<AnnotationBuilder> builders =
+                Arrays.asList(
+                        allValues().setValue("i", 2),
+                        allValues().setValue("l", 3L),
+                        allValues().setValue("d", 0.2),
+                        allValues().setValue("f", 0.2f),
+                        allValues().setValue("c", 'y'),
+                        allValues().setValue("s", "other"),
+                        allValues().setValue("b", false),
+                        allValues().setValue("type", type("java.lang.String")),
+                        allValues().setValue("e", enumConstant("X")),
+                        allValues().setValue("is", Arrays.asList(2, 1)),
+                        allValues().setValue("nested", nested(4)),
+                        allValues()
+                                .setValue(
+                                        "types",
+                                        Collections.singletonList(
+                                                env.getTypeUtils()
+                                                        .getPrimitiveType(TypeKind.INT))));
+        for (AnnotationBuilder builder : builders) {
+            AnnotationMirror built = builder.build();
+            assertFalse(built.toString(), AnnotationUtils.areSame(source, built));
+            assertFalse(built.toString(), AnnotationUtils.areSame(built, source));
+        }
+    }
+
+    @Test
+    public void builderReturnsCanonicalInstances() {
+        assertSame(allValues().build(), allValues().build());
+        assertSame(
+                AnnotationBuilder.fromName(env.getElementUtils(), "Nested"),
+                AnnotationBuilder.fromName(env.getElementUtils(), "Nested"));
+        assertSame(nested(1), nested(1));
+        assertNotSame(nested(1), nested(2));
+        // The values are interned regardless of the order in which they are set.
+        AnnotationBuilder reversed = new AnnotationBuilder(env, "Values");
+        reversed.setValue("s", "str");
+        reversed.setValue("i", 1);
+        AnnotationBuilder ordered = new AnnotationBuilder(env, "Values");
+        ordered.setValue("i", 1);
+        ordered.setValue("s", "str");
+        assertSame(ordered.build(), reversed.build());
+    }
+
+    /** An annotation processor that gives access to the processing environment. */
+    private static class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment getEnvironment() {
+            return processingEnv;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+}
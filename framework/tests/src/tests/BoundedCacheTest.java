@@ -0,0 +1,163 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.checkerframework.javacutil.BoundedCache;
+import org.checkerframework.javacutil.CollectionUtils;
+import org.junit.Test;
+
+/** This class tests the eviction policies and the statistics of the BoundedCache class. */
+public class BoundedCacheTest {
+
+    /** Weighs an integer value as itself. */
+    private static final BoundedCache.Weigher<Integer> IDENTITY =
+            new BoundedCache.Weigher<Integer>() {
+                @Override
+                public int weigh(Integer value) {
+                    return value;
+                }
+            };
+
+    @Test
+    public void lruEvictsLeastRecentlyUsed() {
+        BoundedCache<String, Integer> cache =
+                CollectionUtils.createCache("lru", 3, null, BoundedCache.Policy.LRU);
+        cache.put("a", 1);
+        cache.put("b", 2);
+        cache.put("c", 3);
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        cache.put("d", 4);
+        assertEquals(3, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals(Integer.valueOf(1), cache.get("a"));
+        assertEquals(Integer.valueOf(3), cache.get("c"));
+        assertEquals(Integer.valueOf(4), cache.get("d"));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void lruRespectsWeights() {
+        BoundedCache<String, Integer> cache =
+                CollectionUtils.createCache("weighted", 10, IDENTITY, BoundedCache.Policy.LRU);
+        cache.put("a", 4);
+        cache.put("b", 4);
+        assertEquals(8, cache.weight());
+        // Evicts both "a" and "b" to make room.
+        cache.put("c", 9);
+        assertEquals(9, cache.weight());
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.evictionCount());
+        // Replacing a value updates the weight.
+        cache.put("c", 2);
+        assertEquals(2, cache.weight());
+        // A value heavier than the cache is not kept.
+        cache.put("d", 11);
+        assertFalse(cache.containsKey("d"));
+        assertTrue(cache.weight() <= 10);
+    }
+
+    @Test
+    public void statistics() {
+        BoundedCache<String, Integer> cache =
+                CollectionUtils.createCache("stats", 2, null, BoundedCache.Policy.LRU);
+        cache.put("a", 1);
+        // A containsKey followed by a get is one hit.
+        assertTrue(cache.containsKey("a"));
+        cache.get("a");
+        // A failed containsKey is one miss.
+        assertFalse(cache.containsKey("b"));
+        cache.get("c");
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(0, cache.evictionCount());
+        assertTrue(cache.getStatistics().startsWith("stats: 1 entries, weight 1/2 (LRU), 1 hits"));
+
+        cache.remove("a");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void frequencyKeepsFrequentKeysDuringScan() {
+        BoundedCache<String, Integer> frequency =
+                CollectionUtils.createCache("frequency", 100, null, BoundedCache.Policy.FREQUENCY);
+        BoundedCache<String, Integer> lru =
+                CollectionUtils.createCache("lru", 100, null, BoundedCache.Policy.LRU);
+        lookUpAndScan(frequency);
+        lookUpAndScan(lru);
+        for (int i = 0; i < 50; i++) {
+            assertEquals(Integer.valueOf(i), frequency.get("hot" + i));
+            assertNull(lru.get("hot" + i));
+        }
+    }
+
+    /**
+     * Puts 50 keys into {@code cache} and looks each of them up 5 times, then puts 1000 other keys
+     * that are never looked up.
+     */
+    private static void lookUpAndScan(BoundedCache<String, Integer> cache) {
+        for (int i = 0; i < 50; i++) {
+            cache.put("hot" + i, i);
+        }
+        for (int lookup = 0; lookup < 5; lookup++) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(Integer.valueOf(i), cache.get("hot" + i));
+            }
+        }
+        for (int i = 0; i < 1000; i++) {
+            cache.put("scan" + i, i);
+        }
+        assertTrue(cache.weight() <= 100);
+    }
+
+    @Test
+    public void frequencyCandidateMustBeatEveryVictim() {
+        BoundedCache<String, Integer> cache = fillMain(5);
+        // "k98" fills the main region when it leaves the window, so admitting "heavy" would evict
+        // "k0" and "k1". "heavy" is looked up more often than "k0", but not more often than "k1".
+        cache.put("heavy", 2);
+        assertFalse(cache.containsKey("heavy"));
+        assertTrue(cache.containsKey("k0"));
+        assertTrue(cache.containsKey("k1"));
+        assertEquals(1, cache.evictionCount());
+        assertTrue(cache.weight() <= 100);
+    }
+
+    @Test
+    public void frequencyCandidateThatBeatsEveryVictimIsAdmitted() {
+        BoundedCache<String, Integer> cache = fillMain(0);
+        cache.put("heavy", 2);
+        assertTrue(cache.containsKey("heavy"));
+        assertFalse(cache.containsKey("k0"));
+        assertFalse(cache.containsKey("k1"));
+        assertTrue(cache.containsKey("k2"));
+        assertEquals(2, cache.evictionCount());
+        assertTrue(cache.weight() <= 100);
+    }
+
+    /**
+     * Returns a {@link BoundedCache.Policy#FREQUENCY} cache of maximum weight 100, whose window of
+     * weight 1 holds "k98", and whose main region of weight 99 holds "k0" to "k97" in access
+     * order. "heavy" has been looked up twice and "k1" {@code k1Lookups} times before they
+     * were put into the cache.
+     */
+    private static BoundedCache<String, Integer> fillMain(int k1Lookups) {
+        BoundedCache<String, Integer> cache =
+                CollectionUtils.createCache(
+                        "frequency", 100, IDENTITY, BoundedCache.Policy.FREQUENCY);
+        for (int i = 0; i < k1Lookups; i++) {
+            assertNull(cache.get("k1"));
+        }
+        assertNull(cache.get("heavy"));
+        assertNull(cache.get("heavy"));
+        for (int i = 0; i < 99; i++) {
+            cache.put("k" + i, 1);
+        }
+        assertEquals(99, cache.size());
+        assertEquals(0, cache.evictionCount());
+        return cache;
+    }
+}
@@ -0,0 +1,223 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.analysis.AnalysisResult;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.cfg.block.RegularBlock;
+import org.checkerframework.dataflow.cfg.node.Node;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests that the stores that {@link AnalysisResult} computes by resuming the analysis at a
+ * checkpoint, see {@link Analysis#setCheckpointInterval}, are the same as the stores that it
+ * computes from the beginning of each block, with the constant propagation analysis on the
+ * control flow graphs of the methods of {@link #SOURCE}.
+ */
+public class CheckpointTest {
+
+    /** A class whose methods have long blocks, loops and exceptions. */
+    private static final String SOURCE =
+            "class Test {\n"
+                    + "    int longBlock(int p) {\n"
+                    + "        int a = 1;\n"
+                    + "        int b = a + 2;\n"
+                    + "        int c = b * a;\n"
+                    + "        a = c - p;\n"
+                    + "        b = 7;\n"
+                    + "        int d = b + b;\n"
+                    + "        c = d;\n"
+                    + "        p = p + a + b + c + d;\n"
+                    + "        return a + b + c + d + p;\n"
+                    + "    }\n"
+                    + "    int loop(int p) {\n"
+                    + "        int x = 0;\n"
+                    + "        int y = 5;\n"
+                    + "        int z = 3;\n"
+                    + "        while (x < p) {\n"
+                    + "            x = x + 1;\n"
+                    + "            y = z;\n"
+                    + "            z = 5;\n"
+                    + "            int w = y + z + x;\n"
+                    + "            p = p - w;\n"
+                    + "        }\n"
+                    + "        return x + y + z;\n"
+                    + "    }\n"
+                    + "    int exceptions(int p) {\n"
+                    + "        int x = 0;\n"
+                    + "        try {\n"
+                    + "            x = 1;\n"
+                    + "            int y = x + 2;\n"
+                    + "            x = p / y;\n"
+                    + "            y = 4;\n"
+                    + "            x = x + y;\n"
+                    + "        } catch (ArithmeticException e) {\n"
+                    + "            x = 3;\n"
+                    + "        } finally {\n"
+                    + "            p = 2;\n"
+                    + "        }\n"
+                    + "        return x + p;\n"
+                    + "    }\n"
+                    + "}\n";
+
+    private static CompilationUnitTree root;
+    private static ClassTree classTree;
+    private static ProcessingEnvironment env;
+
+    /** Parses and attributes {@link #SOURCE}. */
+    @BeforeClass
+    public static void compile() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return SOURCE;
+                    }
+                };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacTask task =
+                (JavacTask)
+                        compiler.getTask(
+                                null,
+                                null,
+                                diagnostics,
+                                null,
+                                null,
+                                Collections.singletonList(file));
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+        task.setProcessors(Collections.singletonList(processor));
+        root = task.parse().iterator().next();
+        task.analyze();
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            assertFalse(d.toString(), d.getKind() == Diagnostic.Kind.ERROR);
+        }
+        classTree = (ClassTree) root.getTypeDecls().get(0);
+        env = processor.getEnvironment();
+    }
+
+    /** Returns the control flow graphs of the methods of {@link #SOURCE}. */
+    private static List<ControlFlowGraph> buildGraphs() {
+        List<ControlFlowGraph> graphs = new ArrayList<>();
+        for (Tree member : classTree.getMembers()) {
+            MethodTree method = (MethodTree) member;
+            if (method.getBody() != null && !method.getName().contentEquals("<init>")) {
+                graphs.add(CFGBuilder.build(root, env, method, classTree));
+            }
+        }
+        return graphs;
+    }
+
+    @Test
+    public void resumedAnalysisGivesTheSameStores() {
+        boolean longBlock = false;
+        for (ControlFlowGraph cfg : buildGraphs()) {
+            for (int i = 0; i < cfg.getNumberOfBlocks(); i++) {
+                Block b = cfg.getBlock(i);
+                longBlock |=
+                        b.getType() == Block.BlockType.REGULAR_BLOCK
+                                && ((RegularBlock) b).getContents().size() > 10;
+            }
+            AnalysisResult<Constant, ConstantPropagationStore> expected = analyze(cfg, 0);
+            for (int interval : new int[] {1, 2, 3, 5}) {
+                AnalysisResult<Constant, ConstantPropagationStore> actual =
+                        analyze(cfg, interval);
+                // Query the nodes from the end, so that no store is computed from the cached
+                // results of an earlier query in the same block.
+                for (int n = cfg.getNumberOfNodes() - 1; n >= 0; n--) {
+                    Node node = cfg.getNode(n);
+                    assertEquals(
+                            interval + ", before " + node,
+                            expected.getStoreBefore(node),
+                            actual.getStoreBefore(node));
+                    assertEquals(
+                            interval + ", after " + node,
+                            expected.getStoreAfter(node),
+                            actual.getStoreAfter(node));
+                    assertEquals(
+                            interval + ", " + node, expected.getValue(node), actual.getValue(node));
+                }
+            }
+        }
+        assertTrue("no block is longer than the checkpoint intervals", longBlock);
+    }
+
+    @Test
+    public void queriesInAnyOrderGiveTheSameStores() {
+        for (ControlFlowGraph cfg : buildGraphs()) {
+            AnalysisResult<Constant, ConstantPropagationStore> expected = analyze(cfg, 0);
+            AnalysisResult<Constant, ConstantPropagationStore> actual = analyze(cfg, 2);
+            for (int n = 0; n < cfg.getNumberOfNodes(); n++) {
+                Node node = cfg.getNode(n);
+                assertEquals(
+                        "after " + node, expected.getStoreAfter(node), actual.getStoreAfter(node));
+                assertEquals(
+                        "before " + node,
+                        expected.getStoreBefore(node),
+                        actual.getStoreBefore(node));
+            }
+        }
+    }
+
+    /**
+     * Runs constant propagation on {@code cfg}, recording a checkpoint every {@code interval}
+     * nodes, and returns its result.
+     */
+    private static AnalysisResult<Constant, ConstantPropagationStore> analyze(
+            ControlFlowGraph cfg, int interval) {
+        Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> analysis =
+                new Analysis<>(env, new ConstantPropagationTransfer());
+        analysis.setCheckpointInterval(interval);
+        analysis.performAnalysis(cfg);
+        return analysis.getResult();
+    }
+
+    /** An annotation processor that gives access to the processing environment. */
+    private static class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment getEnvironment() {
+            return processingEnv;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+}
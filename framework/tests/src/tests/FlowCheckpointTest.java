@@ -0,0 +1,29 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Runs the tests of {@link FlowTest} with a checkpoint every second node, so that the refined
+ * types are computed by resuming the analysis at a checkpoint. The expected diagnostics are those
+ * of the analysis without checkpoints.
+ */
+public class FlowCheckpointTest extends CheckerFrameworkPerDirectoryTest {
+
+    public FlowCheckpointTest(List<File> testFiles) {
+        super(
+                testFiles,
+                FlowTestChecker.class,
+                "flow",
+                "-Anomsgtext",
+                "-AflowCheckpointInterval=2");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"flow", "all-systems"};
+    }
+}
@@ -0,0 +1,25 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.flowrelease.FlowReleaseChecker;
+
+/** Tests that the dataflow results of checked and skipped classes are released. */
+public class FlowReleaseTest extends CheckerFrameworkPerDirectoryTest {
+
+    public FlowReleaseTest(List<File> testFiles) {
+        super(
+                testFiles,
+                FlowReleaseChecker.class,
+                "flow-release",
+                "-Anomsgtext",
+                "-AskipDefs=Skipped");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"flow-release"};
+    }
+}
@@ -0,0 +1,24 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Runs the tests of {@link FlowTest} with the dataflow analysis visiting the blocks in the order
+ * given by -AflowIteration=roundRobin. The fix-point, and thus the expected diagnostics, are those of
+ * the default order.
+ */
+public class FlowRoundRobinTest extends CheckerFrameworkPerDirectoryTest {
+
+    public FlowRoundRobinTest(List<File> testFiles) {
+        super(testFiles, FlowTestChecker.class, "flow", "-Anomsgtext", "-AflowIteration=roundRobin");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"flow", "all-systems"};
+    }
+}
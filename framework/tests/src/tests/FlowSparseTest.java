@@ -0,0 +1,23 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.util.FlowTestChecker;
+
+/**
+ * Runs the tests of {@link FlowTest} with the sparse dataflow analysis, which drops the refined
+ * types of dead local variables. The expected diagnostics are those of the full analysis.
+ */
+public class FlowSparseTest extends CheckerFrameworkPerDirectoryTest {
+
+    public FlowSparseTest(List<File> testFiles) {
+        super(testFiles, FlowTestChecker.class, "flow", "-Anomsgtext", "-AsparseFlow");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"flow", "all-systems"};
+    }
+}
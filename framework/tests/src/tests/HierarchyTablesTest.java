@@ -0,0 +1,23 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.hierarchytables.HierarchyTablesChecker;
+
+/**
+ * Tests that the subtype matrix and the lub and glb tables of a qualifier hierarchy with several
+ * tops give the same results as walking its supertype graph.
+ */
+public class HierarchyTablesTest extends CheckerFrameworkPerDirectoryTest {
+
+    public HierarchyTablesTest(List<File> testFiles) {
+        super(testFiles, HierarchyTablesChecker.class, "hierarchytables", "-Anomsgtext");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"hierarchytables"};
+    }
+}
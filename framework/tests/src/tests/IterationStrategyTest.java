@@ -0,0 +1,305 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.dataflow.analysis.Analysis;
+import org.checkerframework.dataflow.analysis.Analysis.IterationStrategy;
+import org.checkerframework.dataflow.analysis.TransferInput;
+import org.checkerframework.dataflow.cfg.CFGBuilder;
+import org.checkerframework.dataflow.cfg.ControlFlowGraph;
+import org.checkerframework.dataflow.cfg.block.Block;
+import org.checkerframework.dataflow.constantpropagation.Constant;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationStore;
+import org.checkerframework.dataflow.constantpropagation.ConstantPropagationTransfer;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests {@link ControlFlowGraph#getStronglyConnectedComponents} and the {@link IterationStrategy
+ * iteration strategies} of the dataflow analysis, with the constant propagation analysis on the
+ * control flow graphs of the methods of {@link #SOURCE}.
+ */
+public class IterationStrategyTest {
+
+    /** A class whose methods have loops, nested loops, switches and exceptions. */
+    private static final String SOURCE =
+            "class Test {\n"
+                    + "    int straightLine(int p) {\n"
+                    + "        int x = 1;\n"
+                    + "        int y = x + p;\n"
+                    + "        return y;\n"
+                    + "    }\n"
+                    + "    int loop(int p) {\n"
+                    + "        int x = 0;\n"
+                    + "        int y = 5;\n"
+                    + "        while (x < p) {\n"
+                    + "            x = x + 1;\n"
+                    + "        }\n"
+                    + "        return x + y;\n"
+                    + "    }\n"
+                    + "    int nestedLoops(int p) {\n"
+                    + "        int a = 0;\n"
+                    + "        int b = 1;\n"
+                    + "        int c = 2;\n"
+                    + "        for (int i = 0; i < p; i++) {\n"
+                    + "            for (int j = 0; j < p; j++) {\n"
+                    + "                if (j == 3) {\n"
+                    + "                    continue;\n"
+                    + "                }\n"
+                    + "                a = b;\n"
+                    + "                b = c;\n"
+                    + "                c = p;\n"
+                    + "            }\n"
+                    + "            if (i == 7) {\n"
+                    + "                break;\n"
+                    + "            }\n"
+                    + "        }\n"
+                    + "        int d = 4;\n"
+                    + "        while (d < p) {\n"
+                    + "            d = d + a;\n"
+                    + "        }\n"
+                    + "        return a + d;\n"
+                    + "    }\n"
+                    + "    int switchInLoop(int p) {\n"
+                    + "        int x = 0;\n"
+                    + "        do {\n"
+                    + "            switch (p) {\n"
+                    + "                case 1:\n"
+                    + "                    x = 1;\n"
+                    + "                case 2:\n"
+                    + "                    x = 2;\n"
+                    + "                    break;\n"
+                    + "                default:\n"
+                    + "                    x = 3;\n"
+                    + "            }\n"
+                    + "            p = p - 1;\n"
+                    + "        } while (p > 0);\n"
+                    + "        return x;\n"
+                    + "    }\n"
+                    + "    int exceptions(int p) {\n"
+                    + "        int x = 0;\n"
+                    + "        for (int i = 0; i < p; i++) {\n"
+                    + "            try {\n"
+                    + "                x = 1;\n"
+                    + "                mayThrow(i);\n"
+                    + "                x = 2;\n"
+                    + "            } catch (IllegalStateException e) {\n"
+                    + "                x = 3;\n"
+                    + "            } finally {\n"
+                    + "                p = p - 1;\n"
+                    + "            }\n"
+                    + "        }\n"
+                    + "        return x;\n"
+                    + "    }\n"
+                    + "    void mayThrow(int p) {\n"
+                    + "        if (p == 0) {\n"
+                    + "            throw new IllegalStateException();\n"
+                    + "        }\n"
+                    + "    }\n"
+                    + "}\n";
+
+    private static CompilationUnitTree root;
+    private static ClassTree classTree;
+    private static ProcessingEnvironment env;
+
+    /** Parses and attributes {@link #SOURCE}. */
+    @BeforeClass
+    public static void compile() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return SOURCE;
+                    }
+                };
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavacTask task =
+                (JavacTask)
+                        compiler.getTask(
+                                null,
+                                null,
+                                diagnostics,
+                                null,
+                                null,
+                                Collections.singletonList(file));
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+        task.setProcessors(Collections.singletonList(processor));
+        root = task.parse().iterator().next();
+        task.analyze();
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            assertFalse(d.toString(), d.getKind() == Diagnostic.Kind.ERROR);
+        }
+        classTree = (ClassTree) root.getTypeDecls().get(0);
+        env = processor.getEnvironment();
+    }
+
+    /** Returns the control flow graphs of the methods of {@link #SOURCE}. */
+    private static List<ControlFlowGraph> buildGraphs() {
+        List<ControlFlowGraph> graphs = new ArrayList<>();
+        for (Tree member : classTree.getMembers()) {
+            MethodTree method = (MethodTree) member;
+            if (method.getBody() != null && !method.getName().contentEquals("<init>")) {
+                graphs.add(CFGBuilder.build(root, env, method, classTree));
+            }
+        }
+        return graphs;
+    }
+
+    @Test
+    public void stronglyConnectedComponents() {
+        for (ControlFlowGraph cfg : buildGraphs()) {
+            int numberOfBlocks = cfg.getNumberOfBlocks();
+            int[] component = cfg.getStronglyConnectedComponents();
+            assertEquals(numberOfBlocks, component.length);
+            assertEquals(0, component[cfg.getDenseId(cfg.getEntryBlock())]);
+
+            boolean[][] reaches = new boolean[numberOfBlocks][];
+            for (int i = 0; i < numberOfBlocks; i++) {
+                reaches[i] = reachable(cfg, i);
+            }
+            int numberOfComponents = 0;
+            for (int i = 0; i < numberOfBlocks; i++) {
+                numberOfComponents = Math.max(numberOfComponents, component[i] + 1);
+                for (Block succ : cfg.getSuccessors(cfg.getBlock(i))) {
+                    assertTrue(
+                            "edge to an earlier component",
+                            component[i] <= component[cfg.getDenseId(succ)]);
+                }
+                for (int j = 0; j < numberOfBlocks; j++) {
+                    assertEquals(
+                            "blocks " + i + " and " + j,
+                            reaches[i][j] && reaches[j][i],
+                            component[i] == component[j]);
+                }
+            }
+            // The components are numbered without gaps.
+            boolean[] used = new boolean[numberOfComponents];
+            for (int c : component) {
+                used[c] = true;
+            }
+            for (boolean u : used) {
+                assertTrue(u);
+            }
+        }
+    }
+
+    @Test
+    public void straightLineCodeHasOneComponentPerBlock() {
+        ControlFlowGraph cfg = buildGraphs().get(0);
+        int[] component = cfg.getStronglyConnectedComponents();
+        for (int i = 0; i < component.length; i++) {
+            for (int j = i + 1; j < component.length; j++) {
+                assertTrue(component[i] != component[j]);
+            }
+        }
+    }
+
+    @Test
+    public void strategiesReachTheSameFixpoint() {
+        for (ControlFlowGraph cfg : buildGraphs()) {
+            Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> expected =
+                    analyze(cfg, IterationStrategy.PRIORITY_RPO);
+            for (IterationStrategy strategy : IterationStrategy.values()) {
+                Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> actual =
+                        analyze(cfg, strategy);
+                assertTrue(actual.getBlockVisits() >= cfg.getNumberOfBlocks());
+                assertEquals(
+                        strategy.toString(),
+                        expected.getRegularExitStore(),
+                        actual.getRegularExitStore());
+                for (int i = 0; i < cfg.getNumberOfNodes(); i++) {
+                    assertEquals(
+                            strategy + ", " + cfg.getNode(i),
+                            expected.getValue(cfg.getNode(i)),
+                            actual.getValue(cfg.getNode(i)));
+                }
+                for (int i = 0; i < cfg.getNumberOfBlocks(); i++) {
+                    Block b = cfg.getBlock(i);
+                    assertEquals(
+                            strategy + ", " + b,
+                            regularStore(expected.getInput(b)),
+                            regularStore(actual.getInput(b)));
+                }
+            }
+        }
+    }
+
+    /** Runs constant propagation on {@code cfg}, visiting the blocks in the given order. */
+    private static Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer>
+            analyze(ControlFlowGraph cfg, IterationStrategy strategy) {
+        Analysis<Constant, ConstantPropagationStore, ConstantPropagationTransfer> analysis =
+                new Analysis<>(env, new ConstantPropagationTransfer());
+        analysis.setIterationStrategy(strategy);
+        analysis.performAnalysis(cfg);
+        return analysis;
+    }
+
+    /** Returns the regular store of {@code input}, or null if there is no input. */
+    private static ConstantPropagationStore regularStore(
+            TransferInput<Constant, ConstantPropagationStore> input) {
+        return input == null ? null : input.getRegularStore();
+    }
+
+    /** Returns the blocks, by dense identifier, that can be reached from block {@code from}. */
+    private static boolean[] reachable(ControlFlowGraph cfg, int from) {
+        boolean[] reached = new boolean[cfg.getNumberOfBlocks()];
+        Deque<Integer> todo = new ArrayDeque<>();
+        reached[from] = true;
+        todo.add(from);
+        while (!todo.isEmpty()) {
+            for (Block succ : cfg.getSuccessors(cfg.getBlock(todo.poll()))) {
+                int s = cfg.getDenseId(succ);
+                if (!reached[s]) {
+                    reached[s] = true;
+                    todo.add(s);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /** An annotation processor that gives access to the processing environment. */
+    private static class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment getEnvironment() {
+            return processingEnv;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.checkerframework.javacutil.PersistentHashMap;
+import org.junit.Test;
+
+/** This class tests the PersistentHashMap class against java.util.HashMap. */
+public class PersistentHashMapTest {
+
+    /** A key with a given hash code, so that the tests can create collisions. */
+    private static final class Key {
+        private final int hash;
+        private final String name;
+
+        Key(int hash, String name) {
+            this.hash = hash;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).hash == hash && ((Key) o).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public String toString() {
+            return name + "#" + hash;
+        }
+    }
+
+    /** Keeps the larger value, or drops the key if one of the values is negative. */
+    private static final PersistentHashMap.Merger<Integer> MAX_OR_DROP =
+            new PersistentHashMap.Merger<Integer>() {
+                @Override
+                public Integer merge(Integer value, Integer otherValue) {
+                    if (value < 0 || otherValue < 0) {
+                        return null;
+                    }
+                    return Math.max(value, otherValue);
+                }
+            };
+
+    /**
+     * Returns keys whose hash codes collide: all keys with the same {@code i / 3} have the same
+     * hash code, and the hash codes of the others only differ in their highest bits.
+     */
+    private static List<Key> collidingKeys(int count) {
+        List<Key> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(new Key((i / 3) << 27, "k" + i));
+        }
+        return keys;
+    }
+
+    private static <K, V> void assertSameEntries(Map<K, V> expected, PersistentHashMap<K, V> map) {
+        assertEquals(expected, map);
+        assertEquals(map, expected);
+        assertEquals(expected.hashCode(), map.hashCode());
+        assertEquals(expected.size(), map.size());
+        assertEquals(expected.isEmpty(), map.isEmpty());
+        Map<K, V> iterated = new HashMap<>();
+        for (Map.Entry<K, V> e : map.entrySet()) {
+            assertFalse(iterated.containsKey(e.getKey()));
+            iterated.put(e.getKey(), e.getValue());
+        }
+        assertEquals(expected, iterated);
+        for (Map.Entry<K, V> e : expected.entrySet()) {
+            assertTrue(map.containsKey(e.getKey()));
+            assertEquals(e.getValue(), map.get(e.getKey()));
+        }
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        List<Key> keys = new ArrayList<>(collidingKeys(30));
+        for (int i = 0; i < 200; i++) {
+            keys.add(new Key(random.nextInt(), "r" + i));
+        }
+        keys.add(null);
+        Map<Key, Integer> expected = new HashMap<>();
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            Key key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                Integer value = random.nextInt(10) == 0 ? null : random.nextInt(100);
+                assertEquals(expected.put(key, value), map.put(key, value));
+            }
+            if (i % 100 == 0) {
+                assertSameEntries(expected, map);
+            }
+        }
+        assertSameEntries(expected, map);
+    }
+
+    @Test
+    public void collisions() {
+        List<Key> keys = collidingKeys(9);
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        Map<Key, Integer> expected = new HashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), i);
+            expected.put(keys.get(i), i);
+        }
+        assertSameEntries(expected, map);
+        // A key with the hash code of existing keys, but not equal to any of them.
+        assertFalse(map.containsKey(new Key(keys.get(0).hash, "other")));
+        assertNull(map.get(new Key(keys.get(0).hash, "other")));
+
+        map.put(keys.get(1), 100);
+        expected.put(keys.get(1), 100);
+        assertSameEntries(expected, map);
+
+        // Remove the keys of one collision node, and put a key with another hash code in it.
+        map.remove(keys.get(0));
+        map.remove(keys.get(1));
+        expected.remove(keys.get(0));
+        expected.remove(keys.get(1));
+        Key key = new Key((keys.get(0).hash) | 1, "low bit");
+        map.put(key, -1);
+        expected.put(key, -1);
+        assertSameEntries(expected, map);
+    }
+
+    @Test
+    public void removeToEmpty() {
+        List<Key> keys = collidingKeys(20);
+        keys.add(new Key(0, "zero"));
+        keys.add(null);
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), i);
+        }
+        PersistentHashMap<Key, Integer> copy = new PersistentHashMap<>(map);
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            assertEquals(Integer.valueOf(i), map.remove(keys.get(i)));
+            assertEquals(i, map.size());
+        }
+        assertTrue(map.isEmpty());
+        assertFalse(map.entrySet().iterator().hasNext());
+        assertEquals(new HashMap<Key, Integer>(), map);
+        assertNull(map.remove(keys.get(0)));
+        assertEquals(keys.size(), copy.size());
+
+        // The map is usable after it has been emptied.
+        map.put(keys.get(3), 3);
+        assertEquals(1, map.size());
+        assertEquals(Integer.valueOf(3), map.get(keys.get(3)));
+    }
+
+    @Test
+    public void nullKeysAndValues() {
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        Key zero = new Key(0, "zero");
+        map.put(null, 1);
+        map.put(zero, null);
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey(null));
+        assertTrue(map.containsKey(zero));
+        assertEquals(Integer.valueOf(1), map.get(null));
+        assertNull(map.get(zero));
+        Map<Key, Integer> expected = new HashMap<>();
+        expected.put(null, 1);
+        expected.put(zero, null);
+        assertSameEntries(expected, map);
+        assertEquals(Integer.valueOf(1), map.remove(null));
+        assertFalse(map.containsKey(null));
+        assertTrue(map.containsKey(zero));
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        List<Key> keys = collidingKeys(12);
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), i);
+        }
+        PersistentHashMap<Key, Integer> copy = new PersistentHashMap<>(map);
+        assertTrue(copy.sharesTrieWith(map));
+        Map<Key, Integer> expected = new HashMap<>(map);
+
+        copy.put(keys.get(0), 100);
+        copy.remove(keys.get(5));
+        copy.put(new Key(7, "new"), 7);
+        assertFalse(copy.sharesTrieWith(map));
+        assertSameEntries(expected, map);
+
+        // Putting the same value again keeps sharing the trie.
+        PersistentHashMap<Key, Integer> other = new PersistentHashMap<>(map);
+        other.put(keys.get(2), map.get(keys.get(2)));
+        assertTrue(other.sharesTrieWith(map));
+
+        // Putting all entries of a persistent map into an empty one shares its trie.
+        PersistentHashMap<Key, Integer> empty = new PersistentHashMap<>();
+        empty.putAll(map);
+        assertTrue(empty.sharesTrieWith(map));
+        PersistentHashMap<Key, Integer> fromHashMap = new PersistentHashMap<>(expected);
+        assertSameEntries(expected, fromHashMap);
+    }
+
+    @Test
+    public void intersect() {
+        Random random = new Random(7);
+        List<Key> keys = new ArrayList<>(collidingKeys(30));
+        for (int i = 0; i < 100; i++) {
+            keys.add(new Key(random.nextInt(64), "s" + i));
+        }
+        for (int round = 0; round < 50; round++) {
+            PersistentHashMap<Key, Integer> base = new PersistentHashMap<>();
+            for (Key key : keys) {
+                if (random.nextBoolean()) {
+                    base.put(key, random.nextInt(10));
+                }
+            }
+            PersistentHashMap<Key, Integer> map1 = new PersistentHashMap<>(base);
+            PersistentHashMap<Key, Integer> map2 = new PersistentHashMap<>(base);
+            for (int i = 0; i < 20; i++) {
+                Key key = keys.get(random.nextInt(keys.size()));
+                PersistentHashMap<Key, Integer> map = random.nextBoolean() ? map1 : map2;
+                if (random.nextInt(3) == 0) {
+                    map.remove(key);
+                } else {
+                    map.put(key, random.nextInt(12) - 2);
+                }
+            }
+
+            Map<Key, Integer> expected = new HashMap<>();
+            for (Map.Entry<Key, Integer> e : map1.entrySet()) {
+                if (map2.containsKey(e.getKey())) {
+                    Integer value = e.getValue();
+                    Integer otherValue = map2.get(e.getKey());
+                    Integer merged =
+                            value == otherValue ? value : MAX_OR_DROP.merge(value, otherValue);
+                    if (merged != null) {
+                        expected.put(e.getKey(), merged);
+                    }
+                }
+            }
+            PersistentHashMap<Key, Integer> result = map1.intersect(map2, MAX_OR_DROP);
+            assertSameEntries(expected, result);
+            // The operands are not modified.
+            assertEquals(expected.size(), map2.intersect(map1, MAX_OR_DROP).size());
+        }
+    }
+
+    @Test
+    public void intersectSkipsSharedEntries() {
+        final int[] merges = {0};
+        PersistentHashMap.Merger<Integer> counting =
+                new PersistentHashMap.Merger<Integer>() {
+                    @Override
+                    public Integer merge(Integer value, Integer otherValue) {
+                        merges[0]++;
+                        return Math.max(value, otherValue);
+                    }
+                };
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            map.put(new Key(i * 31, "k" + i), i);
+        }
+        PersistentHashMap<Key, Integer> copy = new PersistentHashMap<>(map);
+        assertTrue(map.intersect(copy, counting).sharesTrieWith(map));
+        assertEquals(0, merges[0]);
+
+        copy.put(new Key(31, "k1"), 5000);
+        PersistentHashMap<Key, Integer> result = map.intersect(copy, counting);
+        assertEquals(1, merges[0]);
+        assertEquals(Integer.valueOf(5000), result.get(new Key(31, "k1")));
+        assertEquals(map.size(), result.size());
+
+        assertTrue(map.intersect(new PersistentHashMap<Key, Integer>(), counting).isEmpty());
+    }
+
+    @Test
+    public void equality() {
+        PersistentHashMap<Key, Integer> map1 = new PersistentHashMap<>();
+        PersistentHashMap<Key, Integer> map2 = new PersistentHashMap<>();
+        List<Key> keys = collidingKeys(15);
+        for (int i = 0; i < keys.size(); i++) {
+            map1.put(keys.get(i), i);
+            // Insert in the opposite order, so the collision nodes differ in their order.
+            map2.put(keys.get(keys.size() - 1 - i), keys.size() - 1 - i);
+        }
+        assertFalse(map1.sharesTrieWith(map2));
+        assertEquals(map1, map2);
+        assertEquals(map1.hashCode(), map2.hashCode());
+        map2.put(keys.get(4), -4);
+        assertFalse(map1.equals(map2));
+        map2.put(keys.get(4), 4);
+        assertEquals(map1, map2);
+        map2.remove(keys.get(4));
+        assertFalse(map1.equals(map2));
+        assertFalse(map2.equals(map1));
+    }
+
+    @Test
+    public void iteration() {
+        List<Key> keys = collidingKeys(20);
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            map.put(keys.get(i), i);
+        }
+        Map<Key, Integer> expected = new HashMap<>(map);
+
+        // An iterator iterates over the entries that the map had when it was created.
+        Map<Key, Integer> iterated = new HashMap<>();
+        Iterator<Map.Entry<Key, Integer>> iter = map.entrySet().iterator();
+        map.put(new Key(1, "added"), 1);
+        while (iter.hasNext()) {
+            Map.Entry<Key, Integer> e = iter.next();
+            iterated.put(e.getKey(), e.getValue());
+            map.remove(e.getKey());
+        }
+        assertEquals(expected, iterated);
+        assertEquals(1, map.size());
+
+        // Removing through the iterator removes from the map.
+        map = new PersistentHashMap<>(expected);
+        Iterator<Key> keyIter = map.keySet().iterator();
+        int removed = 0;
+        while (keyIter.hasNext()) {
+            if (keyIter.next().name.endsWith("1")) {
+                keyIter.remove();
+                removed++;
+            }
+        }
+        assertEquals(expected.size() - removed, map.size());
+        for (Key key : map.keySet()) {
+            assertFalse(key.name.endsWith("1"));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void entriesAreImmutable() {
+        PersistentHashMap<Key, Integer> map = new PersistentHashMap<>();
+        map.put(new Key(1, "a"), 1);
+        map.entrySet().iterator().next().setValue(2);
+    }
+}
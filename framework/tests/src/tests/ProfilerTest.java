@@ -0,0 +1,177 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import testlib.util.TestChecker;
+
+/** Tests the reports of the {@code -Aprofile} option. */
+public class ProfilerTest {
+
+    /** The class that is type-checked. */
+    private static final String SOURCE =
+            "class Profiled {\n"
+                    + "    int loop(int p) {\n"
+                    + "        int x = 0;\n"
+                    + "        while (x < p) {\n"
+                    + "            x = x + 1;\n"
+                    + "        }\n"
+                    + "        return x;\n"
+                    + "    }\n"
+                    + "    int straightLine(int p) {\n"
+                    + "        return p + 1;\n"
+                    + "    }\n"
+                    + "}\n";
+
+    /** The directory of the class files and reports. */
+    private File dir;
+
+    /** The diagnostics of the last compilation. */
+    private DiagnosticCollector<JavaFileObject> diagnostics;
+
+    @Before
+    public void createDirectory() throws IOException {
+        dir = Files.createTempDirectory("profile").toFile();
+    }
+
+    @After
+    public void deleteDirectory() {
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void csvReport() throws IOException {
+        File report = new File(dir, "profile.csv");
+        compile("-Aprofile=" + report.getPath());
+        List<String> lines = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+        assertEquals(
+                "section,checker,phase,unit,name,count,totalMillis,selfMillis,"
+                        + "allocatedBytes,selfAllocatedBytes,blockVisits",
+                lines.get(0));
+        assertTrue(contains(lines, "phases,TestChecker,type-checking,,,1,"));
+        assertTrue(contains(lines, "phases,TestChecker,dataflow,,,"));
+        assertTrue(contains(lines, "phases,TestChecker,CFG construction,,,"));
+        assertTrue(contains(lines, "slowestClasses,TestChecker,type-checking,"));
+        assertTrue(contains(lines, "slowestMethods,TestChecker,dataflow,"));
+        assertTrue(lines.toString().contains("Profiled.loop(int)"));
+        assertNoNote();
+    }
+
+    @Test
+    public void jsonReport() throws IOException {
+        File report = new File(dir, "profile.json");
+        compile("-Aprofile=" + report.getPath());
+        String json = new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8);
+        assertJson(json);
+        assertNoNote();
+    }
+
+    @Test
+    public void reportIsANoteWithoutFile() {
+        PrintStream systemOut = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output));
+        try {
+            compile("-Aprofile");
+        } finally {
+            System.setOut(systemOut);
+        }
+        assertEquals("", new String(output.toByteArray(), StandardCharsets.UTF_8));
+        String note = null;
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.NOTE && d.getMessage(null).startsWith("Profile:")) {
+                note = d.getMessage(null);
+            }
+        }
+        assertTrue(note != null);
+        assertJson(note.substring(note.indexOf('{')));
+    }
+
+    @Test
+    public void profileTopLimitsTheSlowestMethods() throws IOException {
+        File report = new File(dir, "profile.csv");
+        compile("-Aprofile=" + report.getPath(), "-AprofileTop=1");
+        int methods = 0;
+        for (String line : Files.readAllLines(report.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("slowestMethods,")) {
+                methods++;
+            }
+        }
+        assertEquals(1, methods);
+    }
+
+    /** Type-checks {@link #SOURCE} with the {@link TestChecker} and the given options. */
+    private void compile(String... options) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///Profiled.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return SOURCE;
+                    }
+                };
+        List<String> allOptions = new ArrayList<>(Arrays.asList(options));
+        allOptions.add("-d");
+        allOptions.add(dir.getPath());
+        diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task =
+                compiler.getTask(
+                        null, null, diagnostics, allOptions, null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new TestChecker()));
+        assertTrue(diagnostics.getDiagnostics().toString(), task.call());
+    }
+
+    /** Checks that {@code json} is a report of the type-checking of {@link #SOURCE}. */
+    private static void assertJson(String json) {
+        assertTrue(json, json.trim().startsWith("{"));
+        assertTrue(json, json.trim().endsWith("}"));
+        for (String section :
+                new String[] {"phases", "compilationUnits", "slowestClasses", "slowestMethods"}) {
+            assertTrue(json, json.contains("\"" + section + "\": ["));
+        }
+        assertTrue(json, json.contains("\"phase\": \"type-checking\""));
+        assertTrue(json, json.contains("\"name\": \"Profiled.loop(int)\""));
+    }
+
+    /** Checks that the last compilation did not issue the report as a note. */
+    private void assertNoNote() {
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            assertFalse(d.getMessage(null).startsWith("Profile:"));
+        }
+    }
+
+    /** Returns true if one of {@code lines} starts with {@code prefix}. */
+    private static boolean contains(List<String> lines, String prefix) {
+        for (String line : lines) {
+            if (line.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
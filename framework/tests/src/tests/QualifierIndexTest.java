@@ -0,0 +1,162 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.framework.util.QualifierIndex;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** This class tests the ids that the QualifierIndex class assigns to qualifiers. */
+public class QualifierIndexTest {
+
+    /** The number of annotations Q00, Q01, ... that {@link #compile} declares. */
+    private static final int MANY = QualifierIndex.MAX_INDEXED_QUALIFIERS + 6;
+
+    private static ProcessingEnvironment env;
+
+    /**
+     * Compiles the annotations A, C, and D without elements, B with an element, and {@link #MANY}
+     * annotations Q00, Q01, ... without elements, to obtain a processing environment in which they
+     * exist.
+     */
+    @BeforeClass
+    public static void compile() throws IOException {
+        final StringBuilder source =
+                new StringBuilder("@interface A {} @interface B { int value(); }\n");
+        source.append("@interface C {} @interface D {}\n");
+        for (int i = 0; i < MANY; i++) {
+            source.append("@interface ").append(q(i)).append(" {}\n");
+        }
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///A.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return source;
+                    }
+                };
+        JavacTask task =
+                (JavacTask)
+                        ToolProvider.getSystemJavaCompiler()
+                                .getTask(
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        Collections.singletonList(file));
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+        task.setProcessors(Collections.singletonList(processor));
+        task.analyze();
+        env = processor.getEnvironment();
+    }
+
+    /** Returns the name of the annotation Q{@code i}. */
+    private static String q(int i) {
+        return String.format("Q%02d", i);
+    }
+
+    /** Returns an instance of the annotation without elements called {@code name}. */
+    private static AnnotationMirror anno(String name) {
+        return AnnotationBuilder.fromName(env.getElementUtils(), name);
+    }
+
+    /** Returns an instance of the annotation B with the given value. */
+    private static AnnotationMirror b(int value) {
+        return new AnnotationBuilder(env, "B").setValue("value", value).build();
+    }
+
+    @Test
+    public void idsFollowTheAnnotationOrdering() {
+        QualifierIndex index = new QualifierIndex(Arrays.asList(anno("C"), anno("A"), anno("D")));
+        assertEquals(3, index.size());
+        assertEquals(0, index.getId(anno("A")));
+        assertEquals(1, index.getId(anno("C")));
+        assertEquals(2, index.getId(anno("D")));
+        for (int id = 0; id < index.size(); id++) {
+            assertEquals(id, index.getId(index.getQualifier(id)));
+        }
+        assertTrue(AnnotationUtils.areSame(anno("C"), index.getQualifier(1)));
+    }
+
+    @Test
+    public void qualifiersWithElementsAreNotIndexed() {
+        QualifierIndex index = new QualifierIndex(Arrays.asList(anno("A"), b(1), anno("C")));
+        assertEquals(2, index.size());
+        assertEquals(0, index.getId(anno("A")));
+        assertEquals(-1, index.getId(b(1)));
+        assertEquals(1, index.getId(anno("C")));
+        assertTrue(index.isQualifier(b(1)));
+        // Membership ignores the element values.
+        assertTrue(index.isQualifier(b(2)));
+    }
+
+    @Test
+    public void otherAnnotationsAreNotQualifiers() {
+        QualifierIndex index = new QualifierIndex(Arrays.asList(anno("A"), anno("C")));
+        assertEquals(-1, index.getId(anno("D")));
+        assertFalse(index.isQualifier(anno("D")));
+        assertFalse(index.isQualifier(b(1)));
+    }
+
+    @Test
+    public void atMostMaxIndexedQualifiersAreIndexed() {
+        List<AnnotationMirror> quals = new ArrayList<>();
+        for (int i = MANY - 1; i >= 0; i--) {
+            quals.add(anno(q(i)));
+        }
+        QualifierIndex index = new QualifierIndex(quals);
+        assertEquals(QualifierIndex.MAX_INDEXED_QUALIFIERS, index.size());
+        for (int i = 0; i < MANY; i++) {
+            AnnotationMirror qual = anno(q(i));
+            assertEquals(i < QualifierIndex.MAX_INDEXED_QUALIFIERS ? i : -1, index.getId(qual));
+            assertTrue(index.isQualifier(qual));
+        }
+    }
+
+    @Test
+    public void emptyIndex() {
+        QualifierIndex index = new QualifierIndex(Collections.<AnnotationMirror>emptySet());
+        assertEquals(0, index.size());
+        assertEquals(-1, index.getId(anno("A")));
+        assertFalse(index.isQualifier(anno("A")));
+    }
+
+    /** An annotation processor that gives access to the processing environment. */
+    private static class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment getEnvironment() {
+            return processingEnv;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+}
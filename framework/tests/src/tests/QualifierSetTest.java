@@ -0,0 +1,201 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.framework.util.QualifierIndex;
+import org.checkerframework.framework.util.QualifierSet;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * This class tests that the QualifierSet class behaves like the set returned by {@link
+ * AnnotationUtils#createAnnotationSet()}, both for indexed qualifiers and for other annotations.
+ */
+public class QualifierSetTest {
+
+    private static ProcessingEnvironment env;
+
+    /** An index of the qualifiers A, C and B(1); only A and C are indexed. */
+    private static QualifierIndex index;
+
+    /**
+     * Compiles the annotations A, C, and D without elements and B with an element, to obtain a
+     * processing environment in which they exist.
+     */
+    @BeforeClass
+    public static void compile() throws IOException {
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///A.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return "@interface A {} @interface B { int value(); }\n"
+                                + "@interface C {} @interface D {}\n";
+                    }
+                };
+        JavacTask task =
+                (JavacTask)
+                        ToolProvider.getSystemJavaCompiler()
+                                .getTask(
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        Collections.singletonList(file));
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+        task.setProcessors(Collections.singletonList(processor));
+        task.analyze();
+        env = processor.getEnvironment();
+        index = new QualifierIndex(Arrays.asList(anno("A"), anno("C"), b(1)));
+    }
+
+    /** Returns an instance of the annotation without elements called {@code name}. */
+    private static AnnotationMirror anno(String name) {
+        return AnnotationBuilder.fromName(env.getElementUtils(), name);
+    }
+
+    /** Returns an instance of the annotation B with the given value. */
+    private static AnnotationMirror b(int value) {
+        return new AnnotationBuilder(env, "B").setValue("value", value).build();
+    }
+
+    /** Checks that {@code actual} has the same annotations as {@code expected}, in order. */
+    private static void assertSameAnnotations(
+            Set<AnnotationMirror> expected, Set<AnnotationMirror> actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        Iterator<AnnotationMirror> actualIter = actual.iterator();
+        for (AnnotationMirror anno : expected) {
+            assertTrue(actualIter.hasNext());
+            AnnotationMirror next = actualIter.next();
+            assertTrue(anno + " != " + next, AnnotationUtils.areSame(anno, next));
+            assertTrue(actual.contains(anno));
+        }
+        assertFalse(actualIter.hasNext());
+    }
+
+    @Test
+    public void behavesLikeAnAnnotationSet() {
+        for (QualifierIndex idx : Arrays.asList(index, null)) {
+            Set<AnnotationMirror> expected = AnnotationUtils.createAnnotationSet();
+            QualifierSet actual = new QualifierSet(idx);
+            assertSameAnnotations(expected, actual);
+            for (AnnotationMirror anno :
+                    Arrays.asList(anno("C"), b(2), anno("A"), anno("D"), anno("C"), b(2), b(1))) {
+                assertEquals(expected.add(anno), actual.add(anno));
+                assertSameAnnotations(expected, actual);
+            }
+            for (AnnotationMirror anno : Arrays.asList(anno("C"), b(1), anno("C"), anno("D"))) {
+                assertEquals(expected.remove(anno), actual.remove(anno));
+                assertSameAnnotations(expected, actual);
+            }
+            actual.clear();
+            assertSameAnnotations(AnnotationUtils.createAnnotationSet(), actual);
+        }
+    }
+
+    @Test
+    public void iterationReturnsTheIndexedInstances() {
+        QualifierSet set = new QualifierSet(index);
+        set.add(anno("C"));
+        set.add(anno("A"));
+        Iterator<AnnotationMirror> iter = set.iterator();
+        assertSame(index.getQualifier(0), iter.next());
+        assertSame(index.getQualifier(1), iter.next());
+        assertFalse(iter.hasNext());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        QualifierSet set = new QualifierSet(index);
+        set.addAll(Arrays.asList(anno("A"), b(1), anno("C"), anno("D")));
+        Iterator<AnnotationMirror> iter = set.iterator();
+        try {
+            iter.remove();
+            fail("remove before next");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        // Removes A and B(1), an indexed qualifier and an annotation that is not indexed.
+        iter.next();
+        iter.remove();
+        iter.next();
+        iter.remove();
+        try {
+            iter.remove();
+            fail("remove twice");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        iter.next();
+        iter.next();
+        assertFalse(iter.hasNext());
+        try {
+            iter.next();
+            fail("next after the last annotation");
+        } catch (NoSuchElementException e) {
+            // expected
+        }
+
+        Set<AnnotationMirror> expected = AnnotationUtils.createAnnotationSet();
+        expected.add(anno("C"));
+        expected.add(anno("D"));
+        assertSameAnnotations(expected, set);
+    }
+
+    @Test
+    public void copyFrom() {
+        QualifierSet from = new QualifierSet(index);
+        from.addAll(Arrays.asList(anno("A"), b(2), anno("D")));
+        for (QualifierIndex idx : Arrays.asList(index, null)) {
+            QualifierSet to = new QualifierSet(idx);
+            to.add(anno("C"));
+            to.copyFrom(from);
+            assertSameAnnotations(from, to);
+            // The copy does not share the annotations that are not indexed.
+            to.remove(anno("D"));
+            assertTrue(from.contains(anno("D")));
+        }
+    }
+
+    /** An annotation processor that gives access to the processing environment. */
+    private static class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment getEnvironment() {
+            return processingEnv;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.sharedcfg.SharedCFGChecker;
+
+/** Tests that the checkers of a compound checker only share control flow graphs when they can. */
+public class SharedCFGTest extends CheckerFrameworkPerDirectoryTest {
+
+    public SharedCFGTest(List<File> testFiles) {
+        super(testFiles, SharedCFGChecker.class, "shared-cfg", "-Anomsgtext");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"shared-cfg"};
+    }
+}
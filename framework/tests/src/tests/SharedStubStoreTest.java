@@ -0,0 +1,148 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.util.JavacTask;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.framework.stub.SharedStubStore;
+import org.checkerframework.javacutil.AnnotationBuilder;
+import org.checkerframework.javacutil.AnnotationUtils;
+import org.checkerframework.javacutil.BoundedCache;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/** This class tests the declaration annotations kept by the SharedStubStore class. */
+public class SharedStubStoreTest {
+
+    private static ProcessingEnvironment env;
+
+    /** Compiles an empty class, to obtain a processing environment in which elements exist. */
+    @BeforeClass
+    public static void compile() throws IOException {
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///Test.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return "class Test {}";
+                    }
+                };
+        JavacTask task =
+                (JavacTask)
+                        ToolProvider.getSystemJavaCompiler()
+                                .getTask(
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        null,
+                                        Collections.singletonList(file));
+        EnvironmentProcessor processor = new EnvironmentProcessor();
+        task.setProcessors(Collections.singletonList(processor));
+        task.analyze();
+        env = processor.getEnvironment();
+    }
+
+    /** Returns the element of the class {@code name}. */
+    private Element element(String name) {
+        return env.getElementUtils().getTypeElement(name);
+    }
+
+    @Test
+    public void elementAnnotationsAreLookedUpOnce() {
+        SharedStubStore store = new SharedStubStore(env);
+        Element deprecated = element("java.lang.Deprecated");
+        List<? extends AnnotationMirror> annos = store.getElementAnnotations(deprecated);
+        assertEquals(env.getElementUtils().getAllAnnotationMirrors(deprecated), annos);
+        assertSame(annos, store.getElementAnnotations(deprecated));
+        BoundedCache<?, ?> cache = store.getElementAnnotationCache();
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void elementAnnotationsAreBounded() {
+        SharedStubStore store = new SharedStubStore(env, 2);
+        String[] names = {
+            "java.lang.Deprecated",
+            "java.lang.FunctionalInterface",
+            "java.lang.annotation.Documented",
+            "java.lang.annotation.Retention",
+            "java.lang.annotation.Target"
+        };
+        for (int i = 0; i < 2; i++) {
+            for (String name : names) {
+                Element elt = element(name);
+                assertEquals(
+                        env.getElementUtils().getAllAnnotationMirrors(elt),
+                        store.getElementAnnotations(elt));
+                assertTrue(store.getElementAnnotationCache().size() <= 2);
+            }
+        }
+        assertEquals(names.length * 2 - 2, store.getElementAnnotationCache().evictionCount());
+    }
+
+    @Test
+    public void declAnnosAreKeyedByNameAndContents() {
+        SharedStubStore store = new SharedStubStore(env);
+        byte[] contents = {1, 2, 3};
+        Map<String, Set<AnnotationMirror>> declAnnos = new HashMap<>();
+        store.putDeclAnnos("jdk.astub", contents, declAnnos);
+        assertSame(declAnnos, store.getDeclAnnos("jdk.astub", new byte[] {1, 2, 3}));
+        assertNull(store.getDeclAnnos("jdk.astub", new byte[] {1, 2, 4}));
+        assertNull(store.getDeclAnnos("other.astub", contents));
+        assertNull(store.getStubUnit("jdk.astub", contents));
+    }
+
+    @Test
+    public void addDeclAnnosCopiesTheSets() {
+        AnnotationMirror deprecated =
+                AnnotationBuilder.fromClass(env.getElementUtils(), Deprecated.class);
+        Set<AnnotationMirror> fromSet = AnnotationUtils.createAnnotationSet();
+        fromSet.add(deprecated);
+        Map<String, Set<AnnotationMirror>> from = new HashMap<>();
+        from.put("m()", fromSet);
+        Map<String, Set<AnnotationMirror>> to = new HashMap<>();
+        SharedStubStore.addDeclAnnos(from, to);
+        assertEquals(fromSet, to.get("m()"));
+
+        to.get("m()").clear();
+        assertEquals(1, from.get("m()").size());
+    }
+
+    /** An annotation processor that gives access to the processing environment. */
+    private static class EnvironmentProcessor extends AbstractProcessor {
+        ProcessingEnvironment getEnvironment() {
+            return processingEnv;
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.framework.source.Profiler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import testlib.util.TestChecker;
+
+/**
+ * Tests the stub cache of the {@code -AstubCacheDir} option. Whether the stub files were parsed or
+ * loaded from the cache is read from the report of {@code -Aprofile}: the {@link
+ * Profiler#STUB_PARSING} phase lists each stub file that is parsed, and only "stub cache" if the
+ * results were loaded from the cache.
+ */
+public class StubCacheTest {
+
+    /** A class whose only error goes away with the stub file {@link #STUB}. */
+    private static final String SOURCE =
+            "import testlib.util.Odd;\n"
+                    + "class Use {\n"
+                    + "    @Odd String m(String s) {\n"
+                    + "        return s.intern();\n"
+                    + "    }\n"
+                    + "}\n";
+
+    /** A stub file that makes {@link String#intern()} return an {@code @Odd String}. */
+    private static final String STUB =
+            "import testlib.util.Odd;\n"
+                    + "package java.lang;\n"
+                    + "class String {\n"
+                    + "    @Odd String intern();\n"
+                    + "}\n";
+
+    /** The directory of the class files, the stub file, the profile, and the cache. */
+    private File dir;
+
+    /** The stub cache directory. */
+    private File cacheDir;
+
+    /** The stub file. */
+    private File stub;
+
+    /** The CSV report of the profile option. */
+    private File profile;
+
+    @Before
+    public void createFiles() throws IOException {
+        dir = Files.createTempDirectory("stubcache").toFile();
+        cacheDir = new File(dir, "cache");
+        stub = new File(dir, "odd.astub");
+        profile = new File(dir, "profile.csv");
+        write(stub, STUB.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void deleteFiles() {
+        delete(dir);
+    }
+
+    @Test
+    public void secondCompilationLoadsTheCache() throws IOException {
+        assertEquals(0, compile());
+        assertTrue(stubFileParsed());
+        assertEquals(1, cacheFiles().size());
+
+        assertEquals(0, compile());
+        assertFalse(stubFileParsed());
+        assertEquals(1, cacheFiles().size());
+    }
+
+    @Test
+    public void changedStubFileInvalidatesTheCache() throws IOException {
+        assertEquals(0, compile());
+        write(stub, STUB.replace("@Odd ", "").getBytes(StandardCharsets.UTF_8));
+
+        // The annotation that was removed from the stub file is not loaded from the cache.
+        assertEquals(1, compile());
+        assertTrue(stubFileParsed());
+        assertEquals(2, cacheFiles().size());
+
+        assertEquals(1, compile());
+        assertFalse(stubFileParsed());
+    }
+
+    @Test
+    public void corruptCacheFileIsReplaced() throws IOException {
+        assertEquals(0, compile());
+        File cacheFile = cacheFiles().get(0);
+        byte[] contents = Files.readAllBytes(cacheFile.toPath());
+        // Keep the header, so that the file is only found to be corrupt while it is read.
+        write(cacheFile, Arrays.copyOf(contents, contents.length / 2));
+
+        assertEquals(0, compile());
+        assertTrue(stubFileParsed());
+        assertEquals(1, cacheFiles().size());
+
+        assertEquals(0, compile());
+        assertFalse(stubFileParsed());
+    }
+
+    @Test
+    public void garbageCacheFileIsReplaced() throws IOException {
+        assertEquals(0, compile());
+        File cacheFile = cacheFiles().get(0);
+        write(cacheFile, "not a stub cache".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(0, compile());
+        assertTrue(stubFileParsed());
+
+        assertEquals(0, compile());
+        assertFalse(stubFileParsed());
+    }
+
+    /**
+     * Type-checks {@link #SOURCE} with the {@link TestChecker}, the stub file and the stub cache,
+     * and returns the number of errors.
+     */
+    private int compile() {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject file =
+                new SimpleJavaFileObject(
+                        URI.create("string:///Use.java"), JavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return SOURCE;
+                    }
+                };
+        List<String> options = new ArrayList<>();
+        options.add("-Anomsgtext");
+        options.add("-Astubs=" + stub.getPath());
+        options.add("-AstubCacheDir=" + cacheDir.getPath());
+        options.add("-Aprofile=" + profile.getPath());
+        options.add("-d");
+        options.add(dir.getPath());
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        JavaCompiler.CompilationTask task =
+                compiler.getTask(
+                        null, null, diagnostics, options, null, Collections.singletonList(file));
+        task.setProcessors(Collections.singletonList(new TestChecker()));
+        task.call();
+        int errors = 0;
+        for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+            if (d.getKind() == Diagnostic.Kind.ERROR) {
+                assertTrue(d.toString(), d.getMessage(null).contains("return.type.incompatible"));
+                errors++;
+            }
+        }
+        return errors;
+    }
+
+    /** Returns true if the last compilation parsed the stub file rather than loading the cache. */
+    private boolean stubFileParsed() throws IOException {
+        boolean cacheLookedUp = false;
+        boolean parsed = false;
+        for (String line : Files.readAllLines(profile.toPath(), StandardCharsets.UTF_8)) {
+            if (line.startsWith("compilationUnits,TestChecker," + Profiler.STUB_PARSING + ",")) {
+                cacheLookedUp |= line.contains(",stub cache,");
+                parsed |= line.contains("odd.astub");
+            }
+        }
+        assertTrue("the stub cache was not used", cacheLookedUp);
+        return parsed;
+    }
+
+    /** Returns the cache files in the cache directory. */
+    private List<File> cacheFiles() {
+        List<File> result = new ArrayList<>();
+        File[] files = cacheDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".stubcache")) {
+                    result.add(file);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Replaces the contents of {@code file} with {@code contents}. */
+    private static void write(File file, byte[] contents) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(contents);
+        }
+    }
+
+    /** Deletes {@code file} and, if it is a directory, its contents. */
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
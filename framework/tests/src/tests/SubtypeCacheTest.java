@@ -0,0 +1,23 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.typecache.SubtypeCacheChecker;
+
+/**
+ * Tests that scope-dependent subtype checks do not use the cache of subtype checks, and that
+ * repeated checks between types without type arguments do.
+ */
+public class SubtypeCacheTest extends CheckerFrameworkPerDirectoryTest {
+
+    public SubtypeCacheTest(List<File> testFiles) {
+        super(testFiles, SubtypeCacheChecker.class, "subtypecache", "-Anomsgtext");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"subtypecache"};
+    }
+}
@@ -0,0 +1,20 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+import testlib.typecache.TypeCacheChecker;
+
+/** Tests that the caches of the type factory return the types they replace. */
+public class TypeCacheTest extends CheckerFrameworkPerDirectoryTest {
+
+    public TypeCacheTest(List<File> testFiles) {
+        super(testFiles, TypeCacheChecker.class, "typecache", "-Anomsgtext");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"typecache"};
+    }
+}
@@ -0,0 +1,32 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests the constant value propagation type system with the dataflow analysis widening only at
+ * loop heads and narrowing with a single pass, which suffices when the loop bodies were not
+ * widened.
+ */
+public class ValueNarrowingAtLoopHeadsTest extends CheckerFrameworkPerDirectoryTest {
+
+    public ValueNarrowingAtLoopHeadsTest(List<File> testFiles) {
+        super(
+                testFiles,
+                org.checkerframework.common.value.ValueChecker.class,
+                "value",
+                "-Anomsgtext",
+                "-Astubs=statically-executable.astub",
+                "-A" + ValueChecker.REPORT_EVAL_WARNS,
+                "-AflowWidening=loopHeads",
+                "-AflowNarrowing=1");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"value-narrowing"};
+    }
+}
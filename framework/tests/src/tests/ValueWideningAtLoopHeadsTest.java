@@ -0,0 +1,31 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests the constant value propagation type system with the dataflow analysis widening only at
+ * loop heads, to the thresholds of {@link org.checkerframework.common.value.util.Range#widen}.
+ */
+public class ValueWideningAtLoopHeadsTest extends CheckerFrameworkPerDirectoryTest {
+
+    public ValueWideningAtLoopHeadsTest(List<File> testFiles) {
+        super(
+                testFiles,
+                org.checkerframework.common.value.ValueChecker.class,
+                "value",
+                "-Anomsgtext",
+                "-Astubs=statically-executable.astub",
+                "-A" + ValueChecker.REPORT_EVAL_WARNS,
+                "-A" + ValueChecker.WIDEN_TO_THRESHOLDS,
+                "-AflowWidening=loopHeads");
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"value-widening-loop-heads"};
+    }
+}
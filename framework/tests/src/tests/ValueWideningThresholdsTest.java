@@ -0,0 +1,30 @@
+package tests;
+
+import java.io.File;
+import java.util.List;
+import org.checkerframework.common.value.ValueChecker;
+import org.checkerframework.framework.test.CheckerFrameworkPerDirectoryTest;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * Tests the constant value propagation type system with ranges widened to the thresholds of {@link
+ * org.checkerframework.common.value.util.Range#widen}.
+ */
+public class ValueWideningThresholdsTest extends CheckerFrameworkPerDirectoryTest {
+
+    public ValueWideningThresholdsTest(List<File> testFiles) {
+        super(
+                testFiles,
+                org.checkerframework.common.value.ValueChecker.class,
+                "value",
+                "-Anomsgtext",
+                "-Astubs=statically-executable.astub",
+                "-A" + ValueChecker.REPORT_EVAL_WARNS,
+                "-A" + ValueChecker.WIDEN_TO_THRESHOLDS);
+    }
+
+    @Parameters
+    public static String[] getTestDirs() {
+        return new String[] {"value-widening-thresholds"};
+    }
+}
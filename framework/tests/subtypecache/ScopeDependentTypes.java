@@ -0,0 +1,41 @@
+import java.util.List;
+import testlib.flowexpression.qual.FlowExp;
+
+// The visitor reports an error if the subtype checks of the assignments in this file use the
+// cache of subtype checks. The types of these assignments are structurally equal in different
+// methods, but the type variables and the expressions in them refer to different declarations.
+class ScopeDependentTypes {
+    Object field;
+    Object other;
+
+    <T extends @FlowExp("field") Object> void boundedByField(T t, List<T> list) {
+        @FlowExp("field") Object o = t;
+        List<T> copy = list;
+    }
+
+    <T extends @FlowExp("other") Object> void boundedByOther(T t, List<T> list) {
+        // :: error: (assignment.type.incompatible)
+        @FlowExp("field") Object o = t;
+        List<T> copy = list;
+    }
+
+    <T> void unbounded(T t, List<T> list) {
+        // :: error: (assignment.type.incompatible)
+        @FlowExp("field") Object o = t;
+        List<T> copy = list;
+    }
+
+    void fieldInScope(@FlowExp("field") Object param) {
+        @FlowExp("field") Object o1 = param;
+        @FlowExp("this.field") Object o2 = param;
+    }
+
+    void fieldShadowed(@FlowExp("this.field") Object param) {
+        Object field = new Object();
+        // "field" is the local variable here, and the field in the other methods.
+        @FlowExp("field")
+        // :: error: (assignment.type.incompatible)
+        Object o1 = param;
+        @FlowExp("this.field") Object o2 = param;
+    }
+}
@@ -0,0 +1,18 @@
+// The visitor reports an error if a repeated subtype check of an assignment in this file is not
+// found in the cache of subtype checks. The types of these assignments have no type arguments, so
+// the cache compares their underlying types by their kinds or their type elements.
+class SimpleTypes {
+
+    void primitives(int i, long l) {
+        int j = i;
+        long m = i;
+        m = l;
+    }
+
+    void declared(String s, Object o) {
+        String t = s;
+        Object p = s;
+        p = o;
+        Integer boxed = 1;
+    }
+}
@@ -0,0 +1,18 @@
+import java.util.List;
+import java.util.Map;
+
+// The visitor sets the bounds of the type variables, wildcards and intersection types in the
+// types of the declarations in this file and reports an error if a cached hash code is stale.
+class HashCodes<T extends Number & Comparable<T>> {
+
+    List<? extends T> extendsList;
+    List<? super T> superList;
+    Map<?, List<T>> map;
+
+    <S extends T, U extends Comparable<U> & Cloneable> S method(
+            List<? extends S> list, Map<U, ? super S> map, T t) {
+        return null;
+    }
+
+    static <V extends List<? extends V>> void recursive(V v) {}
+}
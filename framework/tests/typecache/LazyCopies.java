@@ -0,0 +1,32 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// The visitor modifies copies of the cached types of the declarations in this file and reports an
+// error if that modifies the cached types.
+class LazyCopies<T extends Comparable<T>> extends ArrayList<List<T>>
+        implements Comparable<LazyCopies<T>> {
+
+    Map<String, List<T>> map;
+    int[][] matrix;
+    LazyCopies<T>.Inner inner;
+
+    <S extends T> Map<S, int[]> method(List<? extends S> list, Map<String, List<T>>[] maps, int i)
+            throws IOException {
+        List<Map<T, S>> local = null;
+        return null;
+    }
+
+    public int compareTo(LazyCopies<T> other) {
+        return 0;
+    }
+
+    class Inner extends ArrayList<T> {
+        Map<T, Inner> map;
+
+        Inner self(Inner other) {
+            return other;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import testlib.util.Value;
+
+// The declared supertypes of Box and Pair are cached the first time they are computed. Each use of
+// these classes must still get its own type arguments substituted into the cached supertypes.
+class SubstitutedSupertypes {
+    static class Box<E> extends ArrayList<E> {}
+
+    static class Pair<K, V> extends HashMap<V, K> implements Comparable<Pair<V, K>> {
+        public int compareTo(Pair<V, K> other) {
+            return 0;
+        }
+    }
+
+    void box(Box<@Value(1) String> one, Box<@Value(2) String> two) {
+        List<@Value(1) String> l1 = one;
+        List<@Value(2) String> l2 = two;
+        Collection<@Value(2) String> c2 = two;
+        Collection<@Value(1) String> c1 = one;
+        // :: error: (assignment.type.incompatible)
+        List<@Value(1) String> l3 = two;
+        // :: error: (assignment.type.incompatible)
+        List<@Value(2) String> l4 = one;
+    }
+
+    void pair(
+            Pair<@Value(1) String, @Value(2) Integer> p,
+            Pair<@Value(2) String, @Value(1) Integer> q) {
+        Map<@Value(2) Integer, @Value(1) String> m1 = p;
+        Map<@Value(1) Integer, @Value(2) String> m2 = q;
+        Comparable<Pair<@Value(2) Integer, @Value(1) String>> c1 = p;
+        Comparable<Pair<@Value(1) Integer, @Value(2) String>> c2 = q;
+        // :: error: (assignment.type.incompatible)
+        Map<@Value(2) Integer, @Value(1) String> m3 = q;
+        // :: error: (assignment.type.incompatible)
+        Comparable<Pair<@Value(2) Integer, @Value(1) String>> c3 = q;
+    }
+}
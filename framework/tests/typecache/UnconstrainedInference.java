@@ -0,0 +1,42 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import testlib.util.Value;
+
+// The visitor infers the type arguments of each invocation in this file twice, with and without
+// the shortcut for unconstrained type arguments, and reports an error if the results differ.
+class UnconstrainedInference {
+    static <T> List<T> empty() {
+        return new ArrayList<T>();
+    }
+
+    static <K, V extends Comparable<V>> Map<K, V> map(String name) {
+        return null;
+    }
+
+    static <T extends @Value(1) Object> List<T> bounded() {
+        return new ArrayList<T>();
+    }
+
+    static <T> List<T> singleton(T t) {
+        return null;
+    }
+
+    void unconstrained() {
+        // The type arguments of these invocations are not constrained.
+        empty().size();
+        map("name").isEmpty();
+        bounded().iterator();
+        Collections.emptyList().size();
+        empty().toString();
+    }
+
+    void constrained(@Value(2) String s) {
+        // These invocations are assigned or have arguments that mention the type parameters.
+        List<String> list = empty();
+        singleton(s).size();
+        singleton(empty()).size();
+        List<@Value(1) Object> values = bounded();
+    }
+}
@@ -0,0 +1,32 @@
+import org.checkerframework.common.value.qual.IntRange;
+
+// With -AflowNarrowing, the loops are re-analyzed after widening, so the bounds after the loops are
+// exact again.
+public class NarrowLoops {
+
+    void increment() {
+        int i = 0;
+        while (i < 1000) {
+            @IntRange(from = 0, to = 999) int x = i;
+            i++;
+        }
+        @IntRange(from = 1000, to = 1000) int y = i;
+    }
+
+    void decrement() {
+        int i = 1000;
+        while (i > 0) {
+            @IntRange(from = 1, to = 1000) int x = i;
+            i--;
+        }
+        @IntRange(from = 0, to = 0) int y = i;
+    }
+
+    void forLoop() {
+        int i;
+        for (i = 0; i < 4323; i++) {
+            @IntRange(from = 0, to = 4322) int x = i;
+        }
+        @IntRange(from = 4323, to = 4323) int y = i;
+    }
+}
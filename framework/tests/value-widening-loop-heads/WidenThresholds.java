@@ -0,0 +1,57 @@
+import org.checkerframework.common.value.qual.IntRange;
+
+// With -AflowWidening=loopHeads, only the stores before the loop conditions are widened. With
+// -AwidenToThresholds, a bound that grows is moved to the next of the thresholds -1, 0, and the
+// extreme values of byte and short, so the bounds after the loops are as precise as these
+// thresholds allow.
+public class WidenThresholds {
+
+    void byteMax() {
+        int i = 0;
+        while (i < 100) {
+            @IntRange(from = 0, to = 99) int x = i;
+            i++;
+        }
+        @IntRange(from = 100, to = Byte.MAX_VALUE) int y = i;
+    }
+
+    void shortMax() {
+        int i = 0;
+        while (i < 1000) {
+            @IntRange(from = 0, to = 999) int x = i;
+            i++;
+        }
+        @IntRange(from = 1000, to = Short.MAX_VALUE) int y = i;
+    }
+
+    void zero() {
+        int i = 1000;
+        while (i > 0) {
+            @IntRange(from = 1, to = 1000) int x = i;
+            i--;
+        }
+        @IntRange(from = 0, to = 0) int y = i;
+    }
+
+    void minusOne() {
+        int i = 1000;
+        while (i >= 0) {
+            @IntRange(from = 0, to = 1000) int x = i;
+            i--;
+        }
+        @IntRange(from = -1, to = -1) int y = i;
+    }
+
+    void lowerBoundKept() {
+        int i = 5;
+        while (i < 100) {
+            i++;
+        }
+        @IntRange(from = 100, to = Byte.MAX_VALUE) int x = i;
+        int j = 5;
+        while (j < 1000) {
+            @IntRange(from = 5, to = 999) int y = j;
+            j++;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+import org.checkerframework.common.value.qual.IntRange;
+
+// With -AwidenToThresholds, widening moves a growing upper bound to the next threshold, but keeps
+// the lower bound, which does not change.
+public class WidenLowerBound {
+
+    void increment(boolean flag) {
+        int i = 5;
+        while (flag) {
+            i++;
+        }
+        @IntRange(from = 5) int x = i;
+        // :: error: (assignment.type.incompatible)
+        @IntRange(from = 6) int y = i;
+    }
+
+    void decrement(boolean flag) {
+        int i = 5;
+        while (flag) {
+            i--;
+        }
+        @IntRange(to = 5) int x = i;
+        // :: error: (assignment.type.incompatible)
+        @IntRange(to = 4) int y = i;
+    }
+}
@@ -46,8 +46,8 @@ import javax.lang.model.util.ElementFilter;
  *       #typeProcess(TypeElement, TreePath) typeProcess} method on the {@code Processor}. The class
  *       is guaranteed to be type-checked Java code and all the tree type and symbol information is
  *       resolved.
- *   <li>Finally, the tools calls the {@link #typeProcessingOver() typeProcessingOver} method on the
- *       {@code Processor}.
+ *   <li>Finally, the tools calls the {@link #typeProcessingEnd() typeProcessingEnd} and {@link
+ *       #typeProcessingOver() typeProcessingOver} methods on the {@code Processor}.
  * </ol>
  *
  * <p>The tool is permitted to ask type processors to process a class once it is analyzed before the
@@ -82,6 +82,12 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
      */
     private static boolean hasInvokedTypeProcessingOver = false;
 
+    /**
+     * Method {@link #typeProcessingEnd()} must be invoked exactly once, after the last invocation
+     * of {@link #typeProcess(TypeElement, TreePath)}.
+     */
+    private boolean hasInvokedTypeProcessingEnd = false;
+
     /** The TaskListener registered for completion of attribution. */
     private final AttributionTaskListener listener = new AttributionTaskListener();
 
@@ -147,6 +153,15 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
      */
     public void typeProcessingOver() {}
 
+    /**
+     * A method to be called once after the last call to typeProcess, and before {@link
+     * #typeProcessingOver()}. Unlike typeProcessingOver, this method is invoked even if an error
+     * was reported.
+     *
+     * <p>Subclasses may override this method to finish processing that typeProcess deferred.
+     */
+    public void typeProcessingEnd() {}
+
     /** A task listener that invokes the processor whenever a class is fully analyzed. */
     private final class AttributionTaskListener implements TaskListener {
 
@@ -184,6 +199,11 @@ public abstract class AbstractTypeProcessor extends AbstractProcessor {
 
             typeProcess(elem, p);
 
+            if (!hasInvokedTypeProcessingEnd && elements.isEmpty()) {
+                typeProcessingEnd();
+                hasInvokedTypeProcessingEnd = true;
+            }
+
             if (!hasInvokedTypeProcessingOver && elements.isEmpty() && log.nerrors == 0) {
                 typeProcessingOver();
                 hasInvokedTypeProcessingOver = true;
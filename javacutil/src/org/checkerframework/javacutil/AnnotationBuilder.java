@@ -66,6 +66,20 @@ public class AnnotationBuilder {
     private static final Map<CharSequence, AnnotationMirror> annotationsFromNames =
             Collections.synchronizedMap(new HashMap<CharSequence, AnnotationMirror>());
 
+    private static final int INTERNED_ANNOTATIONS_SIZE = 1000;
+
+    /**
+     * Canonical instances of the annotations created by this class. Annotations with the same
+     * annotation type element and the same explicit element values are represented by a single
+     * object, so {@link AnnotationUtils#areSame(AnnotationMirror, AnnotationMirror)} can usually
+     * decide equality by a pointer comparison. Evicting an entry is harmless; it only means that a
+     * later equal annotation is represented by a new object.
+     */
+    private static final Map<InternKey, CheckerFrameworkAnnotationMirror> internedAnnotations =
+            Collections.synchronizedMap(
+                    CollectionUtils.<InternKey, CheckerFrameworkAnnotationMirror>createLRUCache(
+                            INTERNED_ANNOTATIONS_SIZE));
+
     public AnnotationBuilder(ProcessingEnvironment env, Class<? extends Annotation> anno) {
         this(env, anno.getCanonicalName());
     }
@@ -133,7 +147,7 @@ public class AnnotationBuilder {
             return null;
         }
         AnnotationMirror result =
-                new CheckerFrameworkAnnotationMirror(annoType, Collections.emptyMap());
+                intern(new CheckerFrameworkAnnotationMirror(annoType, Collections.emptyMap()));
         annotationsFromNames.put(name, result);
         return result;
     }
@@ -141,6 +155,61 @@ public class AnnotationBuilder {
     // TODO: hack to clear out static state.
     public static void clear() {
         annotationsFromNames.clear();
+        internedAnnotations.clear();
+    }
+
+    /**
+     * Returns the canonical instance of the given annotation: an annotation with the same type
+     * element and the same explicit element values that was created before, or {@code anno}
+     * itself.
+     */
+    private static CheckerFrameworkAnnotationMirror intern(CheckerFrameworkAnnotationMirror anno) {
+        InternKey key = new InternKey(anno);
+        CheckerFrameworkAnnotationMirror canonical = internedAnnotations.get(key);
+        if (canonical != null) {
+            return canonical;
+        }
+        internedAnnotations.put(key, anno);
+        return anno;
+    }
+
+    /**
+     * Key of {@link #internedAnnotations}. Two keys are equal if their annotations have the same
+     * annotation type element (not just the same name, so that annotations from different
+     * compilations are never mixed up) and structurally equal explicit element values.
+     */
+    private static final class InternKey {
+        private final CheckerFrameworkAnnotationMirror anno;
+        private final Element annotationElt;
+        private final int hashCode;
+
+        InternKey(CheckerFrameworkAnnotationMirror anno) {
+            this.anno = anno;
+            this.annotationElt = anno.getAnnotationType().asElement();
+            this.hashCode =
+                    anno.annotationName.hashCode() * 31
+                            + AnnotationUtils.elementValuesHashCode(anno.elementValues);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof InternKey)) {
+                return false;
+            }
+            InternKey other = (InternKey) o;
+            return hashCode == other.hashCode
+                    && annotationElt == other.annotationElt
+                    && AnnotationUtils.sameElementValues(
+                            anno.elementValues, other.anno.elementValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
     }
 
     private boolean wasBuilt = false;
@@ -154,7 +223,7 @@ public class AnnotationBuilder {
     public AnnotationMirror build() {
         assertNotBuilt();
         wasBuilt = true;
-        return new CheckerFrameworkAnnotationMirror(annotationType, elementValues);
+        return intern(new CheckerFrameworkAnnotationMirror(annotationType, elementValues));
     }
 
     /**
@@ -503,6 +572,12 @@ public class AnnotationBuilder {
         // default visibility to allow access from within package.
         final /*@Interned*/ String annotationName;
 
+        /**
+         * Cached result of {@link AnnotationUtils#structuralHashCode(AnnotationMirror)}, or 0 if
+         * it has not been computed yet.
+         */
+        private int structuralHashCode;
+
         CheckerFrameworkAnnotationMirror(
                 DeclaredType at, Map<ExecutableElement, AnnotationValue> ev) {
             this.annotationType = at;
@@ -521,6 +596,21 @@ public class AnnotationBuilder {
             return Collections.unmodifiableMap(elementValues);
         }
 
+        /**
+         * Returns the structural hash code of this annotation, which takes default values of
+         * elements into account.
+         *
+         * @see AnnotationUtils#structuralHashCode(AnnotationMirror)
+         */
+        int structuralHashCode() {
+            int result = structuralHashCode;
+            if (result == 0) {
+                result = AnnotationUtils.computeStructuralHashCode(this);
+                structuralHashCode = result;
+            }
+            return result;
+        }
+
         /*@SideEffectFree*/
         @Override
         public String toString() {
@@ -29,7 +29,10 @@ import javax.lang.model.element.AnnotationValue;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Name;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
 import javax.lang.model.util.ElementFilter;
 import javax.lang.model.util.Elements;
 
@@ -45,6 +48,7 @@ public class AnnotationUtils {
     public static void clear() {
         AnnotationBuilder.clear();
         annotationClassNames.clear();
+        annotationElementNames.clear();
     }
 
     // **********************************************************************
@@ -62,6 +66,14 @@ public class AnnotationUtils {
                     Collections.synchronizedMap(
                             CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE));
 
+    /**
+     * Cache names of annotation type elements, so that {@link #annotationName} does not build and
+     * intern a new String for every javac-created AnnotationMirror it is called on. Values in the
+     * map are interned Strings, so they can be compared with ==.
+     */
+    private static final Map<TypeElement, /*@Interned*/ String> annotationElementNames =
+            Collections.synchronizedMap(CollectionUtils.createLRUCache(ANNOTATION_CACHE_SIZE));
+
     // **********************************************************************
     // Helper methods to handle annotations.  mainly workaround
     // AnnotationMirror.equals undesired property
@@ -75,7 +87,11 @@ public class AnnotationUtils {
         }
         final DeclaredType annoType = annotation.getAnnotationType();
         final TypeElement elm = (TypeElement) annoType.asElement();
-        /*@Interned*/ String name = elm.getQualifiedName().toString().intern();
+        /*@Interned*/ String name = annotationElementNames.get(elm);
+        if (name == null) {
+            name = elm.getQualifiedName().toString().intern();
+            annotationElementNames.put(elm, name);
+        }
         return name;
     }
 
@@ -107,13 +123,19 @@ public class AnnotationUtils {
             if (annotationName(a1) != annotationName(a2)) {
                 return false;
             }
+            if (a1 instanceof AnnotationBuilder.CheckerFrameworkAnnotationMirror
+                    && a2 instanceof AnnotationBuilder.CheckerFrameworkAnnotationMirror) {
+                // Both hash codes are cached, so this rejects most distinct annotations
+                // without looking at their element values.
+                if (((AnnotationBuilder.CheckerFrameworkAnnotationMirror) a1).structuralHashCode()
+                        != ((AnnotationBuilder.CheckerFrameworkAnnotationMirror) a2)
+                                .structuralHashCode()) {
+                    return false;
+                }
+            }
 
-            Map<? extends ExecutableElement, ? extends AnnotationValue> elval1 =
-                    getElementValuesWithDefaults(a1);
-            Map<? extends ExecutableElement, ? extends AnnotationValue> elval2 =
-                    getElementValuesWithDefaults(a2);
-
-            return elval1.toString().equals(elval2.toString());
+            return sameElementValues(
+                    getElementValuesWithDefaults(a1), getElementValuesWithDefaults(a2));
         }
 
         // only true, iff both are null
@@ -293,6 +315,17 @@ public class AnnotationUtils {
             new Comparator<AnnotationMirror>() {
                 @Override
                 public int compare(AnnotationMirror a1, AnnotationMirror a2) {
+                    if (a1 == a2) {
+                        return 0;
+                    }
+                    // Annotation names are interned and cached, so comparing them does not
+                    // allocate. For annotations without element values this yields the same
+                    // order as comparing the toString() of the annotations.
+                    /*@Interned*/ String name1 = annotationName(a1);
+                    /*@Interned*/ String name2 = annotationName(a2);
+                    if (name1 != name2) {
+                        return name1.compareTo(name2);
+                    }
                     // AnnotationMirror.toString() prints the elements of an annotation in the
                     // order in which they were written. So, use areSame to check for equality.
                     if (AnnotationUtils.areSame(a1, a2)) {
@@ -346,6 +379,207 @@ public class AnnotationUtils {
         return new TreeSet<AnnotationMirror>(annotationOrdering());
     }
 
+    // **********************************************************************
+    // Structural comparison and hashing of annotation element values
+    // **********************************************************************
+
+    /**
+     * Compares two maps of annotation element values structurally, that is, without converting
+     * them to Strings. Elements are matched by their simple names.
+     *
+     * @return true iff both maps have the same elements and the same values for each element
+     */
+    static boolean sameElementValues(
+            Map<? extends ExecutableElement, ? extends AnnotationValue> elval1,
+            Map<? extends ExecutableElement, ? extends AnnotationValue> elval2) {
+        if (elval1.size() != elval2.size()) {
+            return false;
+        }
+        outer:
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry1 :
+                elval1.entrySet()) {
+            AnnotationValue val2 = elval2.get(entry1.getKey());
+            if (val2 == null) {
+                // The elements might come from different symbols for the same annotation.
+                Name name1 = entry1.getKey().getSimpleName();
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry2 :
+                        elval2.entrySet()) {
+                    if (entry2.getKey().getSimpleName().contentEquals(name1)) {
+                        if (!sameAnnotationValue(entry1.getValue(), entry2.getValue())) {
+                            return false;
+                        }
+                        continue outer;
+                    }
+                }
+                return false;
+            }
+            if (!sameAnnotationValue(entry1.getValue(), val2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Compares two annotation values structurally. */
+    private static boolean sameAnnotationValue(AnnotationValue av1, AnnotationValue av2) {
+        if (av1 == av2) {
+            return true;
+        }
+        return sameAnnotationValueContent(av1.getValue(), av2.getValue());
+    }
+
+    /**
+     * Compares the results of {@link AnnotationValue#getValue()} for two annotation values. Class
+     * literals, which may be represented by two different TypeMirror implementations, and numbers
+     * or characters and strings of different classes are compared by their String
+     * representations, as {@link #areSame} used to do for all values.
+     */
+    private static boolean sameAnnotationValueContent(Object v1, Object v2) {
+        if (v1 == v2) {
+            return true;
+        }
+        if (v1 instanceof AnnotationMirror && v2 instanceof AnnotationMirror) {
+            return areSame((AnnotationMirror) v1, (AnnotationMirror) v2);
+        }
+        if (v1 instanceof List && v2 instanceof List) {
+            List<?> l1 = (List<?>) v1;
+            List<?> l2 = (List<?>) v2;
+            if (l1.size() != l2.size()) {
+                return false;
+            }
+            Iterator<?> iter1 = l1.iterator();
+            Iterator<?> iter2 = l2.iterator();
+            while (iter1.hasNext()) {
+                Object o1 = iter1.next();
+                Object o2 = iter2.next();
+                if (o1 instanceof AnnotationValue && o2 instanceof AnnotationValue) {
+                    if (!sameAnnotationValue((AnnotationValue) o1, (AnnotationValue) o2)) {
+                        return false;
+                    }
+                } else if (!sameAnnotationValueContent(o1, o2)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (v1 instanceof VariableElement && v2 instanceof VariableElement) {
+            // Enum constants.
+            VariableElement var1 = (VariableElement) v1;
+            VariableElement var2 = (VariableElement) v2;
+            return var1.getSimpleName().contentEquals(var2.getSimpleName())
+                    && var1.getEnclosingElement()
+                            .toString()
+                            .equals(var2.getEnclosingElement().toString());
+        }
+        if (v1 instanceof TypeMirror && v2 instanceof TypeMirror) {
+            return v1.toString().equals(v2.toString());
+        }
+        if (v1.getClass() == v2.getClass()) {
+            return v1.equals(v2);
+        }
+        if ((v1 instanceof Number && v2 instanceof Number)
+                || (isCharacterOrString(v1) && isCharacterOrString(v2))) {
+            return v1.toString().equals(v2.toString());
+        }
+        return false;
+    }
+
+    /** Returns true if {@code value} is a Character or a String. */
+    private static boolean isCharacterOrString(Object value) {
+        return value instanceof Character || value instanceof String;
+    }
+
+    /**
+     * Computes a hash code for a map of annotation element values that is consistent with {@link
+     * #sameElementValues}: maps that are the same according to that method have the same hash
+     * code. The result does not depend on the iteration order of the map.
+     */
+    static int elementValuesHashCode(
+            Map<? extends ExecutableElement, ? extends AnnotationValue> elval) {
+        int hash = 0;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                elval.entrySet()) {
+            hash +=
+                    entry.getKey().getSimpleName().toString().hashCode() * 31
+                            ^ annotationValueContentHashCode(entry.getValue().getValue());
+        }
+        return hash;
+    }
+
+    /**
+     * Computes a structural hash code for an annotation, including default values of its
+     * elements. Annotations that are the same according to {@link #areSame(AnnotationMirror,
+     * AnnotationMirror)} have the same structural hash code.
+     *
+     * <p>The result is cached for annotations created by {@link AnnotationBuilder}.
+     */
+    public static int structuralHashCode(AnnotationMirror anno) {
+        if (anno instanceof AnnotationBuilder.CheckerFrameworkAnnotationMirror) {
+            return ((AnnotationBuilder.CheckerFrameworkAnnotationMirror) anno)
+                    .structuralHashCode();
+        }
+        return computeStructuralHashCode(anno);
+    }
+
+    static int computeStructuralHashCode(AnnotationMirror anno) {
+        return annotationName(anno).hashCode() * 31
+                + elementValuesHashCode(getElementValuesWithDefaults(anno));
+    }
+
+    /** Hash code consistent with {@link #sameAnnotationValueContent}. */
+    private static int annotationValueContentHashCode(Object value) {
+        // Check for annotations first: javac represents a nested annotation by an AnnotationValue
+        // that is also an AnnotationMirror and whose getValue() returns itself.
+        if (value instanceof AnnotationMirror) {
+            return structuralHashCode((AnnotationMirror) value);
+        }
+        if (value instanceof AnnotationValue) {
+            return annotationValueContentHashCode(((AnnotationValue) value).getValue());
+        }
+        if (value instanceof List) {
+            int hash = 1;
+            for (Object o : (List<?>) value) {
+                hash = 31 * hash + annotationValueContentHashCode(o);
+            }
+            return hash;
+        }
+        if (value instanceof VariableElement) {
+            return ((VariableElement) value).getSimpleName().toString().hashCode();
+        }
+        if (value instanceof TypeMirror) {
+            return typeMirrorHashCode((TypeMirror) value);
+        }
+        // Numbers of different classes are the same if their String representations are, so
+        // they are hashed such that boxes of different classes that print the same value get the
+        // same hash code.
+        if (value instanceof Float || value instanceof Double) {
+            return Float.hashCode(((Number) value).floatValue());
+        }
+        if (value instanceof Number) {
+            return Long.hashCode(((Number) value).longValue());
+        }
+        // Strings, characters and booleans. A Character has the hash code of the String that
+        // consists of that character.
+        return value.hashCode();
+    }
+
+    /**
+     * Hash code for a class literal that is consistent with comparing the String representations
+     * of types, as {@link #sameAnnotationValueContent} does. It is computed from the names of the
+     * type's elements, rather than the String representation of the type.
+     */
+    private static int typeMirrorHashCode(TypeMirror type) {
+        switch (type.getKind()) {
+            case DECLARED:
+            case ERROR:
+                return ((DeclaredType) type).asElement().getSimpleName().toString().hashCode();
+            case ARRAY:
+                return 31 * typeMirrorHashCode(((ArrayType) type).getComponentType()) + 1;
+            default:
+                return type.getKind().name().hashCode();
+        }
+    }
+
     /** Returns true if the given annotation has a @Inherited meta-annotation. */
     public static boolean hasInheritedMeta(AnnotationMirror anno) {
         return anno.getAnnotationType().asElement().getAnnotation(Inherited.class) != null;
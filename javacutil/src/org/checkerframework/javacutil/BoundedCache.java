@@ -0,0 +1,446 @@
+package org.checkerframework.javacutil;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A map whose entries are evicted once the total weight of its values exceeds a bound, and that
+ * records hit, miss and eviction counts. The weight of a value is computed by a {@link Weigher}
+ * when the value is put into the cache; without a weigher, every entry weighs 1, so the bound is
+ * the maximum number of entries.
+ *
+ * <p>Two eviction policies are supported, see {@link Policy}. Use {@link
+ * CollectionUtils#createCache(String, long, Weigher, Policy)} to create a cache.
+ *
+ * <p>Every lookup is counted as exactly one hit or miss, whether it is done by {@link #get} alone
+ * or by {@link #containsKey} followed by {@link #get}: {@code containsKey} counts a miss if it
+ * returns false, and {@code get} counts a hit if the key is present and a miss otherwise.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class BoundedCache<K, V> extends AbstractMap<K, V> {
+
+    /** The eviction policy of a {@link BoundedCache}. */
+    public enum Policy {
+        /** Evict the least recently used entries. */
+        LRU,
+
+        /**
+         * A W-TinyLFU policy: new entries are put into a small LRU window. An entry evicted from
+         * the window is only admitted to the main LRU region if it has been looked up more often
+         * than the entry that it would replace. Lookup frequencies are estimated by a small,
+         * periodically aged count-min sketch, which also remembers keys that are not in the cache.
+         * This keeps frequently used entries in the cache even if many entries are looked up only
+         * once.
+         */
+        FREQUENCY
+    }
+
+    /** Computes the weight of the values of a {@link BoundedCache}. */
+    public interface Weigher<V> {
+        /**
+         * Returns the weight of {@code value}, which must be at least 1.
+         *
+         * @param value a value that is put into a cache
+         * @return the weight of {@code value}
+         */
+        int weigh(V value);
+    }
+
+    /** A value of the cache, together with its weight. */
+    private static class Node<V> {
+        final V value;
+        final int weight;
+
+        Node(V value, int weight) {
+            this.value = value;
+            this.weight = weight;
+        }
+    }
+
+    /** The name of this cache, used in {@link #getStatistics()}. */
+    private final String name;
+
+    /** The maximum total weight of the values in this cache. */
+    private final long maxWeight;
+
+    /** The weigher of this cache, or null if every entry weighs 1. */
+    private final /*@Nullable*/ Weigher<? super V> weigher;
+
+    /** The eviction policy of this cache. */
+    private final Policy policy;
+
+    /**
+     * The admission window, in access order. Only used by the {@link Policy#FREQUENCY} policy;
+     * empty otherwise.
+     */
+    private final LinkedHashMap<K, Node<V>> window;
+
+    /** The main region of this cache, in access order. */
+    private final LinkedHashMap<K, Node<V>> main;
+
+    /** The maximum total weight of the values in {@link #window}. */
+    private final long maxWindowWeight;
+
+    /** The maximum total weight of the values in {@link #main}. */
+    private final long maxMainWeight;
+
+    /** The total weight of the values in {@link #window}. */
+    private long windowWeight = 0;
+
+    /** The total weight of the values in {@link #main}. */
+    private long mainWeight = 0;
+
+    /** The frequency sketch; null unless the policy is {@link Policy#FREQUENCY}. */
+    private final /*@Nullable*/ FrequencySketch sketch;
+
+    /** The number of lookups of keys that were in the cache. */
+    private long hits = 0;
+
+    /** The number of lookups of keys that were not in the cache. */
+    private long misses = 0;
+
+    /** The number of entries that were evicted or not admitted to the cache. */
+    private long evictions = 0;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param name the name of the cache, used in its statistics
+     * @param maxWeight the maximum total weight of the values in the cache
+     * @param weigher computes the weight of values, or null if every entry weighs 1
+     * @param policy the eviction policy
+     */
+    public BoundedCache(
+            String name,
+            long maxWeight,
+            /*@Nullable*/ Weigher<? super V> weigher,
+            Policy policy) {
+        if (maxWeight < 1) {
+            ErrorReporter.errorAbort(
+                    "BoundedCache: maximum weight must be positive: " + name + " " + maxWeight);
+        }
+        this.name = name;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.policy = policy;
+        this.window = new LinkedHashMap<>(16, .75F, true);
+        this.main = new LinkedHashMap<>(16, .75F, true);
+        if (policy == Policy.FREQUENCY) {
+            this.maxWindowWeight = Math.max(1, maxWeight / 100);
+            this.maxMainWeight = Math.max(1, maxWeight - maxWindowWeight);
+            this.sketch = new FrequencySketch(maxWeight);
+        } else {
+            this.maxWindowWeight = 0;
+            this.maxMainWeight = maxWeight;
+            this.sketch = null;
+        }
+    }
+
+    @Override
+    public /*@Nullable*/ V get(Object key) {
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        Node<V> node = window.get(key);
+        if (node == null) {
+            node = main.get(key);
+        }
+        if (node == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return node.value;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        if (window.containsKey(key) || main.containsKey(key)) {
+            return true;
+        }
+        if (sketch != null) {
+            sketch.increment(key);
+        }
+        misses++;
+        return false;
+    }
+
+    @Override
+    public /*@Nullable*/ V put(K key, V value) {
+        Node<V> old = removeNode(key);
+        int weight = weigher == null ? 1 : weigher.weigh(value);
+        Node<V> node = new Node<>(value, weight);
+        if (policy == Policy.FREQUENCY) {
+            window.put(key, node);
+            windowWeight += weight;
+            while (windowWeight > maxWindowWeight && !window.isEmpty()) {
+                Map.Entry<K, Node<V>> candidate = removeEldest(window);
+                windowWeight -= candidate.getValue().weight;
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        } else {
+            main.put(key, node);
+            mainWeight += weight;
+            evictFromMain(0);
+        }
+        return old == null ? null : old.value;
+    }
+
+    /**
+     * Puts an entry that was evicted from the window into the main region if there is room for it
+     * or if its key is looked up more frequently than the key of every entry of the main region
+     * that would be evicted to make room for it. Otherwise, the entry is dropped.
+     */
+    private void admit(K key, Node<V> node) {
+        if (node.weight > maxMainWeight) {
+            evictions++;
+            return;
+        }
+        if (mainWeight + node.weight > maxMainWeight) {
+            int frequency = sketch.frequency(key);
+            long freed = 0;
+            for (Map.Entry<K, Node<V>> victim : main.entrySet()) {
+                if (frequency <= sketch.frequency(victim.getKey())) {
+                    evictions++;
+                    return;
+                }
+                freed += victim.getValue().weight;
+                if (mainWeight - freed + node.weight <= maxMainWeight) {
+                    break;
+                }
+            }
+            evictFromMain(node.weight);
+        }
+        main.put(key, node);
+        mainWeight += node.weight;
+    }
+
+    /**
+     * Evicts the least recently used entries of the main region until there is room for {@code
+     * weight} more.
+     */
+    private void evictFromMain(int weight) {
+        while (mainWeight + weight > maxMainWeight && !main.isEmpty()) {
+            mainWeight -= removeEldest(main).getValue().weight;
+            evictions++;
+        }
+    }
+
+    /** Removes and returns the least recently used entry of {@code region}. */
+    private static <K, V> Map.Entry<K, Node<V>> removeEldest(LinkedHashMap<K, Node<V>> region) {
+        Iterator<Map.Entry<K, Node<V>>> iterator = region.entrySet().iterator();
+        Map.Entry<K, Node<V>> eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+
+    /** Removes the entry for {@code key}, if any, and updates the weights. */
+    private /*@Nullable*/ Node<V> removeNode(Object key) {
+        Node<V> node = window.remove(key);
+        if (node != null) {
+            windowWeight -= node.weight;
+            return node;
+        }
+        node = main.remove(key);
+        if (node != null) {
+            mainWeight -= node.weight;
+        }
+        return node;
+    }
+
+    @Override
+    public /*@Nullable*/ V remove(Object key) {
+        Node<V> node = removeNode(key);
+        return node == null ? null : node.value;
+    }
+
+    @Override
+    public void clear() {
+        window.clear();
+        main.clear();
+        windowWeight = 0;
+        mainWeight = 0;
+    }
+
+    @Override
+    public int size() {
+        return window.size() + main.size();
+    }
+
+    /** Returns the total weight of the values in this cache. */
+    public long weight() {
+        return windowWeight + mainWeight;
+    }
+
+    /** Returns the number of lookups of keys that were in this cache. */
+    public long hitCount() {
+        return hits;
+    }
+
+    /** Returns the number of lookups of keys that were not in this cache. */
+    public long missCount() {
+        return misses;
+    }
+
+    /** Returns the number of entries that were evicted or not admitted to this cache. */
+    public long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Returns a one-line summary of the size and the hit, miss and eviction counts of this cache.
+     */
+    public String getStatistics() {
+        long lookups = hits + misses;
+        return String.format(
+                "%s: %d entries, weight %d/%d (%s), %d hits, %d misses (%.1f%% hit rate),"
+                        + " %d evictions",
+                name,
+                size(),
+                weight(),
+                maxWeight,
+                policy,
+                hits,
+                misses,
+                lookups == 0 ? 0.0 : 100.0 * hits / lookups,
+                evictions);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public int size() {
+                return BoundedCache.this.size();
+            }
+
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+        };
+    }
+
+    /** Iterates over the entries of the window and then those of the main region. */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        /** Whether {@link #current} iterates over the window. */
+        private boolean inWindow = true;
+
+        /** The iterator over the current region. */
+        private Iterator<Map.Entry<K, Node<V>>> current = window.entrySet().iterator();
+
+        /** The value of the entry that was returned last, or null. */
+        private /*@Nullable*/ Node<V> last = null;
+
+        @Override
+        public boolean hasNext() {
+            if (!current.hasNext() && inWindow) {
+                inWindow = false;
+                current = main.entrySet().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<K, Node<V>> entry = current.next();
+            last = entry.getValue();
+            return new SimpleImmutableEntry<>(entry.getKey(), last.value);
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            current.remove();
+            if (inWindow) {
+                windowWeight -= last.weight;
+            } else {
+                mainWeight -= last.weight;
+            }
+            last = null;
+        }
+    }
+
+    /**
+     * A count-min sketch of 4-bit counters that estimates how often keys have been looked up. The
+     * counters are halved after a number of increments proportional to the size of the sketch, so
+     * that the estimates favor recent lookups.
+     */
+    private static class FrequencySketch {
+        /** The maximum value of a counter. */
+        private static final int MAX_COUNT = 15;
+
+        /** The seeds of the hash functions, one per row of the sketch. */
+        private static final int[] SEEDS = {0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0xc2b2ae35};
+
+        /** The counters; row {@code i} uses hash function {@code SEEDS[i]}. */
+        private final byte[] table;
+
+        /** {@code table.length - 1}; the length is a power of two. */
+        private final int mask;
+
+        /** The number of increments after which all counters are halved. */
+        private final int sampleSize;
+
+        /** The number of increments since the counters were last halved. */
+        private int increments = 0;
+
+        FrequencySketch(long expectedKeys) {
+            int length = Integer.highestOneBit((int) Math.min(1 << 20, Math.max(16, expectedKeys)));
+            // Room for the four counters of twice the expected number of keys.
+            this.table = new byte[length * 8];
+            this.mask = table.length - 1;
+            this.sampleSize = length * 10;
+        }
+
+        /** Returns the index of the counter of {@code key} in row {@code row}. */
+        private int index(Object key, int row) {
+            int hash = key.hashCode() * SEEDS[row];
+            hash ^= hash >>> 16;
+            return hash & mask;
+        }
+
+        /** Returns the estimated number of lookups of {@code key}. */
+        int frequency(Object key) {
+            int frequency = MAX_COUNT;
+            for (int row = 0; row < SEEDS.length; row++) {
+                frequency = Math.min(frequency, table[index(key, row)]);
+            }
+            return frequency;
+        }
+
+        /** Records a lookup of {@code key}. */
+        void increment(Object key) {
+            for (int row = 0; row < SEEDS.length; row++) {
+                int index = index(key, row);
+                if (table[index] < MAX_COUNT) {
+                    table[index]++;
+                }
+            }
+            if (++increments >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] >>= 1;
+                }
+                increments /= 2;
+            }
+        }
+    }
+}
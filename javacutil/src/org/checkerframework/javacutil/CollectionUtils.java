@@ -3,6 +3,10 @@ package org.checkerframework.javacutil;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
 /** Utility methods related to Java Collections */
 public class CollectionUtils {
 
@@ -23,4 +27,22 @@ public class CollectionUtils {
             }
         };
     }
+
+    /**
+     * A Utility method for creating a cache that is bounded by the total weight of its values and
+     * that records hit and miss statistics.
+     *
+     * @param name the name of the cache, used in its statistics
+     * @param maxWeight the maximum total weight of the values in the cache
+     * @param weigher computes the weight of values, or null if every entry weighs 1
+     * @param policy the eviction policy
+     * @return a new cache with the provided bound
+     */
+    public static <K, V> BoundedCache<K, V> createCache(
+            String name,
+            long maxWeight,
+            /*@Nullable*/ BoundedCache.Weigher<? super V> weigher,
+            BoundedCache.Policy policy) {
+        return new BoundedCache<K, V>(name, maxWeight, weigher, policy);
+    }
 }
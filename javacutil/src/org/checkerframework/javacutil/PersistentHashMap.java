@@ -0,0 +1,634 @@
+package org.checkerframework.javacutil;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/*>>>
+import org.checkerframework.checker.nullness.qual.Nullable;
+*/
+
+/**
+ * A map that is backed by a persistent hash array mapped trie, so that copying it takes constant
+ * time. The copy constructor {@link #PersistentHashMap(Map)} makes the copy share the trie of the
+ * original; a modification of either map copies only the path from the root of the trie to the
+ * modified entry, so the two maps keep sharing all other nodes.
+ *
+ * <p>Because of this sharing, two maps that were copied from one another can be compared and
+ * combined quickly: {@link #equals} and {@link #intersect} skip the parts of the tries that are
+ * shared.
+ *
+ * <p>An iterator over the map, its entries, keys, or values iterates over the entries that the map
+ * had when the iterator was created; the map may be modified during the iteration. The entries
+ * returned by the iterator do not support {@link Map.Entry#setValue}. Like {@link
+ * java.util.HashMap}, the map supports null keys and values.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <K> the type of keys
+ * @param <V> the type of values
+ */
+public class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+    /** Combines the values of a key in two maps, see {@link #intersect}. */
+    public interface Merger<V> {
+        /**
+         * Returns the value of a key in the intersection of two maps, or null to drop the key. If
+         * {@code value} and {@code otherValue} are the same object, the result must be equal to
+         * it, because {@link #intersect} does not call the merger for shared entries.
+         *
+         * @param value the value of the key in the map on which {@link #intersect} is called
+         * @param otherValue the value of the key in the other map
+         * @return the combined value, or null
+         */
+        /*@Nullable*/ V merge(V value, V otherValue);
+    }
+
+    /** The number of bits of the hash code used at each level of the trie. */
+    private static final int BITS = 5;
+
+    /** The mask for the bits of the hash code used at each level of the trie. */
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * The maximum depth of the trie: 7 levels of bitmap nodes for the 32 bits of a hash code, and
+     * a level of collision nodes.
+     */
+    private static final int MAX_DEPTH = 8;
+
+    /** The root of the trie, or null if the map is empty. */
+    private /*@Nullable*/ Node root;
+
+    /** Creates an empty map. */
+    public PersistentHashMap() {
+        this.root = null;
+    }
+
+    /**
+     * Creates a copy of {@code other}. If {@code other} is a {@code PersistentHashMap}, the copy is
+     * made in constant time, and shares the trie of {@code other} until one of the two maps is
+     * modified.
+     *
+     * @param other the map to copy
+     */
+    public PersistentHashMap(Map<? extends K, ? extends V> other) {
+        this.root = null;
+        putAll(other);
+    }
+
+    private PersistentHashMap(/*@Nullable*/ Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Spreads the higher bits of the hash code of {@code key} to the lower ones. The hash of null
+     * is 0.
+     */
+    private static int hash(/*@Nullable*/ Object key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /** Returns true if {@code key1} and {@code key2} are both null or equal. */
+    private static boolean keysEqual(/*@Nullable*/ Object key1, /*@Nullable*/ Object key2) {
+        return key1 == key2 || (key1 != null && key1.equals(key2));
+    }
+
+    @Override
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return root != null && root.find(hash(key), key, 0) != null;
+    }
+
+    @Override
+    public /*@Nullable*/ V get(Object key) {
+        if (root == null) {
+            return null;
+        }
+        Leaf<K, V> leaf = root.find(hash(key), key, 0);
+        return leaf == null ? null : leaf.value;
+    }
+
+    @Override
+    public /*@Nullable*/ V put(K key, V value) {
+        int hash = hash(key);
+        Leaf<K, V> newLeaf = new Leaf<>(hash, key, value);
+        if (root == null) {
+            root = Node.of(newLeaf, 0);
+            return null;
+        }
+        Leaf<K, V> old = root.find(hash, key, 0);
+        root = root.put(newLeaf, 0);
+        return old == null ? null : old.value;
+    }
+
+    @Override
+    public /*@Nullable*/ V remove(Object key) {
+        if (root == null) {
+            return null;
+        }
+        int hash = hash(key);
+        Leaf<K, V> old = root.find(hash, key, 0);
+        if (old != null) {
+            root = root.remove(hash, key, 0);
+        }
+        return old == null ? null : old.value;
+    }
+
+    /**
+     * Puts the entries of {@code m} into this map. If this map is empty and {@code m} is a {@code
+     * PersistentHashMap}, this map shares the trie of {@code m} afterwards, which takes constant
+     * time.
+     */
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        if (root == null && m instanceof PersistentHashMap) {
+            // The trie is never modified, so a trie of subtypes can be shared.
+            root = ((PersistentHashMap<? extends K, ? extends V>) m).root;
+            return;
+        }
+        super.putAll(m);
+    }
+
+    @Override
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Returns a map that contains the keys that are in both this map and {@code other}. The value
+     * of a key is {@code merger.merge(v1, v2)}, where {@code v1} is its value in this map and
+     * {@code v2} its value in {@code other}; a key is dropped if the merger returns null. A key
+     * whose value is null in one of the maps is passed to the merger like any other key.
+     *
+     * <p>Parts of the tries that this map and {@code other} share are shared with the result, and
+     * the merger is not called for their entries. In particular, if this map and {@code other}
+     * share their whole trie, the result is a copy of this map, made in constant time.
+     *
+     * @param other another map
+     * @param merger combines the values of a key in the two maps
+     * @return the intersection of this map and {@code other}
+     */
+    public PersistentHashMap<K, V> intersect(PersistentHashMap<K, V> other, Merger<V> merger) {
+        if (root == null || other.root == null) {
+            return new PersistentHashMap<>();
+        }
+        return new PersistentHashMap<>(Node.intersect(root, other.root, 0, merger));
+    }
+
+    /**
+     * Returns true if this map and {@code other} share their whole trie, which implies that they
+     * are equal. Takes constant time.
+     */
+    public boolean sharesTrieWith(PersistentHashMap<?, ?> other) {
+        return root == other.root;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof PersistentHashMap && sharesTrieWith((PersistentHashMap<?, ?>) o)) {
+            return true;
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        return new AbstractSet<Map.Entry<K, V>>() {
+            @Override
+            public Iterator<Map.Entry<K, V>> iterator() {
+                return new EntryIterator();
+            }
+
+            @Override
+            public int size() {
+                return PersistentHashMap.this.size();
+            }
+        };
+    }
+
+    /** An entry of the map; a leaf of the trie. */
+    private static final class Leaf<K, V> implements Map.Entry<K, V> {
+        final int hash;
+        final K key;
+        final V value;
+
+        Leaf(int hash, K key, V value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public K getKey() {
+            return key;
+        }
+
+        @Override
+        public V getValue() {
+            return value;
+        }
+
+        @Override
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Map.Entry)) {
+                return false;
+            }
+            Map.Entry<?, ?> other = (Map.Entry<?, ?>) o;
+            return keysEqual(key, other.getKey()) && keysEqual(value, other.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            return (key == null ? 0 : key.hashCode()) ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + value;
+        }
+    }
+
+    /**
+     * An inner node of the trie. Its slots hold leaves and child nodes. In a bitmap node, bit
+     * {@code i} of {@code bitmap} is set if there is a slot for the hash codes whose bits at the
+     * level of the node are {@code i}; the slots are in the order of their bits. A collision node
+     * holds leaves whose keys have the same hash code, and its bitmap is 0.
+     */
+    private static final class Node {
+        final int bitmap;
+        final Object[] slots;
+        /** The number of leaves below this node. */
+        final int size;
+
+        Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+            int size = 0;
+            for (Object slot : slots) {
+                size += slot instanceof Node ? ((Node) slot).size : 1;
+            }
+            this.size = size;
+        }
+
+        boolean isCollision() {
+            return bitmap == 0;
+        }
+
+        /** Returns a node that only holds {@code leaf}. */
+        static Node of(Leaf<?, ?> leaf, int shift) {
+            return new Node(1 << ((leaf.hash >>> shift) & MASK), new Object[] {leaf});
+        }
+
+        /** Returns a node that holds two leaves with different keys. */
+        static Node of(Leaf<?, ?> leaf1, Leaf<?, ?> leaf2, int shift) {
+            if (leaf1.hash == leaf2.hash) {
+                return new Node(0, new Object[] {leaf1, leaf2});
+            }
+            int i1 = (leaf1.hash >>> shift) & MASK;
+            int i2 = (leaf2.hash >>> shift) & MASK;
+            if (i1 == i2) {
+                return new Node(1 << i1, new Object[] {of(leaf1, leaf2, shift + BITS)});
+            }
+            Object[] slots = i1 < i2 ? new Object[] {leaf1, leaf2} : new Object[] {leaf2, leaf1};
+            return new Node((1 << i1) | (1 << i2), slots);
+        }
+
+        /** Returns the index in {@code slots} of the slot for {@code bit}. */
+        int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @SuppressWarnings("unchecked")
+        /*@Nullable*/ <K, V> Leaf<K, V> find(int hash, Object key, int shift) {
+            if (isCollision()) {
+                for (Object slot : slots) {
+                    Leaf<K, V> leaf = (Leaf<K, V>) slot;
+                    if (leaf.hash == hash && keysEqual(leaf.key, key)) {
+                        return leaf;
+                    }
+                }
+                return null;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = slots[index(bit)];
+            if (slot instanceof Node) {
+                return ((Node) slot).find(hash, key, shift + BITS);
+            }
+            Leaf<K, V> leaf = (Leaf<K, V>) slot;
+            return leaf.hash == hash && keysEqual(leaf.key, key) ? leaf : null;
+        }
+
+        /**
+         * Returns a node that holds the leaves of this node and {@code newLeaf}, which replaces the
+         * leaf with the same key. Returns this node if it already holds the value of {@code
+         * newLeaf}.
+         */
+        Node put(Leaf<?, ?> newLeaf, int shift) {
+            if (isCollision()) {
+                if (newLeaf.hash != ((Leaf<?, ?>) slots[0]).hash) {
+                    // Only reached for a collision node below a bitmap node, with a different
+                    // hash code at this level.
+                    int bit = 1 << ((((Leaf<?, ?>) slots[0]).hash >>> shift) & MASK);
+                    return new Node(bit, new Object[] {this}).put(newLeaf, shift);
+                }
+                for (int i = 0; i < slots.length; i++) {
+                    Leaf<?, ?> leaf = (Leaf<?, ?>) slots[i];
+                    if (keysEqual(leaf.key, newLeaf.key)) {
+                        return leaf.value == newLeaf.value ? this : withSlot(i, newLeaf);
+                    }
+                }
+                return withInsertedSlot(slots.length, 0, newLeaf);
+            }
+            int bit = 1 << ((newLeaf.hash >>> shift) & MASK);
+            int index = index(bit);
+            if ((bitmap & bit) == 0) {
+                return withInsertedSlot(index, bit, newLeaf);
+            }
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                Node newChild = child.put(newLeaf, shift + BITS);
+                return newChild == child ? this : withSlot(index, newChild);
+            }
+            Leaf<?, ?> leaf = (Leaf<?, ?>) slot;
+            if (leaf.hash == newLeaf.hash && keysEqual(leaf.key, newLeaf.key)) {
+                return leaf.value == newLeaf.value ? this : withSlot(index, newLeaf);
+            }
+            return withSlot(index, of(leaf, newLeaf, shift + BITS));
+        }
+
+        /**
+         * Returns a node that holds the leaves of this node except the one for {@code key}, or
+         * null if there are none.
+         */
+        /*@Nullable*/ Node remove(int hash, Object key, int shift) {
+            if (isCollision()) {
+                for (int i = 0; i < slots.length; i++) {
+                    if (keysEqual(((Leaf<?, ?>) slots[i]).key, key)) {
+                        return withoutSlot(i, 0);
+                    }
+                }
+                return this;
+            }
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int index = index(bit);
+            Object slot = slots[index];
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                Node newChild = child.remove(hash, key, shift + BITS);
+                if (newChild == child) {
+                    return this;
+                }
+                return newChild == null ? withoutSlot(index, bit) : withSlot(index, newChild);
+            }
+            Leaf<?, ?> leaf = (Leaf<?, ?>) slot;
+            if (leaf.hash == hash && keysEqual(leaf.key, key)) {
+                return withoutSlot(index, bit);
+            }
+            return this;
+        }
+
+        private Node withSlot(int index, Object slot) {
+            Object[] newSlots = slots.clone();
+            newSlots[index] = slot;
+            return new Node(bitmap, newSlots);
+        }
+
+        private Node withInsertedSlot(int index, int bit, Object slot) {
+            Object[] newSlots = new Object[slots.length + 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            newSlots[index] = slot;
+            System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+            return new Node(bitmap | bit, newSlots);
+        }
+
+        private /*@Nullable*/ Node withoutSlot(int index, int bit) {
+            if (slots.length == 1) {
+                return null;
+            }
+            Object[] newSlots = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, newSlots, 0, index);
+            System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+            return new Node(bitmap & ~bit, newSlots);
+        }
+
+        /**
+         * Returns the node for the intersection of the leaves of {@code a} and {@code b}, which
+         * are at level {@code shift}, or null if it is empty. See {@link
+         * PersistentHashMap#intersect}.
+         */
+        static <V> /*@Nullable*/ Node intersect(Node a, Node b, int shift, Merger<V> merger) {
+            if (a == b) {
+                return a;
+            }
+            if (a.isCollision() || b.isCollision()) {
+                return intersectByLookup(a, b, shift, merger);
+            }
+            int common = a.bitmap & b.bitmap;
+            Object[] newSlots = new Object[Integer.bitCount(common)];
+            int newBitmap = 0;
+            int count = 0;
+            boolean same = common == a.bitmap;
+            for (int bits = common; bits != 0; bits &= bits - 1) {
+                int bit = bits & -bits;
+                Object slotA = a.slots[a.index(bit)];
+                Object slotB = b.slots[b.index(bit)];
+                Object slot = intersectSlots(slotA, slotB, shift + BITS, merger);
+                if (slot != slotA) {
+                    same = false;
+                }
+                if (slot != null) {
+                    newSlots[count++] = slot;
+                    newBitmap |= bit;
+                }
+            }
+            if (same) {
+                return a;
+            }
+            if (count == 0) {
+                return null;
+            }
+            if (count < newSlots.length) {
+                Object[] trimmed = new Object[count];
+                System.arraycopy(newSlots, 0, trimmed, 0, count);
+                newSlots = trimmed;
+            }
+            return new Node(newBitmap, newSlots);
+        }
+
+        /**
+         * Returns the slot for the intersection of two slots for the same bits of the hash code,
+         * or null if it is empty. {@code shift} is the level of the children of the slots.
+         */
+        @SuppressWarnings("unchecked")
+        private static <V> /*@Nullable*/ Object intersectSlots(
+                Object slotA, Object slotB, int shift, Merger<V> merger) {
+            if (slotA == slotB) {
+                return slotA;
+            }
+            if (slotA instanceof Node && slotB instanceof Node) {
+                return intersect((Node) slotA, (Node) slotB, shift, merger);
+            }
+            if (slotA instanceof Leaf) {
+                Leaf<Object, V> leafA = (Leaf<Object, V>) slotA;
+                Leaf<Object, V> leafB =
+                        slotB instanceof Node
+                                ? ((Node) slotB).<Object, V>find(leafA.hash, leafA.key, shift)
+                                : (Leaf<Object, V>) slotB;
+                return merge(leafA, leafB, merger);
+            }
+            Leaf<Object, V> leafB = (Leaf<Object, V>) slotB;
+            Leaf<Object, V> leafA = ((Node) slotA).find(leafB.hash, leafB.key, shift);
+            return leafA == null ? null : merge(leafA, leafB, merger);
+        }
+
+        /**
+         * Returns the leaf for the merged values of {@code leafA} and {@code leafB}, or null if
+         * their keys differ or the merger drops the key. Returns {@code leafA} if its value does
+         * not change.
+         */
+        private static <V> /*@Nullable*/ Leaf<Object, V> merge(
+                Leaf<Object, V> leafA, /*@Nullable*/ Leaf<Object, V> leafB, Merger<V> merger) {
+            if (leafB == null || leafA.hash != leafB.hash || !keysEqual(leafA.key, leafB.key)) {
+                return null;
+            }
+            if (leafA.value == leafB.value) {
+                return leafA;
+            }
+            V merged = merger.merge(leafA.value, leafB.value);
+            if (merged == null) {
+                return null;
+            }
+            return merged == leafA.value ? leafA : new Leaf<>(leafA.hash, leafA.key, merged);
+        }
+
+        /** Intersects two nodes by looking up each leaf of {@code a} in {@code b}. */
+        @SuppressWarnings("unchecked")
+        private static <V> /*@Nullable*/ Node intersectByLookup(
+                Node a, Node b, int shift, Merger<V> merger) {
+            Node result = null;
+            Iterator<Leaf<Object, V>> leaves = new LeafIterator<>(a);
+            while (leaves.hasNext()) {
+                Leaf<Object, V> leafA = leaves.next();
+                Leaf<Object, V> merged =
+                        merge(leafA, b.<Object, V>find(leafA.hash, leafA.key, shift), merger);
+                if (merged != null) {
+                    result = result == null ? of(merged, shift) : result.put(merged, shift);
+                }
+            }
+            return result;
+        }
+    }
+
+    /** Iterates over the leaves below a node, in the order of their slots. */
+    private static class LeafIterator<K, V> implements Iterator<Leaf<K, V>> {
+        /** The slots of the nodes on the path to the next leaf. */
+        private final Object[][] slotStack = new Object[MAX_DEPTH][];
+        /** The index of the next slot in each element of {@code slotStack}. */
+        private final int[] indexStack = new int[MAX_DEPTH];
+        private int depth = -1;
+        private /*@Nullable*/ Leaf<K, V> next;
+
+        LeafIterator(/*@Nullable*/ Node root) {
+            if (root != null) {
+                depth = 0;
+                slotStack[0] = root.slots;
+                indexStack[0] = 0;
+            }
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            next = null;
+            while (depth >= 0) {
+                if (indexStack[depth] == slotStack[depth].length) {
+                    depth--;
+                    continue;
+                }
+                Object slot = slotStack[depth][indexStack[depth]++];
+                if (slot instanceof Node) {
+                    depth++;
+                    slotStack[depth] = ((Node) slot).slots;
+                    indexStack[depth] = 0;
+                } else {
+                    next = (Leaf<K, V>) slot;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Leaf<K, V> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> result = next;
+            advance();
+            return result;
+        }
+    }
+
+    /** Iterates over the entries of the map, and removes them from the map. */
+    private class EntryIterator implements Iterator<Map.Entry<K, V>> {
+        private final LeafIterator<K, V> leaves = new LeafIterator<>(root);
+        private /*@Nullable*/ Leaf<K, V> last;
+
+        @Override
+        public boolean hasNext() {
+            return leaves.hasNext();
+        }
+
+        @Override
+        public Map.Entry<K, V> next() {
+            last = leaves.next();
+            return last;
+        }
+
+        @Override
+        public void remove() {
+            if (last == null) {
+                throw new IllegalStateException();
+            }
+            PersistentHashMap.this.remove(last.key);
+            last = null;
+        }
+    }
+}